@@ -159,6 +159,35 @@ type TopicHandler struct {
 	offsetsTime string
 	partitionCount int
 	produceMessageCount int
+	configKey string
+	configValue string
+	configRegex bool
+}
+func (cmd *TopicHandler) runConfig(c *kingpin.ParseContext) error {
+	query := url.Values{}
+	query.Set("operation", "config")
+	query.Set("key", cmd.configKey)
+	query.Set("value", cmd.configValue)
+	cli.PrintJSON(cli.HTTPPutQuery(cmd.configPath(query), query.Encode()))
+	return nil
+}
+func (cmd *TopicHandler) runDeleteConfig(c *kingpin.ParseContext) error {
+	query := url.Values{}
+	query.Set("operation", "deleteConfig")
+	query.Set("key", cmd.configKey)
+	cli.PrintJSON(cli.HTTPPutQuery(cmd.configPath(query), query.Encode()))
+	return nil
+}
+func (cmd *TopicHandler) configPath(query url.Values) string {
+	if cmd.configRegex {
+		query.Set("pattern", cmd.topic)
+		return "v1/topics"
+	}
+	return fmt.Sprintf("v1/topics/%s", cmd.topic)
+}
+func (cmd *TopicHandler) runDescribeConfig(c *kingpin.ParseContext) error {
+	cli.PrintJSON(cli.HTTPGet(fmt.Sprintf("v1/topics/%s/config", cmd.topic)))
+	return nil
 }
 func (cmd *TopicHandler) runCreate(c *kingpin.ParseContext) error {
 	query := url.Values{}
@@ -228,6 +257,14 @@ func handleTopicSection(app *kingpin.Application) {
 	cmd := &TopicHandler{}
 	topic := app.Command("topic", "Kafka topic maintenance")
 
+	config := topic.Command(
+		"config",
+		"Sets a config override on a topic").Action(cmd.runConfig)
+	config.Arg("topic", "The topic to update, or a regular expression with --regex").StringVar(&cmd.topic)
+	config.Arg("key", "The topic config to set, e.g. retention.ms").StringVar(&cmd.configKey)
+	config.Arg("value", "The value to set").StringVar(&cmd.configValue)
+	config.Flag("regex", "Update every topic whose name matches the topic argument").BoolVar(&cmd.configRegex)
+
 	create := topic.Command(
 		"create",
 		"Creates a new topic").Action(cmd.runCreate)
@@ -240,11 +277,23 @@ func handleTopicSection(app *kingpin.Application) {
 		"Deletes an existing topic").Action(cmd.runDelete)
 	delete.Arg("topic", "The topic to delete").StringVar(&cmd.topic)
 
+	deleteConfig := topic.Command(
+		"delete_config",
+		"Removes a config override from a topic").Action(cmd.runDeleteConfig)
+	deleteConfig.Arg("topic", "The topic to update, or a regular expression with --regex").StringVar(&cmd.topic)
+	deleteConfig.Arg("key", "The topic config to remove, e.g. retention.ms").StringVar(&cmd.configKey)
+	deleteConfig.Flag("regex", "Update every topic whose name matches the topic argument").BoolVar(&cmd.configRegex)
+
 	describe := topic.Command(
 		"describe",
 		"Describes a single existing topic").Action(cmd.runDescribe)
 	describe.Arg("topic", "The topic to describe").StringVar(&cmd.topic)
 
+	describeConfig := topic.Command(
+		"describe_config",
+		"Describes the config overrides of a topic").Action(cmd.runDescribeConfig)
+	describeConfig.Arg("topic", "The topic to describe").StringVar(&cmd.topic)
+
 	topic.Command(
 		"list",
 		"Lists all available topics").Action(cmd.runList)
@@ -11,8 +11,11 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 /**
  * Read-only interface for retrieving information stored by the Kafka brokers themselves.
@@ -94,6 +97,10 @@ public class KafkaState {
         return getIds(zkConfig.getZkRootPath() + "/brokers/topics");
     }
 
+    public boolean hasTopic(String topicName) throws Exception {
+        return kafkaZkClient.checkExists().forPath(zkConfig.getZkRootPath() + "/brokers/topics/" + topicName) != null;
+    }
+
     public JSONObject getTopic(String topicName) throws Exception {
         String partitionsPath = zkConfig.getZkRootPath() + "/brokers/topics/" + topicName + "/partitions";
         List<String> partitionIds = kafkaZkClient.getChildren()
@@ -113,6 +120,107 @@ public class KafkaState {
         return obj;
     }
 
+    /**
+     * Returns the replicas assigned to each partition of each topic, with the preferred leader first.
+     */
+    public Map<String, Map<Integer, List<Integer>>> getPartitionAssignments() throws Exception {
+        Map<String, Map<Integer, List<Integer>>> assignments = new TreeMap<>();
+        String topicsPath = zkConfig.getZkRootPath() + "/brokers/topics";
+
+        JSONArray topics = getIds(topicsPath);
+        for (int i = 0; i < topics.length(); i++) {
+            String topic = topics.getString(i);
+            JSONObject partitions = getElement(topicsPath + "/" + topic).getJSONObject("partitions");
+
+            Map<Integer, List<Integer>> topicAssignment = new TreeMap<>();
+            for (String partition : partitions.keySet()) {
+                JSONArray replicas = partitions.getJSONArray(partition);
+                List<Integer> replicaIds = new ArrayList<>();
+                for (int j = 0; j < replicas.length(); j++) {
+                    replicaIds.add(replicas.getInt(j));
+                }
+                topicAssignment.put(Integer.valueOf(partition), replicaIds);
+            }
+            assignments.put(topic, topicAssignment);
+        }
+
+        return assignments;
+    }
+
+    /**
+     * Returns the current state ({@code leader}, {@code isr}, ...) of a partition, if the partition
+     * has been created by the controller.
+     */
+    public Optional<JSONObject> getPartitionState(String topic, int partition) throws Exception {
+        try {
+            return Optional.of(getElement(zkConfig.getZkRootPath()
+                    + "/brokers/topics/" + topic + "/partitions/" + partition + "/state"));
+        } catch (NoNodeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the dynamic config overrides of a topic, or an empty object if it has none.
+     */
+    public JSONObject getTopicConfig(String topic) throws Exception {
+        try {
+            return getElement(zkConfig.getZkRootPath() + "/config/topics/" + topic).getJSONObject("config");
+        } catch (NoNodeException e) {
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Returns the current state of every partition which has a replica assigned to the provided
+     * broker, keyed by "topic-partition".
+     */
+    public Map<String, JSONObject> getPartitionStatesForBroker(int brokerId) throws Exception {
+        Map<String, JSONObject> partitionStates = new HashMap<>();
+
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : getPartitionAssignments().entrySet()) {
+            for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+                if (!partition.getValue().contains(brokerId)) {
+                    continue;
+                }
+
+                Optional<JSONObject> state = getPartitionState(topic.getKey(), partition.getKey());
+                if (state.isPresent()) {
+                    partitionStates.put(topic.getKey() + "-" + partition.getKey(), state.get());
+                }
+            }
+        }
+
+        return partitionStates;
+    }
+
+    /**
+     * Returns whether the provided broker is registered and is a member of the in-sync replica set
+     * of every partition assigned to it.
+     */
+    public boolean isBrokerInSync(int brokerId) throws Exception {
+        if (!getBroker(String.valueOf(brokerId)).isPresent()) {
+            return false;
+        }
+
+        for (JSONObject state : getPartitionStatesForBroker(brokerId).values()) {
+            if (!contains(state.getJSONArray("isr"), brokerId)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean contains(JSONArray brokerIds, int brokerId) {
+        for (int i = 0; i < brokerIds.length(); i++) {
+            if (brokerIds.getInt(i) == brokerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private JSONArray getIds(String path) throws Exception {
         try {
             return new JSONArray(kafkaZkClient.getChildren().forPath(path));
@@ -0,0 +1,192 @@
+package com.mesosphere.dcos.kafka.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.*;
+
+/**
+ * The field-by-field difference between two configs, with each change classified by what it takes
+ * for running brokers to pick it up. Sections with equal hashes are skipped without comparing
+ * their fields.
+ */
+public class ConfigDiff {
+
+    /**
+     * What a change requires of running brokers, from least to most disruptive.
+     */
+    public enum ChangeType {
+        /**
+         * Takes effect without restarting brokers, either because only the scheduler uses it, or
+         * because it only applies to brokers launched from now on, or because it can be applied
+         * to running brokers directly.
+         */
+        DYNAMIC,
+        /**
+         * Brokers must be restarted to pick it up.
+         */
+        RESTART,
+        /**
+         * Brokers must be relaunched with different reserved resources.
+         */
+        RESOURCE
+    }
+
+    private static final Map<String, ChangeType> BROKER_FIELDS = new HashMap<>();
+    private static final Map<String, ChangeType> JMX_FIELDS = new HashMap<>();
+    private static final Map<String, ChangeType> KAFKA_FIELDS = new HashMap<>();
+    private static final Map<String, ChangeType> SERVICE_FIELDS = new HashMap<>();
+    static {
+        for (String field : Arrays.asList("cpus", "mem", "disk", "disk_type", "port")) {
+            BROKER_FIELDS.put(field, ChangeType.RESOURCE);
+        }
+        // The JMX port is reserved alongside the broker port.
+        for (String field : Arrays.asList("enable", "remote_port")) {
+            JMX_FIELDS.put(field, ChangeType.RESOURCE);
+        }
+        // Only read by the scheduler.
+        KAFKA_FIELDS.put("mesos_zk_uri", ChangeType.DYNAMIC);
+        // Running brokers hold these from their launch: the name is passed to them as
+        // FRAMEWORK_NAME, they run as the user, and their resources are reserved with the role
+        // and principal.
+        for (String field : Arrays.asList("name", "user", "role", "principal")) {
+            SERVICE_FIELDS.put(field, ChangeType.RESTART);
+        }
+    }
+
+    private final List<Change> changes;
+
+    private ConfigDiff(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Returns the changes from {@code oldConfig} to {@code newConfig}, where changes to any of the
+     * provided Kafka overrides are applied to running brokers without a restart.
+     */
+    public static ConfigDiff compute(
+            ConfigSections oldConfig,
+            ConfigSections newConfig,
+            Set<String> dynamicOverrides) {
+        List<Change> changes = new ArrayList<>();
+        for (String section : newConfig.getNames()) {
+            if (Objects.equals(oldConfig.getHash(section), newConfig.getHash(section))) {
+                continue;
+            }
+
+            ObjectNode oldSection = oldConfig.getSection(section);
+            ObjectNode newSection = newConfig.getSection(section);
+            SortedSet<String> fields = new TreeSet<>();
+            oldSection.fieldNames().forEachRemaining(fields::add);
+            newSection.fieldNames().forEachRemaining(fields::add);
+
+            for (String field : fields) {
+                JsonNode oldValue = oldSection.get(field);
+                JsonNode newValue = newSection.get(field);
+                if (!Objects.equals(oldValue, newValue)) {
+                    changes.add(new Change(
+                            section, field, oldValue, newValue, classify(section, field, dynamicOverrides)));
+                }
+            }
+        }
+        return new ConfigDiff(changes);
+    }
+
+    public static ConfigDiff compute(ConfigSections oldConfig, ConfigSections newConfig) {
+        return compute(oldConfig, newConfig, Collections.emptySet());
+    }
+
+    static ChangeType classify(String section, String field, Set<String> dynamicOverrides) {
+        switch (section) {
+            case ConfigSections.BROKER:
+                return BROKER_FIELDS.getOrDefault(field, ChangeType.RESTART);
+            case ConfigSections.JMX:
+                return JMX_FIELDS.getOrDefault(field, ChangeType.RESTART);
+            case ConfigSections.STATSD:
+                return ChangeType.RESTART;
+            case ConfigSections.KAFKA:
+                return KAFKA_FIELDS.getOrDefault(field, ChangeType.RESTART);
+            case ConfigSections.OVERRIDES:
+                return dynamicOverrides.contains(field) ? ChangeType.DYNAMIC : ChangeType.RESTART;
+            case ConfigSections.SERVICE:
+                // The remaining service settings only affect scheduling.
+                return SERVICE_FIELDS.getOrDefault(field, ChangeType.DYNAMIC);
+            default:
+                // Executor, recovery and health check settings only apply to brokers launched from
+                // now on, or only to the scheduler.
+                return ChangeType.DYNAMIC;
+        }
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Returns the most disruptive type of change, or empty if nothing changed.
+     */
+    public Optional<ChangeType> getChangeType() {
+        return changes.stream().map(Change::getType).max(Comparator.naturalOrder());
+    }
+
+    /**
+     * Returns whether running brokers must be restarted or relaunched to pick up these changes.
+     */
+    public boolean requiresBrokerRestart() {
+        Optional<ChangeType> changeType = getChangeType();
+        return changeType.isPresent() && changeType.get() != ChangeType.DYNAMIC;
+    }
+
+    @Override
+    public String toString() {
+        return changes.toString();
+    }
+
+    /**
+     * A single changed field. Missing values are null.
+     */
+    public static class Change {
+        private final String section;
+        private final String field;
+        private final JsonNode oldValue;
+        private final JsonNode newValue;
+        private final ChangeType type;
+
+        private Change(String section, String field, JsonNode oldValue, JsonNode newValue, ChangeType type) {
+            this.section = section;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.type = type;
+        }
+
+        public String getSection() {
+            return section;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public JsonNode getOldValue() {
+            return oldValue;
+        }
+
+        public JsonNode getNewValue() {
+            return newValue;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return section + "." + field + ": " + oldValue + " -> " + newValue + " (" + type + ")";
+        }
+    }
+}
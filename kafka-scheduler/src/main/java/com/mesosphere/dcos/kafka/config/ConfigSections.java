@@ -0,0 +1,117 @@
+package com.mesosphere.dcos.kafka.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+import org.apache.mesos.config.ConfigStoreException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A {@link KafkaSchedulerConfiguration} split into sections, each with a hash of its canonical
+ * JSON form. Configs whose sections have equal hashes have equal content, regardless of the order
+ * in which their fields were written.
+ */
+public class ConfigSections {
+    public static final String SERVICE = "service";
+    public static final String BROKER = "broker";
+    public static final String JMX = "jmx";
+    public static final String STATSD = "statsd";
+    public static final String KAFKA = "kafka";
+    public static final String OVERRIDES = "overrides";
+    public static final String EXECUTOR = "executor";
+    public static final String RECOVERY = "recovery";
+    public static final String HEALTH_CHECK = "healthcheck";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, ObjectNode> sections;
+    private final Map<String, String> hashes;
+
+    private ConfigSections(Map<String, ObjectNode> sections) {
+        Map<String, String> hashes = new TreeMap<>();
+        for (Map.Entry<String, ObjectNode> section : sections.entrySet()) {
+            hashes.put(section.getKey(), Hashing.sha256()
+                    .hashString(canonicalize(section.getValue()), StandardCharsets.UTF_8)
+                    .toString());
+        }
+        this.sections = Collections.unmodifiableMap(sections);
+        this.hashes = Collections.unmodifiableMap(hashes);
+    }
+
+    public static ConfigSections of(KafkaSchedulerConfiguration config) throws ConfigStoreException {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(config.toJsonString());
+        } catch (IOException e) {
+            throw new ConfigStoreException(e);
+        }
+
+        Map<String, ObjectNode> sections = new TreeMap<>();
+        ObjectNode broker = getSection(root, BROKER);
+        sections.put(JMX, detach(broker, JMX));
+        sections.put(STATSD, detach(broker, STATSD));
+        sections.put(BROKER, broker);
+        ObjectNode kafka = getSection(root, KAFKA);
+        sections.put(OVERRIDES, detach(kafka, OVERRIDES));
+        sections.put(KAFKA, kafka);
+        for (String name : Arrays.asList(SERVICE, EXECUTOR, RECOVERY, HEALTH_CHECK)) {
+            sections.put(name, getSection(root, name));
+        }
+        return new ConfigSections(sections);
+    }
+
+    public Set<String> getNames() {
+        return sections.keySet();
+    }
+
+    public ObjectNode getSection(String name) {
+        return sections.get(name);
+    }
+
+    public String getHash(String name) {
+        return hashes.get(name);
+    }
+
+    public Map<String, String> getHashes() {
+        return hashes;
+    }
+
+    private static ObjectNode getSection(JsonNode root, String name) {
+        JsonNode section = root.get(name);
+        return section != null && section.isObject()
+                ? ((ObjectNode) section).deepCopy()
+                : JsonNodeFactory.instance.objectNode();
+    }
+
+    private static ObjectNode detach(ObjectNode parent, String name) {
+        JsonNode child = parent.remove(name);
+        return child != null && child.isObject() ? (ObjectNode) child : JsonNodeFactory.instance.objectNode();
+    }
+
+    /**
+     * Writes the provided node with the fields of every object in sorted order.
+     */
+    private static String canonicalize(JsonNode node) {
+        if (!node.isObject()) {
+            return node.toString();
+        }
+
+        StringBuilder builder = new StringBuilder("{");
+        SortedSet<String> names = new TreeSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        for (String name : names) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(JsonNodeFactory.instance.textNode(name).toString())
+                    .append(':')
+                    .append(canonicalize(node.get(name)));
+        }
+        return builder.append('}').toString();
+    }
+}
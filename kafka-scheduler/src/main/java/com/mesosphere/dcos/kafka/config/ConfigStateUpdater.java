@@ -3,6 +3,7 @@ package com.mesosphere.dcos.kafka.config;
 import com.mesosphere.dcos.kafka.commons.state.KafkaState;
 import com.mesosphere.dcos.kafka.config.ConfigStateValidator.ValidationException;
 import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.config.ConfigStoreException;
@@ -20,6 +21,7 @@ public class ConfigStateUpdater {
   private final KafkaSchedulerConfiguration newTargetConfig;
   private final FrameworkState frameworkState;
   private final KafkaState kafkaState;
+  private final KafkaAdmin kafkaAdmin;
 
   public ConfigStateUpdater(KafkaSchedulerConfiguration newTargetConfig) {
     this.newTargetConfig = newTargetConfig;
@@ -29,6 +31,7 @@ public class ConfigStateUpdater {
     this.kafkaConfigState = new KafkaConfigState(zkConfig);
     this.frameworkState = new FrameworkState(zkConfig);
     this.kafkaState = new KafkaState(zkConfig);
+    this.kafkaAdmin = new KafkaAdmin(zkConfig);
     this.validator = new ConfigStateValidator(frameworkState);
   }
 
@@ -53,9 +56,15 @@ public class ConfigStateUpdater {
       validator.validateConfigChange(currTargetConfig, newTargetConfig);
 
       if (!currTargetConfig.equals(newTargetConfig)) {
-        log.info("Config change detected!");
+        ConfigDiff diff = ConfigDiff.compute(
+                kafkaConfigState.getSections(kafkaConfigState.getTargetName()),
+                ConfigSections.of(newTargetConfig),
+                DynamicConfigUpdater.getDynamicOverrides(
+                        currTargetConfig.getKafkaConfiguration().getOverrides(),
+                        newTargetConfig.getKafkaConfiguration().getOverrides()));
+        log.info("Config change detected: " + diff);
         setTargetConfig(newTargetConfig);
-        kafkaConfigState.syncConfigs(frameworkState);
+        kafkaConfigState.syncConfigs(frameworkState, applyDynamicOverrides(currTargetConfig));
         kafkaConfigState.cleanConfigs(frameworkState);
       } else {
         log.info("No config property changes detected, leaving brokers as-is.");
@@ -64,6 +73,21 @@ public class ConfigStateUpdater {
     return newTargetConfig;
   }
 
+  /**
+   * Applies the Kafka override changes which Kafka supports at runtime, returning the config they
+   * were applied from, or {@code null} if they weren't applied. If they weren't, brokers are
+   * restarted to pick them up instead.
+   */
+  private KafkaSchedulerConfiguration applyDynamicOverrides(KafkaSchedulerConfiguration currTargetConfig) {
+    try {
+      new DynamicConfigUpdater(kafkaState, kafkaAdmin).apply(currTargetConfig, newTargetConfig);
+      return currTargetConfig;
+    } catch (Exception ex) {
+      log.error("Failed to apply Kafka overrides at runtime, brokers will be restarted to apply them", ex);
+      return null;
+    }
+  }
+
   /**
    * Returns the underlying config state storage to be used elsewhere.
    * This will only contain pre-validated target configs.
@@ -86,6 +110,13 @@ public class ConfigStateUpdater {
     return kafkaState;
   }
 
+  /**
+   * Returns the underlying Kafka admin client to be used elsewhere.
+   */
+  public KafkaAdmin getKafkaAdmin() {
+    return kafkaAdmin;
+  }
+
   private void setTargetConfig(KafkaSchedulerConfiguration newTargetConfig) throws ConfigStoreException {
     UUID targetConfigName = kafkaConfigState.store(newTargetConfig);
     kafkaConfigState.setTargetName(targetConfigName);
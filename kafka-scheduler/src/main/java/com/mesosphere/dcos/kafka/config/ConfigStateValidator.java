@@ -1,6 +1,5 @@
 package com.mesosphere.dcos.kafka.config;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import com.mesosphere.dcos.kafka.state.FrameworkState;
@@ -140,7 +139,7 @@ public class ConfigStateValidator {
     return errors;
   }
 
-  private List<ValidationError> validateBrokerConfigChange(
+  List<ValidationError> validateBrokerConfigChange(
       BrokerConfiguration oldConfig,
       BrokerConfiguration newConfig)
           throws ValidationException {
@@ -152,23 +151,20 @@ public class ConfigStateValidator {
     return errors;
   }
 
+  /**
+   * Growing a broker's disk or moving it to a different disk type is handled by the storage
+   * migration phase, which moves each broker onto a new volume and lets it re-replicate. Shrinking
+   * a volume is still refused, as the existing data may not fit.
+   */
   private List<ValidationError> validateBrokerDisk(BrokerConfiguration oldConfig, BrokerConfiguration newConfig) {
     List<ValidationError> errors = new ArrayList<>();
 
     double oldDisk = oldConfig.getDisk();
     double newDisk = newConfig.getDisk();
 
-    if (oldDisk != newDisk) {
+    if (newDisk < oldDisk) {
       errors.add(new ValidationError("disk",
-              "Changing this value (from " + oldDisk + " to " + newDisk + ") is not supported."));
-    }
-
-    final String oldDiskType = oldConfig.getDiskType();
-    final String newDiskType = newConfig.getDiskType();
-
-    if (!StringUtils.equals(oldDiskType, newDiskType)) {
-      errors.add(new ValidationError("diskType",
-              "Changing this value (from " + oldDiskType + " to " + newDiskType + ") is not supported."));
+              "Decreasing this value (from " + oldDisk + " to " + newDisk + ") is not supported."));
     }
 
     return errors;
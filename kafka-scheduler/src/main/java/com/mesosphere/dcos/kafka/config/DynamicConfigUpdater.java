@@ -0,0 +1,372 @@
+package com.mesosphere.dcos.kafka.config;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Applies changes to Kafka overrides which Kafka supports changing at runtime, without restarting
+ * the brokers. Broker-wide topic defaults are written to the dynamic config of every topic which
+ * doesn't set them itself, and default client quotas to the {@code <default>} client config. The
+ * entries written are recorded with {@link KafkaAdmin#setManagedConfig}, so that they follow later
+ * changes to the overrides and are removed along with them, without touching entries set by users.
+ *
+ * Brokers keep the previous defaults in memory until they are next restarted, and would give them
+ * to topics created in between. The changed topic defaults are therefore also recorded with
+ * {@link KafkaAdmin#setManagedTopicDefaults}, and written in the same way to topics created
+ * afterwards: those created through the scheduler's API as soon as they're created, and any others
+ * when this is next run.
+ */
+public class DynamicConfigUpdater implements Runnable {
+    private static final Log log = LogFactory.getLog(DynamicConfigUpdater.class);
+
+    public static final int CHECK_INTERVAL_SECS = 30;
+
+    /**
+     * Broker settings with a topic-level equivalent taking the same value.
+     */
+    private static final Map<String, String> TOPIC_CONFIGS = new HashMap<>();
+    /**
+     * Broker settings with a topic-level equivalent in milliseconds, by topic-level key, in the
+     * order of precedence Kafka gives them, along with the number of milliseconds in their unit.
+     */
+    private static final Map<String, LinkedHashMap<String, Long>> TOPIC_DURATION_CONFIGS = new HashMap<>();
+    /**
+     * Broker settings with a client quota equivalent.
+     */
+    private static final Map<String, String> CLIENT_CONFIGS = new HashMap<>();
+    static {
+        TOPIC_CONFIGS.put("compression.type", "compression.type");
+        TOPIC_CONFIGS.put("log.cleaner.delete.retention.ms", "delete.retention.ms");
+        TOPIC_CONFIGS.put("log.cleaner.min.cleanable.ratio", "min.cleanable.dirty.ratio");
+        TOPIC_CONFIGS.put("log.cleanup.policy", "cleanup.policy");
+        TOPIC_CONFIGS.put("log.flush.interval.messages", "flush.messages");
+        TOPIC_CONFIGS.put("log.flush.interval.ms", "flush.ms");
+        TOPIC_CONFIGS.put("log.index.interval.bytes", "index.interval.bytes");
+        TOPIC_CONFIGS.put("log.index.size.max.bytes", "segment.index.bytes");
+        TOPIC_CONFIGS.put("log.preallocate", "preallocate");
+        TOPIC_CONFIGS.put("log.retention.bytes", "retention.bytes");
+        TOPIC_CONFIGS.put("log.segment.bytes", "segment.bytes");
+        TOPIC_CONFIGS.put("log.segment.delete.delay.ms", "file.delete.delay.ms");
+        TOPIC_CONFIGS.put("message.max.bytes", "max.message.bytes");
+        TOPIC_CONFIGS.put("min.insync.replicas", "min.insync.replicas");
+        TOPIC_CONFIGS.put("unclean.leader.election.enable", "unclean.leader.election.enable");
+
+        LinkedHashMap<String, Long> retention = new LinkedHashMap<>();
+        retention.put("log.retention.ms", 1L);
+        retention.put("log.retention.minutes", 60 * 1000L);
+        retention.put("log.retention.hours", 60 * 60 * 1000L);
+        TOPIC_DURATION_CONFIGS.put("retention.ms", retention);
+        LinkedHashMap<String, Long> roll = new LinkedHashMap<>();
+        roll.put("log.roll.ms", 1L);
+        roll.put("log.roll.hours", 60 * 60 * 1000L);
+        TOPIC_DURATION_CONFIGS.put("segment.ms", roll);
+        LinkedHashMap<String, Long> rollJitter = new LinkedHashMap<>();
+        rollJitter.put("log.roll.jitter.ms", 1L);
+        rollJitter.put("log.roll.jitter.hours", 60 * 60 * 1000L);
+        TOPIC_DURATION_CONFIGS.put("segment.jitter.ms", rollJitter);
+
+        CLIENT_CONFIGS.put("quota.producer.default", KafkaAdmin.PRODUCER_BYTE_RATE);
+        CLIENT_CONFIGS.put("quota.consumer.default", KafkaAdmin.CONSUMER_BYTE_RATE);
+    }
+
+    private final KafkaState kafkaState;
+    private final KafkaAdmin kafkaAdmin;
+
+    /**
+     * The topics which were given the recorded topic defaults by {@link #run}, and the defaults
+     * they were given.
+     */
+    private final Set<String> updatedTopics = new HashSet<>();
+    private JSONObject updatedTopicDefaults = new JSONObject();
+
+    public DynamicConfigUpdater(KafkaState kafkaState, KafkaAdmin kafkaAdmin) {
+        this.kafkaState = kafkaState;
+        this.kafkaAdmin = kafkaAdmin;
+    }
+
+    /**
+     * Returns the overrides which may change from {@code oldOverrides} to {@code newOverrides}
+     * without restarting the brokers. An override must be set in both to be changed at runtime,
+     * as Kafka's own default for it isn't known here.
+     */
+    public static Set<String> getDynamicOverrides(Map<String, String> oldOverrides, Map<String, String> newOverrides) {
+        Set<String> dynamicOverrides = new HashSet<>();
+        if (oldOverrides == null || newOverrides == null) {
+            return dynamicOverrides;
+        }
+
+        for (String key : TOPIC_CONFIGS.keySet()) {
+            if (oldOverrides.containsKey(key) && newOverrides.containsKey(key)) {
+                dynamicOverrides.add(key);
+            }
+        }
+        for (String key : CLIENT_CONFIGS.keySet()) {
+            if (isLong(oldOverrides.get(key)) && isLong(newOverrides.get(key))) {
+                dynamicOverrides.add(key);
+            }
+        }
+        for (Map<String, Long> durations : TOPIC_DURATION_CONFIGS.values()) {
+            for (String key : durations.keySet()) {
+                if (isLong(oldOverrides.get(key)) && isLong(newOverrides.get(key))) {
+                    dynamicOverrides.add(key);
+                }
+            }
+        }
+        return dynamicOverrides;
+    }
+
+    /**
+     * Returns the topic-level configs equivalent to the provided broker overrides.
+     */
+    static Map<String, String> getTopicDefaults(Map<String, String> overrides) {
+        Map<String, String> topicDefaults = new TreeMap<>();
+        for (Map.Entry<String, String> entry : TOPIC_CONFIGS.entrySet()) {
+            String value = overrides.get(entry.getKey());
+            if (value != null) {
+                topicDefaults.put(entry.getValue(), value);
+            }
+        }
+        for (Map.Entry<String, LinkedHashMap<String, Long>> entry : TOPIC_DURATION_CONFIGS.entrySet()) {
+            for (Map.Entry<String, Long> unit : entry.getValue().entrySet()) {
+                String value = overrides.get(unit.getKey());
+                if (isLong(value)) {
+                    long ms = Long.parseLong(value.trim());
+                    // Negative durations disable the setting, whatever their unit.
+                    topicDefaults.put(entry.getKey(), String.valueOf(ms < 0 ? -1 : ms * unit.getValue()));
+                    break;
+                }
+            }
+        }
+        return topicDefaults;
+    }
+
+    /**
+     * Returns the default client quotas equivalent to the provided broker overrides.
+     */
+    static Map<String, String> getClientDefaults(Map<String, String> overrides) {
+        Map<String, String> clientDefaults = new TreeMap<>();
+        for (Map.Entry<String, String> entry : CLIENT_CONFIGS.entrySet()) {
+            String value = overrides.get(entry.getKey());
+            if (isLong(value)) {
+                clientDefaults.put(entry.getValue(), value.trim());
+            }
+        }
+        return clientDefaults;
+    }
+
+    /**
+     * Applies the runtime equivalents of the overrides which changed between the two configs, to
+     * every topic which has no value of its own for them. Entries written for earlier changes are
+     * updated to follow the new config, or removed if it no longer sets them.
+     */
+    public void apply(KafkaSchedulerConfiguration oldConfig, KafkaSchedulerConfiguration newConfig) throws Exception {
+        Map<String, String> oldOverrides = getOverrides(oldConfig);
+        Map<String, String> newOverrides = getOverrides(newConfig);
+
+        reconcile("clients", KafkaAdmin.DEFAULT_ENTITY, getClientDefaults(oldOverrides), getClientDefaults(newOverrides));
+
+        Map<String, String> oldTopicDefaults = getTopicDefaults(oldOverrides);
+        Map<String, String> newTopicDefaults = getTopicDefaults(newOverrides);
+        JSONObject topicDefaultUpdates = getChanges(oldTopicDefaults, newTopicDefaults);
+        recordTopicDefaults(newTopicDefaults, topicDefaultUpdates);
+        List<String> managedTopics = kafkaAdmin.getManagedConfigEntities("topics");
+        if (topicDefaultUpdates.length() == 0 && managedTopics.isEmpty()) {
+            return;
+        }
+
+        Set<String> existingTopics = getTopics();
+
+        // Every topic may need the changed defaults, but otherwise only those written to before.
+        Set<String> candidateTopics = new TreeSet<>(managedTopics);
+        if (topicDefaultUpdates.length() > 0) {
+            log.info("Applying topic default changes: " + topicDefaultUpdates);
+            candidateTopics.addAll(existingTopics);
+        }
+        for (String topic : candidateTopics) {
+            if (existingTopics.contains(topic)) {
+                reconcile("topics", topic, oldTopicDefaults, newTopicDefaults);
+            } else {
+                // The topic was deleted, along with its config.
+                kafkaAdmin.setManagedConfig("topics", topic, new JSONObject());
+            }
+        }
+    }
+
+    /**
+     * Writes the recorded topic defaults to every topic which doesn't have them yet, so that
+     * topics created since they changed don't keep the defaults the brokers started with. Each
+     * topic is only looked at once for as long as the recorded defaults stay the same.
+     */
+    @Override
+    public void run() {
+        try {
+            JSONObject topicDefaults = kafkaAdmin.getManagedTopicDefaults();
+            if (!topicDefaults.similar(updatedTopicDefaults)) {
+                updatedTopics.clear();
+                updatedTopicDefaults = topicDefaults;
+            }
+            if (topicDefaults.length() == 0) {
+                return;
+            }
+
+            Set<String> topics = getTopics();
+            // Forget deleted topics, in case they're created again.
+            updatedTopics.retainAll(topics);
+            for (String topic : topics) {
+                if (!updatedTopics.contains(topic)) {
+                    applyTopicDefaults(topic, topicDefaults);
+                    updatedTopics.add(topic);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to apply topic defaults to new topics", e);
+        }
+    }
+
+    /**
+     * Writes the recorded topic defaults to a newly created topic, if it exists.
+     */
+    public void applyTopicDefaults(String topic) throws Exception {
+        if (kafkaState.hasTopic(topic)) {
+            applyTopicDefaults(topic, kafkaAdmin.getManagedTopicDefaults());
+        }
+    }
+
+    /**
+     * Writes the provided defaults to a topic's config where it has no value of its own, and
+     * records them as written by the scheduler, so that they follow later changes.
+     */
+    private void applyTopicDefaults(String topic, JSONObject topicDefaults) throws Exception {
+        JSONObject config = kafkaAdmin.getConfig("topics", topic);
+        JSONObject updates = new JSONObject();
+        for (String key : topicDefaults.keySet()) {
+            if (!config.has(key)) {
+                updates.put(key, topicDefaults.getString(key));
+            }
+        }
+        if (updates.length() == 0) {
+            return;
+        }
+
+        log.info("Applying topic defaults to topic " + topic + ": " + updates);
+        kafkaAdmin.changeConfig("topics", topic, updates, Collections.emptyList());
+        JSONObject managed = kafkaAdmin.getManagedConfig("topics", topic);
+        for (String key : updates.keySet()) {
+            managed.put(key, updates.getString(key));
+        }
+        kafkaAdmin.setManagedConfig("topics", topic, managed);
+    }
+
+    /**
+     * Updates the record of the topic defaults changed at runtime: those changed before follow
+     * the new config, or are dropped if it no longer sets them, and the latest changes are added.
+     */
+    private void recordTopicDefaults(Map<String, String> newTopicDefaults, JSONObject topicDefaultUpdates)
+            throws Exception {
+        JSONObject recorded = kafkaAdmin.getManagedTopicDefaults();
+        JSONObject newRecorded = new JSONObject();
+        for (String key : recorded.keySet()) {
+            String value = newTopicDefaults.get(key);
+            if (value != null) {
+                newRecorded.put(key, value);
+            }
+        }
+        for (String key : topicDefaultUpdates.keySet()) {
+            newRecorded.put(key, topicDefaultUpdates.getString(key));
+        }
+        if (!newRecorded.similar(recorded)) {
+            kafkaAdmin.setManagedTopicDefaults(newRecorded);
+        }
+    }
+
+    private Set<String> getTopics() throws Exception {
+        Set<String> topics = new HashSet<>();
+        JSONArray topicsArray = kafkaState.getTopics();
+        for (int i = 0; i < topicsArray.length(); i++) {
+            topics.add(topicsArray.getString(i));
+        }
+        return topics;
+    }
+
+    /**
+     * Moves an entity's dynamic config from the old defaults to the new ones. Entries which the
+     * scheduler wrote before and which still hold the value it wrote follow the new defaults.
+     * Changed defaults are written to entries which aren't set yet. Entries which were set or
+     * changed by anyone else are left as-is, and are no longer tracked.
+     */
+    private void reconcile(
+            String entityType,
+            String entityName,
+            Map<String, String> oldDefaults,
+            Map<String, String> newDefaults) throws Exception {
+        JSONObject config = kafkaAdmin.getConfig(entityType, entityName);
+        JSONObject managed = kafkaAdmin.getManagedConfig(entityType, entityName);
+
+        JSONObject updates = new JSONObject();
+        List<String> removals = new ArrayList<>();
+        JSONObject newManaged = new JSONObject();
+        for (String key : managed.keySet()) {
+            String written = managed.getString(key);
+            if (!written.equals(config.optString(key, null))) {
+                continue;
+            }
+            String value = newDefaults.get(key);
+            if (value == null) {
+                removals.add(key);
+            } else {
+                if (!value.equals(written)) {
+                    updates.put(key, value);
+                }
+                newManaged.put(key, value);
+            }
+        }
+        JSONObject changes = getChanges(oldDefaults, newDefaults);
+        for (String key : changes.keySet()) {
+            if (!config.has(key)) {
+                updates.put(key, changes.getString(key));
+                newManaged.put(key, changes.getString(key));
+            }
+        }
+
+        if (updates.length() > 0 || !removals.isEmpty()) {
+            kafkaAdmin.changeConfig(entityType, entityName, updates, removals);
+        }
+        if (!newManaged.similar(managed)) {
+            kafkaAdmin.setManagedConfig(entityType, entityName, newManaged);
+        }
+    }
+
+    private static JSONObject getChanges(Map<String, String> oldValues, Map<String, String> newValues) {
+        JSONObject changes = new JSONObject();
+        for (Map.Entry<String, String> entry : newValues.entrySet()) {
+            String oldValue = oldValues.get(entry.getKey());
+            if (oldValue != null && !oldValue.equals(entry.getValue())) {
+                changes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changes;
+    }
+
+    private static Map<String, String> getOverrides(KafkaSchedulerConfiguration config) {
+        Map<String, String> overrides = config.getKafkaConfiguration().getOverrides();
+        return overrides != null ? overrides : Collections.emptyMap();
+    }
+
+    private static boolean isLong(String value) {
+        if (value == null) {
+            return false;
+        }
+        try {
+            Long.parseLong(value.trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
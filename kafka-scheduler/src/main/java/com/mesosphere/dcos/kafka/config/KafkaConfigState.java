@@ -15,15 +15,23 @@ import com.mesosphere.dcos.kafka.state.FrameworkState;
 import org.apache.mesos.curator.CuratorConfigStore;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Stores and manages multiple Kafka framework configurations in persistent storage.
  * Each configuration is in the form of a {@link KafkaSchedulerConfiguration}.
+ *
+ * A stored configuration is never modified, so each one is only read from storage once and is
+ * cached by version from then on, along with its {@link ConfigSections}. Brokers running with a
+ * config which differs from the target only by {@link ConfigDiff.ChangeType#DYNAMIC} changes are
+ * moved to the target without being restarted.
  */
 public class KafkaConfigState {
   private static final Log log = LogFactory.getLog(KafkaConfigState.class);
 
   private final ConfigStore<KafkaSchedulerConfiguration> configStore;
+  private final Map<UUID, KafkaSchedulerConfiguration> configs = new ConcurrentHashMap<>();
+  private final Map<UUID, ConfigSections> sections = new ConcurrentHashMap<>();
 
   /**
    * Creates a new Kafka config state manager based on the provided bootstrap information.
@@ -55,13 +63,24 @@ public class KafkaConfigState {
       return configStore;
   }
 
+  /**
+   * Returns the configuration stored against the provided version. The returned configuration is
+   * shared and must not be modified.
+   */
   public KafkaSchedulerConfiguration fetch(UUID version) throws ConfigStoreException {
+    KafkaSchedulerConfiguration config = configs.get(version);
+    if (config != null) {
+      return config;
+    }
+
     try {
-      return configStore.fetch(version);
+      config = configStore.fetch(version);
     } catch (ConfigStoreException e) {
       log.error("Unable to fetch version: " + version, e);
       throw new ConfigStoreException(e);
     }
+    cache(version, config);
+    return config;
   }
 
   /**
@@ -107,13 +126,17 @@ public class KafkaConfigState {
   }
 
   /**
-   * Stores the provided configuration against the provided version label.
+   * Stores the provided configuration against the provided version label. The caller may go on
+   * modifying the provided configuration, so a copy of what was stored is cached instead.
    *
    * @throws ConfigStoreException if the underlying storage failed to write
    */
   public UUID store(KafkaSchedulerConfiguration configuration) throws ConfigStoreException {
     try {
-      return configStore.store(configuration);
+      byte[] bytes = configuration.getBytes();
+      UUID version = configStore.store(configuration);
+      cache(version, KafkaSchedulerConfiguration.getFactoryInstance().parse(bytes));
+      return version;
     } catch (Exception e) {
       String msg = "Failure to store configurations.";
       log.error(msg, e);
@@ -135,9 +158,22 @@ public class KafkaConfigState {
   }
 
   public void syncConfigs(FrameworkState state) throws ConfigStoreException {
+    syncConfigs(state, null);
+  }
+
+  /**
+   * Moves brokers running with a config which differs from the target only in ways they don't need
+   * to be restarted for onto the target config.
+   *
+   * @param dynamicOverridesAppliedFrom the config from which runtime-applicable Kafka override
+   *     changes to the target were applied to the cluster, so that brokers running with the same
+   *     overrides need not be restarted for them, or {@code null} if none were applied
+   */
+  public void syncConfigs(FrameworkState state, KafkaSchedulerConfiguration dynamicOverridesAppliedFrom)
+          throws ConfigStoreException {
     try {
       UUID targetName = getTargetName();
-      List<String> duplicateConfigs = getDuplicateConfigs();
+      List<String> duplicateConfigs = getDuplicateConfigs(dynamicOverridesAppliedFrom);
 
       List<TaskInfo> taskInfos = state.getTaskInfos();
       for (TaskInfo taskInfo : taskInfos) {
@@ -161,6 +197,8 @@ public class KafkaConfigState {
         try {
           log.info("Removing config: " + configName);
           configStore.clear(configName);
+          configs.remove(configName);
+          sections.remove(configName);
         } catch (ConfigStoreException e) {
           log.error("Unable to clear config: " + configName, e);
         }
@@ -226,29 +264,57 @@ public class KafkaConfigState {
   }
 
   /**
-   * Returns the list of configs which are duplicates of the current Target config.
+   * Returns the list of configs which brokers may switch to the current Target config from without
+   * being restarted. Changed Kafka overrides are only counted as such for configs with the same
+   * overrides as the one they were applied at runtime from, as only its changes were applied.
    */
-  private List<String> getDuplicateConfigs() throws ConfigStoreException {
-    KafkaSchedulerConfiguration newTargetConfig = getTargetConfig();
+  List<String> getDuplicateConfigs(KafkaSchedulerConfiguration dynamicOverridesAppliedFrom)
+          throws ConfigStoreException {
+    UUID targetName = getTargetName();
+    ConfigSections targetSections = getSections(targetName);
+    Map<String, String> targetOverrides = getOverrides(fetch(targetName));
+    Map<String, String> appliedFromOverrides = dynamicOverridesAppliedFrom != null
+            ? getOverrides(dynamicOverridesAppliedFrom)
+            : null;
 
     List<String> duplicateConfigs = new ArrayList<String>();
     final Collection<UUID> configNames = getConfigNames();
     for (UUID configName : configNames) {
-      KafkaSchedulerConfiguration currTargetConfig = fetch(configName);
-
-      final BrokerConfiguration currBrokerConfig = currTargetConfig.getBrokerConfiguration();
-      final BrokerConfiguration newBrokerConfig = newTargetConfig.getBrokerConfiguration();
-
-      final KafkaConfiguration currKafkaConfig = currTargetConfig.getKafkaConfiguration();
-      final KafkaConfiguration newKafkaConfig = newTargetConfig.getKafkaConfiguration();
-
-      if (currBrokerConfig.equals(newBrokerConfig) &&
-          currKafkaConfig.equals(newKafkaConfig)) {
+      Map<String, String> overrides = getOverrides(fetch(configName));
+      Set<String> dynamicOverrides = overrides.equals(appliedFromOverrides)
+              ? DynamicConfigUpdater.getDynamicOverrides(overrides, targetOverrides)
+              : Collections.emptySet();
+      ConfigDiff diff = ConfigDiff.compute(getSections(configName), targetSections, dynamicOverrides);
+      if (!diff.requiresBrokerRestart()) {
         log.info("Duplicate config detected: " + configName);
+        if (!diff.isEmpty()) {
+          log.info("Changes from " + configName + " which apply without a restart: " + diff);
+        }
         duplicateConfigs.add(configName.toString());
       }
     }
 
     return duplicateConfigs;
   }
+
+  /**
+   * Returns the sections of the configuration stored against the provided version.
+   */
+  public ConfigSections getSections(UUID version) throws ConfigStoreException {
+    ConfigSections configSections = sections.get(version);
+    if (configSections == null) {
+      configSections = ConfigSections.of(fetch(version));
+      sections.put(version, configSections);
+    }
+    return configSections;
+  }
+
+  private static Map<String, String> getOverrides(KafkaSchedulerConfiguration config) {
+    Map<String, String> overrides = config.getKafkaConfiguration().getOverrides();
+    return overrides != null ? overrides : Collections.emptyMap();
+  }
+
+  private void cache(UUID version, KafkaSchedulerConfiguration config) {
+    configs.put(version, config);
+  }
 }
@@ -28,6 +28,12 @@ public class KafkaHealthCheckConfiguration {
     @JsonProperty("broker_health_check_grace_period_sec")
     private int healthCheckGracePeriodSec;
 
+    @JsonProperty("broker_liveness_check_enabled")
+    private boolean enableLivenessCheck;
+
+    @JsonProperty("broker_liveness_timeout_sec")
+    private int livenessTimeoutSec;
+
     public KafkaHealthCheckConfiguration() {}
 
     @JsonCreator
@@ -37,13 +43,17 @@ public class KafkaHealthCheckConfiguration {
             @JsonProperty("broker_health_check_interval_sec") int healthCheckIntervalSec,
             @JsonProperty("broker_health_check_timeout_sec") int healthCheckTimeoutSec,
             @JsonProperty("broker_health_check_max_consecutive_failures") int healthCheckMaxFailures,
-            @JsonProperty("broker_health_check_grace_period_sec") int healthCheckGracePeriodSec) {
+            @JsonProperty("broker_health_check_grace_period_sec") int healthCheckGracePeriodSec,
+            @JsonProperty("broker_liveness_check_enabled") boolean enableLivenessCheck,
+            @JsonProperty("broker_liveness_timeout_sec") int livenessTimeoutSec) {
         this.enableHealthCheck = enableHealthCheck;
         this.healthCheckDelaySec = healthCheckDelaySec;
         this.healthCheckIntervalSec = healthCheckIntervalSec;
         this.healthCheckTimeoutSec = healthCheckTimeoutSec;
         this.healthCheckMaxFailures = healthCheckMaxFailures;
         this.healthCheckGracePeriodSec = healthCheckGracePeriodSec;
+        this.enableLivenessCheck = enableLivenessCheck;
+        this.livenessTimeoutSec = livenessTimeoutSec;
     }
 
     @JsonProperty("broker_health_check_enabled")
@@ -76,6 +86,16 @@ public class KafkaHealthCheckConfiguration {
         this.healthCheckGracePeriodSec = healthCheckGracePeriodSec;
     }
 
+    @JsonProperty("broker_liveness_check_enabled")
+    public void setEnableLivenessCheck(boolean enableLivenessCheck) {
+        this.enableLivenessCheck = enableLivenessCheck;
+    }
+
+    @JsonProperty("broker_liveness_timeout_sec")
+    public void setLivenessTimeoutSec(int livenessTimeoutSec) {
+        this.livenessTimeoutSec = livenessTimeoutSec;
+    }
+
     @JsonIgnore
     public boolean isHealthCheckEnabled() {
         return enableHealthCheck;
@@ -106,6 +126,22 @@ public class KafkaHealthCheckConfiguration {
         return Duration.ofSeconds(healthCheckGracePeriodSec);
     }
 
+    /**
+     * Whether running brokers which lose their Zookeeper registration are restarted.
+     */
+    @JsonIgnore
+    public boolean isLivenessCheckEnabled() {
+        return enableLivenessCheck;
+    }
+
+    /**
+     * How long a running broker may stay unregistered before it's restarted.
+     */
+    @JsonIgnore
+    public Duration getLivenessTimeout() {
+        return Duration.ofSeconds(livenessTimeoutSec);
+    }
+
     @Override
     public String toString() {
         return "KafkaRecoveryConfiguration{" +
@@ -115,6 +151,8 @@ public class KafkaHealthCheckConfiguration {
                 ", healthCheckTimeoutSec=" + healthCheckTimeoutSec +
                 ", healthCheckMaxFailures=" + healthCheckMaxFailures +
                 ", healthCheckGracePeriodSec=" + healthCheckGracePeriodSec +
+                ", enableLivenessCheck=" + enableLivenessCheck +
+                ", livenessTimeoutSec=" + livenessTimeoutSec +
                 '}';
     }
 
@@ -132,7 +170,9 @@ public class KafkaHealthCheckConfiguration {
         if (healthCheckIntervalSec != that.healthCheckIntervalSec) return false;
         if (healthCheckTimeoutSec != that.healthCheckTimeoutSec) return false;
         if (healthCheckMaxFailures != that.healthCheckMaxFailures) return false;
-        return healthCheckGracePeriodSec == that.healthCheckGracePeriodSec;
+        if (healthCheckGracePeriodSec != that.healthCheckGracePeriodSec) return false;
+        if (enableLivenessCheck != that.enableLivenessCheck) return false;
+        return livenessTimeoutSec == that.livenessTimeoutSec;
     }
 
     @Override
@@ -144,6 +184,8 @@ public class KafkaHealthCheckConfiguration {
         result = 31 * result + healthCheckTimeoutSec;
         result = 31 * result + healthCheckMaxFailures;
         result = 31 * result + healthCheckGracePeriodSec;
+        result = 31 * result + (enableLivenessCheck ? 1 : 0);
+        result = 31 * result + livenessTimeoutSec;
         return result;
     }
 }
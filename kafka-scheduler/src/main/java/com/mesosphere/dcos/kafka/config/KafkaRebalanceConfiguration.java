@@ -0,0 +1,244 @@
+package com.mesosphere.dcos.kafka.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * This class encapsulates the configuration of the partition rebalance plan.
+ */
+public class KafkaRebalanceConfiguration {
+    @JsonProperty("enabled")
+    private boolean enabled;
+
+    @JsonProperty("batch_size")
+    private int batchSize;
+
+    @JsonProperty("throttle_bytes_per_sec")
+    private long throttleBytesPerSec;
+
+    @JsonProperty("imbalance_tolerance")
+    private double imbalanceTolerance;
+
+    @JsonProperty("leader_balance_enabled")
+    private boolean leaderBalanceEnabled;
+
+    @JsonProperty("leader_balance_interval_secs")
+    private int leaderBalanceIntervalSecs;
+
+    @JsonProperty("leader_balance_batch_size")
+    private int leaderBalanceBatchSize;
+
+    @JsonProperty("leader_imbalance_threshold")
+    private double leaderImbalanceThreshold;
+
+    @JsonProperty("replacement_throttle_bytes_per_sec")
+    private long replacementThrottleBytesPerSec;
+
+    @JsonProperty("max_concurrent_replacements")
+    private int maxConcurrentReplacements;
+
+    public KafkaRebalanceConfiguration() {}
+
+    @JsonCreator
+    public KafkaRebalanceConfiguration(
+            @JsonProperty("enabled") boolean enabled,
+            @JsonProperty("batch_size") int batchSize,
+            @JsonProperty("throttle_bytes_per_sec") long throttleBytesPerSec,
+            @JsonProperty("imbalance_tolerance") double imbalanceTolerance,
+            @JsonProperty("leader_balance_enabled") boolean leaderBalanceEnabled,
+            @JsonProperty("leader_balance_interval_secs") int leaderBalanceIntervalSecs,
+            @JsonProperty("leader_balance_batch_size") int leaderBalanceBatchSize,
+            @JsonProperty("leader_imbalance_threshold") double leaderImbalanceThreshold,
+            @JsonProperty("replacement_throttle_bytes_per_sec") long replacementThrottleBytesPerSec,
+            @JsonProperty("max_concurrent_replacements") int maxConcurrentReplacements) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.throttleBytesPerSec = throttleBytesPerSec;
+        this.imbalanceTolerance = imbalanceTolerance;
+        this.leaderBalanceEnabled = leaderBalanceEnabled;
+        this.leaderBalanceIntervalSecs = leaderBalanceIntervalSecs;
+        this.leaderBalanceBatchSize = leaderBalanceBatchSize;
+        this.leaderImbalanceThreshold = leaderImbalanceThreshold;
+        this.replacementThrottleBytesPerSec = replacementThrottleBytesPerSec;
+        this.maxConcurrentReplacements = maxConcurrentReplacements;
+    }
+
+    /**
+     * Whether the rebalance plan starts on its own, rather than waiting to be continued.
+     */
+    @JsonIgnore
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty("enabled")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The maximum number of partitions moved by a single reassignment.
+     */
+    @JsonIgnore
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @JsonProperty("batch_size")
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The replication rate allowed on each broker involved in a reassignment, or 0 for no limit.
+     */
+    @JsonIgnore
+    public long getThrottleBytesPerSec() {
+        return throttleBytesPerSec;
+    }
+
+    @JsonProperty("throttle_bytes_per_sec")
+    public void setThrottleBytesPerSec(long throttleBytesPerSec) {
+        this.throttleBytesPerSec = throttleBytesPerSec;
+    }
+
+    /**
+     * The fraction of the mean broker load by which brokers may differ before partitions are moved.
+     */
+    @JsonIgnore
+    public double getImbalanceTolerance() {
+        return imbalanceTolerance;
+    }
+
+    @JsonProperty("imbalance_tolerance")
+    public void setImbalanceTolerance(double imbalanceTolerance) {
+        this.imbalanceTolerance = imbalanceTolerance;
+    }
+
+    /**
+     * Whether the scheduler periodically moves leadership back to preferred replicas.
+     */
+    @JsonIgnore
+    public boolean isLeaderBalanceEnabled() {
+        return leaderBalanceEnabled;
+    }
+
+    @JsonProperty("leader_balance_enabled")
+    public void setLeaderBalanceEnabled(boolean leaderBalanceEnabled) {
+        this.leaderBalanceEnabled = leaderBalanceEnabled;
+    }
+
+    /**
+     * The delay between checks of leader balance, which is also the minimum delay between elections.
+     */
+    @JsonIgnore
+    public int getLeaderBalanceIntervalSecs() {
+        return leaderBalanceIntervalSecs;
+    }
+
+    @JsonProperty("leader_balance_interval_secs")
+    public void setLeaderBalanceIntervalSecs(int leaderBalanceIntervalSecs) {
+        this.leaderBalanceIntervalSecs = leaderBalanceIntervalSecs;
+    }
+
+    /**
+     * The maximum number of partitions moved to their preferred leader by a single election.
+     */
+    @JsonIgnore
+    public int getLeaderBalanceBatchSize() {
+        return leaderBalanceBatchSize;
+    }
+
+    @JsonProperty("leader_balance_batch_size")
+    public void setLeaderBalanceBatchSize(int leaderBalanceBatchSize) {
+        this.leaderBalanceBatchSize = leaderBalanceBatchSize;
+    }
+
+    /**
+     * The fraction of a broker's preferred partitions which may be led elsewhere before an election
+     * is triggered for them.
+     */
+    @JsonIgnore
+    public double getLeaderImbalanceThreshold() {
+        return leaderImbalanceThreshold;
+    }
+
+    @JsonProperty("leader_imbalance_threshold")
+    public void setLeaderImbalanceThreshold(double leaderImbalanceThreshold) {
+        this.leaderImbalanceThreshold = leaderImbalanceThreshold;
+    }
+
+    /**
+     * The replication rate allowed on a replaced broker, and on the leaders it fetches from, until it
+     * has caught up. 0 for no limit.
+     */
+    @JsonIgnore
+    public long getReplacementThrottleBytesPerSec() {
+        return replacementThrottleBytesPerSec;
+    }
+
+    @JsonProperty("replacement_throttle_bytes_per_sec")
+    public void setReplacementThrottleBytesPerSec(long replacementThrottleBytesPerSec) {
+        this.replacementThrottleBytesPerSec = replacementThrottleBytesPerSec;
+    }
+
+    /**
+     * The maximum number of replaced brokers which may be catching up at once.
+     */
+    @JsonIgnore
+    public int getMaxConcurrentReplacements() {
+        return maxConcurrentReplacements;
+    }
+
+    @JsonProperty("max_concurrent_replacements")
+    public void setMaxConcurrentReplacements(int maxConcurrentReplacements) {
+        this.maxConcurrentReplacements = maxConcurrentReplacements;
+    }
+
+    @Override
+    public String toString() {
+        return "KafkaRebalanceConfiguration{" +
+                "enabled=" + enabled +
+                ", batchSize=" + batchSize +
+                ", throttleBytesPerSec=" + throttleBytesPerSec +
+                ", imbalanceTolerance=" + imbalanceTolerance +
+                ", leaderBalanceEnabled=" + leaderBalanceEnabled +
+                ", leaderBalanceIntervalSecs=" + leaderBalanceIntervalSecs +
+                ", leaderBalanceBatchSize=" + leaderBalanceBatchSize +
+                ", leaderImbalanceThreshold=" + leaderImbalanceThreshold +
+                ", replacementThrottleBytesPerSec=" + replacementThrottleBytesPerSec +
+                ", maxConcurrentReplacements=" + maxConcurrentReplacements +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        KafkaRebalanceConfiguration that = (KafkaRebalanceConfiguration) o;
+        return enabled == that.enabled &&
+                batchSize == that.batchSize &&
+                throttleBytesPerSec == that.throttleBytesPerSec &&
+                Double.compare(that.imbalanceTolerance, imbalanceTolerance) == 0 &&
+                leaderBalanceEnabled == that.leaderBalanceEnabled &&
+                leaderBalanceIntervalSecs == that.leaderBalanceIntervalSecs &&
+                leaderBalanceBatchSize == that.leaderBalanceBatchSize &&
+                Double.compare(that.leaderImbalanceThreshold, leaderImbalanceThreshold) == 0 &&
+                replacementThrottleBytesPerSec == that.replacementThrottleBytesPerSec &&
+                maxConcurrentReplacements == that.maxConcurrentReplacements;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(enabled, batchSize, throttleBytesPerSec, imbalanceTolerance,
+                leaderBalanceEnabled, leaderBalanceIntervalSecs, leaderBalanceBatchSize, leaderImbalanceThreshold,
+                replacementThrottleBytesPerSec, maxConcurrentReplacements);
+    }
+}
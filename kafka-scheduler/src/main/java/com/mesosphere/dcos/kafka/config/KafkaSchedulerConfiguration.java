@@ -39,6 +39,9 @@ public class KafkaSchedulerConfiguration implements Configuration {
     @JsonProperty("healthcheck")
     private KafkaHealthCheckConfiguration healthCheckConfiguration;
 
+    @JsonProperty("rebalance")
+    private KafkaRebalanceConfiguration rebalanceConfiguration;
+
     public KafkaSchedulerConfiguration() {
     }
 
@@ -49,13 +52,15 @@ public class KafkaSchedulerConfiguration implements Configuration {
             @JsonProperty("kafka") KafkaConfiguration kafkaConfiguration,
             @JsonProperty("executor") ExecutorConfiguration executorConfiguration,
             @JsonProperty("recovery") RecoveryConfiguration recoveryConfiguration,
-            @JsonProperty("healthcheck") KafkaHealthCheckConfiguration healthCheckConfiguration) {
+            @JsonProperty("healthcheck") KafkaHealthCheckConfiguration healthCheckConfiguration,
+            @JsonProperty("rebalance") KafkaRebalanceConfiguration rebalanceConfiguration) {
         this.serviceConfiguration = serviceConfiguration;
         this.brokerConfiguration = brokerConfiguration;
         this.kafkaConfiguration = kafkaConfiguration;
         this.executorConfiguration = executorConfiguration;
         this.recoveryConfiguration = recoveryConfiguration;
         this.healthCheckConfiguration = healthCheckConfiguration;
+        this.rebalanceConfiguration = rebalanceConfiguration;
     }
 
     @JsonProperty("service")
@@ -139,6 +144,16 @@ public class KafkaSchedulerConfiguration implements Configuration {
         return healthCheckConfiguration;
     }
 
+    @JsonProperty("rebalance")
+    public void setRebalanceConfiguration(KafkaRebalanceConfiguration rebalanceConfiguration) {
+        this.rebalanceConfiguration = rebalanceConfiguration;
+    }
+
+    @JsonProperty("rebalance")
+    public KafkaRebalanceConfiguration getRebalanceConfiguration() {
+        return rebalanceConfiguration;
+    }
+
     @JsonIgnore
     public ZookeeperConfiguration getZookeeperConfig() {
         ZookeeperConfiguration zkSettings = new ZookeeperConfiguration(
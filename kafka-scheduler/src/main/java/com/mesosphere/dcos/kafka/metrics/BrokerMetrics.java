@@ -0,0 +1,67 @@
+package com.mesosphere.dcos.kafka.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The raw metrics read from a single broker. Rates are one-minute averages in units per second.
+ */
+public class BrokerMetrics {
+    private final Map<String, Double> bytesInPerTopic = new HashMap<>();
+    private final Map<String, Double> bytesOutPerTopic = new HashMap<>();
+    private final Map<String, Double> messagesInPerTopic = new HashMap<>();
+    private final Map<String, Long> logSizes = new HashMap<>();
+    private final Map<String, Double> requestLatencies = new HashMap<>();
+    private final Map<String, Double> produceBytesPerClient = new HashMap<>();
+    private final Map<String, Double> fetchBytesPerClient = new HashMap<>();
+    private final Map<String, Double> throttleTimePerClient = new HashMap<>();
+
+    /**
+     * Rates of the partitions led by the broker, by topic. Kafka doesn't report rates per partition.
+     */
+    public Map<String, Double> getBytesInPerTopic() {
+        return bytesInPerTopic;
+    }
+
+    public Map<String, Double> getBytesOutPerTopic() {
+        return bytesOutPerTopic;
+    }
+
+    public Map<String, Double> getMessagesInPerTopic() {
+        return messagesInPerTopic;
+    }
+
+    /**
+     * The size in bytes of each partition replica on the broker, keyed by "topic-partition".
+     */
+    public Map<String, Long> getLogSizes() {
+        return logSizes;
+    }
+
+    /**
+     * Request latencies in milliseconds, keyed by "request.statistic", e.g. "Produce.Mean".
+     */
+    public Map<String, Double> getRequestLatencies() {
+        return requestLatencies;
+    }
+
+    /**
+     * Byte rates of the requests the broker served, by client id, as measured by Kafka's quota
+     * manager over its quota window rather than over one minute.
+     */
+    public Map<String, Double> getProduceBytesPerClient() {
+        return produceBytesPerClient;
+    }
+
+    public Map<String, Double> getFetchBytesPerClient() {
+        return fetchBytesPerClient;
+    }
+
+    /**
+     * The average time in milliseconds for which the broker delayed each client's responses to
+     * enforce its quota, taking the higher of produce and fetch.
+     */
+    public Map<String, Double> getThrottleTimePerClient() {
+        return throttleTimePerClient;
+    }
+}
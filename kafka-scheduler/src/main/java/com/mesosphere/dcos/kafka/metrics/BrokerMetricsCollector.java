@@ -0,0 +1,279 @@
+package com.mesosphere.dcos.kafka.metrics;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.JmxConfig;
+import com.mesosphere.dcos.kafka.rebalance.PartitionAssigner;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMISocketFactory;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically reads partition, request and client metrics from each broker over remote JMX, and
+ * aggregates them into a {@link LoadModel}.
+ */
+public class BrokerMetricsCollector implements Runnable {
+    private static final Log log = LogFactory.getLog(BrokerMetricsCollector.class);
+
+    public static final int POLL_INTERVAL_SECS = 60;
+    private static final int ROUND_TIMEOUT_SECS = 30;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final int MAX_THREADS = 8;
+    private static final List<String> LATENCY_REQUESTS = Arrays.asList("Produce", "FetchConsumer", "FetchFollower");
+    private static final List<String> LATENCY_STATISTICS = Arrays.asList("Mean", "99thPercentile");
+
+    private final KafkaState kafkaState;
+    private final JmxConfig jmxConfig;
+    private final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private volatile LoadModel loadModel = LoadModel.empty();
+
+    public BrokerMetricsCollector(KafkaState kafkaState, JmxConfig jmxConfig) {
+        this.kafkaState = kafkaState;
+        this.jmxConfig = jmxConfig;
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Brokers can only be polled when they expose remote JMX without authentication, as the
+     * scheduler has no access to the brokers' credentials.
+     */
+    public boolean isSupported() {
+        return jmxConfig != null
+                && jmxConfig.isEnabled()
+                && jmxConfig.isRemote()
+                && !jmxConfig.isRemoteAuthenticate()
+                && !jmxConfig.isRemoteSslNeedClientAuth();
+    }
+
+    public LoadModel getLoadModel() {
+        return loadModel;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Map<String, Map<Integer, List<Integer>>> assignments = kafkaState.getPartitionAssignments();
+            Map<String, Integer> leaders = new HashMap<>();
+            for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+                for (Integer partition : topic.getValue().keySet()) {
+                    Optional<JSONObject> state = kafkaState.getPartitionState(topic.getKey(), partition);
+                    if (state.isPresent() && state.get().getInt("leader") >= 0) {
+                        leaders.put(PartitionAssigner.key(topic.getKey(), partition), state.get().getInt("leader"));
+                    }
+                }
+            }
+
+            Map<Integer, Future<BrokerMetrics>> pending = new TreeMap<>();
+            JSONArray brokerIds = kafkaState.getBrokerIds();
+            for (int i = 0; i < brokerIds.length(); i++) {
+                String brokerId = brokerIds.getString(i);
+                Optional<JSONObject> broker = kafkaState.getBroker(brokerId);
+                if (broker.isPresent()) {
+                    String host = broker.get().getString("host");
+                    pending.put(Integer.valueOf(brokerId), executor.submit(() -> readMetrics(host)));
+                }
+            }
+
+            // Brokers are read in parallel, so they share a single deadline. Reads which are still
+            // queued when it passes are dropped, and those in progress are bounded by socket timeouts.
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(ROUND_TIMEOUT_SECS);
+            Map<Integer, BrokerMetrics> metrics = new TreeMap<>();
+            for (Map.Entry<Integer, Future<BrokerMetrics>> broker : pending.entrySet()) {
+                try {
+                    long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+                    metrics.put(broker.getKey(), broker.getValue().get(remainingNanos, TimeUnit.NANOSECONDS));
+                } catch (Exception ex) {
+                    broker.getValue().cancel(true);
+                    log.warn("Failed to read metrics from broker-" + broker.getKey() + ": " + ex);
+                }
+            }
+
+            loadModel = LoadModel.build(System.currentTimeMillis(), metrics, assignments, leaders);
+            log.info("Collected load metrics from " + metrics.size() + " of " + pending.size() + " brokers.");
+        } catch (Exception ex) {
+            log.error("Failed to collect broker load metrics: ", ex);
+        }
+    }
+
+    private BrokerMetrics readMetrics(String host) throws Exception {
+        JMXServiceURL url = new JMXServiceURL(
+                "service:jmx:rmi:///jndi/rmi://" + host + ":" + jmxConfig.getRemotePort() + "/jmxrmi");
+        Map<String, Object> env = new HashMap<>();
+        env.put("com.sun.jndi.rmi.factory.socket",
+                new TimeoutSocketFactory(jmxConfig.isRemoteRegistrySsl() || jmxConfig.isRemoteSsl()));
+        configureRmiTimeouts();
+
+        BrokerMetrics metrics = new BrokerMetrics();
+        try (JMXConnector connector = JMXConnectorFactory.connect(url, env)) {
+            MBeanServerConnection connection = connector.getMBeanServerConnection();
+
+            readTopicRates(connection, "BytesInPerSec", metrics.getBytesInPerTopic());
+            readTopicRates(connection, "BytesOutPerSec", metrics.getBytesOutPerTopic());
+            readTopicRates(connection, "MessagesInPerSec", metrics.getMessagesInPerTopic());
+
+            for (ObjectName name : connection.queryNames(
+                    new ObjectName("kafka.log:type=Log,name=Size,topic=*,partition=*"), null)) {
+                Number size = (Number) getAttribute(connection, name, "Value");
+                metrics.getLogSizes().put(
+                        PartitionAssigner.key(name.getKeyProperty("topic"), Integer.parseInt(name.getKeyProperty("partition"))),
+                        size.longValue());
+            }
+
+            readClientRates(connection, "Produce", metrics.getProduceBytesPerClient(), metrics.getThrottleTimePerClient());
+            readClientRates(connection, "Fetch", metrics.getFetchBytesPerClient(), metrics.getThrottleTimePerClient());
+
+            for (String request : LATENCY_REQUESTS) {
+                ObjectName name = new ObjectName(
+                        "kafka.network:type=RequestMetrics,name=TotalTimeMs,request=" + request);
+                if (!connection.isRegistered(name)) {
+                    continue;
+                }
+                for (String statistic : LATENCY_STATISTICS) {
+                    Number value = (Number) getAttribute(connection, name, statistic);
+                    metrics.getRequestLatencies().put(request + "." + statistic, value.doubleValue());
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private static void readTopicRates(
+            MBeanServerConnection connection,
+            String metric,
+            Map<String, Double> ratesPerTopic) throws Exception {
+        for (ObjectName name : connection.queryNames(
+                new ObjectName("kafka.server:type=BrokerTopicMetrics,name=" + metric + ",topic=*"), null)) {
+            Number rate = (Number) getAttribute(connection, name, "OneMinuteRate");
+            ratesPerTopic.put(name.getKeyProperty("topic"), rate.doubleValue());
+        }
+    }
+
+    /**
+     * Reads the per-client metrics of Kafka's quota manager. Clients of different users which share
+     * a client id are combined.
+     */
+    private static void readClientRates(
+            MBeanServerConnection connection,
+            String type,
+            Map<String, Double> ratesPerClient,
+            Map<String, Double> throttleTimePerClient) throws Exception {
+        for (ObjectName name : connection.queryNames(new ObjectName("kafka.server:type=" + type + ",*"), null)) {
+            String clientId = name.getKeyProperty("client-id");
+            if (clientId == null) {
+                continue;
+            }
+            Number rate = (Number) getAttribute(connection, name, "byte-rate");
+            Number throttleTime = (Number) getAttribute(connection, name, "throttle-time");
+            ratesPerClient.merge(clientId, finite(rate), Double::sum);
+            throttleTimePerClient.merge(clientId, finite(throttleTime), Math::max);
+        }
+    }
+
+    /**
+     * Reads an attribute, unless the read has been cancelled. Cancelling doesn't interrupt socket
+     * I/O, so this stops a cancelled read from going on to make further requests.
+     */
+    private static Object getAttribute(MBeanServerConnection connection, ObjectName name, String attribute)
+            throws Exception {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Cancelled reading " + name);
+        }
+        return connection.getAttribute(name, attribute);
+    }
+
+    /**
+     * The JMX connection itself uses the socket factory of the stub exported by the broker, which
+     * is the default factory unless the broker uses SSL. Installs one with timeouts as the default,
+     * unless one has already been set. RMI also overrides the read timeout of each socket while
+     * opening a connection and reading a response, so both of those are bounded too.
+     */
+    private static synchronized void configureRmiTimeouts() {
+        for (String property : Arrays.asList(
+                "sun.rmi.transport.tcp.handshakeTimeout", "sun.rmi.transport.tcp.responseTimeout")) {
+            if (System.getProperty(property) == null) {
+                System.setProperty(property, String.valueOf(READ_TIMEOUT_MS));
+            }
+        }
+        if (RMISocketFactory.getSocketFactory() != null) {
+            return;
+        }
+        try {
+            RMISocketFactory.setSocketFactory(new TimeoutSocketFactory(false));
+        } catch (IOException ex) {
+            log.warn("Failed to set the default RMI socket factory: " + ex);
+        }
+    }
+
+    /**
+     * Kafka reports averages over no samples as NaN, which can't be serialized to JSON.
+     */
+    private static double finite(Number value) {
+        return Double.isNaN(value.doubleValue()) || Double.isInfinite(value.doubleValue()) ? 0 : value.doubleValue();
+    }
+
+    /**
+     * Creates RMI client sockets with connect and read timeouts, so that an unresponsive broker
+     * can't hold a collector thread indefinitely.
+     */
+    private static class TimeoutSocketFactory extends RMISocketFactory implements Serializable {
+        private final boolean ssl;
+
+        TimeoutSocketFactory(boolean ssl) {
+            this.ssl = ssl;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                if (!ssl) {
+                    return socket;
+                }
+                Socket sslSocket = ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, host, port, true);
+                sslSocket.setSoTimeout(READ_TIMEOUT_MS);
+                return sslSocket;
+            } catch (IOException ex) {
+                socket.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return new ServerSocket(port);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && o.getClass() == getClass() && ((TimeoutSocketFactory) o).ssl == ssl;
+        }
+
+        @Override
+        public int hashCode() {
+            return Boolean.hashCode(ssl);
+        }
+    }
+}
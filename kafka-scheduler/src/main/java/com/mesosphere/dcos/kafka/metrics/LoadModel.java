@@ -0,0 +1,371 @@
+package com.mesosphere.dcos.kafka.metrics;
+
+import com.mesosphere.dcos.kafka.rebalance.PartitionAssigner;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * A snapshot of the load on each broker and partition, aggregated from the metrics of all brokers.
+ *
+ * Kafka reports byte and message rates per topic rather than per partition, so a topic's rate on a
+ * broker is divided evenly between the partitions of the topic which that broker leads.
+ */
+public class LoadModel {
+    private final long timestamp;
+    private final Map<Integer, BrokerLoad> brokers;
+    private final Map<String, PartitionLoad> partitions;
+    private final Map<String, ClientLoad> clients;
+
+    private LoadModel(
+            long timestamp,
+            Map<Integer, BrokerLoad> brokers,
+            Map<String, PartitionLoad> partitions,
+            Map<String, ClientLoad> clients) {
+        this.timestamp = timestamp;
+        this.brokers = brokers;
+        this.partitions = partitions;
+        this.clients = clients;
+    }
+
+    public static LoadModel empty() {
+        return new LoadModel(0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * @param metrics     the metrics read from each broker, by broker id
+     * @param assignments the replicas of each partition, by topic and partition
+     * @param leaders     the current leader of each partition, keyed by "topic-partition"
+     */
+    public static LoadModel build(
+            long timestamp,
+            Map<Integer, BrokerMetrics> metrics,
+            Map<String, Map<Integer, List<Integer>>> assignments,
+            Map<String, Integer> leaders) {
+
+        // Count the partitions each broker leads per topic, to split the broker's topic rates.
+        Map<Integer, Map<String, Integer>> ledPerTopic = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+            for (Integer partition : topic.getValue().keySet()) {
+                Integer leader = leaders.get(PartitionAssigner.key(topic.getKey(), partition));
+                if (leader != null) {
+                    ledPerTopic.computeIfAbsent(leader, b -> new HashMap<>()).merge(topic.getKey(), 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<Integer, BrokerLoad> brokers = new TreeMap<>();
+        for (Map.Entry<Integer, BrokerMetrics> broker : metrics.entrySet()) {
+            brokers.put(broker.getKey(), new BrokerLoad(broker.getKey(), broker.getValue()));
+        }
+
+        Map<String, PartitionLoad> partitions = new TreeMap<>();
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+            for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+                String key = PartitionAssigner.key(topic.getKey(), partition.getKey());
+                Integer leader = leaders.get(key);
+                PartitionLoad load = new PartitionLoad(topic.getKey(), partition.getKey(), leader == null ? -1 : leader);
+
+                for (Integer replica : partition.getValue()) {
+                    BrokerLoad brokerLoad = brokers.get(replica);
+                    if (brokerLoad != null) {
+                        brokerLoad.replicas++;
+                    }
+                    BrokerMetrics replicaMetrics = metrics.get(replica);
+                    if (replicaMetrics != null && replicaMetrics.getLogSizes().containsKey(key)) {
+                        load.sizeBytes = Math.max(load.sizeBytes, replicaMetrics.getLogSizes().get(key));
+                    }
+                }
+
+                BrokerMetrics leaderMetrics = leader == null ? null : metrics.get(leader);
+                if (leaderMetrics != null) {
+                    int share = ledPerTopic.get(leader).get(topic.getKey());
+                    load.bytesInPerSec = leaderMetrics.getBytesInPerTopic().getOrDefault(topic.getKey(), 0.0) / share;
+                    load.bytesOutPerSec = leaderMetrics.getBytesOutPerTopic().getOrDefault(topic.getKey(), 0.0) / share;
+                    load.messagesInPerSec = leaderMetrics.getMessagesInPerTopic().getOrDefault(topic.getKey(), 0.0) / share;
+                    brokers.get(leader).leaders++;
+                }
+
+                partitions.put(key, load);
+            }
+        }
+
+        Map<String, ClientLoad> clients = new TreeMap<>();
+        for (BrokerMetrics brokerMetrics : metrics.values()) {
+            for (Map.Entry<String, Double> rate : brokerMetrics.getProduceBytesPerClient().entrySet()) {
+                ClientLoad client = clients.computeIfAbsent(rate.getKey(), ClientLoad::new);
+                client.produceBytesPerSec += rate.getValue();
+                client.maxBrokerProduceBytesPerSec = Math.max(client.maxBrokerProduceBytesPerSec, rate.getValue());
+            }
+            for (Map.Entry<String, Double> rate : brokerMetrics.getFetchBytesPerClient().entrySet()) {
+                ClientLoad client = clients.computeIfAbsent(rate.getKey(), ClientLoad::new);
+                client.fetchBytesPerSec += rate.getValue();
+                client.maxBrokerFetchBytesPerSec = Math.max(client.maxBrokerFetchBytesPerSec, rate.getValue());
+            }
+            for (Map.Entry<String, Double> throttleTime : brokerMetrics.getThrottleTimePerClient().entrySet()) {
+                ClientLoad client = clients.computeIfAbsent(throttleTime.getKey(), ClientLoad::new);
+                client.throttleTimeMs = Math.max(client.throttleTimeMs, throttleTime.getValue());
+            }
+        }
+
+        return new LoadModel(timestamp, brokers, partitions, clients);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Map<Integer, BrokerLoad> getBrokers() {
+        return brokers;
+    }
+
+    public Map<String, PartitionLoad> getPartitions() {
+        return partitions;
+    }
+
+    public Map<String, ClientLoad> getClients() {
+        return clients;
+    }
+
+    /**
+     * Returns the size in bytes of each partition with a known size, keyed by "topic-partition".
+     */
+    public Map<String, Long> getPartitionSizes() {
+        Map<String, Long> sizes = new HashMap<>();
+        for (Map.Entry<String, PartitionLoad> partition : partitions.entrySet()) {
+            if (partition.getValue().sizeBytes > 0) {
+                sizes.put(partition.getKey(), partition.getValue().sizeBytes);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the partitions with the highest combined in and out byte rates, busiest first.
+     */
+    public List<PartitionLoad> getHottestPartitions(int limit) {
+        return partitions.values().stream()
+                .sorted(Comparator.comparingDouble(PartitionLoad::getBytesPerSec).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public JSONObject toJSON() {
+        JSONArray brokersJson = new JSONArray();
+        for (BrokerLoad broker : brokers.values()) {
+            brokersJson.put(broker.toJSON());
+        }
+        JSONArray partitionsJson = new JSONArray();
+        for (PartitionLoad partition : partitions.values()) {
+            partitionsJson.put(partition.toJSON());
+        }
+        JSONArray clientsJson = new JSONArray();
+        for (ClientLoad client : clients.values()) {
+            clientsJson.put(client.toJSON());
+        }
+        return new JSONObject()
+                .put("timestamp", timestamp)
+                .put("brokers", brokersJson)
+                .put("partitions", partitionsJson)
+                .put("clients", clientsJson);
+    }
+
+    /**
+     * The aggregate load on a single broker.
+     */
+    public static class BrokerLoad {
+        private final int brokerId;
+        private final double bytesInPerSec;
+        private final double bytesOutPerSec;
+        private final double messagesInPerSec;
+        private final long diskBytes;
+        private final Map<String, Double> requestLatencies;
+        private int leaders = 0;
+        private int replicas = 0;
+
+        private BrokerLoad(int brokerId, BrokerMetrics metrics) {
+            this.brokerId = brokerId;
+            this.bytesInPerSec = sum(metrics.getBytesInPerTopic().values());
+            this.bytesOutPerSec = sum(metrics.getBytesOutPerTopic().values());
+            this.messagesInPerSec = sum(metrics.getMessagesInPerTopic().values());
+            long disk = 0;
+            for (Long size : metrics.getLogSizes().values()) {
+                disk += size;
+            }
+            this.diskBytes = disk;
+            this.requestLatencies = new TreeMap<>(metrics.getRequestLatencies());
+        }
+
+        public int getBrokerId() {
+            return brokerId;
+        }
+
+        public double getBytesInPerSec() {
+            return bytesInPerSec;
+        }
+
+        public double getBytesOutPerSec() {
+            return bytesOutPerSec;
+        }
+
+        public double getMessagesInPerSec() {
+            return messagesInPerSec;
+        }
+
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        public int getLeaders() {
+            return leaders;
+        }
+
+        public int getReplicas() {
+            return replicas;
+        }
+
+        public Map<String, Double> getRequestLatencies() {
+            return requestLatencies;
+        }
+
+        public JSONObject toJSON() {
+            return new JSONObject()
+                    .put("id", brokerId)
+                    .put("bytes_in_per_sec", bytesInPerSec)
+                    .put("bytes_out_per_sec", bytesOutPerSec)
+                    .put("messages_in_per_sec", messagesInPerSec)
+                    .put("disk_bytes", diskBytes)
+                    .put("leaders", leaders)
+                    .put("replicas", replicas)
+                    .put("request_latency_ms", new JSONObject(requestLatencies));
+        }
+
+        private static double sum(Iterable<Double> values) {
+            double total = 0;
+            for (Double value : values) {
+                total += value;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The estimated load of a single partition.
+     */
+    public static class PartitionLoad {
+        private final String topic;
+        private final int partition;
+        private final int leader;
+        private long sizeBytes = 0;
+        private double bytesInPerSec = 0;
+        private double bytesOutPerSec = 0;
+        private double messagesInPerSec = 0;
+
+        private PartitionLoad(String topic, int partition, int leader) {
+            this.topic = topic;
+            this.partition = partition;
+            this.leader = leader;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public int getLeader() {
+            return leader;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public double getBytesInPerSec() {
+            return bytesInPerSec;
+        }
+
+        public double getBytesOutPerSec() {
+            return bytesOutPerSec;
+        }
+
+        public double getMessagesInPerSec() {
+            return messagesInPerSec;
+        }
+
+        public double getBytesPerSec() {
+            return bytesInPerSec + bytesOutPerSec;
+        }
+
+        public JSONObject toJSON() {
+            return new JSONObject()
+                    .put("topic", topic)
+                    .put("partition", partition)
+                    .put("leader", leader)
+                    .put("size_bytes", sizeBytes)
+                    .put("bytes_in_per_sec", bytesInPerSec)
+                    .put("bytes_out_per_sec", bytesOutPerSec)
+                    .put("messages_in_per_sec", messagesInPerSec);
+        }
+    }
+
+    /**
+     * The observed throughput of a single client id. Kafka enforces quotas on each broker
+     * separately, so the highest rate on any one broker is what a quota is compared against.
+     */
+    public static class ClientLoad {
+        private final String clientId;
+        private double produceBytesPerSec = 0;
+        private double fetchBytesPerSec = 0;
+        private double maxBrokerProduceBytesPerSec = 0;
+        private double maxBrokerFetchBytesPerSec = 0;
+        private double throttleTimeMs = 0;
+
+        private ClientLoad(String clientId) {
+            this.clientId = clientId;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public double getProduceBytesPerSec() {
+            return produceBytesPerSec;
+        }
+
+        public double getFetchBytesPerSec() {
+            return fetchBytesPerSec;
+        }
+
+        public double getMaxBrokerProduceBytesPerSec() {
+            return maxBrokerProduceBytesPerSec;
+        }
+
+        public double getMaxBrokerFetchBytesPerSec() {
+            return maxBrokerFetchBytesPerSec;
+        }
+
+        public double getThrottleTimeMs() {
+            return throttleTimeMs;
+        }
+
+        public JSONObject toJSON() {
+            return new JSONObject()
+                    .put("client_id", clientId)
+                    .put("produce_bytes_per_sec", produceBytesPerSec)
+                    .put("fetch_bytes_per_sec", fetchBytesPerSec)
+                    .put("max_broker_produce_bytes_per_sec", maxBrokerProduceBytesPerSec)
+                    .put("max_broker_fetch_bytes_per_sec", maxBrokerFetchBytesPerSec)
+                    .put("throttle_time_ms", throttleTimeMs);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mesosphere.dcos.kafka.offer;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.TaskInfo;
+
+import java.util.*;
+
+/**
+ * Orders offers so that brokers awaiting an in-place relaunch see their own reserved resources
+ * first.
+ *
+ * A stopped broker can only be relaunched on the agent holding its persistent volume. Offers which
+ * contain one of those volumes are placed first, followed by any other offers from the same agents,
+ * followed by all remaining offers in their original order.
+ */
+public class OfferPrioritizer {
+
+    private OfferPrioritizer() {
+        // Do not instantiate.
+    }
+
+    /**
+     * Returns a reordered copy of the provided offers.
+     */
+    public static List<Offer> prioritize(List<Offer> offers, Collection<TaskInfo> stoppedTasks) {
+        if (stoppedTasks.isEmpty()) {
+            return new ArrayList<>(offers);
+        }
+
+        Set<String> agentIds = getAgentIds(stoppedTasks);
+        Set<String> persistenceIds = getPersistenceIds(stoppedTasks);
+
+        List<Offer> volumeOffers = new ArrayList<>();
+        List<Offer> agentOffers = new ArrayList<>();
+        List<Offer> otherOffers = new ArrayList<>();
+        for (Offer offer : offers) {
+            if (!Collections.disjoint(getPersistenceIds(offer.getResourcesList()), persistenceIds)) {
+                volumeOffers.add(offer);
+            } else if (agentIds.contains(offer.getSlaveId().getValue())) {
+                agentOffers.add(offer);
+            } else {
+                otherOffers.add(offer);
+            }
+        }
+
+        List<Offer> prioritized = new ArrayList<>(offers.size());
+        prioritized.addAll(volumeOffers);
+        prioritized.addAll(agentOffers);
+        prioritized.addAll(otherOffers);
+        return prioritized;
+    }
+
+    /**
+     * Returns the ids of the agents on which the provided tasks were running.
+     */
+    public static Set<String> getAgentIds(Collection<TaskInfo> tasks) {
+        Set<String> agentIds = new HashSet<>();
+        for (TaskInfo task : tasks) {
+            agentIds.add(task.getSlaveId().getValue());
+        }
+        return agentIds;
+    }
+
+    private static Set<String> getPersistenceIds(Collection<TaskInfo> tasks) {
+        Set<String> persistenceIds = new HashSet<>();
+        for (TaskInfo task : tasks) {
+            persistenceIds.addAll(getPersistenceIds(task.getResourcesList()));
+        }
+        return persistenceIds;
+    }
+
+    private static Set<String> getPersistenceIds(List<Resource> resources) {
+        Set<String> persistenceIds = new HashSet<>();
+        for (Resource resource : resources) {
+            if (resource.hasDisk() && resource.getDisk().hasPersistence()) {
+                persistenceIds.add(resource.getDisk().getPersistence().getId());
+            }
+        }
+        return persistenceIds;
+    }
+}
@@ -30,10 +30,20 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
     public static final String CONFIG_TARGET_KEY = "target_configuration";
     public static final String BROKER_TASK_TYPE = "broker";
 
+    // Enough to cover the target config and the configs of brokers still being updated from.
+    private static final int MAX_CACHED_TEMPLATES = 8;
+
     private final KafkaConfigState configState;
     private final FrameworkState schedulerState;
     private final ClusterState clusterState;
     private final PlacementRuleManager placementRuleManager;
+    private final Map<String, RequirementTemplate> templates = Collections.synchronizedMap(
+            new LinkedHashMap<String, RequirementTemplate>(MAX_CACHED_TEMPLATES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RequirementTemplate> eldest) {
+                    return size() > MAX_CACHED_TEMPLATES;
+                }
+            });
 
     public PersistentOfferRequirementProvider(
             FrameworkState schedulerState,
@@ -48,7 +58,8 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
     @Override
     public OfferRequirement getNewOfferRequirement(String configName, int brokerId)
             throws InvalidRequirementException, IOException, URISyntaxException {
-        KafkaSchedulerConfiguration config = configState.fetch(UUID.fromString(configName));
+        RequirementTemplate template = getTemplate(configName);
+        KafkaSchedulerConfiguration config = template.config;
         String containerPath = "kafka-volume-" + getUUID();
         Long port = config.getBrokerConfiguration().getPort();
         if (port == 0) {
@@ -57,21 +68,16 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
         Optional<Integer> jmxPort = config.getBrokerConfiguration().getJmx().isEnabled()
                 ? Optional.of(config.getBrokerConfiguration().getJmx().getRemotePort()) : Optional.empty();
 
-        TaskInfo taskInfo = getNewTaskInfo(config, configName, brokerId, containerPath, port, jmxPort);
+        TaskInfo taskInfo = getNewTaskInfo(template, configName, brokerId, containerPath, port, jmxPort);
 
-        ExecutorConfiguration executorConfiguration = config.getExecutorConfiguration();
-        String role = config.getServiceConfiguration().getRole();
-        String principal = config.getServiceConfiguration().getPrincipal();
         String logdir = containerPath + "/" + OfferUtils.brokerIdToTaskName(brokerId);
 
         ExecutorInfo executorInfo = ExecutorInfo.newBuilder()
                 .setName(OfferUtils.brokerIdToTaskName(brokerId))
                 .setExecutorId(ExecutorID.newBuilder().setValue("").build()) // Set later by ExecutorRequirement
                 .setFrameworkId(schedulerState.getStateStore().fetchFrameworkId().get())
-                .setCommand(getExecutorCmd(config, configName, brokerId, logdir, port))
-                .addResources(ResourceUtils.getDesiredScalar(role, principal, "cpus", executorConfiguration.getCpus()))
-                .addResources(ResourceUtils.getDesiredScalar(role, principal, "mem", executorConfiguration.getMem()))
-                .addResources(DynamicPortRequirement.getDesiredDynamicPort("API_PORT", role, principal))
+                .setCommand(template.getExecutorCmd(brokerId, logdir, port))
+                .addAllResources(template.executorResources)
                 .build();
 
         log.info(String.format("Got new OfferRequirement: TaskInfo: '%s' ExecutorInfo: '%s'",
@@ -126,8 +132,8 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
             throw new InvalidRequirementException(e);
         }
 
-        KafkaSchedulerConfiguration config = configState.fetch(UUID.fromString(configName));
-        BrokerConfiguration brokerConfig = config.getBrokerConfiguration();
+        RequirementTemplate template = getTemplate(configName);
+        BrokerConfiguration brokerConfig = template.config.getBrokerConfiguration();
 
         TaskInfo.Builder taskBuilder = TaskInfo.newBuilder(taskInfo);
         taskBuilder = updateConfigTarget(taskBuilder, configName);
@@ -141,7 +147,7 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
 
         taskBuilder.clearData();
         taskBuilder.setCommand(CommandInfo.newBuilder(taskBuilder.getCommand())
-                .setValue(getBrokerCmd(config))
+                .setValue(template.brokerCmd)
                 .clearEnvironment() // Clear any task envvars from Kafka 1.1.16-0.1.0.0 and older
                 .build());
 
@@ -169,7 +175,7 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
         TaskInfo updatedTaskInfo = TaskUtils.setTargetConfiguration(taskBuilder, UUID.fromString(configName)).build();
         // Throw away any prior executor command state (except for brokerId and logdir retrieved from prior env):
         ExecutorInfo updatedExecutorInfo = ExecutorInfo.newBuilder(taskInfo.getExecutor())
-                .setCommand(getExecutorCmd(config, configName, Integer.valueOf(brokerIdStr), logdir, brokerConfig.getPort()))
+                .setCommand(template.getExecutorCmd(Integer.valueOf(brokerIdStr), logdir, brokerConfig.getPort()))
                 .setExecutorId(ExecutorID.newBuilder().setValue("").build()) // Set later by ExecutorRequirement
                 .build();
 
@@ -191,6 +197,20 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
         }
     }
 
+    /**
+     * Returns the parts of a broker's requirement which only depend on the provided config, building
+     * them on first use. Stored configs are never modified, so a template stays valid for as long as
+     * its config is in use.
+     */
+    private RequirementTemplate getTemplate(String configName) throws ConfigStoreException {
+        RequirementTemplate template = templates.get(configName);
+        if (template == null) {
+            template = new RequirementTemplate(configName, configState.fetch(UUID.fromString(configName)));
+            templates.put(configName, template);
+        }
+        return template;
+    }
+
     /**
      * Exposed to allow enforcing consistent behavior in test subclasses.
      */
@@ -276,7 +296,7 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
     }
 
     private TaskInfo getNewTaskInfo(
-            KafkaSchedulerConfiguration config,
+            RequirementTemplate template,
             String configName,
             int brokerId,
             String containerPath,
@@ -284,6 +304,7 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
             Optional<Integer> jmxPort)
                     throws IOException, URISyntaxException {
 
+        KafkaSchedulerConfiguration config = template.config;
         BrokerConfiguration brokerConfiguration = config.getBrokerConfiguration();
         String brokerName = OfferUtils.brokerIdToTaskName(brokerId);
         String role = config.getServiceConfiguration().getRole();
@@ -293,19 +314,8 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
                 .setName(brokerName)
                 .setTaskId(TaskID.newBuilder().setValue("").build()) // Set later by TaskRequirement
                 .setSlaveId(SlaveID.newBuilder().setValue("").build()) // Set later
-                .setCommand(CommandInfo.newBuilder()
-                        .setValue(getBrokerCmd(config))
-                        .build())
-                .addResources(ResourceUtils.getDesiredScalar(
-                        role,
-                        principal,
-                        "cpus",
-                        config.getBrokerConfiguration().getCpus()))
-                .addResources(ResourceUtils.getDesiredScalar(
-                        role,
-                        principal,
-                        "mem",
-                        config.getBrokerConfiguration().getMem()));
+                .setCommand(template.brokerCommand)
+                .addAllResources(template.brokerResources);
         List<Range> portRanges = new ArrayList<>();
         portRanges.add(Range.newBuilder().setBegin(port).setEnd(port).build());
         if (jmxPort.isPresent()) {
@@ -343,18 +353,8 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
             log.error("Error querying for named vip support. Named VIP support will be unavailable.", e);
         }
 
-        KafkaHealthCheckConfiguration healthCheckConfiguration = config.getHealthCheckConfiguration();
-
-        if (healthCheckConfiguration.isHealthCheckEnabled()) {
-            taskBuilder.setHealthCheck(HealthCheck.newBuilder()
-                    .setDelaySeconds(healthCheckConfiguration.getHealthCheckDelay().getSeconds())
-                    .setIntervalSeconds(healthCheckConfiguration.getHealthCheckInterval().getSeconds())
-                    .setTimeoutSeconds(healthCheckConfiguration.getHealthCheckTimeout().getSeconds())
-                    .setConsecutiveFailures(healthCheckConfiguration.getHealthCheckMaxFailures())
-                    .setGracePeriodSeconds(healthCheckConfiguration.getHealthCheckGracePeriod().getSeconds())
-                    .setCommand(CommandInfo.newBuilder()
-                            .setValue("curl -f localhost:$API_PORT/admin/healthcheck")
-                            .build()));
+        if (template.healthCheck.isPresent()) {
+            taskBuilder.setHealthCheck(template.healthCheck.get());
         }
 
         return TaskUtils.setTargetConfiguration(taskBuilder, UUID.fromString(configName)).build();
@@ -372,11 +372,7 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
                         config.getKafkaConfiguration().getKafkaVerName())));
     }
 
-    private static CommandInfo.Builder getExecutorCmd(
-            KafkaSchedulerConfiguration config, String configName, int brokerId, String logdir, long port)
-            throws ConfigStoreException {
-        BrokerConfiguration brokerConfiguration = config.getBrokerConfiguration();
-
+    private static Map<String, String> getExecutorEnv(KafkaSchedulerConfiguration config, String configName) {
         Map<String, String> envMap = new HashMap<>();
         envMap.put("TASK_TYPE", KafkaTask.BROKER.name());
         envMap.put("FRAMEWORK_NAME", config.getServiceConfiguration().getName());
@@ -392,24 +388,42 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
         }
         envMap.put(CONFIG_ID_KEY, configName);
         envMap.put(KafkaEnvConfigUtils.toEnvName("zookeeper.connect"), config.getFullKafkaZookeeperPath());
-        envMap.put(BROKER_ID_ENV_NAME, Integer.toString(brokerId));
-        envMap.put(LOG_DIR_ENV_NAME, logdir);
-        envMap.put(KafkaEnvConfigUtils.toEnvName("listeners"), "PLAINTEXT://:" + port);
-        envMap.put(KafkaEnvConfigUtils.toEnvName("port"), Long.toString(port));
+        return envMap;
+    }
+
+    private static CommandInfo getExecutorCmd(KafkaSchedulerConfiguration config) {
+        BrokerConfiguration brokerConfiguration = config.getBrokerConfiguration();
 
         CommandInfo.Builder cmdBuilder = CommandInfo.newBuilder()
                 .setValue(Joiner.on(" && ").join(Arrays.asList(
                         "export JAVA_HOME=$(ls -d $MESOS_SANDBOX/jre*/)", // find directory that starts with "jre"
                         "env",
-                        "./executor/bin/kafka-executor server ./executor/conf/executor.yml")))
-                .setEnvironment(OfferUtils.environment(envMap));
+                        "./executor/bin/kafka-executor server ./executor/conf/executor.yml")));
 
         cmdBuilder.addUrisBuilder().setValue(brokerConfiguration.getJavaUri());
         cmdBuilder.addUrisBuilder().setValue(brokerConfiguration.getKafkaUri());
         cmdBuilder.addUrisBuilder().setValue(brokerConfiguration.getOverriderUri());
         cmdBuilder.addUrisBuilder().setValue(config.getExecutorConfiguration().getExecutorUri());
 
-        return cmdBuilder;
+        return cmdBuilder.build();
+    }
+
+    private static Optional<HealthCheck> getHealthCheck(KafkaSchedulerConfiguration config) {
+        KafkaHealthCheckConfiguration healthCheckConfiguration = config.getHealthCheckConfiguration();
+        if (!healthCheckConfiguration.isHealthCheckEnabled()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(HealthCheck.newBuilder()
+                .setDelaySeconds(healthCheckConfiguration.getHealthCheckDelay().getSeconds())
+                .setIntervalSeconds(healthCheckConfiguration.getHealthCheckInterval().getSeconds())
+                .setTimeoutSeconds(healthCheckConfiguration.getHealthCheckTimeout().getSeconds())
+                .setConsecutiveFailures(healthCheckConfiguration.getHealthCheckMaxFailures())
+                .setGracePeriodSeconds(healthCheckConfiguration.getHealthCheckGracePeriod().getSeconds())
+                .setCommand(CommandInfo.newBuilder()
+                        .setValue("curl -f localhost:$API_PORT/admin/healthcheck")
+                        .build())
+                .build());
     }
 
     private static String getEnvVal(Environment taskEnv, Environment executorEnv, String name) {
@@ -425,4 +439,51 @@ public class PersistentOfferRequirementProvider implements KafkaOfferRequirement
         }
         return null;
     }
+
+    /**
+     * The immutable parts of a broker's TaskInfo and ExecutorInfo for a given config. Only the
+     * broker id, port, volume and log dir are filled in per broker.
+     */
+    private static class RequirementTemplate {
+        private final KafkaSchedulerConfiguration config;
+        private final String brokerCmd;
+        private final CommandInfo brokerCommand;
+        private final List<Resource> brokerResources;
+        private final Optional<HealthCheck> healthCheck;
+        private final CommandInfo executorCommand;
+        private final Map<String, String> executorEnv;
+        private final List<Resource> executorResources;
+
+        private RequirementTemplate(String configName, KafkaSchedulerConfiguration config) {
+            String role = config.getServiceConfiguration().getRole();
+            String principal = config.getServiceConfiguration().getPrincipal();
+            ExecutorConfiguration executorConfiguration = config.getExecutorConfiguration();
+
+            this.config = config;
+            this.brokerCmd = getBrokerCmd(config);
+            this.brokerCommand = CommandInfo.newBuilder().setValue(brokerCmd).build();
+            this.brokerResources = Collections.unmodifiableList(Arrays.asList(
+                    ResourceUtils.getDesiredScalar(role, principal, "cpus", config.getBrokerConfiguration().getCpus()),
+                    ResourceUtils.getDesiredScalar(role, principal, "mem", config.getBrokerConfiguration().getMem())));
+            this.healthCheck = getHealthCheck(config);
+            this.executorCommand = PersistentOfferRequirementProvider.getExecutorCmd(config);
+            this.executorEnv = Collections.unmodifiableMap(getExecutorEnv(config, configName));
+            this.executorResources = Collections.unmodifiableList(Arrays.asList(
+                    ResourceUtils.getDesiredScalar(role, principal, "cpus", executorConfiguration.getCpus()),
+                    ResourceUtils.getDesiredScalar(role, principal, "mem", executorConfiguration.getMem()),
+                    DynamicPortRequirement.getDesiredDynamicPort("API_PORT", role, principal)));
+        }
+
+        private CommandInfo getExecutorCmd(int brokerId, String logdir, long port) {
+            Map<String, String> envMap = new HashMap<>(executorEnv);
+            envMap.put(BROKER_ID_ENV_NAME, Integer.toString(brokerId));
+            envMap.put(LOG_DIR_ENV_NAME, logdir);
+            envMap.put(KafkaEnvConfigUtils.toEnvName("listeners"), "PLAINTEXT://:" + port);
+            envMap.put(KafkaEnvConfigUtils.toEnvName("port"), Long.toString(port));
+
+            return CommandInfo.newBuilder(executorCommand)
+                    .setEnvironment(OfferUtils.environment(envMap))
+                    .build();
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.KafkaRebalanceConfiguration;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.apache.mesos.scheduler.plan.DefaultPhase;
+import org.apache.mesos.scheduler.plan.Step;
+import org.apache.mesos.scheduler.plan.strategy.SerialStrategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Spreads partitions evenly across the configured brokers, e.g. after brokers have been added.
+ * Unless rebalancing is enabled, the phase starts interrupted and waits to be continued.
+ */
+public class KafkaRebalancePhase extends DefaultPhase {
+
+  public KafkaRebalancePhase(
+    KafkaState kafkaState,
+    KafkaAdmin kafkaAdmin,
+    KafkaRebalanceConfiguration rebalanceConfig,
+    int brokerCount,
+    Supplier<Map<String, Long>> partitionSizes) {
+    super("Rebalance",
+              Arrays.asList(new KafkaRebalanceStep(kafkaState, kafkaAdmin, rebalanceConfig, brokerCount, partitionSizes)),
+              new SerialStrategy<>(),
+              Collections.emptyList());
+
+    if (!rebalanceConfig.isEnabled()) {
+      getStrategy().interrupt();
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "Rebalance";
+  }
+
+  @Override
+  public boolean isComplete() {
+    for (Step step : getChildren()) {
+      if (!step.isComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
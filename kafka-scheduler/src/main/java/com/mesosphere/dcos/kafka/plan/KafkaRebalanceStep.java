@@ -0,0 +1,238 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.KafkaRebalanceConfiguration;
+import com.mesosphere.dcos.kafka.rebalance.PartitionAssigner;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.state.ReplicationThrottle;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.offer.OfferRequirement;
+import org.apache.mesos.scheduler.plan.DefaultStep;
+import org.apache.mesos.scheduler.plan.Status;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Moves partitions onto a balanced assignment, one bounded batch at a time.
+ *
+ * The step doesn't consume any offers. Each time it's started it checks whether the controller has
+ * finished the previous batch, and if so lifts that batch's replication throttles and writes the
+ * next one. The assignment itself is computed once all expected brokers have registered, on the
+ * first start after construction or after a restart.
+ *
+ * Nothing besides the batch in flight needs to survive a restart of the scheduler: the batch is
+ * kept in /admin/reassign_partitions until the controller finishes it, and its throttles are kept
+ * by {@link KafkaAdmin}. A new step waits for that batch, then lifts its throttles and computes the
+ * remaining moves from the resulting assignment.
+ */
+public class KafkaRebalanceStep extends DefaultStep {
+  private static final Log log = LogFactory.getLog(KafkaRebalanceStep.class);
+
+  /**
+   * Owner of the throttles set for batches, as registered with {@link KafkaAdmin#setThrottle}.
+   */
+  public static final String THROTTLE_OWNER = "rebalance";
+
+  private final KafkaState kafkaState;
+  private final KafkaAdmin kafkaAdmin;
+  private final KafkaRebalanceConfiguration rebalanceConfig;
+  private final int brokerCount;
+  private final Supplier<Map<String, Long>> partitionSizes;
+
+  private Deque<Map.Entry<String, Map.Entry<Integer, List<Integer>>>> pendingMoves = null;
+  private int totalMoves = 0;
+  private String message = "Waiting to compute assignment";
+
+  public KafkaRebalanceStep(
+    KafkaState kafkaState,
+    KafkaAdmin kafkaAdmin,
+    KafkaRebalanceConfiguration rebalanceConfig,
+    int brokerCount,
+    Supplier<Map<String, Long>> partitionSizes) {
+    super("rebalance", Optional.empty(), Status.PENDING, Collections.emptyList());
+    this.kafkaState = kafkaState;
+    this.kafkaAdmin = kafkaAdmin;
+    this.rebalanceConfig = rebalanceConfig;
+    this.brokerCount = brokerCount;
+    this.partitionSizes = partitionSizes;
+  }
+
+  /**
+   * The step keeps being started until all of its batches have completed.
+   */
+  @Override
+  public boolean isPending() {
+    return !isComplete();
+  }
+
+  @Override
+  public boolean isInProgress() {
+    return getStatus() == Status.IN_PROGRESS;
+  }
+
+  @Override
+  public boolean isComplete() {
+    return getStatus() == Status.COMPLETE;
+  }
+
+  @Override
+  public synchronized Optional<OfferRequirement> start() {
+    try {
+      if (kafkaAdmin.isReassignmentInProgress()) {
+        log.info("Waiting for the current partition reassignment to complete.");
+        return Optional.empty();
+      }
+
+      // Includes throttles left by the batch in flight when the scheduler restarted.
+      removeThrottles();
+
+      if (pendingMoves == null) {
+        pendingMoves = computeMoves();
+        if (pendingMoves == null) {
+          return Optional.empty();
+        }
+        totalMoves = pendingMoves.size();
+      }
+
+      if (pendingMoves.isEmpty()) {
+        message = "Moved " + totalMoves + " partitions";
+        log.info("Rebalance complete. " + message);
+        setStatus(Status.COMPLETE);
+        return Optional.empty();
+      }
+
+      startNextBatch();
+      message = "Moved " + (totalMoves - pendingMoves.size()) + " of " + totalMoves + " partitions";
+      setStatus(Status.IN_PROGRESS);
+    } catch (Exception ex) {
+      log.error("Failed to advance rebalance: ", ex);
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Progress is driven by {@link #start()} rather than by offers.
+   */
+  @Override
+  public void updateOfferStatus(Collection<Protos.Offer.Operation> optionalOperations) {
+  }
+
+  @Override
+  public synchronized void restart() {
+    pendingMoves = null;
+    message = "Waiting to compute assignment";
+    setStatus(Status.PENDING);
+  }
+
+  @Override
+  public synchronized void forceComplete() {
+    try {
+      removeThrottles();
+    } catch (Exception ex) {
+      log.error("Failed to remove replication throttles: ", ex);
+    }
+    pendingMoves = null;
+    setStatus(Status.COMPLETE);
+  }
+
+  @Override
+  public void update(TaskStatus taskStatus) {
+    // Broker task state has no bearing on reassignment progress.
+  }
+
+  @Override
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Returns the moves needed to balance the cluster, or null if not all brokers have registered yet.
+   */
+  private Deque<Map.Entry<String, Map.Entry<Integer, List<Integer>>>> computeMoves() throws Exception {
+    Optional<String> waiting = getUnregisteredBrokerMessage(kafkaState, brokerCount);
+    if (waiting.isPresent()) {
+      message = waiting.get();
+      log.info(message);
+      return null;
+    }
+    List<Integer> brokerIds = getBrokerIds(brokerCount);
+
+    Map<String, Map<Integer, List<Integer>>> moves = new PartitionAssigner(rebalanceConfig.getImbalanceTolerance())
+        .assign(kafkaState.getPartitionAssignments(), brokerIds, partitionSizes.get());
+
+    Deque<Map.Entry<String, Map.Entry<Integer, List<Integer>>>> queue = new ArrayDeque<>();
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : moves.entrySet()) {
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        queue.add(new AbstractMap.SimpleImmutableEntry<>(topic.getKey(), partition));
+      }
+    }
+    log.info("Computed rebalance of " + queue.size() + " partitions across brokers " + brokerIds);
+    return queue;
+  }
+
+  /**
+   * Returns the ids of the brokers which partitions are balanced across. These are all of the
+   * configured brokers rather than those currently registered, so that a broker which happens to be
+   * restarting doesn't have its partitions moved away.
+   */
+  public static List<Integer> getBrokerIds(int brokerCount) {
+    List<Integer> brokerIds = new ArrayList<>();
+    for (int i = 0; i < brokerCount; i++) {
+      brokerIds.add(i);
+    }
+    return brokerIds;
+  }
+
+  /**
+   * Returns why an assignment can't be computed yet if any of the brokers returned by
+   * {@link #getBrokerIds(int)} hasn't registered, or an empty value if all of them have.
+   */
+  public static Optional<String> getUnregisteredBrokerMessage(KafkaState kafkaState, int brokerCount)
+      throws Exception {
+    for (Integer brokerId : getBrokerIds(brokerCount)) {
+      if (!kafkaState.getBroker(String.valueOf(brokerId)).isPresent()) {
+        return Optional.of("Waiting for broker " + brokerId + " to register");
+      }
+    }
+    return Optional.empty();
+  }
+
+  private void startNextBatch() throws Exception {
+    Map<String, Map<Integer, List<Integer>>> current = kafkaState.getPartitionAssignments();
+    Map<String, Map<Integer, List<Integer>>> batch = new TreeMap<>();
+    for (int i = 0; i < Math.max(1, rebalanceConfig.getBatchSize()) && !pendingMoves.isEmpty(); i++) {
+      Map.Entry<String, Map.Entry<Integer, List<Integer>>> move = pendingMoves.poll();
+      batch.computeIfAbsent(move.getKey(), t -> new TreeMap<>())
+          .put(move.getValue().getKey(), move.getValue().getValue());
+    }
+
+    if (rebalanceConfig.getThrottleBytesPerSec() > 0) {
+      ReplicationThrottle throttle = new ReplicationThrottle(rebalanceConfig.getThrottleBytesPerSec());
+      for (Map.Entry<String, Map<Integer, List<Integer>>> topic : batch.entrySet()) {
+        for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+          List<Integer> existing = current.get(topic.getKey()).get(partition.getKey());
+          for (Integer brokerId : existing) {
+            throttle.addLeader(topic.getKey(), partition.getKey(), brokerId);
+          }
+          for (Integer brokerId : partition.getValue()) {
+            if (!existing.contains(brokerId)) {
+              throttle.addFollower(topic.getKey(), partition.getKey(), brokerId);
+            }
+          }
+        }
+      }
+      kafkaAdmin.setThrottle(THROTTLE_OWNER, throttle);
+    }
+
+    kafkaAdmin.reassignPartitions(batch);
+  }
+
+  private void removeThrottles() throws Exception {
+    kafkaAdmin.removeThrottle(THROTTLE_OWNER);
+  }
+}
@@ -0,0 +1,92 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.config.KafkaSchedulerConfiguration;
+import com.mesosphere.dcos.kafka.offer.KafkaOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.offer.OfferUtils;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.scheduler.plan.DefaultPhase;
+import org.apache.mesos.scheduler.plan.Step;
+import org.apache.mesos.scheduler.plan.strategy.Strategy;
+
+import java.util.*;
+
+/**
+ * Launches the brokers added to a running cluster. New broker ids hold no data yet, so unlike the
+ * brokers being updated they can all be launched at once. On a cluster's first deployment there is
+ * nothing to scale out from, and every broker is left to the {@link KafkaUpdatePhase}.
+ */
+public class KafkaScaleOutPhase extends DefaultPhase {
+  private static final Log log = LogFactory.getLog(KafkaScaleOutPhase.class);
+
+  public KafkaScaleOutPhase(
+    String targetConfigName,
+    Collection<Integer> newBrokerIds,
+    FrameworkState frameworkState,
+    KafkaOfferRequirementProvider offerReqProvider,
+    Strategy strategy) {
+    super(targetConfigName,
+              createSteps(targetConfigName, newBrokerIds, frameworkState, offerReqProvider),
+              strategy,
+              Collections.emptyList());
+  }
+
+  @Override
+  public String getName() {
+    return "ScaleOut";
+  }
+
+  @Override
+  public boolean isComplete() {
+    for (Step step : getChildren()) {
+      if (!step.isComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the ids of the brokers in the target config which have never been launched, or an
+   * empty list if no broker has been launched yet.
+   */
+  public static List<Integer> getNewBrokerIds(KafkaSchedulerConfiguration targetConfig, FrameworkState frameworkState) {
+    Set<Integer> launchedBrokerIds = new HashSet<>();
+    try {
+      for (TaskInfo taskInfo : frameworkState.getTaskInfos()) {
+        launchedBrokerIds.add(OfferUtils.nameToId(taskInfo.getName()));
+      }
+    } catch (Exception ex) {
+      log.error("Failed to fetch launched brokers, not scaling out in parallel", ex);
+      return Collections.emptyList();
+    }
+
+    List<Integer> newBrokerIds = new ArrayList<>();
+    if (launchedBrokerIds.isEmpty()) {
+      return newBrokerIds;
+    }
+
+    for (int i = 0; i < targetConfig.getServiceConfiguration().getCount(); i++) {
+      if (!launchedBrokerIds.contains(i)) {
+        newBrokerIds.add(i);
+      }
+    }
+    return newBrokerIds;
+  }
+
+  private static List<Step> createSteps(
+      String configName,
+      Collection<Integer> newBrokerIds,
+      FrameworkState frameworkState,
+      KafkaOfferRequirementProvider offerReqProvider) {
+
+    List<Step> steps = new ArrayList<Step>();
+
+    for (Integer brokerId : newBrokerIds) {
+      steps.add(new KafkaUpdateStep(frameworkState, offerReqProvider, configName, brokerId));
+    }
+    return steps;
+  }
+}
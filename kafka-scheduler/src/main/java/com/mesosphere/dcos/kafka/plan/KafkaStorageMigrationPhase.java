@@ -0,0 +1,137 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.BrokerConfiguration;
+import com.mesosphere.dcos.kafka.config.KafkaConfigState;
+import com.mesosphere.dcos.kafka.config.KafkaSchedulerConfiguration;
+import com.mesosphere.dcos.kafka.offer.KafkaOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.offer.OfferUtils;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.scheduler.plan.DefaultPhase;
+import org.apache.mesos.scheduler.plan.Step;
+import org.apache.mesos.scheduler.plan.strategy.Strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Moves every broker whose volume doesn't match the target disk size or type onto a new volume,
+ * one broker at a time. Brokers whose volume already matches are not part of this phase, unless
+ * this phase launched them and they're out of sync: a broker which was migrated before the
+ * scheduler restarted already runs the target config, but the next broker must still wait until it
+ * has caught up.
+ */
+public class KafkaStorageMigrationPhase extends DefaultPhase {
+  private static final Log log = LogFactory.getLog(KafkaStorageMigrationPhase.class);
+
+  public KafkaStorageMigrationPhase(
+    String targetConfigName,
+    KafkaSchedulerConfiguration targetConfig,
+    KafkaConfigState configState,
+    FrameworkState frameworkState,
+    KafkaState kafkaState,
+    KafkaAdmin kafkaAdmin,
+    KafkaOfferRequirementProvider offerReqProvider,
+    Strategy strategy) {
+    super(targetConfigName,
+              createSteps(
+                  targetConfigName, targetConfig, configState, frameworkState, kafkaState, kafkaAdmin, offerReqProvider),
+              strategy,
+              Collections.emptyList());
+  }
+
+  @Override
+  public String getName() {
+    return "StorageMigration";
+  }
+
+  @Override
+  public boolean isComplete() {
+    for (Step step : getChildren()) {
+      if (!step.isComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<Step> createSteps(
+      String configName,
+      KafkaSchedulerConfiguration targetConfig,
+      KafkaConfigState configState,
+      FrameworkState frameworkState,
+      KafkaState kafkaState,
+      KafkaAdmin kafkaAdmin,
+      KafkaOfferRequirementProvider offerReqProvider) {
+
+    List<Step> steps = new ArrayList<Step>();
+
+    for (int i = 0; i < targetConfig.getServiceConfiguration().getCount(); i++) {
+      if (needsStep(i, configName, targetConfig.getBrokerConfiguration(), configState, frameworkState, kafkaState,
+          kafkaAdmin)) {
+        steps.add(new KafkaStorageMigrationStep(
+            frameworkState, kafkaState, kafkaAdmin, offerReqProvider, configName, i));
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Returns whether the broker needs a migration, or was already launched onto the target config by
+   * a migration but has yet to rejoin the in-sync replica sets.
+   */
+  private static boolean needsStep(
+      int brokerId,
+      String targetConfigName,
+      BrokerConfiguration targetBrokerConfig,
+      KafkaConfigState configState,
+      FrameworkState frameworkState,
+      KafkaState kafkaState,
+      KafkaAdmin kafkaAdmin) {
+    try {
+      Optional<TaskInfo> taskInfo = frameworkState.getTaskInfoForBroker(brokerId);
+      if (!taskInfo.isPresent()) {
+        return false;
+      }
+
+      String configName = OfferUtils.getConfigName(taskInfo.get());
+      if (configName.equals(targetConfigName)) {
+        // The step starts out complete, and only waits for the broker to be in sync. Brokers which
+        // were moved to the target config without a migration aren't waited on.
+        if (!KafkaStorageMigrationStep.getRecordedLaunch(kafkaAdmin, targetConfigName, brokerId).isPresent()) {
+          return false;
+        }
+        if (isBrokerInSync(brokerId, kafkaState)) {
+          kafkaAdmin.deleteStorageMigration(brokerId);
+          return false;
+        }
+        return true;
+      }
+
+      BrokerConfiguration currBrokerConfig = configState.fetch(UUID.fromString(configName)).getBrokerConfiguration();
+      return currBrokerConfig.getDisk() != targetBrokerConfig.getDisk()
+          || !StringUtils.equals(currBrokerConfig.getDiskType(), targetBrokerConfig.getDiskType());
+    } catch (Exception ex) {
+      log.error("Failed to determine whether broker " + brokerId + " needs a storage migration", ex);
+      return false;
+    }
+  }
+
+  private static boolean isBrokerInSync(int brokerId, KafkaState kafkaState) {
+    try {
+      return kafkaState.isBrokerInSync(brokerId);
+    } catch (Exception ex) {
+      // Waiting on a broker which turns out to be in sync is harmless, moving on too early isn't.
+      log.error("Failed to retrieve in-sync state for broker " + brokerId, ex);
+      return false;
+    }
+  }
+}
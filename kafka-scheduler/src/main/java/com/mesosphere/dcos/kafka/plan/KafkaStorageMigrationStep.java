@@ -0,0 +1,211 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.offer.KafkaOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.offer.OfferRequirement;
+import org.apache.mesos.scheduler.plan.Status;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a single broker onto a newly reserved volume which matches the target disk configuration.
+ *
+ * The broker is stopped, then relaunched with its existing broker id on an empty volume. Kafka then
+ * re-replicates the broker's partitions from their other replicas, and the previous volume is
+ * released by the resource cleaner once no task refers to it. The step is only complete when the
+ * broker has rejoined the in-sync replica set of every partition assigned to it, so that the next
+ * broker isn't taken down while the cluster is still under-replicated.
+ *
+ * The launch is recorded with {@link KafkaAdmin#setStorageMigration}, so that the wait carries on
+ * after the scheduler restarts. Only brokers launched by a migration are waited on, and for no
+ * longer than {@link #SYNC_TIMEOUT_MS} after their launch, so that a broker which never catches up
+ * doesn't hold up the rest of the deployment.
+ */
+public class KafkaStorageMigrationStep extends KafkaUpdateStep {
+  private static final Log log = LogFactory.getLog(KafkaStorageMigrationStep.class);
+
+  private static final long SYNC_CHECK_INTERVAL_MS = 5000;
+  static final long SYNC_TIMEOUT_MS = TimeUnit.HOURS.toMillis(6);
+
+  private final KafkaOfferRequirementProvider offerReqProvider;
+  private final KafkaState kafkaState;
+  private final KafkaAdmin kafkaAdmin;
+  private final String targetConfigName;
+
+  /**
+   * When this broker was launched onto its new volume, while it's still to catch up.
+   */
+  private Long launchedMs;
+  private long lastSyncCheckMs = 0;
+  private String blockedMessage;
+
+  public KafkaStorageMigrationStep(
+    FrameworkState state,
+    KafkaState kafkaState,
+    KafkaAdmin kafkaAdmin,
+    KafkaOfferRequirementProvider offerReqProvider,
+    String targetConfigName,
+    int brokerId) {
+    super(state, offerReqProvider, targetConfigName, brokerId);
+    this.kafkaState = kafkaState;
+    this.kafkaAdmin = kafkaAdmin;
+    this.offerReqProvider = offerReqProvider;
+    this.targetConfigName = targetConfigName;
+    this.launchedMs = getRecordedLaunch(kafkaAdmin, targetConfigName, brokerId).orElse(null);
+  }
+
+  /**
+   * Returns when a migration to the target config launched the broker, if it's still recorded.
+   */
+  static Optional<Long> getRecordedLaunch(KafkaAdmin kafkaAdmin, String targetConfigName, int brokerId) {
+    try {
+      return kafkaAdmin.getStorageMigration(brokerId, targetConfigName);
+    } catch (Exception ex) {
+      log.error("Failed to retrieve storage migration of broker " + brokerId, ex);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public Status getStatus() {
+    Status status = super.getStatus();
+    if (status == Status.COMPLETE && isWaitingForSync()) {
+      return Status.IN_PROGRESS;
+    }
+    return status;
+  }
+
+  @Override
+  public Optional<OfferRequirement> start() {
+    if (isPending() && taskIsRunningOrStaging(fetchTaskStatus())) {
+      Optional<String> blocker = getMigrationBlocker();
+      if (blocker.isPresent()) {
+        blockedMessage = "Broker-" + getBrokerId() + " is waiting to be migrated: " + blocker.get();
+        log.warn("Not migrating " + getName() + ": " + blocker.get());
+        return Optional.empty();
+      }
+    }
+
+    blockedMessage = null;
+    return super.start();
+  }
+
+  @Override
+  public void updateOfferStatus(Collection<Protos.Offer.Operation> operations) {
+    if (!isComplete() && !operations.isEmpty()) {
+      recordLaunch();
+    }
+    super.updateOfferStatus(operations);
+  }
+
+  @Override
+  public String getMessage() {
+    if (super.getStatus() == Status.COMPLETE && getStatus() != Status.COMPLETE) {
+      return "Broker-" + getBrokerId() + " is waiting to rejoin the in-sync replica sets";
+    }
+    if (isPending() && blockedMessage != null) {
+      return blockedMessage;
+    }
+    return super.getMessage();
+  }
+
+  /**
+   * Always launches onto a new volume, rather than reusing the broker's existing one.
+   */
+  @Override
+  protected OfferRequirement getOfferRequirement(TaskInfo taskInfo) throws Exception {
+    return offerReqProvider.getNewOfferRequirement(targetConfigName, getBrokerId());
+  }
+
+  private synchronized void recordLaunch() {
+    launchedMs = System.currentTimeMillis();
+    lastSyncCheckMs = 0;
+    try {
+      kafkaAdmin.setStorageMigration(getBrokerId(), targetConfigName, launchedMs);
+    } catch (Exception ex) {
+      // The wait is then only lost if the scheduler restarts before the broker catches up.
+      log.error("Failed to record storage migration of broker " + getBrokerId(), ex);
+    }
+  }
+
+  /**
+   * Returns whether the broker was launched onto its new volume by this migration, and has yet to
+   * rejoin the in-sync replica sets within the timeout.
+   */
+  private synchronized boolean isWaitingForSync() {
+    if (launchedMs == null) {
+      // Also the case while KafkaUpdateStep's constructor reports its status.
+      return false;
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - launchedMs >= SYNC_TIMEOUT_MS) {
+      log.warn("Broker " + getBrokerId() + " didn't rejoin the in-sync replica sets within "
+          + TimeUnit.MILLISECONDS.toMinutes(SYNC_TIMEOUT_MS) + " minutes of its storage migration, moving on");
+      endWait();
+      return false;
+    }
+    if (now - lastSyncCheckMs < SYNC_CHECK_INTERVAL_MS) {
+      return true;
+    }
+
+    lastSyncCheckMs = now;
+    try {
+      if (kafkaState.isBrokerInSync(getBrokerId())) {
+        endWait();
+        return false;
+      }
+    } catch (Exception ex) {
+      log.error("Failed to retrieve in-sync state for broker " + getBrokerId(), ex);
+    }
+    return true;
+  }
+
+  private void endWait() {
+    launchedMs = null;
+    try {
+      kafkaAdmin.deleteStorageMigration(getBrokerId());
+    } catch (Exception ex) {
+      log.error("Failed to delete storage migration of broker " + getBrokerId(), ex);
+    }
+  }
+
+  /**
+   * Returns why the broker can't be migrated yet, if some partition assigned to it has no other
+   * in-sync replica to replicate from once the broker comes back with an empty volume.
+   */
+  private Optional<String> getMigrationBlocker() {
+    try {
+      for (Map.Entry<String, JSONObject> entry : kafkaState.getPartitionStatesForBroker(getBrokerId()).entrySet()) {
+        JSONArray isr = entry.getValue().getJSONArray("isr");
+        boolean hasPeer = false;
+        for (int i = 0; i < isr.length(); i++) {
+          if (isr.getInt(i) != getBrokerId()) {
+            hasPeer = true;
+            break;
+          }
+        }
+
+        if (!hasPeer) {
+          return Optional.of("partition " + entry.getKey() + " has no other in-sync replica, "
+              + "e.g. because its replication factor is 1");
+        }
+      }
+      return Optional.empty();
+    } catch (Exception ex) {
+      log.error("Failed to retrieve partition states for broker " + getBrokerId(), ex);
+      return Optional.of("failed to retrieve the states of its partitions");
+    }
+  }
+}
@@ -8,6 +8,7 @@ import org.apache.mesos.scheduler.plan.Step;
 import org.apache.mesos.scheduler.plan.strategy.Strategy;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -19,9 +20,24 @@ public class KafkaUpdatePhase extends DefaultPhase {
     FrameworkState frameworkState,
     KafkaOfferRequirementProvider offerReqProvider,
     Strategy strategy) {
+    this(targetConfigName, targetConfig, Collections.emptyList(), frameworkState, offerReqProvider, strategy);
+  }
+
+  /**
+   * Creates a phase which updates every broker except the provided ones, e.g. those launched by a
+   * {@link KafkaScaleOutPhase}.
+   */
+  public KafkaUpdatePhase(
+    String targetConfigName,
+    KafkaSchedulerConfiguration targetConfig,
+    Collection<Integer> excludedBrokerIds,
+    FrameworkState frameworkState,
+    KafkaOfferRequirementProvider offerReqProvider,
+    Strategy strategy) {
     super(targetConfigName,
               createSteps(targetConfigName,
                       targetConfig.getServiceConfiguration().getCount(),
+                      excludedBrokerIds,
                       frameworkState, offerReqProvider),
               strategy,
               Collections.emptyList());
@@ -45,12 +61,16 @@ public class KafkaUpdatePhase extends DefaultPhase {
   private static List<Step> createSteps(
       String configName,
       int brokerCount,
+      Collection<Integer> excludedBrokerIds,
       FrameworkState frameworkState,
       KafkaOfferRequirementProvider offerReqProvider) {
 
     List<Step> steps = new ArrayList<Step>();
 
     for (int i=0; i<brokerCount; i++) {
+      if (excludedBrokerIds.contains(i)) {
+        continue;
+      }
       steps.add(new KafkaUpdateStep(frameworkState, offerReqProvider, configName, i));
     }
     return steps;
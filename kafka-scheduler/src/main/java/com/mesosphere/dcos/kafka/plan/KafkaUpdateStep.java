@@ -70,6 +70,13 @@ public class KafkaUpdateStep extends DefaultStep {
     }
 
     Optional<TaskStatus> taskStatus = fetchTaskStatus();
+    if (taskIsRunningTargetConfig(taskStatus, fetchTaskInfo())) {
+      // e.g. the broker was already relaunched by an earlier phase such as the storage migration
+      log.info("Task is already running the target configuration. Step: " + getName());
+      setStatus(Status.COMPLETE);
+      return Optional.empty();
+    }
+
     if (taskIsRunningOrStaging(taskStatus)) {
       log.info("Adding task to restart list. Step: " + getName() + " Status: " + taskStatus.get());
       KafkaScheduler.restartTasks(fetchTaskInfo());
@@ -96,6 +103,10 @@ public class KafkaUpdateStep extends DefaultStep {
 
   @Override
   public void updateOfferStatus(Collection<Protos.Offer.Operation> optionalOperations) {
+    if (isComplete()) {
+      return;
+    }
+
     if (optionalOperations.size() > 0) {
       setStatus(Status.IN_PROGRESS);
     } else {
@@ -193,7 +204,7 @@ public class KafkaUpdateStep extends DefaultStep {
     log.info("Status initialized as " + getStatus() + " for block: " + getName());
   }
 
-  private OfferRequirement getOfferRequirement(TaskInfo taskInfo) throws Exception {
+  protected OfferRequirement getOfferRequirement(TaskInfo taskInfo) throws Exception {
     if (taskInfo == null) {
       return offerReqProvider.getNewOfferRequirement(targetConfigName, getBrokerId());
     } else {
@@ -201,7 +212,7 @@ public class KafkaUpdateStep extends DefaultStep {
     }
   }
 
-  private Optional<TaskStatus> fetchTaskStatus() {
+  protected Optional<TaskStatus> fetchTaskStatus() {
     try {
       return state.getTaskStatusForBroker(getBrokerId());
     } catch (Exception ex) {
@@ -210,7 +221,7 @@ public class KafkaUpdateStep extends DefaultStep {
     }
   }
 
-  private TaskInfo fetchTaskInfo() {
+  protected TaskInfo fetchTaskInfo() {
     try {
       Optional<TaskInfo> taskInfoOptional = state.getTaskInfoForBroker(getBrokerId());
       if (taskInfoOptional.isPresent()) {
@@ -235,7 +246,15 @@ public class KafkaUpdateStep extends DefaultStep {
     return taskIds;
   }
 
-  private static boolean taskIsRunningOrStaging(Optional<TaskStatus> taskStatus) {
+  private boolean taskIsRunningTargetConfig(Optional<TaskStatus> taskStatus, TaskInfo taskInfo) {
+    return taskInfo != null
+        && taskStatus.isPresent()
+        && taskStatus.get().getState() == TaskState.TASK_RUNNING
+        && taskStatus.get().getTaskId().equals(taskInfo.getTaskId())
+        && OfferUtils.getConfigName(taskInfo).equals(targetConfigName);
+  }
+
+  protected static boolean taskIsRunningOrStaging(Optional<TaskStatus> taskStatus) {
     if (taskStatus.isPresent()) {
       switch (taskStatus.get().getState()) {
         case TASK_RUNNING:
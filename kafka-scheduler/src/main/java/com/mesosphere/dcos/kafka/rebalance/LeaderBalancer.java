@@ -0,0 +1,234 @@
+package com.mesosphere.dcos.kafka.rebalance;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.KafkaRebalanceConfiguration;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Moves partition leadership back to preferred replicas, which brokers lose whenever they restart.
+ *
+ * Each run compares the current leader of every partition with its preferred leader. When more
+ * than the configured fraction of a broker's preferred partitions are led elsewhere, a preferred
+ * replica election is triggered for a bounded batch of them. Only one election is in flight at a
+ * time, and nothing is elected while partitions are being reassigned.
+ */
+public class LeaderBalancer implements Runnable {
+  private static final Log log = LogFactory.getLog(LeaderBalancer.class);
+
+  private final KafkaState kafkaState;
+  private final KafkaAdmin kafkaAdmin;
+  private final KafkaRebalanceConfiguration rebalanceConfig;
+
+  private volatile double imbalance = 0;
+  private volatile double imbalanceBeforeElection = 0;
+  private volatile double imbalanceAfterElection = 0;
+  private volatile long elections = 0;
+  private volatile long electedPartitions = 0;
+  private boolean awaitingElection = false;
+
+  public LeaderBalancer(KafkaState kafkaState, KafkaAdmin kafkaAdmin, KafkaRebalanceConfiguration rebalanceConfig) {
+    this.kafkaState = kafkaState;
+    this.kafkaAdmin = kafkaAdmin;
+    this.rebalanceConfig = rebalanceConfig;
+  }
+
+  @Override
+  public synchronized void run() {
+    try {
+      if (kafkaAdmin.isReassignmentInProgress() || kafkaAdmin.isPreferredReplicaElectionInProgress()) {
+        log.info("Skipping leader balance check: a reassignment or election is in progress.");
+        return;
+      }
+
+      Map<String, Map<Integer, List<Integer>>> assignments = kafkaState.getPartitionAssignments();
+      Map<String, Map<Integer, JSONObject>> states = getPartitionStates(assignments);
+
+      imbalance = getImbalance(assignments, states);
+      if (awaitingElection) {
+        imbalanceAfterElection = imbalance;
+        awaitingElection = false;
+        log.info(String.format("Leader imbalance after election: %.3f (was %.3f)",
+            imbalanceAfterElection, imbalanceBeforeElection));
+      }
+
+      Map<String, List<Integer>> batch = selectElections(
+          assignments,
+          states,
+          rebalanceConfig.getLeaderImbalanceThreshold(),
+          Math.max(1, rebalanceConfig.getLeaderBalanceBatchSize()));
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      imbalanceBeforeElection = imbalance;
+      kafkaAdmin.electPreferredLeaders(batch);
+      awaitingElection = true;
+      elections++;
+      for (List<Integer> partitions : batch.values()) {
+        electedPartitions += partitions.size();
+      }
+    } catch (Exception ex) {
+      log.error("Failed to balance partition leaders: ", ex);
+    }
+  }
+
+  /**
+   * Registers gauges for the current imbalance, the imbalance around the latest election, and the
+   * number of elections triggered. Existing gauges of the same name are replaced.
+   */
+  public void registerMetrics(MetricRegistry metrics) {
+    register(metrics, "imbalance", () -> imbalance);
+    register(metrics, "imbalance-before-election", () -> imbalanceBeforeElection);
+    register(metrics, "imbalance-after-election", () -> imbalanceAfterElection);
+    register(metrics, "elections", () -> elections);
+    register(metrics, "elected-partitions", () -> electedPartitions);
+  }
+
+  public double getImbalance() {
+    return imbalance;
+  }
+
+  private static <T> void register(MetricRegistry metrics, String name, Gauge<T> gauge) {
+    String fullName = MetricRegistry.name(LeaderBalancer.class, name);
+    metrics.remove(fullName);
+    metrics.register(fullName, gauge);
+  }
+
+  private Map<String, Map<Integer, JSONObject>> getPartitionStates(
+      Map<String, Map<Integer, List<Integer>>> assignments) throws Exception {
+    Map<String, Map<Integer, JSONObject>> states = new TreeMap<>();
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+      Map<Integer, JSONObject> topicStates = new TreeMap<>();
+      for (Integer partition : topic.getValue().keySet()) {
+        Optional<JSONObject> state = kafkaState.getPartitionState(topic.getKey(), partition);
+        if (state.isPresent()) {
+          topicStates.put(partition, state.get());
+        }
+      }
+      states.put(topic.getKey(), topicStates);
+    }
+    return states;
+  }
+
+  /**
+   * Returns the fraction of partitions which are not led by their preferred leader.
+   */
+  static double getImbalance(
+      Map<String, Map<Integer, List<Integer>>> assignments,
+      Map<String, Map<Integer, JSONObject>> states) {
+    int partitions = 0;
+    int misplaced = 0;
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        if (partition.getValue().isEmpty()) {
+          continue;
+        }
+        partitions++;
+        if (getLeader(states, topic.getKey(), partition.getKey()) != partition.getValue().get(0)) {
+          misplaced++;
+        }
+      }
+    }
+    return partitions == 0 ? 0 : (double) misplaced / partitions;
+  }
+
+  /**
+   * Returns, for each broker, the fraction of the partitions it prefers to lead which are led
+   * elsewhere.
+   */
+  static Map<Integer, Double> getBrokerImbalance(
+      Map<String, Map<Integer, List<Integer>>> assignments,
+      Map<String, Map<Integer, JSONObject>> states) {
+    Map<Integer, Integer> preferred = new HashMap<>();
+    Map<Integer, Integer> misplaced = new HashMap<>();
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        if (partition.getValue().isEmpty()) {
+          continue;
+        }
+        Integer preferredLeader = partition.getValue().get(0);
+        preferred.merge(preferredLeader, 1, Integer::sum);
+        if (getLeader(states, topic.getKey(), partition.getKey()) != preferredLeader) {
+          misplaced.merge(preferredLeader, 1, Integer::sum);
+        }
+      }
+    }
+
+    Map<Integer, Double> imbalance = new TreeMap<>();
+    for (Map.Entry<Integer, Integer> broker : preferred.entrySet()) {
+      imbalance.put(broker.getKey(), (double) misplaced.getOrDefault(broker.getKey(), 0) / broker.getValue());
+    }
+    return imbalance;
+  }
+
+  /**
+   * Returns up to batchSize partitions, by topic, whose preferred leader is in sync but isn't
+   * leading, for brokers whose imbalance exceeds the threshold.
+   */
+  static Map<String, List<Integer>> selectElections(
+      Map<String, Map<Integer, List<Integer>>> assignments,
+      Map<String, Map<Integer, JSONObject>> states,
+      double threshold,
+      int batchSize) {
+    Map<Integer, Double> brokerImbalance = getBrokerImbalance(assignments, states);
+    Map<String, List<Integer>> batch = new TreeMap<>();
+    int selected = 0;
+
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        if (selected >= batchSize) {
+          return batch;
+        }
+        if (partition.getValue().isEmpty()) {
+          continue;
+        }
+
+        Integer preferredLeader = partition.getValue().get(0);
+        if (brokerImbalance.getOrDefault(preferredLeader, 0.0) <= threshold) {
+          continue;
+        }
+
+        JSONObject state = states.getOrDefault(topic.getKey(), new HashMap<>()).get(partition.getKey());
+        if (state == null
+            || state.getInt("leader") == preferredLeader
+            || !contains(state.getJSONArray("isr"), preferredLeader)) {
+          continue;
+        }
+
+        batch.computeIfAbsent(topic.getKey(), t -> new ArrayList<>()).add(partition.getKey());
+        selected++;
+      }
+    }
+    return batch;
+  }
+
+  private static int getLeader(Map<String, Map<Integer, JSONObject>> states, String topic, int partition) {
+    Map<Integer, JSONObject> topicStates = states.get(topic);
+    if (topicStates == null || !topicStates.containsKey(partition)) {
+      return -1;
+    }
+    return topicStates.get(partition).getInt("leader");
+  }
+
+  private static boolean contains(JSONArray brokerIds, int brokerId) {
+    for (int i = 0; i < brokerIds.length(); i++) {
+      if (brokerIds.getInt(i) == brokerId) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,205 @@
+package com.mesosphere.dcos.kafka.rebalance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes a reassignment which spreads partition replicas and preferred leaders evenly across a
+ * set of brokers, while moving as few replicas as possible.
+ *
+ * Assignments are expressed as topic -> partition -> replicas, where the first replica is the
+ * preferred leader. Replicas are weighted by partition size, keyed by "topic-partition". Partitions
+ * with no known size are weighted as the average known size, or 1 when no sizes are known at all.
+ */
+public class PartitionAssigner {
+  private final double tolerance;
+
+  /**
+   * @param tolerance the fraction of the mean broker load by which brokers may differ before
+   *                  replicas are moved between them
+   */
+  public PartitionAssigner(double tolerance) {
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Returns the new replicas of every partition whose assignment should change. Partitions which
+   * keep their current assignment are omitted.
+   */
+  public Map<String, Map<Integer, List<Integer>>> assign(
+      Map<String, Map<Integer, List<Integer>>> current,
+      Collection<Integer> brokerIds,
+      Map<String, Long> partitionSizes) {
+
+    Map<String, Map<Integer, List<Integer>>> proposed = copy(current);
+    if (brokerIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    balanceReplicas(proposed, brokerIds, partitionSizes);
+    balanceLeaders(proposed, brokerIds);
+
+    Map<String, Map<Integer, List<Integer>>> changes = new TreeMap<>();
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : proposed.entrySet()) {
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        if (!partition.getValue().equals(current.get(topic.getKey()).get(partition.getKey()))) {
+          changes.computeIfAbsent(topic.getKey(), t -> new TreeMap<>())
+              .put(partition.getKey(), partition.getValue());
+        }
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Repeatedly moves the replica which best evens out the most and least loaded brokers, until
+   * they are within the tolerance or no replica move would bring them closer.
+   */
+  private void balanceReplicas(
+      Map<String, Map<Integer, List<Integer>>> assignment,
+      Collection<Integer> brokerIds,
+      Map<String, Long> partitionSizes) {
+
+    long defaultSize = getDefaultSize(partitionSizes);
+    Map<Integer, Long> load = new HashMap<>();
+    long totalLoad = 0;
+    int replicaCount = 0;
+    for (Integer brokerId : brokerIds) {
+      load.put(brokerId, 0L);
+    }
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignment.entrySet()) {
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        long size = partitionSizes.getOrDefault(key(topic.getKey(), partition.getKey()), defaultSize);
+        for (Integer replica : partition.getValue()) {
+          if (load.containsKey(replica)) {
+            load.put(replica, load.get(replica) + size);
+            totalLoad += size;
+          }
+          replicaCount++;
+        }
+      }
+    }
+
+    double allowedGap = tolerance * totalLoad / brokerIds.size();
+    for (int moves = 0; moves < replicaCount; moves++) {
+      Integer src = null;
+      Integer dst = null;
+      for (Integer brokerId : brokerIds) {
+        if (src == null || load.get(brokerId) > load.get(src)) {
+          src = brokerId;
+        }
+        if (dst == null || load.get(brokerId) < load.get(dst)) {
+          dst = brokerId;
+        }
+      }
+
+      long gap = load.get(src) - load.get(dst);
+      if (gap <= allowedGap) {
+        return;
+      }
+
+      // Moving a replica of size s changes the gap to |gap - 2s|, so the best move is closest to gap/2.
+      List<Integer> bestReplicas = null;
+      long bestSize = 0;
+      for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignment.entrySet()) {
+        for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+          List<Integer> replicas = partition.getValue();
+          if (!replicas.contains(src) || replicas.contains(dst)) {
+            continue;
+          }
+
+          long size = partitionSizes.getOrDefault(key(topic.getKey(), partition.getKey()), defaultSize);
+          if (size < gap && (bestReplicas == null || Math.abs(gap - 2 * size) < Math.abs(gap - 2 * bestSize))) {
+            bestReplicas = replicas;
+            bestSize = size;
+          }
+        }
+      }
+
+      if (bestReplicas == null) {
+        return;
+      }
+
+      bestReplicas.set(bestReplicas.indexOf(src), dst);
+      load.put(src, load.get(src) - bestSize);
+      load.put(dst, load.get(dst) + bestSize);
+    }
+  }
+
+  /**
+   * Reorders replicas so that each broker is the preferred leader of a similar number of
+   * partitions. This only changes which replica is listed first, so it moves no data.
+   */
+  private void balanceLeaders(Map<String, Map<Integer, List<Integer>>> assignment, Collection<Integer> brokerIds) {
+    Map<Integer, Integer> leaders = new HashMap<>();
+    int partitionCount = 0;
+    for (Integer brokerId : brokerIds) {
+      leaders.put(brokerId, 0);
+    }
+    for (Map<Integer, List<Integer>> partitions : assignment.values()) {
+      for (List<Integer> replicas : partitions.values()) {
+        if (!replicas.isEmpty() && leaders.containsKey(replicas.get(0))) {
+          leaders.put(replicas.get(0), leaders.get(replicas.get(0)) + 1);
+        }
+        partitionCount++;
+      }
+    }
+
+    int maxLeaders = (int) Math.ceil((double) partitionCount / brokerIds.size());
+    for (Map<Integer, List<Integer>> partitions : assignment.values()) {
+      for (List<Integer> replicas : partitions.values()) {
+        if (replicas.isEmpty()) {
+          continue;
+        }
+
+        Integer leader = replicas.get(0);
+        if (!leaders.containsKey(leader) || leaders.get(leader) <= maxLeaders) {
+          continue;
+        }
+
+        for (int i = 1; i < replicas.size(); i++) {
+          Integer candidate = replicas.get(i);
+          if (leaders.containsKey(candidate) && leaders.get(candidate) < maxLeaders) {
+            Collections.swap(replicas, 0, i);
+            leaders.put(leader, leaders.get(leader) - 1);
+            leaders.put(candidate, leaders.get(candidate) + 1);
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private static long getDefaultSize(Map<String, Long> partitionSizes) {
+    if (partitionSizes.isEmpty()) {
+      return 1;
+    }
+
+    long total = 0;
+    for (Long size : partitionSizes.values()) {
+      total += size;
+    }
+    return Math.max(1, total / partitionSizes.size());
+  }
+
+  private static Map<String, Map<Integer, List<Integer>>> copy(Map<String, Map<Integer, List<Integer>>> assignment) {
+    Map<String, Map<Integer, List<Integer>>> copy = new TreeMap<>();
+    for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignment.entrySet()) {
+      Map<Integer, List<Integer>> partitions = new TreeMap<>();
+      for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+        partitions.put(partition.getKey(), new ArrayList<>(partition.getValue()));
+      }
+      copy.put(topic.getKey(), partitions);
+    }
+    return copy;
+  }
+
+  public static String key(String topic, int partition) {
+    return topic + "-" + partition;
+  }
+}
@@ -0,0 +1,129 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.offer.OfferUtils;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.json.JSONArray;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Restarts brokers which Mesos reports as running but which have dropped out of the cluster.
+ *
+ * A broker registers an ephemeral node under /brokers/ids which disappears when its Zookeeper
+ * session expires, e.g. during a long GC pause or when it's stuck on a disk. Once a running task's
+ * broker has registered, losing that registration for longer than the timeout restarts the task,
+ * which the recovery plan then relaunches in place. Brokers which haven't registered since they
+ * were launched are left to the health check, as they may still be starting up.
+ *
+ * Registrations seen before the scheduler (re)started aren't known, so tasks which are already
+ * running on the first check are taken to have registered. A broker which is missing by then is
+ * restarted once the timeout has passed.
+ */
+public class BrokerLivenessMonitor implements Runnable {
+    private static final Log log = LogFactory.getLog(BrokerLivenessMonitor.class);
+
+    public static final int CHECK_INTERVAL_SECS = 5;
+
+    private final KafkaState kafkaState;
+    private final FrameworkState frameworkState;
+    private final Duration timeout;
+    private final Consumer<TaskInfo> restarter;
+    private final Clock clock;
+
+    private final Set<String> registeredTaskIds = new HashSet<>();
+    private final Map<String, Instant> unregisteredSince = new HashMap<>();
+    private boolean seeded = false;
+
+    public BrokerLivenessMonitor(
+            KafkaState kafkaState,
+            FrameworkState frameworkState,
+            Duration timeout,
+            Consumer<TaskInfo> restarter) {
+        this(kafkaState, frameworkState, timeout, restarter, Clock.systemUTC());
+    }
+
+    BrokerLivenessMonitor(
+            KafkaState kafkaState,
+            FrameworkState frameworkState,
+            Duration timeout,
+            Consumer<TaskInfo> restarter,
+            Clock clock) {
+        this.kafkaState = kafkaState;
+        this.frameworkState = frameworkState;
+        this.timeout = timeout;
+        this.restarter = restarter;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void run() {
+        try {
+            Set<Integer> registeredBrokers = new HashSet<>();
+            JSONArray brokerIds = kafkaState.getBrokerIds();
+            for (int i = 0; i < brokerIds.length(); i++) {
+                registeredBrokers.add(Integer.valueOf(brokerIds.getString(i)));
+            }
+
+            Set<String> runningTaskIds = new HashSet<>();
+            for (TaskInfo taskInfo : frameworkState.getTaskInfos()) {
+                if (isRunning(taskInfo)) {
+                    runningTaskIds.add(taskInfo.getTaskId().getValue());
+                    if (!seeded) {
+                        registeredTaskIds.add(taskInfo.getTaskId().getValue());
+                    }
+                    check(taskInfo, registeredBrokers.contains(OfferUtils.nameToId(taskInfo.getName())));
+                }
+            }
+
+            registeredTaskIds.retainAll(runningTaskIds);
+            unregisteredSince.keySet().retainAll(runningTaskIds);
+            seeded = true;
+        } catch (Exception ex) {
+            log.error("Failed to check broker liveness: ", ex);
+        }
+    }
+
+    private void check(TaskInfo taskInfo, boolean registered) {
+        String taskId = taskInfo.getTaskId().getValue();
+        if (registered) {
+            registeredTaskIds.add(taskId);
+            if (unregisteredSince.remove(taskId) != null) {
+                log.info(taskInfo.getName() + " has re-registered.");
+            }
+            return;
+        }
+
+        if (!registeredTaskIds.contains(taskId)) {
+            return;
+        }
+
+        Instant now = clock.instant();
+        Instant since = unregisteredSince.get(taskId);
+        if (since == null) {
+            log.warn(taskInfo.getName() + " is running but has lost its registration.");
+            unregisteredSince.put(taskId, now);
+        } else if (!now.isBefore(since.plus(timeout))) {
+            log.warn(taskInfo.getName() + " has been unregistered since " + since + ", restarting it.");
+            registeredTaskIds.remove(taskId);
+            unregisteredSince.remove(taskId);
+            restarter.accept(taskInfo);
+        }
+    }
+
+    private boolean isRunning(TaskInfo taskInfo) throws Exception {
+        Optional<TaskStatus> status = frameworkState.getTaskStatusForBroker(OfferUtils.nameToId(taskInfo.getName()));
+        return status.isPresent()
+                && status.get().getState() == TaskState.TASK_RUNNING
+                && status.get().getTaskId().equals(taskInfo.getTaskId());
+    }
+}
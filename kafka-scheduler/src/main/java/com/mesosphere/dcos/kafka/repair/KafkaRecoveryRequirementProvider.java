@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * This class implements the {@link RecoveryRequirementProvider} interface for the Kafka framework.
@@ -25,12 +26,27 @@ public class KafkaRecoveryRequirementProvider implements RecoveryRequirementProv
 
     private final KafkaOfferRequirementProvider offerRequirementProvider;
     private final ConfigStore configStore;
+    private final Optional<RecoveryPrioritizer> prioritizer;
 
+    /**
+     * Creates a provider which recovers brokers in the order they're reported.
+     */
     public KafkaRecoveryRequirementProvider(
             KafkaOfferRequirementProvider offerRequirementProvider,
             ConfigStore configStore) {
+        this(offerRequirementProvider, configStore, Optional.empty());
+    }
+
+    /**
+     * Creates a provider which recovers the brokers whose absence hurts availability most first.
+     */
+    public KafkaRecoveryRequirementProvider(
+            KafkaOfferRequirementProvider offerRequirementProvider,
+            ConfigStore configStore,
+            Optional<RecoveryPrioritizer> prioritizer) {
         this.offerRequirementProvider = offerRequirementProvider;
         this.configStore = configStore;
+        this.prioritizer = prioritizer;
     }
 
     /**
@@ -43,7 +59,7 @@ public class KafkaRecoveryRequirementProvider implements RecoveryRequirementProv
     public List<RecoveryRequirement> getTransientRecoveryRequirements(List<TaskInfo> stoppedTasks) {
         List<RecoveryRequirement> transientRecoveryRequirements = new ArrayList<>();
 
-        for (TaskInfo taskInfo : stoppedTasks) {
+        for (TaskInfo taskInfo : prioritize(stoppedTasks)) {
             try {
                 transientRecoveryRequirements.add(
                         new DefaultRecoveryRequirement(
@@ -69,7 +85,7 @@ public class KafkaRecoveryRequirementProvider implements RecoveryRequirementProv
     public List<RecoveryRequirement> getPermanentRecoveryRequirements(List<TaskInfo> failedTasks) {
         List<RecoveryRequirement> permanentRecoveryRequirements = new ArrayList<>();
 
-        for (TaskInfo taskInfo : failedTasks) {
+        for (TaskInfo taskInfo : prioritize(failedTasks)) {
             int brokerId = OfferUtils.nameToId(taskInfo.getName());
             try {
                 permanentRecoveryRequirements.add(
@@ -85,4 +101,8 @@ public class KafkaRecoveryRequirementProvider implements RecoveryRequirementProv
 
         return permanentRecoveryRequirements;
     }
+
+    private List<TaskInfo> prioritize(List<TaskInfo> tasks) {
+        return prioritizer.isPresent() ? prioritizer.get().prioritize(tasks) : tasks;
+    }
 }
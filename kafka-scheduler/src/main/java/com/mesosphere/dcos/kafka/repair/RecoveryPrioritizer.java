@@ -0,0 +1,152 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.offer.OfferUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskInfo;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Orders stopped brokers so that those whose absence hurts availability most are recovered first.
+ *
+ * A broker's impact is measured over the partitions it hosts but is no longer in sync for: first
+ * the partitions left without a leader, then those whose in-sync replica set has shrunk below the
+ * topic's {@code min.insync.replicas} (rejecting produce requests with acks=all), then those left
+ * exactly at it (one more failure away). Brokers with equal impact keep their id order.
+ */
+public class RecoveryPrioritizer {
+    private static final Log log = LogFactory.getLog(RecoveryPrioritizer.class);
+
+    private static final String MIN_ISR_KEY = "min.insync.replicas";
+
+    private final KafkaState kafkaState;
+    private final int defaultMinIsr;
+
+    /**
+     * @param defaultMinIsr the broker-wide {@code min.insync.replicas}, used for topics which don't
+     *                      override it
+     */
+    public RecoveryPrioritizer(KafkaState kafkaState, int defaultMinIsr) {
+        this.kafkaState = kafkaState;
+        this.defaultMinIsr = defaultMinIsr;
+    }
+
+    /**
+     * Returns the provided tasks, most impactful first. If the partition state can't be read, the
+     * tasks are returned in broker id order.
+     */
+    public List<TaskInfo> prioritize(List<TaskInfo> tasks) {
+        List<TaskInfo> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingInt(task -> OfferUtils.nameToId(task.getName())));
+        if (sorted.size() < 2) {
+            return sorted;
+        }
+
+        try {
+            Map<String, Map<Integer, List<Integer>>> assignments = kafkaState.getPartitionAssignments();
+            Map<String, Map<Integer, JSONObject>> states = new HashMap<>();
+            Map<String, Integer> minIsr = new HashMap<>();
+            for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+                Map<Integer, JSONObject> topicStates = new HashMap<>();
+                for (Integer partition : topic.getValue().keySet()) {
+                    Optional<JSONObject> state = kafkaState.getPartitionState(topic.getKey(), partition);
+                    if (state.isPresent()) {
+                        topicStates.put(partition, state.get());
+                    }
+                }
+                states.put(topic.getKey(), topicStates);
+
+                JSONObject topicConfig = kafkaState.getTopicConfig(topic.getKey());
+                if (topicConfig.has(MIN_ISR_KEY)) {
+                    minIsr.put(topic.getKey(), Integer.parseInt(topicConfig.getString(MIN_ISR_KEY)));
+                }
+            }
+
+            Map<Integer, Impact> impacts = new HashMap<>();
+            for (TaskInfo task : sorted) {
+                int brokerId = OfferUtils.nameToId(task.getName());
+                impacts.put(brokerId, getImpact(brokerId, assignments, states, minIsr, defaultMinIsr));
+            }
+            // List.sort is stable, so brokers of equal impact remain in id order.
+            sorted.sort((a, b) -> impacts.get(OfferUtils.nameToId(b.getName()))
+                    .compareTo(impacts.get(OfferUtils.nameToId(a.getName()))));
+            log.info("Recovery order by impact: " + impacts);
+        } catch (Exception ex) {
+            log.error("Failed to read partition state, recovering brokers in id order: ", ex);
+        }
+
+        return sorted;
+    }
+
+    static Impact getImpact(
+            int brokerId,
+            Map<String, Map<Integer, List<Integer>>> assignments,
+            Map<String, Map<Integer, JSONObject>> states,
+            Map<String, Integer> minIsr,
+            int defaultMinIsr) {
+        Impact impact = new Impact();
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+            int topicMinIsr = minIsr.getOrDefault(topic.getKey(), defaultMinIsr);
+            Map<Integer, JSONObject> topicStates = states.getOrDefault(topic.getKey(), Collections.emptyMap());
+
+            for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+                JSONObject state = topicStates.get(partition.getKey());
+                if (!partition.getValue().contains(brokerId) || state == null) {
+                    continue;
+                }
+
+                JSONArray isr = state.getJSONArray("isr");
+                if (contains(isr, brokerId)) {
+                    continue;
+                }
+
+                if (state.getInt("leader") < 0) {
+                    impact.offline++;
+                } else if (isr.length() < topicMinIsr) {
+                    impact.belowMinIsr++;
+                } else if (isr.length() == topicMinIsr) {
+                    impact.atMinIsr++;
+                }
+            }
+        }
+        return impact;
+    }
+
+    private static boolean contains(JSONArray brokerIds, int brokerId) {
+        for (int i = 0; i < brokerIds.length(); i++) {
+            if (brokerIds.getInt(i) == brokerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The number of partitions a stopped broker leaves offline, below and at min.insync.replicas.
+     */
+    static class Impact implements Comparable<Impact> {
+        int offline = 0;
+        int belowMinIsr = 0;
+        int atMinIsr = 0;
+
+        @Override
+        public int compareTo(Impact other) {
+            if (offline != other.offline) {
+                return Integer.compare(offline, other.offline);
+            }
+            if (belowMinIsr != other.belowMinIsr) {
+                return Integer.compare(belowMinIsr, other.belowMinIsr);
+            }
+            return Integer.compare(atMinIsr, other.atMinIsr);
+        }
+
+        @Override
+        public String toString() {
+            return "{offline=" + offline + ", belowMinIsr=" + belowMinIsr + ", atMinIsr=" + atMinIsr + "}";
+        }
+    }
+}
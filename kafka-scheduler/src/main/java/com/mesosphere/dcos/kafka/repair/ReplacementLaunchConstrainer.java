@@ -0,0 +1,97 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.offer.OfferUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.TaskRequirement;
+import org.apache.mesos.scheduler.recovery.RecoveryRequirement;
+import org.apache.mesos.scheduler.recovery.constrain.LaunchConstrainer;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allows several failed brokers to be replaced at once, while bounding the replication load.
+ *
+ * Transient recoveries are never constrained. A permanent replacement may launch as long as fewer
+ * than the maximum number of other replaced brokers are still catching up, and the same broker
+ * hasn't been replaced within the minimum delay. Every replacement launch is handed to the
+ * {@link ReplacementThrottler}, which limits its replication rate until it has caught up.
+ */
+public class ReplacementLaunchConstrainer implements LaunchConstrainer {
+    private static final Log log = LogFactory.getLog(ReplacementLaunchConstrainer.class);
+
+    private final ReplacementThrottler throttler;
+    private final int maxConcurrentReplacements;
+    private final Duration minDelay;
+    private final Clock clock;
+
+    private final Map<Integer, Instant> lastReplacements = new HashMap<>();
+
+    public ReplacementLaunchConstrainer(
+            ReplacementThrottler throttler,
+            int maxConcurrentReplacements,
+            Duration minDelay) {
+        this(throttler, maxConcurrentReplacements, minDelay, Clock.systemUTC());
+    }
+
+    ReplacementLaunchConstrainer(
+            ReplacementThrottler throttler,
+            int maxConcurrentReplacements,
+            Duration minDelay,
+            Clock clock) {
+        this.throttler = throttler;
+        this.maxConcurrentReplacements = Math.max(1, maxConcurrentReplacements);
+        this.minDelay = minDelay;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void launchHappened(
+            Protos.Offer.Operation launchOperation,
+            RecoveryRequirement.RecoveryType recoveryType) {
+        if (recoveryType != RecoveryRequirement.RecoveryType.PERMANENT) {
+            return;
+        }
+
+        for (Protos.TaskInfo taskInfo : launchOperation.getLaunch().getTaskInfosList()) {
+            int brokerId = OfferUtils.nameToId(taskInfo.getName());
+            lastReplacements.put(brokerId, clock.instant());
+            throttler.addReplacement(brokerId);
+        }
+    }
+
+    @Override
+    public synchronized boolean canLaunch(RecoveryRequirement recoveryRequirement) {
+        if (recoveryRequirement.getRecoveryType() != RecoveryRequirement.RecoveryType.PERMANENT) {
+            return true;
+        }
+
+        // Replacing a broker again while it's still catching up doesn't add to the replication load.
+        Set<Integer> catchingUp = throttler.getCatchingUpBrokers();
+        for (TaskRequirement taskRequirement : recoveryRequirement.getOfferRequirement().getTaskRequirements()) {
+            catchingUp.remove(OfferUtils.nameToId(taskRequirement.getTaskInfo().getName()));
+        }
+        if (catchingUp.size() >= maxConcurrentReplacements) {
+            log.info("Delaying replacement: replaced brokers " + catchingUp + " are still catching up.");
+            return false;
+        }
+
+        Instant now = clock.instant();
+        for (TaskRequirement taskRequirement : recoveryRequirement.getOfferRequirement().getTaskRequirements()) {
+            Protos.TaskInfo taskInfo = taskRequirement.getTaskInfo();
+            Instant last = lastReplacements.get(OfferUtils.nameToId(taskInfo.getName()));
+            if (last != null && now.isBefore(last.plus(minDelay))) {
+                log.info("Delaying replacement of " + taskInfo.getName() + ": it was last replaced at " + last);
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
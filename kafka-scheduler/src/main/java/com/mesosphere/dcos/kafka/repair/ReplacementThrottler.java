@@ -0,0 +1,224 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.state.ReplicationThrottle;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.offer.TaskUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Limits the replication rate of brokers which were replaced onto empty disks, until they have
+ * caught up.
+ *
+ * A replaced broker fetches every partition assigned to it from the current leaders. While it's out
+ * of sync, its follower replicas and the leader replicas they fetch from are marked as throttled,
+ * and the brokers on both ends are limited to the configured rate. Once the broker has rejoined the
+ * in-sync replica set of all of its partitions, it's no longer tracked and any throttles which no
+ * other replacement needs are lifted. Throttles are set through {@link KafkaAdmin#setThrottle}, so
+ * that they're merged with those of a rebalance.
+ *
+ * A replacement is also no longer tracked once its task has stopped, or if it hasn't registered
+ * with Zookeeper within {@link #REGISTRATION_TIMEOUT} of being launched, so that replacements which
+ * never come up don't hold back others indefinitely. Replacements being tracked are recorded
+ * through {@link KafkaAdmin#setReplacements}, and picked up again when the scheduler restarts.
+ */
+public class ReplacementThrottler implements Runnable {
+    private static final Log log = LogFactory.getLog(ReplacementThrottler.class);
+
+    public static final int CHECK_INTERVAL_SECS = 10;
+    /**
+     * Owner of the throttles set for replacements, as registered with {@link KafkaAdmin#setThrottle}.
+     */
+    public static final String THROTTLE_OWNER = "replacement";
+    static final Duration REGISTRATION_TIMEOUT = Duration.ofMinutes(15);
+
+    private final KafkaState kafkaState;
+    private final KafkaAdmin kafkaAdmin;
+    private final FrameworkState frameworkState;
+    private final long throttleBytesPerSec;
+    private final Clock clock;
+
+    /**
+     * Replaced brokers which haven't caught up yet, along with when each was launched.
+     */
+    private final Map<Integer, Instant> catchingUpBrokers = new TreeMap<>();
+    private boolean recovered = false;
+
+    /**
+     * @param throttleBytesPerSec the replication rate allowed on each throttled broker, or 0 to only
+     *                            track which replacements are still catching up
+     */
+    public ReplacementThrottler(
+            KafkaState kafkaState,
+            KafkaAdmin kafkaAdmin,
+            FrameworkState frameworkState,
+            long throttleBytesPerSec) {
+        this(kafkaState, kafkaAdmin, frameworkState, throttleBytesPerSec, Clock.systemUTC());
+    }
+
+    ReplacementThrottler(
+            KafkaState kafkaState,
+            KafkaAdmin kafkaAdmin,
+            FrameworkState frameworkState,
+            long throttleBytesPerSec,
+            Clock clock) {
+        this.kafkaState = kafkaState;
+        this.kafkaAdmin = kafkaAdmin;
+        this.frameworkState = frameworkState;
+        this.throttleBytesPerSec = throttleBytesPerSec;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts tracking a broker which has been launched onto an empty disk. A broker which is
+     * replaced again is tracked from its latest launch.
+     */
+    public synchronized void addReplacement(int brokerId) {
+        try {
+            recoverReplacements();
+            catchingUpBrokers.put(brokerId, clock.instant());
+            log.info("Tracking replacement of broker-" + brokerId + " until it has caught up.");
+            recordReplacements();
+        } catch (Exception ex) {
+            log.error("Failed to record replacement of broker-" + brokerId + ": ", ex);
+        }
+    }
+
+    /**
+     * Returns the replaced brokers which haven't caught up yet.
+     */
+    public synchronized Set<Integer> getCatchingUpBrokers() {
+        return new TreeSet<>(catchingUpBrokers.keySet());
+    }
+
+    @Override
+    public synchronized void run() {
+        try {
+            recoverReplacements();
+
+            Set<Integer> registeredBrokers = new HashSet<>();
+            JSONArray brokerIds = kafkaState.getBrokerIds();
+            for (int i = 0; i < brokerIds.length(); i++) {
+                registeredBrokers.add(Integer.valueOf(brokerIds.getString(i)));
+            }
+
+            boolean changed = false;
+            Iterator<Map.Entry<Integer, Instant>> brokers = catchingUpBrokers.entrySet().iterator();
+            while (brokers.hasNext()) {
+                Map.Entry<Integer, Instant> broker = brokers.next();
+                int brokerId = broker.getKey();
+                if (hasStopped(brokerId)) {
+                    log.info("Replaced broker-" + brokerId + " is no longer running.");
+                } else if (!registeredBrokers.contains(brokerId)) {
+                    if (clock.instant().isBefore(broker.getValue().plus(REGISTRATION_TIMEOUT))) {
+                        continue;
+                    }
+                    log.warn("Replaced broker-" + brokerId + " hasn't registered since it was launched at "
+                            + broker.getValue() + ".");
+                } else if (kafkaState.isBrokerInSync(brokerId)) {
+                    log.info("Replaced broker-" + brokerId + " has caught up.");
+                } else {
+                    continue;
+                }
+                brokers.remove();
+                changed = true;
+            }
+            if (changed) {
+                recordReplacements();
+            }
+
+            if (throttleBytesPerSec > 0) {
+                applyThrottles(registeredBrokers);
+            } else {
+                // Lifts any throttle left from when a rate was configured.
+                kafkaAdmin.removeThrottle(THROTTLE_OWNER);
+            }
+        } catch (Exception ex) {
+            log.error("Failed to update replacement throttles: ", ex);
+        }
+    }
+
+    /**
+     * Picks up the replacements which were still catching up when the scheduler last stopped, once.
+     */
+    private void recoverReplacements() throws Exception {
+        if (recovered) {
+            return;
+        }
+        for (Map.Entry<Integer, Long> replacement : kafkaAdmin.getReplacements().entrySet()) {
+            catchingUpBrokers.putIfAbsent(replacement.getKey(), Instant.ofEpochMilli(replacement.getValue()));
+        }
+        recovered = true;
+    }
+
+    private void recordReplacements() throws Exception {
+        Map<Integer, Long> replacements = new TreeMap<>();
+        for (Map.Entry<Integer, Instant> broker : catchingUpBrokers.entrySet()) {
+            replacements.put(broker.getKey(), broker.getValue().toEpochMilli());
+        }
+        kafkaAdmin.setReplacements(replacements);
+    }
+
+    /**
+     * Returns whether the broker's current task has failed or been killed, or the broker has no task
+     * at all. A status left from the task it replaced doesn't count.
+     */
+    private boolean hasStopped(int brokerId) throws Exception {
+        Optional<TaskInfo> taskInfo = frameworkState.getTaskInfoForBroker(brokerId);
+        if (!taskInfo.isPresent()) {
+            return true;
+        }
+        Optional<TaskStatus> status = frameworkState.getTaskStatusForBroker(brokerId);
+        return status.isPresent()
+                && status.get().getTaskId().equals(taskInfo.get().getTaskId())
+                && TaskUtils.needsRecovery(status.get());
+    }
+
+    private void applyThrottles(Set<Integer> registeredBrokers) throws Exception {
+        ReplicationThrottle throttle = new ReplicationThrottle(throttleBytesPerSec);
+
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : kafkaState.getPartitionAssignments().entrySet()) {
+            for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+                Optional<JSONObject> state = kafkaState.getPartitionState(topic.getKey(), partition.getKey());
+                if (!state.isPresent()) {
+                    continue;
+                }
+                Set<Integer> isr = toSet(state.get().getJSONArray("isr"));
+
+                for (Integer brokerId : partition.getValue()) {
+                    if (!catchingUpBrokers.containsKey(brokerId)
+                            || !registeredBrokers.contains(brokerId)
+                            || isr.contains(brokerId)) {
+                        continue;
+                    }
+
+                    throttle.addFollower(topic.getKey(), partition.getKey(), brokerId);
+                    for (Integer source : isr) {
+                        throttle.addLeader(topic.getKey(), partition.getKey(), source);
+                    }
+                }
+            }
+        }
+
+        kafkaAdmin.setThrottle(THROTTLE_OWNER, throttle);
+    }
+
+    private static Set<Integer> toSet(JSONArray brokerIds) {
+        Set<Integer> set = new TreeSet<>();
+        for (int i = 0; i < brokerIds.length(); i++) {
+            set.add(brokerIds.getInt(i));
+        }
+        return set;
+    }
+}
@@ -8,19 +8,38 @@ import com.mesosphere.dcos.kafka.commons.state.KafkaState;
 import com.mesosphere.dcos.kafka.config.ConfigStateUpdater;
 import com.mesosphere.dcos.kafka.config.ConfigStateValidator.ValidationError;
 import com.mesosphere.dcos.kafka.config.ConfigStateValidator.ValidationException;
+import com.mesosphere.dcos.kafka.config.DynamicConfigUpdater;
 import com.mesosphere.dcos.kafka.config.KafkaConfigState;
+import com.mesosphere.dcos.kafka.config.KafkaHealthCheckConfiguration;
+import com.mesosphere.dcos.kafka.config.KafkaRebalanceConfiguration;
 import com.mesosphere.dcos.kafka.config.KafkaSchedulerConfiguration;
+import com.mesosphere.dcos.kafka.metrics.BrokerMetricsCollector;
+import com.mesosphere.dcos.kafka.metrics.LoadModel;
 import com.mesosphere.dcos.kafka.offer.KafkaOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.offer.OfferPrioritizer;
 import com.mesosphere.dcos.kafka.offer.PersistentOfferRequirementProvider;
 import com.mesosphere.dcos.kafka.offer.PersistentOperationRecorder;
+import com.mesosphere.dcos.kafka.plan.KafkaRebalancePhase;
+import com.mesosphere.dcos.kafka.plan.KafkaStorageMigrationPhase;
+import com.mesosphere.dcos.kafka.plan.KafkaScaleOutPhase;
 import com.mesosphere.dcos.kafka.plan.KafkaUpdatePhase;
+import com.mesosphere.dcos.kafka.rebalance.LeaderBalancer;
+import com.mesosphere.dcos.kafka.repair.BrokerLivenessMonitor;
+import com.mesosphere.dcos.kafka.repair.FailureUtils;
 import com.mesosphere.dcos.kafka.repair.KafkaFailureMonitor;
 import com.mesosphere.dcos.kafka.repair.KafkaRecoveryRequirementProvider;
+import com.mesosphere.dcos.kafka.repair.RecoveryPrioritizer;
+import com.mesosphere.dcos.kafka.repair.ReplacementLaunchConstrainer;
+import com.mesosphere.dcos.kafka.repair.ReplacementThrottler;
 import com.mesosphere.dcos.kafka.state.ClusterState;
 import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
 import com.mesosphere.dcos.kafka.web.BrokerController;
 import com.mesosphere.dcos.kafka.web.ConnectionController;
 import com.mesosphere.dcos.kafka.web.InterruptProceed;
+import com.mesosphere.dcos.kafka.web.LoadController;
+import com.mesosphere.dcos.kafka.web.QuotaController;
+import com.mesosphere.dcos.kafka.web.RebalanceController;
 import com.mesosphere.dcos.kafka.web.TopicController;
 import io.dropwizard.setup.Environment;
 import org.apache.commons.logging.Log;
@@ -45,6 +64,7 @@ import org.apache.mesos.scheduler.api.TaskResource;
 import org.apache.mesos.scheduler.plan.*;
 import org.apache.mesos.scheduler.plan.api.PlansResource;
 import org.apache.mesos.scheduler.plan.strategy.CanaryStrategy;
+import org.apache.mesos.scheduler.plan.strategy.ParallelStrategy;
 import org.apache.mesos.scheduler.plan.strategy.SerialStrategy;
 import org.apache.mesos.scheduler.plan.strategy.Strategy;
 import org.apache.mesos.scheduler.recovery.DefaultRecoveryPlanManager;
@@ -52,7 +72,6 @@ import org.apache.mesos.scheduler.recovery.DefaultTaskFailureListener;
 import org.apache.mesos.scheduler.recovery.RecoveryRequirementProvider;
 import org.apache.mesos.scheduler.recovery.TaskFailureListener;
 import org.apache.mesos.scheduler.recovery.constrain.LaunchConstrainer;
-import org.apache.mesos.scheduler.recovery.constrain.TimedLaunchConstrainer;
 import org.apache.mesos.state.api.JsonPropertyDeserializer;
 import org.apache.mesos.state.api.StateResource;
 
@@ -61,6 +80,8 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Kafka Framework Scheduler.
@@ -69,13 +90,22 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
     private static final Log log = LogFactory.getLog(KafkaScheduler.class);
 
     private static final int TWO_WEEK_SEC = 2 * 7 * 24 * 60 * 60;
+    // Offers from the agent of a broker awaiting relaunch are only briefly refused, so that its
+    // reserved resources are offered again promptly if they can't be used yet.
+    private static final Filters RELAUNCH_DECLINE_FILTERS = Filters.newBuilder().setRefuseSeconds(1).build();
     private static TaskKiller taskKiller;
 
     private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(4);
     private final KafkaConfigState configState;
     private final KafkaSchedulerConfiguration envConfig;
     private final FrameworkState frameworkState;
     private final KafkaState kafkaState;
+    private final KafkaAdmin kafkaAdmin;
+    private final LeaderBalancer leaderBalancer;
+    private final BrokerMetricsCollector metricsCollector;
+    private final ReplacementThrottler replacementThrottler;
+    private final DynamicConfigUpdater dynamicConfigUpdater;
     private final ClusterState clusterState;
 
     private final TaskFailureListener taskFailureListener;
@@ -88,6 +118,7 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
     private final KafkaSchedulerConfiguration kafkaSchedulerConfiguration;
     private PlanManager planManager;
     private PlanManager repairPlanManager;
+    private PlanManager rebalancePlanManager;
     private PlanCoordinator planCoordinator;
     private PlanScheduler planScheduler;
     private SchedulerDriver driver;
@@ -116,8 +147,17 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
         configState = configStateUpdater.getConfigState();
         frameworkState = configStateUpdater.getFrameworkState();
         kafkaState = configStateUpdater.getKafkaState();
+        kafkaAdmin = configStateUpdater.getKafkaAdmin();
+        leaderBalancer = new LeaderBalancer(kafkaState, kafkaAdmin, getRebalanceConfiguration());
+        replacementThrottler = new ReplacementThrottler(
+                kafkaState,
+                kafkaAdmin,
+                frameworkState,
+                getRebalanceConfiguration().getReplacementThrottleBytesPerSec());
+        dynamicConfigUpdater = new DynamicConfigUpdater(kafkaState, kafkaAdmin);
 
         envConfig = targetConfigToUse;
+        metricsCollector = new BrokerMetricsCollector(kafkaState, envConfig.getBrokerConfiguration().getJmx());
         reconciler = new DefaultReconciler(frameworkState.getStateStore());
         clusterState = new ClusterState();
 
@@ -127,11 +167,28 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
         offerRequirementProvider =
                 new PersistentOfferRequirementProvider(frameworkState, configState, clusterState);
 
+        List<Integer> newBrokerIds = KafkaScaleOutPhase.getNewBrokerIds(envConfig, frameworkState);
         List<Phase> phases = Arrays.asList(
                 ReconciliationPhase.create(reconciler),
+                new KafkaStorageMigrationPhase(
+                        configState.getTargetName().toString(),
+                        envConfig,
+                        configState,
+                        frameworkState,
+                        kafkaState,
+                        kafkaAdmin,
+                        offerRequirementProvider,
+                        new SerialStrategy<>()),
+                new KafkaScaleOutPhase(
+                        configState.getTargetName().toString(),
+                        newBrokerIds,
+                        frameworkState,
+                        offerRequirementProvider,
+                        getScaleOutStrategy(envConfig)),
                 new KafkaUpdatePhase(
                         configState.getTargetName().toString(),
                         envConfig,
+                        newBrokerIds,
                         frameworkState,
                         offerRequirementProvider,
                         getPhaseStrategyFactory(envConfig)));
@@ -141,9 +198,11 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
         taskFailureListener = new DefaultTaskFailureListener(frameworkState.getStateStore());
         planManager = createDeployPlanManager(installPlan);
         repairPlanManager = createRecoveryPlanManager(offerRequirementProvider);
+        rebalancePlanManager = createRebalancePlanManager();
 
         planManager.subscribe(this);
         repairPlanManager.subscribe(this);
+        rebalancePlanManager.subscribe(this);
     }
 
     private void initialize(SchedulerDriver driver) {
@@ -152,9 +211,22 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
                 offerAccepter,
                 new OfferEvaluator(frameworkState.getStateStore()),
                 taskKiller);
-        planCoordinator = new DefaultPlanCoordinator(ImmutableList.of(planManager, repairPlanManager), planScheduler);
+        planCoordinator = new DefaultPlanCoordinator(ImmutableList.of(planManager, repairPlanManager, rebalancePlanManager), planScheduler);
 
         startApiServer();
+        startLeaderBalancer();
+        startMetricsCollector();
+        startLivenessMonitor();
+        scheduledExecutor.scheduleWithFixedDelay(
+                replacementThrottler,
+                ReplacementThrottler.CHECK_INTERVAL_SECS,
+                ReplacementThrottler.CHECK_INTERVAL_SECS,
+                TimeUnit.SECONDS);
+        scheduledExecutor.scheduleWithFixedDelay(
+                dynamicConfigUpdater,
+                0,
+                DynamicConfigUpdater.CHECK_INTERVAL_SECS,
+                TimeUnit.SECONDS);
 
         String javaHome = System.getenv("JAVA_HOME");
         boolean certInstalled = DCOSCertInstaller.installCertificate(javaHome);
@@ -183,9 +255,13 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
                 taskKiller,
                 kafkaSchedulerConfiguration.getServiceConfiguration().getName()));
         resources.add(new InterruptProceed(getPlanManager()));
+        resources.add(new RebalanceController(this));
+        resources.add(new LoadController(this));
+        resources.add(new QuotaController(this));
         resources.add(new PlansResource(ImmutableMap.of(
                 "deploy", getPlanManager(),
-                "recovery", getRepairManager())));
+                "recovery", getRepairManager(),
+                "rebalance", getRebalancePlanManager())));
         resources.add(new StateResource(frameworkState.getStateStore(), new JsonPropertyDeserializer()));
         executor.execute(() -> {
             try {
@@ -195,6 +271,64 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
             }
         });
     }
+    private void startLeaderBalancer() {
+        if (environment != null) {
+            leaderBalancer.registerMetrics(environment.metrics());
+        }
+
+        KafkaRebalanceConfiguration rebalanceConfiguration = getRebalanceConfiguration();
+        if (!rebalanceConfiguration.isLeaderBalanceEnabled()) {
+            log.info("Leader balancing is disabled.");
+            return;
+        }
+        // Kafka's own auto.leader.rebalance.enable defaults to true, and two loops triggering
+        // preferred replica elections would race with each other.
+        Map<String, String> overrides = kafkaSchedulerConfiguration.getKafkaConfiguration().getOverrides();
+        if (overrides == null || !"false".equalsIgnoreCase(overrides.get("auto.leader.rebalance.enable"))) {
+            log.warn("Leader balancing is disabled because auto.leader.rebalance.enable is not false.");
+            return;
+        }
+
+        int intervalSecs = Math.max(1, rebalanceConfiguration.getLeaderBalanceIntervalSecs());
+        scheduledExecutor.scheduleWithFixedDelay(leaderBalancer, intervalSecs, intervalSecs, TimeUnit.SECONDS);
+        log.info("Checking leader balance every " + intervalSecs + " seconds.");
+    }
+
+    private void startMetricsCollector() {
+        if (!metricsCollector.isSupported()) {
+            log.info("Broker load metrics require remote JMX without authentication, not collecting them.");
+            return;
+        }
+
+        scheduledExecutor.scheduleWithFixedDelay(
+                metricsCollector,
+                0,
+                BrokerMetricsCollector.POLL_INTERVAL_SECS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Like the other scheduler-only settings, the liveness check is read from the scheduler's own
+     * environment, so it can be changed without restarting the brokers.
+     */
+    private void startLivenessMonitor() {
+        KafkaHealthCheckConfiguration healthCheckConfiguration = kafkaSchedulerConfiguration.getHealthCheckConfiguration();
+        if (healthCheckConfiguration == null || !healthCheckConfiguration.isLivenessCheckEnabled()) {
+            log.info("Broker liveness check is disabled.");
+            return;
+        }
+
+        scheduledExecutor.scheduleWithFixedDelay(
+                new BrokerLivenessMonitor(
+                        kafkaState,
+                        frameworkState,
+                        healthCheckConfiguration.getLivenessTimeout(),
+                        KafkaScheduler::restartTasks),
+                BrokerLivenessMonitor.CHECK_INTERVAL_SECS,
+                BrokerLivenessMonitor.CHECK_INTERVAL_SECS,
+                TimeUnit.SECONDS);
+    }
+
     // dcos-commons 0.8.1 upgrade: just to be consistent with the existing java tests (see KafkaSchedulerTest.java)
     protected PlanManager createDeployPlanManager(Plan installPlan) {
         return new DefaultPlanManager(installPlan);
@@ -202,12 +336,15 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
 
     protected PlanManager createRecoveryPlanManager(KafkaOfferRequirementProvider offerRequirementProvider) {
         RecoveryConfiguration recoveryConfiguration = envConfig.getRecoveryConfiguration();
-        LaunchConstrainer constrainer = new TimedLaunchConstrainer(
+        LaunchConstrainer constrainer = new ReplacementLaunchConstrainer(
+                replacementThrottler,
+                getRebalanceConfiguration().getMaxConcurrentReplacements(),
                 Duration.ofSeconds(recoveryConfiguration.getRecoveryDelaySecs()));
         RecoveryRequirementProvider recoveryRequirementProvider =
                 new KafkaRecoveryRequirementProvider(
                         offerRequirementProvider,
-                        configState.getConfigStore());
+                        configState.getConfigStore(),
+                        Optional.of(new RecoveryPrioritizer(kafkaState, getDefaultMinIsr())));
 
             return new DefaultRecoveryPlanManager(
                     frameworkState.getStateStore(),
@@ -216,6 +353,71 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
                     new KafkaFailureMonitor(recoveryConfiguration));
     }
 
+    private int getDefaultMinIsr() {
+        String minIsr = envConfig.getKafkaConfiguration().getOverrides().get("min.insync.replicas");
+        try {
+            return minIsr == null ? 1 : Integer.parseInt(minIsr);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid min.insync.replicas: " + minIsr);
+            return 1;
+        }
+    }
+
+    /**
+     * Rebalance settings only affect the scheduler, so they're read from the scheduler's own
+     * environment rather than from the target config shared with the brokers.
+     */
+    protected PlanManager createRebalancePlanManager() {
+        Plan rebalancePlan = new DefaultPlan(
+                "rebalance",
+                Arrays.asList(new KafkaRebalancePhase(
+                        kafkaState,
+                        kafkaAdmin,
+                        getRebalanceConfiguration(),
+                        getBrokerCount(),
+                        this::getPartitionSizes)),
+                new SerialStrategy<>(),
+                Collections.emptyList());
+        return new DefaultPlanManager(rebalancePlan);
+    }
+
+    /**
+     * Returns the size in bytes of each partition, keyed by "topic-partition", for use in weighting
+     * rebalance decisions. Partitions are weighted equally when no sizes are known.
+     */
+    public Map<String, Long> getPartitionSizes() {
+        return metricsCollector.getLoadModel().getPartitionSizes();
+    }
+
+    public LoadModel getLoadModel() {
+        return metricsCollector.getLoadModel();
+    }
+
+    /**
+     * Returns the number of brokers which the rebalance plan balances partitions across.
+     */
+    public int getBrokerCount() {
+        return envConfig.getServiceConfiguration().getCount();
+    }
+
+    public KafkaRebalanceConfiguration getRebalanceConfiguration() {
+        KafkaRebalanceConfiguration rebalanceConfiguration = kafkaSchedulerConfiguration.getRebalanceConfiguration();
+        if (rebalanceConfiguration == null) {
+            return new KafkaRebalanceConfiguration(false, 10, 0, 0.1, false, 300, 50, 0.1, 0, 1);
+        }
+        return rebalanceConfiguration;
+    }
+
+    /**
+     * New brokers hold no data, so they're launched together unless each step is to be approved.
+     */
+    private static Strategy getScaleOutStrategy(KafkaSchedulerConfiguration config) {
+        if ("INSTALL".equals(config.getServiceConfiguration().getPhaseStrategy())) {
+            return new ParallelStrategy<>();
+        }
+        return getPhaseStrategyFactory(config);
+    }
+
     private static Strategy getPhaseStrategyFactory(KafkaSchedulerConfiguration config) {
         String strategy = config.getServiceConfiguration().getPhaseStrategy();
         switch (strategy) {
@@ -281,14 +483,28 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
     private boolean hasOperations() {
         log.debug("deploy = isComplete? " + planManager.getPlan().isComplete());
         log.debug("recovery = isComplete? " + repairPlanManager.getPlan().isComplete());
+        log.debug("rebalance = isComplete? " + rebalancePlanManager.getPlan().isComplete());
         boolean hasOperations = !(planManager.getPlan().isComplete() &&
-                repairPlanManager.getPlan().isComplete());
+                repairPlanManager.getPlan().isComplete() &&
+                isRebalanceIdle());
         log.debug(hasOperations ?
                 "Scheduler has operations to perform." :
                 "Scheduler has no operations to perform.");
         return hasOperations;
     }
 
+    /**
+     * An interrupted rebalance doesn't need offers, as it won't make progress until continued.
+     */
+    private boolean isRebalanceIdle() {
+        for (Phase phase : rebalancePlanManager.getPlan().getChildren()) {
+            if (!phase.isComplete() && !phase.getStrategy().isInterrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void reviveOffers(SchedulerDriver driver) {
         log.info("Reviving offers.");
         driver.reviveOffers();
@@ -336,7 +552,9 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
         repairPlanManager.update(status);
         reconciler.update(status);
 
-        if (TaskUtils.needsRecovery(status) && frameworkState.isSuppressed()){
+        // Reviving clears any filters from earlier declines, so the failed broker's reserved
+        // resources are offered again as soon as Mesos frees them.
+        if (TaskUtils.needsRecovery(status)) {
             reviveOffers(driver);
         }
     }
@@ -348,10 +566,14 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
             reconciler.reconcile(driver);
 
             List<OfferID> acceptedOffers = new ArrayList<>();
+            List<TaskInfo> relaunchingTasks = getTasksAwaitingRelaunch();
 
             if (!reconciler.isReconciled()) {
                 log.info("Accepting no offers: Reconciler is still in progress");
             } else {
+                List<Protos.Offer> prioritizedOffers = OfferPrioritizer.prioritize(offers, relaunchingTasks);
+                offers.clear();
+                offers.addAll(prioritizedOffers);
 
                 acceptedOffers.addAll(planCoordinator.processOffers(driver, offers));
 
@@ -369,7 +591,7 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
             }
             log.info(String.format("Accepted %d of %d offers: %s",
                     acceptedOffers.size(), offers.size(), acceptedOffers));
-            declineOffers(driver, acceptedOffers, offers);
+            declineOffers(driver, acceptedOffers, offers, OfferPrioritizer.getAgentIds(relaunchingTasks));
 
             if (!hasOperations()) {
                 suppressOffers(driver);
@@ -438,14 +660,44 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
         }
     }
 
-    private void declineOffers(SchedulerDriver driver, List<OfferID> acceptedOffers, List<Offer> offers) {
+    private void declineOffers(
+            SchedulerDriver driver,
+            List<OfferID> acceptedOffers,
+            List<Offer> offers,
+            Set<String> relaunchAgentIds) {
         for (Offer offer : offers) {
             OfferID offerId = offer.getId();
             if (!acceptedOffers.contains(offerId)) {
                 log.info("Declining offer: " + offerId.getValue());
-                driver.declineOffer(offerId);
+                if (relaunchAgentIds.contains(offer.getSlaveId().getValue())) {
+                    driver.declineOffer(offerId, RELAUNCH_DECLINE_FILTERS);
+                } else {
+                    driver.declineOffer(offerId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the stopped brokers which will be relaunched in place on their existing volumes,
+     * i.e. excluding those marked for replacement.
+     */
+    private List<TaskInfo> getTasksAwaitingRelaunch() {
+        List<TaskInfo> tasks = new ArrayList<>();
+        try {
+            for (TaskInfo taskInfo : frameworkState.getTaskInfos()) {
+                Optional<TaskStatus> status =
+                        frameworkState.getTaskStatusForBroker(OfferUtils.nameToId(taskInfo.getName()));
+                if (status.isPresent()
+                        && TaskUtils.needsRecovery(status.get())
+                        && !FailureUtils.labeledAsFailed(taskInfo)) {
+                    tasks.add(taskInfo);
+                }
             }
+        } catch (Exception ex) {
+            log.error("Failed to fetch stopped brokers", ex);
         }
+        return tasks;
     }
 
     private void registerFramework(KafkaScheduler sched, FrameworkInfo frameworkInfo, String masterUri) {
@@ -486,6 +738,25 @@ public class KafkaScheduler implements Scheduler, Observer, Runnable {
         return repairPlanManager;
     }
 
+    public PlanManager getRebalancePlanManager() {
+        return rebalancePlanManager;
+    }
+
+    public KafkaAdmin getKafkaAdmin() {
+        return kafkaAdmin;
+    }
+
+    public DynamicConfigUpdater getDynamicConfigUpdater() {
+        return dynamicConfigUpdater;
+    }
+
+    /**
+     * Resumes offers if any plan has work to do, e.g. after a plan was continued through the API.
+     */
+    public void reviveOffersIfNeeded() {
+        update(null);
+    }
+
     public static void restartTasks(TaskInfo taskInfo) {
         if (taskInfo != null) {
             taskKiller.killTask(taskInfo.getName(), false);
@@ -0,0 +1,500 @@
+package com.mesosphere.dcos.kafka.state;
+
+import com.mesosphere.dcos.kafka.config.ZookeeperConfiguration;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException.BadVersionException;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.KeeperException.NodeExistsException;
+import org.apache.zookeeper.data.Stat;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Writes administrative requests (partition reassignments and dynamic configs) into the Zookeeper
+ * state of the Kafka brokers, in the same format as the admin tools shipped with Kafka. Replication
+ * throttles are owned by the single instance shared across the scheduler, which merges the
+ * throttles requested by each of its users.
+ */
+public class KafkaAdmin {
+    private static final Log log = LogFactory.getLog(KafkaAdmin.class);
+
+    public static final String LEADER_THROTTLED_RATE = "leader.replication.throttled.rate";
+    public static final String FOLLOWER_THROTTLED_RATE = "follower.replication.throttled.rate";
+    public static final String LEADER_THROTTLED_REPLICAS = "leader.replication.throttled.replicas";
+    public static final String FOLLOWER_THROTTLED_REPLICAS = "follower.replication.throttled.replicas";
+    public static final String PRODUCER_BYTE_RATE = "producer_byte_rate";
+    public static final String CONSUMER_BYTE_RATE = "consumer_byte_rate";
+    public static final String DEFAULT_ENTITY = "<default>";
+
+    private static final int POLL_DELAY_MS = 1000;
+    private static final int CURATOR_MAX_RETRIES = 3;
+    private static final int CONFIG_UPDATE_ATTEMPTS = 5;
+
+    private final ZookeeperConfiguration zkConfig;
+    private final CuratorFramework kafkaZkClient;
+
+    /**
+     * Replication throttles requested by each owner, loaded from Zookeeper on first use.
+     */
+    private Map<String, ReplicationThrottle> throttleRequests = null;
+    private ReplicationThrottle appliedThrottle = null;
+
+    public KafkaAdmin(ZookeeperConfiguration zkConfig) {
+        this.zkConfig = zkConfig;
+
+        this.kafkaZkClient = CuratorFrameworkFactory.newClient(
+                zkConfig.getKafkaZkUri(),
+                new ExponentialBackoffRetry(POLL_DELAY_MS, CURATOR_MAX_RETRIES));
+        this.kafkaZkClient.start();
+    }
+
+    /**
+     * Returns whether a partition reassignment is still being carried out by the controller.
+     */
+    public boolean isReassignmentInProgress() throws Exception {
+        return kafkaZkClient.checkExists().forPath(getReassignPath()) != null;
+    }
+
+    /**
+     * Requests that the controller move each listed partition onto the provided replicas, where the
+     * first replica is the preferred leader. Only one reassignment may be in progress at a time.
+     */
+    public void reassignPartitions(Map<String, Map<Integer, List<Integer>>> assignments) throws Exception {
+        JSONArray partitions = new JSONArray();
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : assignments.entrySet()) {
+            for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+                partitions.put(new JSONObject()
+                        .put("topic", topic.getKey())
+                        .put("partition", partition.getKey())
+                        .put("replicas", new JSONArray(partition.getValue())));
+            }
+        }
+
+        log.info("Reassigning " + partitions.length() + " partitions: " + partitions);
+        kafkaZkClient.create().creatingParentsIfNeeded().forPath(
+                getReassignPath(),
+                new JSONObject().put("version", 1).put("partitions", partitions).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns whether a preferred replica election is still being carried out by the controller.
+     */
+    public boolean isPreferredReplicaElectionInProgress() throws Exception {
+        return kafkaZkClient.checkExists().forPath(getPreferredReplicaElectionPath()) != null;
+    }
+
+    /**
+     * Requests that the controller move leadership of each listed partition to its preferred
+     * replica. Only one election may be in progress at a time.
+     */
+    public void electPreferredLeaders(Map<String, ? extends Collection<Integer>> partitionsByTopic) throws Exception {
+        JSONArray partitions = new JSONArray();
+        for (Map.Entry<String, ? extends Collection<Integer>> topic : partitionsByTopic.entrySet()) {
+            for (Integer partition : topic.getValue()) {
+                partitions.put(new JSONObject()
+                        .put("topic", topic.getKey())
+                        .put("partition", partition));
+            }
+        }
+
+        log.info("Electing preferred leaders of " + partitions.length() + " partitions: " + partitions);
+        kafkaZkClient.create().creatingParentsIfNeeded().forPath(
+                getPreferredReplicaElectionPath(),
+                new JSONObject().put("version", 1).put("partitions", partitions).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replaces the replication throttle requested by the provided owner, such as a rebalance, then
+     * applies the throttles of every owner, merged with {@link ReplicationThrottle#merge}. Kafka
+     * only has one set of throttled replicas per topic and one rate per broker, so all throttles
+     * must be set through here for owners not to undo each other's.
+     *
+     * Requests are kept in Zookeeper along with the last throttle applied, so that they survive
+     * restarts of the scheduler, and so that throttles are lifted once no owner needs them.
+     */
+    public synchronized void setThrottle(String owner, ReplicationThrottle throttle) throws Exception {
+        if (throttle.isEmpty()) {
+            removeThrottle(owner);
+            return;
+        }
+
+        loadThrottles();
+        if (!throttle.equals(throttleRequests.get(owner))) {
+            writeJSON(getThrottleRequestPath(owner), throttle.toJSON());
+            throttleRequests.put(owner, throttle);
+        }
+        applyThrottles();
+    }
+
+    /**
+     * Removes the replication throttle requested by the provided owner, lifting the throttles which
+     * no other owner needs.
+     */
+    public synchronized void removeThrottle(String owner) throws Exception {
+        loadThrottles();
+        boolean requested = throttleRequests.remove(owner) != null;
+        applyThrottles();
+        if (requested) {
+            deletePath(getThrottleRequestPath(owner));
+        }
+    }
+
+    /**
+     * Returns the replication throttle requested by the provided owner, including before the
+     * scheduler restarted.
+     */
+    public synchronized Optional<ReplicationThrottle> getThrottle(String owner) throws Exception {
+        loadThrottles();
+        return Optional.ofNullable(throttleRequests.get(owner));
+    }
+
+    private void loadThrottles() throws Exception {
+        if (throttleRequests != null) {
+            return;
+        }
+
+        Map<String, ReplicationThrottle> requests = new TreeMap<>();
+        for (String owner : getChildren(getThrottlePath() + "/requests")) {
+            Optional<JSONObject> request = readJSON(getThrottleRequestPath(owner));
+            if (request.isPresent()) {
+                requests.put(owner, ReplicationThrottle.fromJSON(request.get()));
+            }
+        }
+        appliedThrottle = readJSON(getThrottlePath() + "/applied")
+                .map(ReplicationThrottle::fromJSON)
+                .orElse(new ReplicationThrottle(0));
+        throttleRequests = requests;
+        log.info("Loaded replication throttle requests: " + throttleRequests + ", applied: " + appliedThrottle);
+    }
+
+    /**
+     * Writes the changes between the last applied throttle and the merged requests to the topic and
+     * broker configs.
+     */
+    private void applyThrottles() throws Exception {
+        ReplicationThrottle merged = new ReplicationThrottle(0);
+        for (ReplicationThrottle request : throttleRequests.values()) {
+            merged = merged.merge(request);
+        }
+        if (merged.equals(appliedThrottle)) {
+            return;
+        }
+
+        for (String topic : merged.getTopics()) {
+            String leaderReplicas = merged.getLeaderReplicas(topic);
+            String followerReplicas = merged.getFollowerReplicas(topic);
+            if (!leaderReplicas.equals(appliedThrottle.getLeaderReplicas(topic))
+                    || !followerReplicas.equals(appliedThrottle.getFollowerReplicas(topic))) {
+                changeConfig("topics", topic, new JSONObject()
+                        .put(LEADER_THROTTLED_REPLICAS, leaderReplicas)
+                        .put(FOLLOWER_THROTTLED_REPLICAS, followerReplicas),
+                        Collections.emptyList());
+            }
+        }
+        for (String topic : appliedThrottle.getTopics()) {
+            if (!merged.getTopics().contains(topic)) {
+                changeConfig("topics", topic, new JSONObject(),
+                        Arrays.asList(LEADER_THROTTLED_REPLICAS, FOLLOWER_THROTTLED_REPLICAS));
+            }
+        }
+
+        for (Map.Entry<Integer, Long> broker : merged.getBrokerRates().entrySet()) {
+            if (!broker.getValue().equals(appliedThrottle.getBrokerRates().get(broker.getKey()))) {
+                String rate = String.valueOf(broker.getValue());
+                changeConfig("brokers", String.valueOf(broker.getKey()), new JSONObject()
+                        .put(LEADER_THROTTLED_RATE, rate)
+                        .put(FOLLOWER_THROTTLED_RATE, rate),
+                        Collections.emptyList());
+            }
+        }
+        for (Integer brokerId : appliedThrottle.getBrokerRates().keySet()) {
+            if (!merged.getBrokerRates().containsKey(brokerId)) {
+                changeConfig("brokers", String.valueOf(brokerId), new JSONObject(),
+                        Arrays.asList(LEADER_THROTTLED_RATE, FOLLOWER_THROTTLED_RATE));
+            }
+        }
+
+        writeJSON(getThrottlePath() + "/applied", merged.toJSON());
+        appliedThrottle = merged;
+    }
+
+    /**
+     * Updates the dynamic config of an entity ("topics", "brokers", "clients" or "users"), then
+     * notifies the brokers of the change. The config is only replaced if nobody else changed it in
+     * the meantime, and is read again otherwise.
+     */
+    public void changeConfig(
+            String entityType,
+            String entityName,
+            JSONObject updates,
+            Collection<String> removals) throws Exception {
+        String path = getConfigPath(entityType, entityName);
+
+        JSONObject config = null;
+        for (int attempt = 1; config == null; attempt++) {
+            Stat stat = new Stat();
+            try {
+                config = new JSONObject(new String(
+                        kafkaZkClient.getData().storingStatIn(stat).forPath(path),
+                        StandardCharsets.UTF_8))
+                        .getJSONObject("config");
+            } catch (NoNodeException e) {
+                config = new JSONObject();
+                stat = null;
+            }
+
+            for (String key : updates.keySet()) {
+                config.put(key, updates.get(key));
+            }
+            for (String key : removals) {
+                config.remove(key);
+            }
+
+            byte[] data = new JSONObject().put("version", 1).put("config", config).toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                if (stat == null) {
+                    kafkaZkClient.create().creatingParentsIfNeeded().forPath(path, data);
+                } else {
+                    kafkaZkClient.setData().withVersion(stat.getVersion()).forPath(path, data);
+                }
+            } catch (BadVersionException | NodeExistsException | NoNodeException e) {
+                if (attempt >= CONFIG_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("Config for " + entityType + "/" + entityName + " changed concurrently, retrying");
+                config = null;
+            }
+        }
+
+        kafkaZkClient.create()
+                .creatingParentsIfNeeded()
+                .withMode(CreateMode.PERSISTENT_SEQUENTIAL)
+                .forPath(
+                        zkConfig.getZkRootPath() + "/config/changes/config_change_",
+                        new JSONObject()
+                                .put("version", 2)
+                                .put("entity_path", entityType + "/" + entityName)
+                                .toString().getBytes(StandardCharsets.UTF_8));
+        log.info("Updated " + entityType + " config for " + entityName + ": " + config);
+    }
+
+    /**
+     * Returns the dynamic config of an entity, or an empty object if it has none. Nested entities
+     * such as a user's clients are named by their path, e.g. "alice/clients/app".
+     */
+    public JSONObject getConfig(String entityType, String entityName) throws Exception {
+        try {
+            return new JSONObject(new String(
+                    kafkaZkClient.getData().forPath(getConfigPath(entityType, entityName)),
+                    StandardCharsets.UTF_8))
+                    .getJSONObject("config");
+        } catch (NoNodeException e) {
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Returns the names of the entities under the provided path which have a dynamic config node,
+     * e.g. "clients" or "users/alice/clients".
+     */
+    public List<String> getConfigEntities(String entityPath) throws Exception {
+        return getChildren(zkConfig.getZkRootPath() + "/config/" + entityPath);
+    }
+
+    /**
+     * Returns the dynamic config entries of an entity which the scheduler itself wrote, along with
+     * the values it wrote, or an empty object if it wrote none. Kafka doesn't record who set an
+     * entry, so these are kept alongside the entity's config to tell them apart from entries set by
+     * users.
+     */
+    public JSONObject getManagedConfig(String entityType, String entityName) throws Exception {
+        return readJSON(getManagedConfigPath(entityType, entityName)).orElse(new JSONObject());
+    }
+
+    /**
+     * Replaces the record of the dynamic config entries of an entity which the scheduler wrote.
+     * The record is removed if there are none.
+     */
+    public void setManagedConfig(String entityType, String entityName, JSONObject managed) throws Exception {
+        if (managed.length() == 0) {
+            deletePath(getManagedConfigPath(entityType, entityName));
+        } else {
+            writeJSON(getManagedConfigPath(entityType, entityName), managed);
+        }
+    }
+
+    /**
+     * Returns the names of the entities of the provided type which the scheduler wrote dynamic
+     * config entries for.
+     */
+    public List<String> getManagedConfigEntities(String entityType) throws Exception {
+        return getChildren(getManagedConfigPath(entityType));
+    }
+
+    /**
+     * Returns the topic defaults which the scheduler changed at runtime, along with their current
+     * values, or an empty object if it changed none. Brokers only read new defaults when they
+     * restart, so these are written to the config of topics created in the meantime.
+     */
+    public JSONObject getManagedTopicDefaults() throws Exception {
+        return readJSON(getManagedTopicDefaultsPath()).orElse(new JSONObject());
+    }
+
+    /**
+     * Replaces the record of the topic defaults which the scheduler changed at runtime. The record
+     * is removed if there are none.
+     */
+    public void setManagedTopicDefaults(JSONObject defaults) throws Exception {
+        if (defaults.length() == 0) {
+            deletePath(getManagedTopicDefaultsPath());
+        } else {
+            writeJSON(getManagedTopicDefaultsPath(), defaults);
+        }
+    }
+
+    /**
+     * Returns the replaced brokers which were still catching up when last recorded, along with the
+     * time each was launched in milliseconds since the epoch.
+     */
+    public Map<Integer, Long> getReplacements() throws Exception {
+        Map<Integer, Long> replacements = new TreeMap<>();
+        Optional<JSONObject> json = readJSON(getReplacementsPath());
+        if (json.isPresent()) {
+            for (String brokerId : json.get().keySet()) {
+                replacements.put(Integer.valueOf(brokerId), json.get().getLong(brokerId));
+            }
+        }
+        return replacements;
+    }
+
+    /**
+     * Replaces the record of the replaced brokers which are still catching up, so that they're
+     * tracked across restarts of the scheduler whether or not they've registered yet. The record is
+     * removed if there are none.
+     */
+    public void setReplacements(Map<Integer, Long> replacements) throws Exception {
+        if (replacements.isEmpty()) {
+            deletePath(getReplacementsPath());
+            return;
+        }
+        JSONObject json = new JSONObject();
+        for (Map.Entry<Integer, Long> replacement : replacements.entrySet()) {
+            json.put(String.valueOf(replacement.getKey()), replacement.getValue());
+        }
+        writeJSON(getReplacementsPath(), json);
+    }
+
+    /**
+     * Returns when a storage migration to the provided config launched the broker onto a new
+     * volume, in milliseconds since the epoch, if it's still recorded.
+     */
+    public Optional<Long> getStorageMigration(int brokerId, String configName) throws Exception {
+        Optional<JSONObject> json = readJSON(getStorageMigrationPath(brokerId));
+        if (json.isPresent() && configName.equals(json.get().optString("config_name", null))) {
+            return Optional.of(json.get().getLong("launched"));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Records that a storage migration to the provided config launched the broker onto a new
+     * volume, so that the migration waits for the broker to catch up across restarts of the
+     * scheduler.
+     */
+    public void setStorageMigration(int brokerId, String configName, long launchedMs) throws Exception {
+        writeJSON(getStorageMigrationPath(brokerId), new JSONObject()
+                .put("config_name", configName)
+                .put("launched", launchedMs));
+    }
+
+    public void deleteStorageMigration(int brokerId) throws Exception {
+        deletePath(getStorageMigrationPath(brokerId));
+    }
+
+    private Optional<JSONObject> readJSON(String path) throws Exception {
+        try {
+            return Optional.of(new JSONObject(new String(kafkaZkClient.getData().forPath(path), StandardCharsets.UTF_8)));
+        } catch (NoNodeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void writeJSON(String path, JSONObject json) throws Exception {
+        byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+        if (kafkaZkClient.checkExists().forPath(path) == null) {
+            kafkaZkClient.create().creatingParentsIfNeeded().forPath(path, data);
+        } else {
+            kafkaZkClient.setData().forPath(path, data);
+        }
+    }
+
+    private void deletePath(String path) throws Exception {
+        try {
+            kafkaZkClient.delete().forPath(path);
+        } catch (NoNodeException e) {
+            // Already gone.
+        }
+    }
+
+    private List<String> getChildren(String path) throws Exception {
+        try {
+            return kafkaZkClient.getChildren().forPath(path);
+        } catch (NoNodeException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private String getConfigPath(String entityType, String entityName) {
+        return zkConfig.getZkRootPath() + "/config/" + entityType + "/" + entityName;
+    }
+
+    private String getManagedConfigPath(String entityType) {
+        return zkConfig.getZkRootPath() + "/scheduler/managed_configs/" + entityType;
+    }
+
+    private String getManagedConfigPath(String entityType, String entityName) {
+        return getManagedConfigPath(entityType) + "/" + entityName;
+    }
+
+    private String getManagedTopicDefaultsPath() {
+        return zkConfig.getZkRootPath() + "/scheduler/managed_topic_defaults";
+    }
+
+    private String getThrottlePath() {
+        return zkConfig.getZkRootPath() + "/scheduler/throttles";
+    }
+
+    private String getThrottleRequestPath(String owner) {
+        return getThrottlePath() + "/requests/" + owner;
+    }
+
+    private String getReplacementsPath() {
+        return zkConfig.getZkRootPath() + "/scheduler/replacements";
+    }
+
+    private String getStorageMigrationPath(int brokerId) {
+        return zkConfig.getZkRootPath() + "/scheduler/storage_migrations/" + brokerId;
+    }
+
+    private String getReassignPath() {
+        return zkConfig.getZkRootPath() + "/admin/reassign_partitions";
+    }
+
+    private String getPreferredReplicaElectionPath() {
+        return zkConfig.getZkRootPath() + "/admin/preferred_replica_election";
+    }
+}
@@ -0,0 +1,169 @@
+package com.mesosphere.dcos.kafka.state;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * A set of replicas whose replication traffic is limited with Kafka's replication quotas, along
+ * with the rate each broker involved is limited to. Leader replicas are the ones being fetched
+ * from, and follower replicas the ones fetching.
+ *
+ * Throttles requested separately are merged with {@link #merge}, as Kafka only has one set of
+ * throttled replicas per topic and one rate per broker.
+ */
+public class ReplicationThrottle {
+    private final SortedMap<String, SortedSet<String>> leaderReplicas = new TreeMap<>();
+    private final SortedMap<String, SortedSet<String>> followerReplicas = new TreeMap<>();
+    private final SortedMap<Integer, Long> brokerRates = new TreeMap<>();
+    private final long bytesPerSec;
+
+    /**
+     * @param bytesPerSec the rate which brokers of replicas added from now on are limited to
+     */
+    public ReplicationThrottle(long bytesPerSec) {
+        this.bytesPerSec = bytesPerSec;
+    }
+
+    public ReplicationThrottle addLeader(String topic, int partition, int brokerId) {
+        add(leaderReplicas, topic, partition, brokerId);
+        return this;
+    }
+
+    public ReplicationThrottle addFollower(String topic, int partition, int brokerId) {
+        add(followerReplicas, topic, partition, brokerId);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return brokerRates.isEmpty();
+    }
+
+    /**
+     * Returns the topics with throttled replicas.
+     */
+    public SortedSet<String> getTopics() {
+        SortedSet<String> topics = new TreeSet<>(leaderReplicas.keySet());
+        topics.addAll(followerReplicas.keySet());
+        return topics;
+    }
+
+    /**
+     * Returns a topic's throttled leader replicas, in the "partition:broker,..." format expected
+     * by Kafka.
+     */
+    public String getLeaderReplicas(String topic) {
+        return String.join(",", leaderReplicas.getOrDefault(topic, Collections.emptySortedSet()));
+    }
+
+    /**
+     * Returns a topic's throttled follower replicas, in the "partition:broker,..." format expected
+     * by Kafka.
+     */
+    public String getFollowerReplicas(String topic) {
+        return String.join(",", followerReplicas.getOrDefault(topic, Collections.emptySortedSet()));
+    }
+
+    /**
+     * Returns the brokers which host a follower replica.
+     */
+    public SortedSet<Integer> getFollowerBrokers() {
+        SortedSet<Integer> brokers = new TreeSet<>();
+        for (SortedSet<String> replicas : followerReplicas.values()) {
+            for (String replica : replicas) {
+                brokers.add(Integer.valueOf(replica.substring(replica.indexOf(':') + 1)));
+            }
+        }
+        return brokers;
+    }
+
+    /**
+     * Returns the rate each broker hosting a throttled replica is limited to.
+     */
+    public SortedMap<Integer, Long> getBrokerRates() {
+        return Collections.unmodifiableSortedMap(brokerRates);
+    }
+
+    /**
+     * Returns the union of both throttles. Brokers which are in both are limited to the lower rate.
+     */
+    public ReplicationThrottle merge(ReplicationThrottle other) {
+        ReplicationThrottle merged = new ReplicationThrottle(bytesPerSec);
+        for (ReplicationThrottle throttle : Arrays.asList(this, other)) {
+            throttle.leaderReplicas.forEach((topic, replicas) ->
+                    merged.leaderReplicas.computeIfAbsent(topic, t -> new TreeSet<>()).addAll(replicas));
+            throttle.followerReplicas.forEach((topic, replicas) ->
+                    merged.followerReplicas.computeIfAbsent(topic, t -> new TreeSet<>()).addAll(replicas));
+            throttle.brokerRates.forEach((brokerId, rate) -> merged.brokerRates.merge(brokerId, rate, Math::min));
+        }
+        return merged;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject topics = new JSONObject();
+        for (String topic : getTopics()) {
+            topics.put(topic, new JSONObject()
+                    .put("leader", new JSONArray(leaderReplicas.getOrDefault(topic, Collections.emptySortedSet())))
+                    .put("follower", new JSONArray(followerReplicas.getOrDefault(topic, Collections.emptySortedSet()))));
+        }
+        JSONObject brokers = new JSONObject();
+        brokerRates.forEach((brokerId, rate) -> brokers.put(String.valueOf(brokerId), rate));
+        return new JSONObject()
+                .put("bytes_per_sec", bytesPerSec)
+                .put("topics", topics)
+                .put("brokers", brokers);
+    }
+
+    public static ReplicationThrottle fromJSON(JSONObject json) {
+        ReplicationThrottle throttle = new ReplicationThrottle(json.getLong("bytes_per_sec"));
+        JSONObject topics = json.getJSONObject("topics");
+        for (String topic : topics.keySet()) {
+            throttle.leaderReplicas.put(topic, toSet(topics.getJSONObject(topic).getJSONArray("leader")));
+            throttle.followerReplicas.put(topic, toSet(topics.getJSONObject(topic).getJSONArray("follower")));
+        }
+        JSONObject brokers = json.getJSONObject("brokers");
+        for (String brokerId : brokers.keySet()) {
+            throttle.brokerRates.put(Integer.valueOf(brokerId), brokers.getLong(brokerId));
+        }
+        return throttle;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ReplicationThrottle that = (ReplicationThrottle) o;
+        return bytesPerSec == that.bytesPerSec
+                && leaderReplicas.equals(that.leaderReplicas)
+                && followerReplicas.equals(that.followerReplicas)
+                && brokerRates.equals(that.brokerRates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(leaderReplicas, followerReplicas, brokerRates, bytesPerSec);
+    }
+
+    @Override
+    public String toString() {
+        return toJSON().toString();
+    }
+
+    private void add(Map<String, SortedSet<String>> replicas, String topic, int partition, int brokerId) {
+        replicas.computeIfAbsent(topic, t -> new TreeSet<>()).add(partition + ":" + brokerId);
+        brokerRates.merge(brokerId, bytesPerSec, Math::min);
+    }
+
+    private static SortedSet<String> toSet(JSONArray array) {
+        SortedSet<String> set = new TreeSet<>();
+        for (int i = 0; i < array.length(); i++) {
+            set.add(array.getString(i));
+        }
+        return set;
+    }
+}
@@ -1,6 +1,7 @@
 package com.mesosphere.dcos.kafka.web;
 
 import com.codahale.metrics.health.HealthCheck;
+import com.mesosphere.dcos.kafka.plan.KafkaScaleOutPhase;
 import com.mesosphere.dcos.kafka.plan.KafkaUpdatePhase;
 import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
 import org.apache.commons.logging.Log;
@@ -33,7 +34,7 @@ public class BrokerCheck extends HealthCheck {
       }
 
       int runningBrokerCount = kafkaScheduler.getFrameworkState().getRunningBrokersCount();
-      int completedBrokerStepCount = getCompleteBrokerStepCount(updatePhase);
+      int completedBrokerStepCount = getCompleteBrokerStepCount(updatePhase) + getCompleteScaleOutStepCount();
 
       if (runningBrokerCount < completedBrokerStepCount) {
         errMsg = "Health check failed because running Broker count is less than completed Broker Steps: running = " + runningBrokerCount + " completed blocks = " + completedBrokerStepCount;
@@ -61,6 +62,22 @@ public class BrokerCheck extends HealthCheck {
     return null;
   }
 
+  /**
+   * Brokers added to a running cluster are launched by the scale out phase rather than the update
+   * phase, so their completed steps count towards the expected brokers too.
+   */
+  private int getCompleteScaleOutStepCount() {
+    int completeCount = 0;
+
+    for (Phase phase : kafkaScheduler.getPlanManager().getPlan().getChildren()) {
+      if (phase instanceof KafkaScaleOutPhase) {
+        completeCount += getCompleteBrokerStepCount(phase);
+      }
+    }
+
+    return completeCount;
+  }
+
   private int getCompleteBrokerStepCount(Phase phase) {
     int completeCount = 0;
 
@@ -0,0 +1,63 @@
+package com.mesosphere.dcos.kafka.web;
+
+import com.mesosphere.dcos.kafka.metrics.LoadModel;
+import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path("/v1/load")
+@Produces("application/json")
+public class LoadController {
+  private static final Log log = LogFactory.getLog(LoadController.class);
+  private static final int DEFAULT_HOT_PARTITIONS = 10;
+
+  private final KafkaScheduler kafkaScheduler;
+
+  public LoadController(KafkaScheduler kafkaScheduler) {
+    this.kafkaScheduler = kafkaScheduler;
+  }
+
+  /**
+   * Returns the most recently collected load of every broker and partition.
+   */
+  @GET
+  public Response load() {
+    try {
+      return Response.ok(kafkaScheduler.getLoadModel().toJSON().toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to fetch load", ex);
+      return Response.serverError().build();
+    }
+  }
+
+  /**
+   * Returns the partitions with the highest byte rates, busiest first.
+   */
+  @GET
+  @Path("/hot")
+  public Response hotPartitions(@QueryParam("limit") Integer limit) {
+    if (limit != null && limit < 0) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity(new JSONObject().put("Error", "Limit must not be negative: " + limit).toString())
+          .type(MediaType.APPLICATION_JSON)
+          .build();
+    }
+    try {
+      JSONArray partitions = new JSONArray();
+      for (LoadModel.PartitionLoad partition :
+          kafkaScheduler.getLoadModel().getHottestPartitions(limit == null ? DEFAULT_HOT_PARTITIONS : limit)) {
+        partitions.put(partition.toJSON());
+      }
+      return Response.ok(partitions.toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to fetch hot partitions", ex);
+      return Response.serverError().build();
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.mesosphere.dcos.kafka.web;
+
+import com.mesosphere.dcos.kafka.metrics.LoadModel;
+import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Manages Kafka's producer and consumer byte-rate quotas, which may be set per client id, per user,
+ * or per client id of a user. The "&lt;default&gt;" entity name sets the default for all clients or
+ * users without a quota of their own. Quotas apply to each broker separately.
+ */
+@Path("/v1/quotas")
+@Produces("application/json")
+public class QuotaController {
+  private static final Log log = LogFactory.getLog(QuotaController.class);
+  private static final List<String> QUOTA_KEYS =
+      Arrays.asList(KafkaAdmin.PRODUCER_BYTE_RATE, KafkaAdmin.CONSUMER_BYTE_RATE);
+
+  private final KafkaScheduler kafkaScheduler;
+
+  public QuotaController(KafkaScheduler kafkaScheduler) {
+    this.kafkaScheduler = kafkaScheduler;
+  }
+
+  /**
+   * Returns every quota which has been set.
+   */
+  @GET
+  public Response quotas() {
+    try {
+      KafkaAdmin kafkaAdmin = kafkaScheduler.getKafkaAdmin();
+      JSONArray quotas = new JSONArray();
+      for (String clientId : kafkaAdmin.getConfigEntities("clients")) {
+        addQuota(quotas, null, clientId, kafkaAdmin.getConfig("clients", clientId));
+      }
+      for (String user : kafkaAdmin.getConfigEntities("users")) {
+        addQuota(quotas, user, null, kafkaAdmin.getConfig("users", user));
+        for (String clientId : kafkaAdmin.getConfigEntities("users/" + user + "/clients")) {
+          addQuota(quotas, user, clientId, kafkaAdmin.getConfig("users", user + "/clients/" + clientId));
+        }
+      }
+      return Response.ok(quotas.toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to fetch quotas", ex);
+      return Response.serverError().build();
+    }
+  }
+
+  /**
+   * Returns the observed throughput of each client id, along with the client quota which applies
+   * to it. Utilization is the client's highest rate on any broker relative to its quota.
+   */
+  @GET
+  @Path("/throughput")
+  public Response throughput() {
+    try {
+      KafkaAdmin kafkaAdmin = kafkaScheduler.getKafkaAdmin();
+      JSONObject defaultQuota = getQuota(kafkaAdmin.getConfig("clients", KafkaAdmin.DEFAULT_ENTITY));
+
+      JSONArray clients = new JSONArray();
+      for (LoadModel.ClientLoad load : kafkaScheduler.getLoadModel().getClients().values()) {
+        JSONObject quota = getQuota(kafkaAdmin.getConfig("clients", load.getClientId()));
+        JSONObject client = load.toJSON();
+        addUtilization(client, quota, defaultQuota, KafkaAdmin.PRODUCER_BYTE_RATE,
+            load.getMaxBrokerProduceBytesPerSec(), "produce_quota_utilization");
+        addUtilization(client, quota, defaultQuota, KafkaAdmin.CONSUMER_BYTE_RATE,
+            load.getMaxBrokerFetchBytesPerSec(), "fetch_quota_utilization");
+        clients.put(client);
+      }
+
+      return Response.ok(new JSONObject()
+          .put("timestamp", kafkaScheduler.getLoadModel().getTimestamp())
+          .put("clients", clients)
+          .toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to fetch client throughput", ex);
+      return Response.serverError().build();
+    }
+  }
+
+  @GET
+  @Path("/clients/{clientId}")
+  public Response getClientQuota(@PathParam("clientId") String clientId) {
+    return getQuota("clients", clientId);
+  }
+
+  @PUT
+  @Path("/clients/{clientId}")
+  public Response setClientQuota(
+      @PathParam("clientId") String clientId,
+      @QueryParam("producer_byte_rate") Long producerByteRate,
+      @QueryParam("consumer_byte_rate") Long consumerByteRate) {
+    return setQuota("clients", clientId, producerByteRate, consumerByteRate);
+  }
+
+  @DELETE
+  @Path("/clients/{clientId}")
+  public Response deleteClientQuota(@PathParam("clientId") String clientId) {
+    return deleteQuota("clients", clientId);
+  }
+
+  @GET
+  @Path("/users/{user}")
+  public Response getUserQuota(@PathParam("user") String user) {
+    return getQuota("users", user);
+  }
+
+  @PUT
+  @Path("/users/{user}")
+  public Response setUserQuota(
+      @PathParam("user") String user,
+      @QueryParam("producer_byte_rate") Long producerByteRate,
+      @QueryParam("consumer_byte_rate") Long consumerByteRate) {
+    return setQuota("users", user, producerByteRate, consumerByteRate);
+  }
+
+  @DELETE
+  @Path("/users/{user}")
+  public Response deleteUserQuota(@PathParam("user") String user) {
+    return deleteQuota("users", user);
+  }
+
+  @GET
+  @Path("/users/{user}/clients/{clientId}")
+  public Response getUserClientQuota(@PathParam("user") String user, @PathParam("clientId") String clientId) {
+    if (!isValidName(user)) {
+      return badRequest("Invalid user: " + user);
+    }
+    return getQuota("users", user + "/clients/" + clientId, clientId);
+  }
+
+  @PUT
+  @Path("/users/{user}/clients/{clientId}")
+  public Response setUserClientQuota(
+      @PathParam("user") String user,
+      @PathParam("clientId") String clientId,
+      @QueryParam("producer_byte_rate") Long producerByteRate,
+      @QueryParam("consumer_byte_rate") Long consumerByteRate) {
+    if (!isValidName(user)) {
+      return badRequest("Invalid user: " + user);
+    }
+    return setQuota("users", user + "/clients/" + clientId, clientId, producerByteRate, consumerByteRate);
+  }
+
+  @DELETE
+  @Path("/users/{user}/clients/{clientId}")
+  public Response deleteUserClientQuota(@PathParam("user") String user, @PathParam("clientId") String clientId) {
+    if (!isValidName(user)) {
+      return badRequest("Invalid user: " + user);
+    }
+    return deleteQuota("users", user + "/clients/" + clientId, clientId);
+  }
+
+  private Response getQuota(String entityType, String entityName) {
+    return getQuota(entityType, entityName, entityName);
+  }
+
+  private Response getQuota(String entityType, String entityPath, String entityName) {
+    if (!isValidName(entityName)) {
+      return badRequest("Invalid name: " + entityName);
+    }
+    try {
+      JSONObject quota = getQuota(kafkaScheduler.getKafkaAdmin().getConfig(entityType, entityPath));
+      return Response.ok(quota.toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to fetch quota of " + entityType + "/" + entityPath, ex);
+      return Response.serverError().build();
+    }
+  }
+
+  private Response setQuota(String entityType, String entityName, Long producerByteRate, Long consumerByteRate) {
+    return setQuota(entityType, entityName, entityName, producerByteRate, consumerByteRate);
+  }
+
+  private Response setQuota(
+      String entityType,
+      String entityPath,
+      String entityName,
+      Long producerByteRate,
+      Long consumerByteRate) {
+    if (!isValidName(entityName)) {
+      return badRequest("Invalid name: " + entityName);
+    }
+    if (producerByteRate == null && consumerByteRate == null) {
+      return badRequest("Must designate 'producer_byte_rate' and/or 'consumer_byte_rate'.");
+    }
+    if ((producerByteRate != null && producerByteRate <= 0) || (consumerByteRate != null && consumerByteRate <= 0)) {
+      return badRequest("Byte rates must be positive.");
+    }
+
+    try {
+      JSONObject updates = new JSONObject();
+      if (producerByteRate != null) {
+        updates.put(KafkaAdmin.PRODUCER_BYTE_RATE, String.valueOf(producerByteRate));
+      }
+      if (consumerByteRate != null) {
+        updates.put(KafkaAdmin.CONSUMER_BYTE_RATE, String.valueOf(consumerByteRate));
+      }
+
+      KafkaAdmin kafkaAdmin = kafkaScheduler.getKafkaAdmin();
+      kafkaAdmin.changeConfig(entityType, entityPath, updates, Collections.emptyList());
+      JSONObject quota = getQuota(kafkaAdmin.getConfig(entityType, entityPath));
+      return Response.ok(quota.toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to set quota of " + entityType + "/" + entityPath, ex);
+      return Response.serverError().build();
+    }
+  }
+
+  private Response deleteQuota(String entityType, String entityName) {
+    return deleteQuota(entityType, entityName, entityName);
+  }
+
+  private Response deleteQuota(String entityType, String entityPath, String entityName) {
+    if (!isValidName(entityName)) {
+      return badRequest("Invalid name: " + entityName);
+    }
+    try {
+      kafkaScheduler.getKafkaAdmin().changeConfig(entityType, entityPath, new JSONObject(), QUOTA_KEYS);
+      return Response.ok(new JSONObject().put("Result", "Deleted quota of " + entityType + "/" + entityPath).toString(),
+          MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to delete quota of " + entityType + "/" + entityPath, ex);
+      return Response.serverError().build();
+    }
+  }
+
+  private static void addQuota(JSONArray quotas, String user, String clientId, JSONObject config) {
+    JSONObject quota = getQuota(config);
+    if (quota.length() == 0) {
+      return;
+    }
+    if (user != null) {
+      quota.put("user", user);
+    }
+    if (clientId != null) {
+      quota.put("client_id", clientId);
+    }
+    quotas.put(quota);
+  }
+
+  private static void addUtilization(
+      JSONObject client,
+      JSONObject quota,
+      JSONObject defaultQuota,
+      String key,
+      double maxBrokerBytesPerSec,
+      String utilizationKey) {
+    String limit = quota.has(key) ? quota.getString(key) : defaultQuota.optString(key, null);
+    if (limit == null) {
+      return;
+    }
+    client.put(key, Long.parseLong(limit));
+    client.put(utilizationKey, maxBrokerBytesPerSec / Long.parseLong(limit));
+  }
+
+  /**
+   * Returns only the quota settings of an entity's dynamic config.
+   */
+  private static JSONObject getQuota(JSONObject config) {
+    JSONObject quota = new JSONObject();
+    for (String key : QUOTA_KEYS) {
+      if (config.has(key)) {
+        quota.put(key, String.valueOf(config.get(key)));
+      }
+    }
+    return quota;
+  }
+
+  /**
+   * Names are used as znode names, so they can't be a relative path.
+   */
+  private static boolean isValidName(String name) {
+    return name != null && !name.isEmpty() && !name.equals(".") && !name.equals("..") && !name.contains("/");
+  }
+
+  private static Response badRequest(String error) {
+    return Response.status(Response.Status.BAD_REQUEST)
+        .entity(new JSONObject().put("Error", error).toString())
+        .type(MediaType.APPLICATION_JSON)
+        .build();
+  }
+}
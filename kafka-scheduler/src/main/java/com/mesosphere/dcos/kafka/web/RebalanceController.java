@@ -0,0 +1,81 @@
+package com.mesosphere.dcos.kafka.web;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.plan.KafkaRebalanceStep;
+import com.mesosphere.dcos.kafka.rebalance.PartitionAssigner;
+import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.scheduler.plan.Phase;
+import org.apache.mesos.scheduler.plan.Step;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Path("/v1/rebalance")
+@Produces("application/json")
+public class RebalanceController {
+  private static final Log log = LogFactory.getLog(RebalanceController.class);
+
+  private final KafkaScheduler kafkaScheduler;
+
+  public RebalanceController(KafkaScheduler kafkaScheduler) {
+    this.kafkaScheduler = kafkaScheduler;
+  }
+
+  /**
+   * Returns the partition moves a rebalance would currently make, without applying them. Like the
+   * rebalance plan, this balances across all configured brokers and waits for all of them to have
+   * registered.
+   */
+  @GET
+  public Response proposal() {
+    try {
+      KafkaState kafkaState = kafkaScheduler.getKafkaState();
+      int brokerCount = kafkaScheduler.getBrokerCount();
+      Optional<String> waiting = KafkaRebalanceStep.getUnregisteredBrokerMessage(kafkaState, brokerCount);
+      if (waiting.isPresent()) {
+        return Response.ok(new JSONObject().put("Error", waiting.get()).toString(), MediaType.APPLICATION_JSON)
+            .build();
+      }
+
+      Map<String, Map<Integer, List<Integer>>> moves =
+          new PartitionAssigner(kafkaScheduler.getRebalanceConfiguration().getImbalanceTolerance())
+              .assign(kafkaState.getPartitionAssignments(),
+                  KafkaRebalanceStep.getBrokerIds(brokerCount),
+                  kafkaScheduler.getPartitionSizes());
+      return Response.ok(new JSONObject(moves).toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to compute rebalance proposal", ex);
+      return Response.serverError().build();
+    }
+  }
+
+  /**
+   * Recomputes the assignment and starts the rebalance plan, whether or not it was interrupted.
+   */
+  @POST
+  @Path("/start")
+  public Response start() {
+    try {
+      for (Phase phase : kafkaScheduler.getRebalancePlanManager().getPlan().getChildren()) {
+        for (Step step : phase.getChildren()) {
+          step.restart();
+        }
+        phase.getStrategy().proceed();
+      }
+      kafkaScheduler.reviveOffersIfNeeded();
+      return Response.ok(new JSONObject().put("Result", "Received cmd: start").toString(),
+          MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to start rebalance", ex);
+      return Response.serverError().build();
+    }
+  }
+}
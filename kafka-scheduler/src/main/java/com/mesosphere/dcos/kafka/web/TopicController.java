@@ -10,13 +10,109 @@ import org.json.JSONObject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @Path("/v1/topics")
 public class TopicController {
   private static final Log log = LogFactory.getLog(TopicController.class);
 
+  /**
+   * The message format versions known to Kafka 0.10.1, which only looks at the first three
+   * components.
+   */
+  private static final Pattern MESSAGE_FORMAT_VERSION =
+      Pattern.compile("(0\\.8\\.[0-2]|0\\.9\\.0|0\\.10\\.0(-IV[01])?|0\\.10\\.1(-IV[0-2])?)(\\..*)?");
+
+  /**
+   * The topic-level configs supported by Kafka 0.10.1, with the values its LogConfig accepts for
+   * them. Configs are written straight to Zookeeper, bypassing the validation done by Kafka's tools,
+   * so unknown keys and invalid values are rejected here. The replication throttle configs are
+   * left out, as the scheduler manages those itself.
+   */
+  private static final Map<String, TopicConfig> TOPIC_CONFIGS = new HashMap<>();
+  static {
+    TOPIC_CONFIGS.put("cleanup.policy", TopicConfig.listOf("compact", "delete"));
+    TOPIC_CONFIGS.put("compression.type", TopicConfig.oneOf("uncompressed", "snappy", "lz4", "gzip", "producer"));
+    TOPIC_CONFIGS.put("delete.retention.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("file.delete.delay.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("flush.messages", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("flush.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("index.interval.bytes", TopicConfig.intAtLeast(0));
+    TOPIC_CONFIGS.put("max.message.bytes", TopicConfig.intAtLeast(0));
+    TOPIC_CONFIGS.put("message.format.version", new TopicConfig(
+        "a message format version from 0.8.0 to 0.10.1, e.g. 0.10.1",
+        value -> MESSAGE_FORMAT_VERSION.matcher(value.trim()).matches()));
+    TOPIC_CONFIGS.put("message.timestamp.difference.max.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("message.timestamp.type", TopicConfig.oneOf("CreateTime", "LogAppendTime"));
+    TOPIC_CONFIGS.put("min.cleanable.dirty.ratio", new TopicConfig(
+        "a number from 0 to 1",
+        value -> {
+          Double ratio = parse(value, Double::valueOf);
+          return ratio != null && ratio >= 0 && ratio <= 1;
+        }));
+    TOPIC_CONFIGS.put("min.compaction.lag.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("min.insync.replicas", TopicConfig.intAtLeast(1));
+    TOPIC_CONFIGS.put("preallocate", TopicConfig.BOOLEAN);
+    // -1 means unlimited.
+    TOPIC_CONFIGS.put("retention.bytes", TopicConfig.longAtLeast(Long.MIN_VALUE));
+    TOPIC_CONFIGS.put("retention.ms", TopicConfig.longAtLeast(Long.MIN_VALUE));
+    // Large enough for a message's overhead.
+    TOPIC_CONFIGS.put("segment.bytes", TopicConfig.intAtLeast(14));
+    TOPIC_CONFIGS.put("segment.index.bytes", TopicConfig.intAtLeast(0));
+    TOPIC_CONFIGS.put("segment.jitter.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("segment.ms", TopicConfig.longAtLeast(0));
+    TOPIC_CONFIGS.put("unclean.leader.election.enable", TopicConfig.BOOLEAN);
+  }
+
+  private static class TopicConfig {
+    private static final TopicConfig BOOLEAN = new TopicConfig(
+        "true or false",
+        value -> value.trim().equalsIgnoreCase("true") || value.trim().equalsIgnoreCase("false"));
+
+    private final String description;
+    private final Predicate<String> validator;
+
+    private TopicConfig(String description, Predicate<String> validator) {
+      this.description = description;
+      this.validator = validator;
+    }
+
+    private static TopicConfig intAtLeast(int min) {
+      return new TopicConfig("an integer of at least " + min, value -> {
+        Integer number = parse(value, Integer::valueOf);
+        return number != null && number >= min;
+      });
+    }
+
+    private static TopicConfig longAtLeast(long min) {
+      return new TopicConfig(min == Long.MIN_VALUE ? "an integer" : "an integer of at least " + min, value -> {
+        Long number = parse(value, Long::valueOf);
+        return number != null && number >= min;
+      });
+    }
+
+    private static TopicConfig oneOf(String... choices) {
+      List<String> validValues = Arrays.asList(choices);
+      return new TopicConfig("one of " + validValues, value -> validValues.contains(value.trim()));
+    }
+
+    private static TopicConfig listOf(String... choices) {
+      List<String> validValues = Arrays.asList(choices);
+      return new TopicConfig("a comma-separated list of " + validValues, value -> {
+        for (String item : value.split(",", -1)) {
+          if (!validValues.contains(item.trim())) {
+            return false;
+          }
+        }
+        return true;
+      });
+    }
+  }
+
   private final CmdExecutor cmdExecutor;
   private final KafkaScheduler kafkaScheduler;
 
@@ -46,6 +142,13 @@ public class TopicController {
       int partCount = Integer.parseInt(partitionCount);
       int replFactor = Integer.parseInt(replicationFactor);
       JSONObject result = cmdExecutor.createTopic(name, partCount, replFactor);
+      try {
+        // Topic defaults changed at runtime aren't known to the brokers until they restart.
+        kafkaScheduler.getDynamicConfigUpdater().applyTopicDefaults(name);
+      } catch (Exception ex) {
+        // They're applied again when the updater next runs.
+        log.warn("Failed to apply topic defaults to topic: " + name + " with exception: " + ex);
+      }
       return Response.ok(result.toString(), MediaType.APPLICATION_JSON).build();
     } catch (Exception ex) {
       log.error("Failed to create topic: " + name + " with exception: " + ex);
@@ -53,6 +156,64 @@ public class TopicController {
     }
   }
 
+  /**
+   * Applies a config or deleteConfig operation to every topic whose name matches the provided
+   * regular expression.
+   */
+  @PUT
+  public Response operationOnTopics(
+      @QueryParam("pattern") String pattern,
+      @QueryParam("operation") String operation,
+      @QueryParam("key") List<String> keys,
+      @QueryParam("value") List<String> values) {
+
+    try {
+      JSONObject result;
+      if (pattern == null) {
+        result = new JSONObject().put("Error", "Must designate a topic name 'pattern'.");
+      } else {
+        Pattern topicPattern = Pattern.compile(pattern);
+        JSONObject error = validateConfigOperation(operation, keys, values);
+        if (error != null) {
+          result = error;
+        } else {
+          JSONArray topics = kafkaScheduler.getKafkaState().getTopics();
+          JSONArray updated = new JSONArray();
+          for (int i = 0; i < topics.length(); i++) {
+            String topic = topics.getString(i);
+            if (!topicPattern.matcher(topic).matches()) {
+              continue;
+            }
+            try {
+              changeTopicConfig(topic, operation, keys, values);
+            } catch (Exception ex) {
+              // Topics which were already changed stay changed, so the caller needs to know which.
+              log.error("Failed to perform operation: " + operation + " on Topic: " + topic + " with exception: " + ex);
+              return Response.serverError()
+                  .entity(new JSONObject()
+                      .put("Error", "Failed to perform operation on topic: " + topic)
+                      .put("topics", updated)
+                      .toString())
+                  .type(MediaType.APPLICATION_JSON)
+                  .build();
+            }
+            updated.put(topic);
+          }
+          result = new JSONObject().put("topics", updated);
+        }
+      }
+
+      return Response.ok(result.toString(), MediaType.APPLICATION_JSON).build();
+
+    } catch (PatternSyntaxException ex) {
+      return Response.ok(new JSONObject().put("Error", "Invalid pattern: " + ex.getMessage()).toString(),
+          MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to perform operation: " + operation + " on Topics matching: " + pattern + " with exception: " + ex);
+      return Response.serverError().build();
+    }
+  }
+
   @GET
   @Path("/unavailable_partitions")
   public Response unavailablePartitions() {
@@ -94,8 +255,8 @@ public class TopicController {
   public Response operationOnTopic(
       @PathParam("name") String name,
       @QueryParam("operation") String operation,
-      @QueryParam("key") String key,
-      @QueryParam("value") String value,
+      @QueryParam("key") List<String> keys,
+      @QueryParam("value") List<String> values,
       @QueryParam("partitions") String partitions,
       @QueryParam("messages") String messages) {
 
@@ -116,6 +277,17 @@ public class TopicController {
             cmds = Arrays.asList("--partitions", partitions);
             result = cmdExecutor.alterTopic(name, cmds);
             break;
+          case "config":
+          case "deleteConfig":
+            result = validateConfigOperation(operation, keys, values);
+            if (result == null && !kafkaScheduler.getKafkaState().hasTopic(name)) {
+              // Kafka would otherwise keep the config for a topic created later under this name.
+              result = new JSONObject().put("Error", "Topic does not exist: " + name);
+            }
+            if (result == null) {
+              result = changeTopicConfig(name, operation, keys, values);
+            }
+            break;
           default:
             result = new JSONObject();
             result.put("Error", "Unrecognized operation: " + operation);
@@ -151,6 +323,18 @@ public class TopicController {
     }
   }
 
+  @GET
+  @Path("/{name}/config")
+  public Response getTopicConfig(@PathParam("name") String topicName) {
+    try {
+      JSONObject config = kafkaScheduler.getKafkaState().getTopicConfig(topicName);
+      return Response.ok(config.toString(), MediaType.APPLICATION_JSON).build();
+    } catch (Exception ex) {
+      log.error("Failed to fetch config of topic: " + topicName + " with exception: " + ex);
+      return Response.serverError().build();
+    }
+  }
+
   @GET
   @Path("/{name}/offsets")
   public Response getOffsets(@PathParam("name") String topicName, @QueryParam("time") Long time) {
@@ -162,4 +346,63 @@ public class TopicController {
       return Response.serverError().build();
     }
   }
+
+  /**
+   * Returns an error if the operation isn't a valid config or deleteConfig operation, or null.
+   */
+  private static JSONObject validateConfigOperation(String operation, List<String> keys, List<String> values) {
+    if (!"config".equals(operation) && !"deleteConfig".equals(operation)) {
+      return new JSONObject().put("Error", "Unrecognized operation: " + operation + ". Possible operations are [config, deleteConfig].");
+    }
+    if (keys == null || keys.isEmpty()) {
+      return new JSONObject().put("Error", "Must designate at least one config 'key'.");
+    }
+    for (String key : keys) {
+      if (!TOPIC_CONFIGS.containsKey(key)) {
+        return new JSONObject().put("Error", "Unrecognized topic config: " + key);
+      }
+    }
+    if (operation.equals("config")) {
+      if (values == null || values.size() != keys.size()) {
+        return new JSONObject().put("Error", "Must designate one 'value' for each config 'key'.");
+      }
+      for (int i = 0; i < keys.size(); i++) {
+        TopicConfig config = TOPIC_CONFIGS.get(keys.get(i));
+        if (values.get(i) == null || !config.validator.test(values.get(i))) {
+          return new JSONObject().put("Error",
+              "Invalid value for topic config " + keys.get(i) + ": '" + values.get(i) + "', must be " + config.description);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Parses the value as Kafka does, or returns null if it isn't valid.
+   */
+  private static <T> T parse(String value, Function<String, T> parser) {
+    try {
+      return parser.apply(value.trim());
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private JSONObject changeTopicConfig(String topic, String operation, List<String> keys, List<String> values)
+      throws Exception {
+    JSONObject updates = new JSONObject();
+    List<String> removals = Collections.emptyList();
+    if (operation.equals("config")) {
+      for (int i = 0; i < keys.size(); i++) {
+        updates.put(keys.get(i), values.get(i));
+      }
+    } else {
+      removals = keys;
+    }
+
+    kafkaScheduler.getKafkaAdmin().changeConfig("topics", topic, updates, removals);
+    return new JSONObject()
+        .put("message", "Updated config for topic: " + topic)
+        .put("config", kafkaScheduler.getKafkaAdmin().getConfig("topics", topic));
+  }
 }
@@ -0,0 +1,112 @@
+package com.mesosphere.dcos.kafka.config;
+
+import com.mesosphere.dcos.kafka.test.ConfigTestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * This class tests the ConfigDiff and ConfigSections classes.
+ */
+public class ConfigDiffTest {
+
+    @Test
+    public void testEqualConfigsHaveEqualHashes() throws Exception {
+        ConfigSections oldSections = ConfigSections.of(ConfigTestUtils.getTestKafkaSchedulerConfiguration());
+        ConfigSections newSections = ConfigSections.of(ConfigTestUtils.getTestKafkaSchedulerConfiguration());
+
+        Assert.assertEquals(oldSections.getHashes(), newSections.getHashes());
+        ConfigDiff diff = ConfigDiff.compute(oldSections, newSections);
+        Assert.assertTrue(diff.isEmpty());
+        Assert.assertFalse(diff.getChangeType().isPresent());
+        Assert.assertFalse(diff.requiresBrokerRestart());
+    }
+
+    @Test
+    public void testOverrideOrderDoesNotAffectHash() throws Exception {
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put("num.io.threads", "8");
+        overrides.put("log.retention.hours", "168");
+        KafkaSchedulerConfiguration oldConfig = getConfigWithOverrides(overrides);
+        KafkaSchedulerConfiguration newConfig = getConfigWithOverrides(overrides);
+
+        Assert.assertEquals(
+                ConfigSections.of(oldConfig).getHash(ConfigSections.OVERRIDES),
+                ConfigSections.of(newConfig).getHash(ConfigSections.OVERRIDES));
+    }
+
+    @Test
+    public void testBrokerCountChangeIsDynamic() throws Exception {
+        KafkaSchedulerConfiguration newConfig = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        newConfig.getServiceConfiguration().setCount(3);
+
+        ConfigDiff diff = compute(ConfigTestUtils.getTestKafkaSchedulerConfiguration(), newConfig);
+        Assert.assertEquals(1, diff.getChanges().size());
+        Assert.assertEquals(ConfigSections.SERVICE, diff.getChanges().get(0).getSection());
+        Assert.assertEquals("count", diff.getChanges().get(0).getField());
+        Assert.assertEquals(Optional.of(ConfigDiff.ChangeType.DYNAMIC), diff.getChangeType());
+        Assert.assertFalse(diff.requiresBrokerRestart());
+    }
+
+    @Test
+    public void testResourceChange() throws Exception {
+        KafkaSchedulerConfiguration newConfig = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        newConfig.getBrokerConfiguration().setCpus(2);
+        newConfig.getBrokerConfiguration().setKafkaUri("http://other/kafka.tgz");
+
+        ConfigDiff diff = compute(ConfigTestUtils.getTestKafkaSchedulerConfiguration(), newConfig);
+        Assert.assertEquals(2, diff.getChanges().size());
+        Assert.assertEquals(Optional.of(ConfigDiff.ChangeType.RESOURCE), diff.getChangeType());
+        Assert.assertTrue(diff.requiresBrokerRestart());
+    }
+
+    @Test
+    public void testJmxChangeIsSeparateSection() throws Exception {
+        KafkaSchedulerConfiguration newConfig = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        newConfig.getBrokerConfiguration().setJmx(new JmxConfig(true, true, 9999, false, false));
+
+        ConfigSections oldSections = ConfigSections.of(ConfigTestUtils.getTestKafkaSchedulerConfiguration());
+        ConfigSections newSections = ConfigSections.of(newConfig);
+        Assert.assertEquals(oldSections.getHash(ConfigSections.BROKER), newSections.getHash(ConfigSections.BROKER));
+        Assert.assertNotEquals(oldSections.getHash(ConfigSections.JMX), newSections.getHash(ConfigSections.JMX));
+
+        ConfigDiff diff = ConfigDiff.compute(oldSections, newSections);
+        Assert.assertEquals(ConfigSections.JMX, diff.getChanges().get(0).getSection());
+        Assert.assertEquals(Optional.of(ConfigDiff.ChangeType.RESOURCE), diff.getChangeType());
+    }
+
+    @Test
+    public void testOverrideChange() throws Exception {
+        KafkaSchedulerConfiguration oldConfig =
+                getConfigWithOverrides(Collections.singletonMap("log.retention.hours", "168"));
+        KafkaSchedulerConfiguration newConfig =
+                getConfigWithOverrides(Collections.singletonMap("log.retention.hours", "24"));
+
+        ConfigDiff diff = compute(oldConfig, newConfig);
+        Assert.assertEquals(Optional.of(ConfigDiff.ChangeType.RESTART), diff.getChangeType());
+
+        diff = ConfigDiff.compute(
+                ConfigSections.of(oldConfig),
+                ConfigSections.of(newConfig),
+                Collections.singleton("log.retention.hours"));
+        Assert.assertEquals(Optional.of(ConfigDiff.ChangeType.DYNAMIC), diff.getChangeType());
+        Assert.assertEquals("168", diff.getChanges().get(0).getOldValue().asText());
+        Assert.assertEquals("24", diff.getChanges().get(0).getNewValue().asText());
+    }
+
+    private static ConfigDiff compute(
+            KafkaSchedulerConfiguration oldConfig,
+            KafkaSchedulerConfiguration newConfig) throws Exception {
+        return ConfigDiff.compute(ConfigSections.of(oldConfig), ConfigSections.of(newConfig));
+    }
+
+    private static KafkaSchedulerConfiguration getConfigWithOverrides(Map<String, String> overrides) {
+        KafkaSchedulerConfiguration config = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        config.getKafkaConfiguration().setOverrides(new HashMap<>(overrides));
+        return config;
+    }
+}
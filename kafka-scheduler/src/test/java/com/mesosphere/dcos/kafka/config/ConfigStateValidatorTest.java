@@ -77,4 +77,27 @@ public class ConfigStateValidatorTest {
         Collection<ConfigStateValidator.ValidationError> errors = configStateValidator.validateServiceConfigChange(oldServiceConfiguration, newServiceConfiguration);
         Assert.assertEquals(0, errors.size());
     }
+
+    @Test
+    public void testBrokerDiskIncreaseSucceeds() throws ConfigStateValidator.ValidationException {
+        BrokerConfiguration oldBrokerConfiguration = ConfigTestUtils.getTestBrokerConfiguration();
+        BrokerConfiguration newBrokerConfiguration = ConfigTestUtils.getTestBrokerConfiguration();
+        newBrokerConfiguration.setDisk(oldBrokerConfiguration.getDisk() * 2);
+        newBrokerConfiguration.setDiskType("MOUNT");
+
+        ConfigStateValidator configStateValidator = new ConfigStateValidator(frameworkState);
+        Collection<ConfigStateValidator.ValidationError> errors = configStateValidator.validateBrokerConfigChange(oldBrokerConfiguration, newBrokerConfiguration);
+        Assert.assertEquals(0, errors.size());
+    }
+
+    @Test
+    public void testBrokerDiskDecreaseFails() throws ConfigStateValidator.ValidationException {
+        BrokerConfiguration oldBrokerConfiguration = ConfigTestUtils.getTestBrokerConfiguration();
+        BrokerConfiguration newBrokerConfiguration = ConfigTestUtils.getTestBrokerConfiguration();
+        newBrokerConfiguration.setDisk(oldBrokerConfiguration.getDisk() / 2);
+
+        ConfigStateValidator configStateValidator = new ConfigStateValidator(frameworkState);
+        Collection<ConfigStateValidator.ValidationError> errors = configStateValidator.validateBrokerConfigChange(oldBrokerConfiguration, newBrokerConfiguration);
+        Assert.assertEquals(1, errors.size());
+    }
 }
@@ -0,0 +1,254 @@
+package com.mesosphere.dcos.kafka.config;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.test.ConfigTestUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the DynamicConfigUpdater class.
+ */
+public class DynamicConfigUpdaterTest {
+    @Mock private KafkaState kafkaState;
+    @Mock private KafkaAdmin kafkaAdmin;
+
+    private DynamicConfigUpdater updater;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(kafkaState.getTopics()).thenReturn(new JSONArray(Arrays.asList("default", "custom", "managed")));
+        when(kafkaAdmin.getConfig(anyString(), anyString())).thenReturn(new JSONObject());
+        when(kafkaAdmin.getConfig("topics", "custom")).thenReturn(new JSONObject().put("retention.ms", "604800000"));
+        when(kafkaAdmin.getConfig("topics", "managed")).thenReturn(new JSONObject().put("retention.ms", "604800000"));
+        when(kafkaAdmin.getManagedConfig(anyString(), anyString())).thenReturn(new JSONObject());
+        when(kafkaAdmin.getManagedConfig("topics", "managed")).thenReturn(new JSONObject().put("retention.ms", "604800000"));
+        when(kafkaAdmin.getManagedConfigEntities("topics")).thenReturn(Arrays.asList("managed", "deleted"));
+        when(kafkaAdmin.getManagedTopicDefaults()).thenReturn(new JSONObject());
+        updater = new DynamicConfigUpdater(kafkaState, kafkaAdmin);
+    }
+
+    @Test
+    public void testGetDynamicOverrides() {
+        Map<String, String> oldOverrides = new HashMap<>();
+        oldOverrides.put("log.retention.hours", "168");
+        oldOverrides.put("num.io.threads", "8");
+        oldOverrides.put("quota.producer.default", "invalid");
+        Map<String, String> newOverrides = new HashMap<>(oldOverrides);
+        newOverrides.put("log.retention.bytes", "1000");
+
+        Assert.assertEquals(
+                Collections.singleton("log.retention.hours"),
+                DynamicConfigUpdater.getDynamicOverrides(oldOverrides, newOverrides));
+    }
+
+    @Test
+    public void testGetTopicDefaultsPrecedence() {
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put("log.retention.hours", "1");
+        overrides.put("log.roll.hours", "-1");
+        Assert.assertEquals("3600000", DynamicConfigUpdater.getTopicDefaults(overrides).get("retention.ms"));
+        Assert.assertEquals("-1", DynamicConfigUpdater.getTopicDefaults(overrides).get("segment.ms"));
+
+        overrides.put("log.retention.minutes", "2");
+        Assert.assertEquals("120000", DynamicConfigUpdater.getTopicDefaults(overrides).get("retention.ms"));
+    }
+
+    @Test
+    public void testApplyRetentionChange() throws Exception {
+        updater.apply(
+                getConfig(Collections.singletonMap("log.retention.hours", "168")),
+                getConfig(Collections.singletonMap("log.retention.hours", "24")));
+
+        ArgumentCaptor<JSONObject> updates = ArgumentCaptor.forClass(JSONObject.class);
+        verify(kafkaAdmin).changeConfig(eq("topics"), eq("default"), updates.capture(), eq(Collections.emptyList()));
+        Assert.assertEquals("86400000", updates.getValue().getString("retention.ms"));
+        verify(kafkaAdmin).setManagedConfig(
+                eq("topics"), eq("default"), similarTo(new JSONObject().put("retention.ms", "86400000")));
+        verify(kafkaAdmin).changeConfig(eq("topics"), eq("managed"), updates.capture(), eq(Collections.emptyList()));
+        Assert.assertEquals("86400000", updates.getValue().getString("retention.ms"));
+        // Set by a user to the same value as the previous default.
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("custom"), any(), any());
+        verify(kafkaAdmin, never()).changeConfig(eq("clients"), anyString(), any(), any());
+        verify(kafkaAdmin).setManagedConfig(eq("topics"), eq("deleted"), similarTo(new JSONObject()));
+    }
+
+    @Test
+    public void testApplyRetentionUnitChange() throws Exception {
+        updater.apply(
+                getConfig(Collections.singletonMap("log.retention.hours", "168")),
+                getConfig(Collections.singletonMap("log.retention.ms", "3600000")));
+
+        ArgumentCaptor<JSONObject> updates = ArgumentCaptor.forClass(JSONObject.class);
+        verify(kafkaAdmin).changeConfig(eq("topics"), eq("managed"), updates.capture(), eq(Collections.emptyList()));
+        Assert.assertEquals("3600000", updates.getValue().getString("retention.ms"));
+        verify(kafkaAdmin).setManagedConfig(
+                eq("topics"), eq("managed"), similarTo(new JSONObject().put("retention.ms", "3600000")));
+    }
+
+    @Test
+    public void testApplyRetentionRemoved() throws Exception {
+        updater.apply(
+                getConfig(Collections.singletonMap("log.retention.hours", "168")),
+                getConfig(Collections.emptyMap()));
+
+        verify(kafkaAdmin).changeConfig(
+                eq("topics"), eq("managed"), similarTo(new JSONObject()), eq(Collections.singletonList("retention.ms")));
+        verify(kafkaAdmin).setManagedConfig(eq("topics"), eq("managed"), similarTo(new JSONObject()));
+        // Only topics which were written to before are visited.
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("default"), any(), any());
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("custom"), any(), any());
+    }
+
+    @Test
+    public void testApplyManagedValueChangedByUser() throws Exception {
+        when(kafkaAdmin.getConfig("topics", "managed")).thenReturn(new JSONObject().put("retention.ms", "1000"));
+        updater.apply(
+                getConfig(Collections.singletonMap("log.retention.hours", "168")),
+                getConfig(Collections.singletonMap("log.retention.hours", "24")));
+
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("managed"), any(), any());
+        verify(kafkaAdmin).setManagedConfig(eq("topics"), eq("managed"), similarTo(new JSONObject()));
+    }
+
+    @Test
+    public void testApplyQuotaChange() throws Exception {
+        when(kafkaAdmin.getManagedConfigEntities("topics")).thenReturn(Collections.emptyList());
+        updater.apply(
+                getConfig(Collections.singletonMap("quota.producer.default", "1000")),
+                getConfig(Collections.singletonMap("quota.producer.default", "2000")));
+
+        ArgumentCaptor<JSONObject> updates = ArgumentCaptor.forClass(JSONObject.class);
+        verify(kafkaAdmin).changeConfig(
+                eq("clients"), eq(KafkaAdmin.DEFAULT_ENTITY), updates.capture(), eq(Collections.emptyList()));
+        Assert.assertEquals("2000", updates.getValue().getString("producer_byte_rate"));
+        verify(kafkaAdmin).setManagedConfig(
+                eq("clients"), eq(KafkaAdmin.DEFAULT_ENTITY), similarTo(new JSONObject().put("producer_byte_rate", "2000")));
+        verify(kafkaState, never()).getTopics();
+    }
+
+    @Test
+    public void testApplyQuotaSetByUser() throws Exception {
+        when(kafkaAdmin.getConfig("clients", KafkaAdmin.DEFAULT_ENTITY))
+                .thenReturn(new JSONObject().put("producer_byte_rate", "500"));
+        updater.apply(
+                getConfig(Collections.singletonMap("quota.producer.default", "1000")),
+                getConfig(Collections.singletonMap("quota.producer.default", "2000")));
+
+        verify(kafkaAdmin, never()).changeConfig(eq("clients"), anyString(), any(), any());
+    }
+
+    @Test
+    public void testApplyNoDynamicChange() throws Exception {
+        when(kafkaAdmin.getManagedConfigEntities("topics")).thenReturn(Collections.emptyList());
+        updater.apply(
+                getConfig(Collections.singletonMap("num.io.threads", "8")),
+                getConfig(Collections.singletonMap("num.io.threads", "16")));
+
+        verify(kafkaAdmin, never()).changeConfig(anyString(), anyString(), any(), any());
+        verify(kafkaAdmin, never()).setManagedConfig(anyString(), anyString(), any());
+        verify(kafkaState, never()).getTopics();
+    }
+
+    @Test
+    public void testApplyRecordsTopicDefaults() throws Exception {
+        when(kafkaAdmin.getManagedTopicDefaults()).thenReturn(new JSONObject().put("segment.bytes", "1000"));
+        Map<String, String> oldOverrides = new HashMap<>();
+        oldOverrides.put("log.retention.hours", "168");
+        oldOverrides.put("log.segment.bytes", "2000");
+        Map<String, String> newOverrides = new HashMap<>(oldOverrides);
+        newOverrides.put("log.retention.hours", "24");
+        updater.apply(getConfig(oldOverrides), getConfig(newOverrides));
+
+        // Defaults changed before follow the new config.
+        verify(kafkaAdmin).setManagedTopicDefaults(similarTo(new JSONObject()
+                .put("retention.ms", "86400000")
+                .put("segment.bytes", "2000")));
+    }
+
+    @Test
+    public void testApplyRecordedTopicDefaultRemoved() throws Exception {
+        when(kafkaAdmin.getManagedTopicDefaults()).thenReturn(new JSONObject().put("retention.ms", "86400000"));
+        updater.apply(
+                getConfig(Collections.singletonMap("log.retention.hours", "24")),
+                getConfig(Collections.emptyMap()));
+
+        verify(kafkaAdmin).setManagedTopicDefaults(similarTo(new JSONObject()));
+    }
+
+    @Test
+    public void testRunAppliesToNewTopics() throws Exception {
+        updater.run();
+        verify(kafkaState, never()).getTopics();
+
+        when(kafkaAdmin.getManagedTopicDefaults()).thenReturn(new JSONObject().put("retention.ms", "86400000"));
+        updater.run();
+        verify(kafkaAdmin).changeConfig(
+                eq("topics"), eq("default"), similarTo(new JSONObject().put("retention.ms", "86400000")),
+                eq(Collections.emptyList()));
+        verify(kafkaAdmin).setManagedConfig(
+                eq("topics"), eq("default"), similarTo(new JSONObject().put("retention.ms", "86400000")));
+        // Values already set are left to apply() to update.
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("custom"), any(), any());
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("managed"), any(), any());
+
+        // Only topics created since are looked at again.
+        when(kafkaState.getTopics()).thenReturn(new JSONArray(Arrays.asList("default", "custom", "managed", "new")));
+        updater.run();
+        verify(kafkaAdmin, times(1)).getConfig("topics", "default");
+        verify(kafkaAdmin).changeConfig(
+                eq("topics"), eq("new"), similarTo(new JSONObject().put("retention.ms", "86400000")),
+                eq(Collections.emptyList()));
+
+        // Every topic is looked at again when the defaults change.
+        when(kafkaAdmin.getManagedTopicDefaults()).thenReturn(new JSONObject().put("retention.ms", "3600000"));
+        updater.run();
+        verify(kafkaAdmin, times(2)).getConfig("topics", "default");
+    }
+
+    @Test
+    public void testApplyTopicDefaultsToCreatedTopic() throws Exception {
+        when(kafkaAdmin.getManagedTopicDefaults()).thenReturn(new JSONObject().put("retention.ms", "86400000"));
+        when(kafkaAdmin.getManagedConfig("topics", "new")).thenReturn(new JSONObject().put("segment.bytes", "1000"));
+        when(kafkaState.hasTopic("new")).thenReturn(true);
+
+        updater.applyTopicDefaults("new");
+        verify(kafkaAdmin).changeConfig(
+                eq("topics"), eq("new"), similarTo(new JSONObject().put("retention.ms", "86400000")),
+                eq(Collections.emptyList()));
+        verify(kafkaAdmin).setManagedConfig(eq("topics"), eq("new"), similarTo(new JSONObject()
+                .put("retention.ms", "86400000")
+                .put("segment.bytes", "1000")));
+
+        // Nothing is written for a topic which failed to be created.
+        updater.applyTopicDefaults("missing");
+        verify(kafkaAdmin, never()).changeConfig(eq("topics"), eq("missing"), any(), any());
+    }
+
+    private static JSONObject similarTo(JSONObject expected) {
+        return argThat(new ArgumentMatcher<JSONObject>() {
+            @Override
+            public boolean matches(Object actual) {
+                return expected.similar(actual);
+            }
+        });
+    }
+
+    private static KafkaSchedulerConfiguration getConfig(Map<String, String> overrides) {
+        KafkaSchedulerConfiguration config = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        config.getKafkaConfiguration().setOverrides(new HashMap<>(overrides));
+        return config;
+    }
+}
@@ -11,7 +11,11 @@ import org.junit.*;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -66,6 +70,38 @@ public class KafkaConfigStateTest {
         Assert.assertNotNull(outConfig);
     }
 
+    @Test
+    public void testFetchCached() throws Exception {
+        UUID id = configState.store(config);
+        KafkaSchedulerConfiguration outConfig = configState.fetch(id);
+
+        // Stored configs never change, so they're served without reading storage again.
+        testZk.stop();
+        Assert.assertSame(outConfig, configState.fetch(id));
+    }
+
+    @Test
+    public void testStoreCachesCopy() throws Exception {
+        Map<String, String> overrides = new HashMap<>(Collections.singletonMap("key", "value"));
+        config.getKafkaConfiguration().setOverrides(overrides);
+        UUID id = configState.store(config);
+
+        // Changes the caller makes after storing don't leak into the stored config.
+        overrides.put("key", "changed");
+        testZk.stop();
+        KafkaSchedulerConfiguration outConfig = configState.fetch(id);
+        Assert.assertNotSame(config, outConfig);
+        Assert.assertEquals("value", outConfig.getKafkaConfiguration().getOverrides().get("key"));
+    }
+
+    @Test
+    public void testFetchFromOtherInstanceCached() throws Exception {
+        UUID id = configState.store(config);
+        KafkaConfigState otherConfigState = new KafkaConfigState(testZkRoot, testZk.getConnectString(), retryNeverPolicy);
+        Assert.assertEquals(config, otherConfigState.fetch(id));
+        Assert.assertSame(otherConfigState.fetch(id), otherConfigState.fetch(id));
+    }
+
     @Test(expected=ConfigStoreException.class)
     public void testStoreFetchFailure() throws Exception {
         configState.store(config);
@@ -111,6 +147,23 @@ public class KafkaConfigStateTest {
         Assert.assertEquals(2, configState.getConfigNames().size());
     }
 
+    @Test
+    public void testDuplicateConfigsOnlyFromAppliedOverrides() throws Exception {
+        KafkaSchedulerConfiguration appliedFrom = getConfig("log.retention.hours", "168");
+        UUID appliedFromId = configState.store(appliedFrom);
+        configState.store(getConfig("log.retention.hours", "72"));
+        UUID targetId = configState.store(getConfig("log.retention.hours", "24"));
+        configState.setTargetName(targetId);
+
+        // Only the change from the config apply started from was made at runtime.
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList(appliedFromId.toString(), targetId.toString())),
+                new HashSet<>(configState.getDuplicateConfigs(appliedFrom)));
+        Assert.assertEquals(
+                Collections.singletonList(targetId.toString()),
+                configState.getDuplicateConfigs(null));
+    }
+
     @Test(expected=ConfigStoreException.class)
     public void testStoreFailure() throws Exception {
         testZk.stop();
@@ -122,4 +175,10 @@ public class KafkaConfigStateTest {
         testZk.stop();
         configState.setTargetName(UUID.randomUUID());
     }
+
+    private static KafkaSchedulerConfiguration getConfig(String overrideKey, String overrideValue) {
+        KafkaSchedulerConfiguration config = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        config.getKafkaConfiguration().setOverrides(new HashMap<>(Collections.singletonMap(overrideKey, overrideValue)));
+        return config;
+    }
 }
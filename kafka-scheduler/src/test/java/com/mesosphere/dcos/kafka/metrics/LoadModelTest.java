@@ -0,0 +1,99 @@
+package com.mesosphere.dcos.kafka.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * This class tests the LoadModel class.
+ */
+public class LoadModelTest {
+    private LoadModel loadModel;
+
+    @Before
+    public void beforeEach() {
+        Map<String, Map<Integer, List<Integer>>> assignments = new TreeMap<>();
+        Map<Integer, List<Integer>> partitions = new TreeMap<>();
+        partitions.put(0, Arrays.asList(0, 1));
+        partitions.put(1, Arrays.asList(0, 1));
+        partitions.put(2, Arrays.asList(1, 0));
+        assignments.put("topic", partitions);
+
+        Map<String, Integer> leaders = new HashMap<>();
+        leaders.put("topic-0", 0);
+        leaders.put("topic-1", 0);
+        leaders.put("topic-2", 1);
+
+        BrokerMetrics broker0 = new BrokerMetrics();
+        broker0.getBytesInPerTopic().put("topic", 200.0);
+        broker0.getBytesOutPerTopic().put("topic", 400.0);
+        broker0.getLogSizes().put("topic-0", 1000L);
+        broker0.getLogSizes().put("topic-1", 3000L);
+        broker0.getLogSizes().put("topic-2", 500L);
+        broker0.getRequestLatencies().put("Produce.Mean", 2.5);
+        broker0.getProduceBytesPerClient().put("app", 150.0);
+        broker0.getFetchBytesPerClient().put("app", 20.0);
+        broker0.getThrottleTimePerClient().put("app", 5.0);
+
+        BrokerMetrics broker1 = new BrokerMetrics();
+        broker1.getBytesInPerTopic().put("topic", 50.0);
+        broker1.getLogSizes().put("topic-0", 900L);
+        broker1.getLogSizes().put("topic-2", 600L);
+        broker1.getProduceBytesPerClient().put("app", 50.0);
+        broker1.getThrottleTimePerClient().put("app", 0.0);
+
+        Map<Integer, BrokerMetrics> metrics = new HashMap<>();
+        metrics.put(0, broker0);
+        metrics.put(1, broker1);
+
+        loadModel = LoadModel.build(1L, metrics, assignments, leaders);
+    }
+
+    @Test
+    public void testTopicRatesAreSplitBetweenLedPartitions() {
+        Assert.assertEquals(100.0, loadModel.getPartitions().get("topic-0").getBytesInPerSec(), 0.001);
+        Assert.assertEquals(200.0, loadModel.getPartitions().get("topic-1").getBytesOutPerSec(), 0.001);
+        Assert.assertEquals(50.0, loadModel.getPartitions().get("topic-2").getBytesInPerSec(), 0.001);
+    }
+
+    @Test
+    public void testPartitionSizeIsLargestReplica() {
+        Map<String, Long> sizes = loadModel.getPartitionSizes();
+        Assert.assertEquals(1000L, (long) sizes.get("topic-0"));
+        Assert.assertEquals(3000L, (long) sizes.get("topic-1"));
+        Assert.assertEquals(600L, (long) sizes.get("topic-2"));
+    }
+
+    @Test
+    public void testBrokerLoad() {
+        LoadModel.BrokerLoad broker0 = loadModel.getBrokers().get(0);
+        Assert.assertEquals(200.0, broker0.getBytesInPerSec(), 0.001);
+        Assert.assertEquals(4500L, broker0.getDiskBytes());
+        Assert.assertEquals(2, broker0.getLeaders());
+        Assert.assertEquals(3, broker0.getReplicas());
+        Assert.assertEquals(2.5, broker0.getRequestLatencies().get("Produce.Mean"), 0.001);
+        Assert.assertEquals(1, loadModel.getBrokers().get(1).getLeaders());
+    }
+
+    @Test
+    public void testHottestPartitions() {
+        List<LoadModel.PartitionLoad> hottest = loadModel.getHottestPartitions(3);
+        Assert.assertEquals(3, hottest.size());
+        Assert.assertEquals(300.0, hottest.get(0).getBytesPerSec(), 0.001);
+        Assert.assertEquals(300.0, hottest.get(1).getBytesPerSec(), 0.001);
+        Assert.assertEquals("topic-2", hottest.get(2).getTopic() + "-" + hottest.get(2).getPartition());
+        Assert.assertEquals(1, loadModel.getHottestPartitions(1).size());
+    }
+
+    @Test
+    public void testClientLoadIsCombinedAcrossBrokers() {
+        LoadModel.ClientLoad client = loadModel.getClients().get("app");
+        Assert.assertEquals(200.0, client.getProduceBytesPerSec(), 0.001);
+        Assert.assertEquals(150.0, client.getMaxBrokerProduceBytesPerSec(), 0.001);
+        Assert.assertEquals(20.0, client.getFetchBytesPerSec(), 0.001);
+        Assert.assertEquals(5.0, client.getThrottleTimeMs(), 0.001);
+        Assert.assertEquals(1, loadModel.toJSON().getJSONArray("clients").length());
+    }
+}
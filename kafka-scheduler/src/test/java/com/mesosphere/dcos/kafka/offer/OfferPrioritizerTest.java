@@ -0,0 +1,98 @@
+package com.mesosphere.dcos.kafka.offer;
+
+import org.apache.mesos.Protos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * This class tests the OfferPrioritizer class.
+ */
+public class OfferPrioritizerTest {
+
+    @Test
+    public void testNoStoppedTasksKeepsOrder() {
+        List<Protos.Offer> offers = Arrays.asList(
+                getOffer("offer-0", "agent-0", null),
+                getOffer("offer-1", "agent-1", null));
+
+        List<Protos.Offer> prioritized = OfferPrioritizer.prioritize(offers, Collections.emptyList());
+        Assert.assertEquals(getOfferIds(offers), getOfferIds(prioritized));
+    }
+
+    @Test
+    public void testVolumeOfferFirst() {
+        List<Protos.Offer> offers = Arrays.asList(
+                getOffer("offer-0", "agent-0", null),
+                getOffer("offer-1", "agent-1", null),
+                getOffer("offer-2", "agent-1", "volume-1"));
+
+        List<Protos.Offer> prioritized = OfferPrioritizer.prioritize(
+                offers, Arrays.asList(getTask("broker-1", "agent-1", "volume-1")));
+        Assert.assertEquals(Arrays.asList("offer-2", "offer-1", "offer-0"), getOfferIds(prioritized));
+    }
+
+    @Test
+    public void testOtherVolumesNotPrioritized() {
+        List<Protos.Offer> offers = Arrays.asList(
+                getOffer("offer-0", "agent-0", "volume-0"),
+                getOffer("offer-1", "agent-1", null));
+
+        List<Protos.Offer> prioritized = OfferPrioritizer.prioritize(
+                offers, Arrays.asList(getTask("broker-1", "agent-1", "volume-1")));
+        Assert.assertEquals(Arrays.asList("offer-1", "offer-0"), getOfferIds(prioritized));
+    }
+
+    @Test
+    public void testGetAgentIds() {
+        Set<String> agentIds = OfferPrioritizer.getAgentIds(Arrays.asList(
+                getTask("broker-0", "agent-0", "volume-0"),
+                getTask("broker-1", "agent-1", "volume-1"),
+                getTask("broker-2", "agent-1", "volume-2")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("agent-0", "agent-1")), agentIds);
+    }
+
+    private static List<String> getOfferIds(List<Protos.Offer> offers) {
+        List<String> ids = new ArrayList<>();
+        for (Protos.Offer offer : offers) {
+            ids.add(offer.getId().getValue());
+        }
+        return ids;
+    }
+
+    private static Protos.Offer getOffer(String offerId, String agentId, String persistenceId) {
+        Protos.Offer.Builder builder = Protos.Offer.newBuilder()
+                .setId(Protos.OfferID.newBuilder().setValue(offerId))
+                .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(agentId))
+                .setHostname(agentId);
+        if (persistenceId != null) {
+            builder.addResources(getVolume(persistenceId));
+        }
+        return builder.build();
+    }
+
+    private static Protos.TaskInfo getTask(String name, String agentId, String persistenceId) {
+        return Protos.TaskInfo.newBuilder()
+                .setName(name)
+                .setTaskId(Protos.TaskID.newBuilder().setValue(name + "__id"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(agentId))
+                .addResources(getVolume(persistenceId))
+                .build();
+    }
+
+    private static Protos.Resource getVolume(String persistenceId) {
+        return Protos.Resource.newBuilder()
+                .setName("disk")
+                .setType(Protos.Value.Type.SCALAR)
+                .setScalar(Protos.Value.Scalar.newBuilder().setValue(5000))
+                .setRole("kafka-role")
+                .setDisk(Protos.Resource.DiskInfo.newBuilder()
+                        .setPersistence(Protos.Resource.DiskInfo.Persistence.newBuilder().setId(persistenceId))
+                        .setVolume(Protos.Volume.newBuilder()
+                                .setContainerPath("kafka-volume")
+                                .setMode(Protos.Volume.Mode.RW)))
+                .build();
+    }
+}
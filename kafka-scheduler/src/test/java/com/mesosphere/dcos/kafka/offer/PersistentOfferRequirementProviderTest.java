@@ -26,6 +26,8 @@ import java.net.URISyntaxException;
 import java.util.*;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PersistentOfferRequirementProviderTest {
@@ -169,6 +171,24 @@ public class PersistentOfferRequirementProviderTest {
     Assert.assertEquals(122, executorCmd.getValue().length());
   }
 
+  @Test
+  public void testConfigFetchedOncePerVersion() throws Exception {
+    UUID configName = UUID.fromString(KafkaTestUtils.testConfigName);
+    when(configState.fetch(configName)).thenReturn(schedulerConfig);
+    PersistentOfferRequirementProvider provider = new TestPersistentOfferRequirementProvider();
+
+    TaskInfo broker0 = provider.getNewOfferRequirement(KafkaTestUtils.testConfigName, 0)
+            .getTaskRequirements().iterator().next().getTaskInfo();
+    TaskInfo broker1 = provider.getNewOfferRequirement(KafkaTestUtils.testConfigName, 1)
+            .getTaskRequirements().iterator().next().getTaskInfo();
+
+    verify(configState, times(1)).fetch(configName);
+    Assert.assertEquals("broker-0", broker0.getName());
+    Assert.assertEquals("broker-1", broker1.getName());
+    Assert.assertEquals(broker0.getCommand(), broker1.getCommand());
+    Assert.assertEquals(broker0.getResources(0), broker1.getResources(0));
+  }
+
   @Test
   public void testReplaceOfferRequirement() throws Exception {
     PersistentOfferRequirementProvider provider = new TestPersistentOfferRequirementProvider();
@@ -0,0 +1,141 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.KafkaRebalanceConfiguration;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.state.ReplicationThrottle;
+import org.apache.mesos.scheduler.plan.Status;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the KafkaRebalanceStep class.
+ */
+public class KafkaRebalanceStepTest {
+    private static final long THROTTLE = 1000;
+
+    @Mock private KafkaState kafkaState;
+    @Mock private KafkaAdmin kafkaAdmin;
+
+    private Map<String, Map<Integer, List<Integer>>> assignments;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        // Every partition is on broker 0, so half of them move to broker 1.
+        assignments = new TreeMap<>();
+        for (int partition = 0; partition < 4; partition++) {
+            assignments.computeIfAbsent("topic", t -> new TreeMap<>())
+                    .put(partition, new ArrayList<>(Collections.singletonList(0)));
+        }
+        when(kafkaState.getPartitionAssignments()).thenReturn(assignments);
+        when(kafkaState.getBroker(anyString())).thenReturn(Optional.of(new JSONObject()));
+    }
+
+    @Test
+    public void testMovesInBatches() throws Exception {
+        KafkaRebalanceStep step = createStep(1);
+
+        step.start();
+        Assert.assertEquals(Status.IN_PROGRESS, step.getStatus());
+        ArgumentCaptor<Map> batch = ArgumentCaptor.forClass(Map.class);
+        verify(kafkaAdmin).reassignPartitions(batch.capture());
+        Assert.assertEquals(1, getPartitionCount(batch.getValue()));
+
+        // Nothing happens until the controller has finished the batch.
+        when(kafkaAdmin.isReassignmentInProgress()).thenReturn(true);
+        step.start();
+        verify(kafkaAdmin, times(1)).reassignPartitions(any());
+
+        when(kafkaAdmin.isReassignmentInProgress()).thenReturn(false);
+        step.start();
+        verify(kafkaAdmin, times(2)).reassignPartitions(batch.capture());
+        Assert.assertEquals(1, getPartitionCount(batch.getValue()));
+        Assert.assertEquals(Status.IN_PROGRESS, step.getStatus());
+
+        step.start();
+        verify(kafkaAdmin, times(2)).reassignPartitions(any());
+        Assert.assertEquals(Status.COMPLETE, step.getStatus());
+        Assert.assertEquals("Moved 2 partitions", step.getMessage());
+    }
+
+    @Test
+    public void testBatchThrottled() throws Exception {
+        KafkaRebalanceStep step = createStep(2);
+        step.start();
+
+        ArgumentCaptor<ReplicationThrottle> throttle = ArgumentCaptor.forClass(ReplicationThrottle.class);
+        InOrder inOrder = inOrder(kafkaAdmin);
+        inOrder.verify(kafkaAdmin).setThrottle(eq(KafkaRebalanceStep.THROTTLE_OWNER), throttle.capture());
+        inOrder.verify(kafkaAdmin).reassignPartitions(any());
+
+        ReplicationThrottle batchThrottle = throttle.getValue();
+        Assert.assertEquals(Collections.singleton("topic"), batchThrottle.getTopics());
+        Assert.assertEquals(Collections.singleton(1), batchThrottle.getFollowerBrokers());
+        Assert.assertEquals(2, batchThrottle.getLeaderReplicas("topic").split(",").length);
+        Assert.assertEquals(Long.valueOf(THROTTLE), batchThrottle.getBrokerRates().get(0));
+
+        // The batch's throttles are lifted once it has completed.
+        step.start();
+        verify(kafkaAdmin, times(2)).removeThrottle(KafkaRebalanceStep.THROTTLE_OWNER);
+        Assert.assertEquals(Status.COMPLETE, step.getStatus());
+    }
+
+    @Test
+    public void testRestartWaitsForBatchInFlight() throws Exception {
+        // A batch started before the scheduler restarted is still in flight.
+        when(kafkaAdmin.isReassignmentInProgress()).thenReturn(true);
+        KafkaRebalanceStep step = createStep(1);
+        step.start();
+        verify(kafkaAdmin, never()).removeThrottle(anyString());
+        verify(kafkaAdmin, never()).reassignPartitions(any());
+
+        // Its throttles are lifted before the remaining moves are computed and started.
+        when(kafkaAdmin.isReassignmentInProgress()).thenReturn(false);
+        step.start();
+        InOrder inOrder = inOrder(kafkaAdmin, kafkaState);
+        inOrder.verify(kafkaAdmin).removeThrottle(KafkaRebalanceStep.THROTTLE_OWNER);
+        inOrder.verify(kafkaState, atLeastOnce()).getPartitionAssignments();
+        inOrder.verify(kafkaAdmin).reassignPartitions(any());
+    }
+
+    @Test
+    public void testWaitsForBrokers() throws Exception {
+        when(kafkaState.getBroker("1")).thenReturn(Optional.empty());
+        KafkaRebalanceStep step = createStep(1);
+        step.start();
+
+        verify(kafkaAdmin, never()).reassignPartitions(any());
+        Assert.assertEquals("Waiting for broker 1 to register", step.getMessage());
+    }
+
+    @Test
+    public void testBrokerIds() throws Exception {
+        // Brokers are expected by id whether or not they're currently registered.
+        Assert.assertEquals(Arrays.asList(0, 1, 2), KafkaRebalanceStep.getBrokerIds(3));
+        Assert.assertFalse(KafkaRebalanceStep.getUnregisteredBrokerMessage(kafkaState, 3).isPresent());
+        when(kafkaState.getBroker("2")).thenReturn(Optional.empty());
+        Assert.assertEquals("Waiting for broker 2 to register",
+                KafkaRebalanceStep.getUnregisteredBrokerMessage(kafkaState, 3).get());
+    }
+
+    private KafkaRebalanceStep createStep(int batchSize) {
+        KafkaRebalanceConfiguration rebalanceConfig =
+                new KafkaRebalanceConfiguration(true, batchSize, THROTTLE, 0.1, false, 0, 0, 0, 0, 0);
+        return new KafkaRebalanceStep(kafkaState, kafkaAdmin, rebalanceConfig, 2, Collections::emptyMap);
+    }
+
+    private static int getPartitionCount(Map<String, Map<Integer, List<Integer>>> batch) {
+        return batch.values().stream().mapToInt(Map::size).sum();
+    }
+}
@@ -0,0 +1,135 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.KafkaConfigState;
+import com.mesosphere.dcos.kafka.config.KafkaSchedulerConfiguration;
+import com.mesosphere.dcos.kafka.offer.KafkaOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.offer.PersistentOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.test.ConfigTestUtils;
+import com.mesosphere.dcos.kafka.test.KafkaTestUtils;
+import org.apache.mesos.Protos;
+import org.apache.mesos.scheduler.plan.Status;
+import org.apache.mesos.scheduler.plan.strategy.SerialStrategy;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the KafkaStorageMigrationPhase class.
+ */
+public class KafkaStorageMigrationPhaseTest {
+    private static final String OLD_CONFIG_NAME = UUID.randomUUID().toString();
+
+    @Mock private FrameworkState frameworkState;
+    @Mock private KafkaState kafkaState;
+    @Mock private KafkaAdmin kafkaAdmin;
+    @Mock private KafkaConfigState configState;
+    @Mock private KafkaOfferRequirementProvider offerReqProvider;
+
+    private KafkaSchedulerConfiguration targetConfig;
+    private KafkaSchedulerConfiguration oldConfig;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        targetConfig = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        oldConfig = ConfigTestUtils.getTestKafkaSchedulerConfiguration();
+        when(configState.fetch(UUID.fromString(OLD_CONFIG_NAME))).thenReturn(oldConfig);
+        when(frameworkState.getTaskInfoForBroker(0)).thenReturn(Optional.empty());
+        when(frameworkState.getTaskStatusForBroker(0)).thenReturn(Optional.empty());
+        when(kafkaAdmin.getStorageMigration(anyInt(), anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    public void testNoBrokers() throws Exception {
+        Assert.assertTrue(createPhase().getChildren().isEmpty());
+    }
+
+    @Test
+    public void testDiskChanged() throws Exception {
+        oldConfig.getBrokerConfiguration().setDisk(targetConfig.getBrokerConfiguration().getDisk() / 2);
+        setTaskConfig(OLD_CONFIG_NAME);
+        Assert.assertEquals(1, createPhase().getChildren().size());
+    }
+
+    @Test
+    public void testDiskTypeChanged() throws Exception {
+        oldConfig.getBrokerConfiguration().setDiskType("ROOT");
+        setTaskConfig(OLD_CONFIG_NAME);
+        Assert.assertEquals(1, createPhase().getChildren().size());
+    }
+
+    @Test
+    public void testDiskUnchanged() throws Exception {
+        setTaskConfig(OLD_CONFIG_NAME);
+        Assert.assertTrue(createPhase().getChildren().isEmpty());
+    }
+
+    @Test
+    public void testTargetConfigInSync() throws Exception {
+        setTaskConfig(KafkaTestUtils.testConfigName);
+        setLaunched();
+        when(kafkaState.isBrokerInSync(0)).thenReturn(true);
+        Assert.assertTrue(createPhase().getChildren().isEmpty());
+        verify(kafkaAdmin).deleteStorageMigration(0);
+    }
+
+    @Test
+    public void testTargetConfigNotMigrated() throws Exception {
+        // e.g. the broker is down, or was moved to the target config without a migration.
+        setTaskConfig(KafkaTestUtils.testConfigName);
+        when(kafkaState.isBrokerInSync(0)).thenReturn(false);
+        Assert.assertTrue(createPhase().getChildren().isEmpty());
+    }
+
+    @Test
+    public void testTargetConfigOutOfSync() throws Exception {
+        // e.g. the broker was migrated just before the scheduler restarted.
+        setTaskConfig(KafkaTestUtils.testConfigName);
+        setLaunched();
+        when(kafkaState.isBrokerInSync(0)).thenReturn(false);
+
+        KafkaStorageMigrationPhase phase = createPhase();
+        Assert.assertEquals(1, phase.getChildren().size());
+        Assert.assertEquals(Status.IN_PROGRESS, phase.getChildren().get(0).getStatus());
+        Assert.assertFalse(phase.isComplete());
+    }
+
+    private KafkaStorageMigrationPhase createPhase() {
+        return new KafkaStorageMigrationPhase(
+                KafkaTestUtils.testConfigName,
+                targetConfig,
+                configState,
+                frameworkState,
+                kafkaState,
+                kafkaAdmin,
+                offerReqProvider,
+                new SerialStrategy<>());
+    }
+
+    private void setLaunched() throws Exception {
+        when(kafkaAdmin.getStorageMigration(0, KafkaTestUtils.testConfigName))
+                .thenReturn(Optional.of(System.currentTimeMillis()));
+    }
+
+    private void setTaskConfig(String configName) throws Exception {
+        Protos.TaskInfo taskInfo = Protos.TaskInfo.newBuilder()
+                .setName(KafkaTestUtils.testTaskName)
+                .setTaskId(KafkaTestUtils.testTaskId)
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(KafkaTestUtils.testSlaveId))
+                .setLabels(Protos.Labels.newBuilder().addLabels(Protos.Label.newBuilder()
+                        .setKey(PersistentOfferRequirementProvider.CONFIG_TARGET_KEY)
+                        .setValue(configName)))
+                .build();
+        when(frameworkState.getTaskInfoForBroker(0)).thenReturn(Optional.of(taskInfo));
+    }
+}
@@ -0,0 +1,159 @@
+package com.mesosphere.dcos.kafka.plan;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.offer.KafkaOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.offer.PersistentOfferRequirementProvider;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.test.KafkaTestUtils;
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.OfferRequirement;
+import org.apache.mesos.scheduler.plan.Status;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the KafkaStorageMigrationStep class.
+ */
+public class KafkaStorageMigrationStepTest {
+    private static final String OLD_CONFIG_NAME = UUID.randomUUID().toString();
+
+    @Mock private FrameworkState frameworkState;
+    @Mock private KafkaState kafkaState;
+    @Mock private KafkaAdmin kafkaAdmin;
+    @Mock private KafkaOfferRequirementProvider offerReqProvider;
+    @Mock private OfferRequirement offerRequirement;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(offerReqProvider.getNewOfferRequirement(KafkaTestUtils.testConfigName, 0)).thenReturn(offerRequirement);
+        when(offerRequirement.getTaskRequirements()).thenReturn(Collections.emptyList());
+        when(kafkaAdmin.getStorageMigration(anyInt(), anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    public void testWaitsForBrokerToRejoinIsr() throws Exception {
+        // The broker was migrated onto the target config, e.g. before the scheduler restarted.
+        setTask(KafkaTestUtils.testConfigName, Protos.TaskState.TASK_RUNNING);
+        setLaunched(System.currentTimeMillis());
+        when(kafkaState.isBrokerInSync(0)).thenReturn(false);
+
+        KafkaStorageMigrationStep step = createStep();
+        Assert.assertEquals(Status.IN_PROGRESS, step.getStatus());
+        Assert.assertFalse(step.isComplete());
+        Assert.assertEquals("Broker-0 is waiting to rejoin the in-sync replica sets", step.getMessage());
+    }
+
+    @Test
+    public void testCompleteOnceBrokerInIsr() throws Exception {
+        setTask(KafkaTestUtils.testConfigName, Protos.TaskState.TASK_RUNNING);
+        setLaunched(System.currentTimeMillis());
+        when(kafkaState.isBrokerInSync(0)).thenReturn(true);
+
+        Assert.assertTrue(createStep().isComplete());
+        verify(kafkaAdmin).deleteStorageMigration(0);
+    }
+
+    @Test
+    public void testNotWaitingWithoutMigration() throws Exception {
+        // e.g. the broker was moved to the target config by another phase.
+        setTask(KafkaTestUtils.testConfigName, Protos.TaskState.TASK_RUNNING);
+        when(kafkaState.isBrokerInSync(0)).thenReturn(false);
+
+        Assert.assertTrue(createStep().isComplete());
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        setTask(KafkaTestUtils.testConfigName, Protos.TaskState.TASK_RUNNING);
+        setLaunched(System.currentTimeMillis() - KafkaStorageMigrationStep.SYNC_TIMEOUT_MS);
+        when(kafkaState.isBrokerInSync(0)).thenReturn(false);
+
+        Assert.assertTrue(createStep().isComplete());
+        verify(kafkaAdmin).deleteStorageMigration(0);
+    }
+
+    @Test
+    public void testNotStartedWithoutInSyncPeers() throws Exception {
+        setTask(OLD_CONFIG_NAME, Protos.TaskState.TASK_RUNNING);
+        setIsr(0);
+
+        KafkaStorageMigrationStep step = createStep();
+        Assert.assertFalse(step.start().isPresent());
+        Assert.assertTrue(step.isPending());
+        Assert.assertEquals(
+                "Broker-0 is waiting to be migrated: partition topic-0 has no other in-sync replica, "
+                        + "e.g. because its replication factor is 1",
+                step.getMessage());
+    }
+
+    @Test
+    public void testLaunchRecorded() throws Exception {
+        setTask(OLD_CONFIG_NAME, Protos.TaskState.TASK_FAILED);
+
+        KafkaStorageMigrationStep step = createStep();
+        step.start();
+        step.updateOfferStatus(Collections.emptyList());
+        verify(kafkaAdmin, never()).setStorageMigration(anyInt(), anyString(), anyLong());
+
+        step.updateOfferStatus(Collections.singletonList(Protos.Offer.Operation.newBuilder()
+                .setType(Protos.Offer.Operation.Type.LAUNCH)
+                .build()));
+        verify(kafkaAdmin).setStorageMigration(eq(0), eq(KafkaTestUtils.testConfigName), anyLong());
+        Assert.assertEquals(Status.IN_PROGRESS, step.getStatus());
+    }
+
+    @Test
+    public void testStartedOntoNewVolume() throws Exception {
+        setTask(OLD_CONFIG_NAME, Protos.TaskState.TASK_FAILED);
+        setIsr(0, 1);
+
+        KafkaStorageMigrationStep step = createStep();
+        Assert.assertEquals(Optional.of(offerRequirement), step.start());
+        verify(offerReqProvider).getNewOfferRequirement(KafkaTestUtils.testConfigName, 0);
+        verify(offerReqProvider, never()).getUpdateOfferRequirement(anyString(), any());
+    }
+
+    private KafkaStorageMigrationStep createStep() {
+        return new KafkaStorageMigrationStep(
+                frameworkState, kafkaState, kafkaAdmin, offerReqProvider, KafkaTestUtils.testConfigName, 0);
+    }
+
+    private void setTask(String configName, Protos.TaskState state) throws Exception {
+        Protos.TaskInfo taskInfo = Protos.TaskInfo.newBuilder()
+                .setName(KafkaTestUtils.testTaskName)
+                .setTaskId(KafkaTestUtils.testTaskId)
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue(KafkaTestUtils.testSlaveId))
+                .setLabels(Protos.Labels.newBuilder().addLabels(Protos.Label.newBuilder()
+                        .setKey(PersistentOfferRequirementProvider.CONFIG_TARGET_KEY)
+                        .setValue(configName)))
+                .build();
+        when(frameworkState.getTaskInfoForBroker(0)).thenReturn(Optional.of(taskInfo));
+        when(frameworkState.getTaskStatusForBroker(0)).thenReturn(Optional.of(Protos.TaskStatus.newBuilder()
+                .setTaskId(KafkaTestUtils.testTaskId)
+                .setState(state)
+                .build()));
+    }
+
+    private void setLaunched(long launchedMs) throws Exception {
+        when(kafkaAdmin.getStorageMigration(0, KafkaTestUtils.testConfigName)).thenReturn(Optional.of(launchedMs));
+    }
+
+    private void setIsr(Integer... isr) throws Exception {
+        when(kafkaState.getPartitionStatesForBroker(0)).thenReturn(Collections.singletonMap(
+                "topic-0", new JSONObject().put("isr", new JSONArray(Arrays.asList(isr)))));
+    }
+}
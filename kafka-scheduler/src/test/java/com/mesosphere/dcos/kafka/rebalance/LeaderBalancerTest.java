@@ -0,0 +1,68 @@
+package com.mesosphere.dcos.kafka.rebalance;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * This class tests the LeaderBalancer class.
+ */
+public class LeaderBalancerTest {
+    private Map<String, Map<Integer, List<Integer>>> assignments;
+    private Map<String, Map<Integer, JSONObject>> states;
+
+    @Before
+    public void beforeEach() {
+        assignments = new TreeMap<>();
+        states = new TreeMap<>();
+        // Broker 0 restarted, so broker 1 took over leadership of the partitions preferring broker 0.
+        addPartition(0, Arrays.asList(0, 1), 1, Arrays.asList(0, 1));
+        addPartition(1, Arrays.asList(1, 0), 1, Arrays.asList(1, 0));
+        addPartition(2, Arrays.asList(0, 1), 1, Arrays.asList(0, 1));
+        addPartition(3, Arrays.asList(1, 0), 1, Arrays.asList(1, 0));
+    }
+
+    @Test
+    public void testImbalance() {
+        Assert.assertEquals(0.5, LeaderBalancer.getImbalance(assignments, states), 0.001);
+
+        Map<Integer, Double> brokerImbalance = LeaderBalancer.getBrokerImbalance(assignments, states);
+        Assert.assertEquals(1.0, brokerImbalance.get(0), 0.001);
+        Assert.assertEquals(0.0, brokerImbalance.get(1), 0.001);
+    }
+
+    @Test
+    public void testSelectElections() {
+        Map<String, List<Integer>> batch = LeaderBalancer.selectElections(assignments, states, 0.1, 10);
+        Assert.assertEquals(Arrays.asList(0, 2), batch.get("topic"));
+    }
+
+    @Test
+    public void testSelectElectionsLimitedToBatchSize() {
+        Map<String, List<Integer>> batch = LeaderBalancer.selectElections(assignments, states, 0.1, 1);
+        Assert.assertEquals(Arrays.asList(0), batch.get("topic"));
+    }
+
+    @Test
+    public void testSelectElectionsWithinThreshold() {
+        Assert.assertTrue(LeaderBalancer.selectElections(assignments, states, 1.0, 10).isEmpty());
+    }
+
+    @Test
+    public void testSelectElectionsSkipsOutOfSyncPreferredLeader() {
+        addPartition(0, Arrays.asList(0, 1), 1, Arrays.asList(1));
+        Map<String, List<Integer>> batch = LeaderBalancer.selectElections(assignments, states, 0.1, 10);
+        Assert.assertEquals(Arrays.asList(2), batch.get("topic"));
+    }
+
+    private void addPartition(int partition, List<Integer> replicas, int leader, List<Integer> isr) {
+        assignments.computeIfAbsent("topic", t -> new TreeMap<>()).put(partition, replicas);
+        states.computeIfAbsent("topic", t -> new TreeMap<>()).put(partition, new JSONObject()
+                .put("leader", leader)
+                .put("isr", new JSONArray(isr)));
+    }
+}
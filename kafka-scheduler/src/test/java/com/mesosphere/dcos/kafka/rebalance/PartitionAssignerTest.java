@@ -0,0 +1,112 @@
+package com.mesosphere.dcos.kafka.rebalance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * This class tests the PartitionAssigner class.
+ */
+public class PartitionAssignerTest {
+    private final PartitionAssigner assigner = new PartitionAssigner(0.1);
+
+    @Test
+    public void testBalancedAssignmentUnchanged() {
+        Map<String, Map<Integer, List<Integer>>> current = new TreeMap<>();
+        current.put("topic", getPartitions(
+                Arrays.asList(0, 1),
+                Arrays.asList(1, 2),
+                Arrays.asList(2, 0)));
+
+        Assert.assertTrue(assigner.assign(current, Arrays.asList(0, 1, 2), Collections.emptyMap()).isEmpty());
+    }
+
+    @Test
+    public void testScaleOutMovesReplicasToNewBrokers() {
+        Map<String, Map<Integer, List<Integer>>> current = new TreeMap<>();
+        current.put("topic", getPartitions(
+                Arrays.asList(0, 1),
+                Arrays.asList(1, 2),
+                Arrays.asList(2, 0),
+                Arrays.asList(0, 2),
+                Arrays.asList(1, 0),
+                Arrays.asList(2, 1)));
+        List<Integer> brokerIds = Arrays.asList(0, 1, 2, 3, 4, 5);
+
+        Map<String, Map<Integer, List<Integer>>> moves = assigner.assign(current, brokerIds, Collections.emptyMap());
+        Map<Integer, Integer> replicaCounts = getReplicaCounts(current, moves, brokerIds);
+
+        for (Integer brokerId : brokerIds) {
+            Assert.assertEquals(2, (int) replicaCounts.get(brokerId));
+        }
+    }
+
+    @Test
+    public void testLargePartitionsAreWeighted() {
+        Map<String, Map<Integer, List<Integer>>> current = new TreeMap<>();
+        current.put("topic", getPartitions(
+                Arrays.asList(0),
+                Arrays.asList(0),
+                Arrays.asList(0),
+                Arrays.asList(1)));
+        Map<String, Long> sizes = new HashMap<>();
+        sizes.put(PartitionAssigner.key("topic", 0), 10L);
+        sizes.put(PartitionAssigner.key("topic", 1), 10L);
+        sizes.put(PartitionAssigner.key("topic", 2), 10L);
+        sizes.put(PartitionAssigner.key("topic", 3), 30L);
+
+        Map<String, Map<Integer, List<Integer>>> moves = assigner.assign(current, Arrays.asList(0, 1), sizes);
+
+        // Broker 0 holds 30 and broker 1 holds 30: nothing to move.
+        Assert.assertTrue(moves.isEmpty());
+    }
+
+    @Test
+    public void testPreferredLeadersAreSpread() {
+        Map<String, Map<Integer, List<Integer>>> current = new TreeMap<>();
+        current.put("topic", getPartitions(
+                Arrays.asList(0, 1),
+                Arrays.asList(0, 1),
+                Arrays.asList(0, 1),
+                Arrays.asList(0, 1)));
+
+        Map<String, Map<Integer, List<Integer>>> moves = assigner.assign(current, Arrays.asList(0, 1), Collections.emptyMap());
+
+        Assert.assertEquals(2, moves.get("topic").size());
+        for (List<Integer> replicas : moves.get("topic").values()) {
+            Assert.assertEquals(Arrays.asList(1, 0), replicas);
+        }
+    }
+
+    @SafeVarargs
+    private static Map<Integer, List<Integer>> getPartitions(List<Integer>... replicas) {
+        Map<Integer, List<Integer>> partitions = new TreeMap<>();
+        for (int i = 0; i < replicas.length; i++) {
+            partitions.put(i, replicas[i]);
+        }
+        return partitions;
+    }
+
+    private static Map<Integer, Integer> getReplicaCounts(
+            Map<String, Map<Integer, List<Integer>>> current,
+            Map<String, Map<Integer, List<Integer>>> moves,
+            List<Integer> brokerIds) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Integer brokerId : brokerIds) {
+            counts.put(brokerId, 0);
+        }
+        for (Map.Entry<String, Map<Integer, List<Integer>>> topic : current.entrySet()) {
+            for (Map.Entry<Integer, List<Integer>> partition : topic.getValue().entrySet()) {
+                List<Integer> replicas = partition.getValue();
+                if (moves.containsKey(topic.getKey()) && moves.get(topic.getKey()).containsKey(partition.getKey())) {
+                    replicas = moves.get(topic.getKey()).get(partition.getKey());
+                }
+                for (Integer replica : replicas) {
+                    counts.put(replica, counts.get(replica) + 1);
+                }
+            }
+        }
+        return counts;
+    }
+}
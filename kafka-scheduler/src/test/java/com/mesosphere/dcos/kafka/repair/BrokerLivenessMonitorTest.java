@@ -0,0 +1,165 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import org.apache.mesos.Protos;
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the BrokerLivenessMonitor class.
+ */
+public class BrokerLivenessMonitorTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @Mock private KafkaState kafkaState;
+    @Mock private FrameworkState frameworkState;
+
+    private final TestClock clock = new TestClock();
+    private final List<Protos.TaskInfo> restarted = new ArrayList<>();
+    private BrokerLivenessMonitor monitor;
+    private Protos.TaskInfo taskInfo;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        taskInfo = Protos.TaskInfo.newBuilder()
+                .setName("broker-0")
+                .setTaskId(Protos.TaskID.newBuilder().setValue("broker-0__id"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+                .build();
+        when(frameworkState.getTaskInfos()).thenReturn(Arrays.asList(taskInfo));
+        setTaskState(Protos.TaskState.TASK_RUNNING);
+        setTime(0);
+        monitor = new BrokerLivenessMonitor(kafkaState, frameworkState, TIMEOUT, restarted::add, clock);
+    }
+
+    @Test
+    public void testRegisteredBrokerNotRestarted() throws Exception {
+        setRegistered(true);
+        monitor.run();
+        setTime(60);
+        monitor.run();
+        Assert.assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    public void testNeverRegisteredBrokerNotRestarted() throws Exception {
+        setTaskState(Protos.TaskState.TASK_STAGING);
+        setRegistered(false);
+        monitor.run();
+        setTaskState(Protos.TaskState.TASK_RUNNING);
+        setTime(5);
+        monitor.run();
+        setTime(60);
+        monitor.run();
+        Assert.assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    public void testBrokerMissingAtStartRestartedAfterTimeout() throws Exception {
+        // The broker was already running, and had lost its registration, when the scheduler started.
+        setRegistered(false);
+        monitor.run();
+        setTime(25);
+        monitor.run();
+        Assert.assertTrue(restarted.isEmpty());
+
+        setTime(30);
+        monitor.run();
+        Assert.assertEquals(Arrays.asList(taskInfo), restarted);
+    }
+
+    @Test
+    public void testUnregisteredBrokerRestartedAfterTimeout() throws Exception {
+        setRegistered(true);
+        monitor.run();
+
+        setRegistered(false);
+        setTime(5);
+        monitor.run();
+        setTime(30);
+        monitor.run();
+        Assert.assertTrue(restarted.isEmpty());
+
+        setTime(35);
+        monitor.run();
+        Assert.assertEquals(Arrays.asList(taskInfo), restarted);
+    }
+
+    @Test
+    public void testReregisteredBrokerNotRestarted() throws Exception {
+        setRegistered(true);
+        monitor.run();
+        setRegistered(false);
+        setTime(5);
+        monitor.run();
+        setRegistered(true);
+        setTime(20);
+        monitor.run();
+        setRegistered(false);
+        setTime(40);
+        monitor.run();
+        Assert.assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    public void testStoppedBrokerNotRestarted() throws Exception {
+        setRegistered(true);
+        monitor.run();
+        setRegistered(false);
+        setTaskState(Protos.TaskState.TASK_FAILED);
+        setTime(5);
+        monitor.run();
+        setTime(60);
+        monitor.run();
+        Assert.assertTrue(restarted.isEmpty());
+    }
+
+    private void setRegistered(boolean registered) throws Exception {
+        when(kafkaState.getBrokerIds()).thenReturn(registered ? new JSONArray(Arrays.asList("0")) : new JSONArray());
+    }
+
+    private void setTaskState(Protos.TaskState state) throws Exception {
+        when(frameworkState.getTaskStatusForBroker(0)).thenReturn(Optional.of(Protos.TaskStatus.newBuilder()
+                .setTaskId(taskInfo.getTaskId())
+                .setState(state)
+                .build()));
+    }
+
+    private void setTime(long seconds) {
+        clock.instant = Instant.ofEpochSecond(seconds);
+    }
+
+    private static class TestClock extends Clock {
+        private Instant instant = Instant.EPOCH;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
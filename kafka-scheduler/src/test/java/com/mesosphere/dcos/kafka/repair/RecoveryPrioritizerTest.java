@@ -0,0 +1,102 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import org.apache.mesos.Protos;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the RecoveryPrioritizer class.
+ */
+public class RecoveryPrioritizerTest {
+    @Mock private KafkaState kafkaState;
+
+    private Map<String, Map<Integer, List<Integer>>> assignments;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        assignments = new TreeMap<>();
+        when(kafkaState.getPartitionAssignments()).thenReturn(assignments);
+        when(kafkaState.getTopicConfig(anyString())).thenReturn(new JSONObject());
+    }
+
+    @Test
+    public void testBrokerBelowMinIsrRecoveredFirst() throws Exception {
+        // Brokers 1 and 2 are down. Broker 2's absence leaves "critical" below min.insync.replicas.
+        addPartition("critical", 0, Arrays.asList(0, 2, 3), 0, Arrays.asList(0));
+        addPartition("other", 0, Arrays.asList(0, 1, 3), 0, Arrays.asList(0, 3));
+
+        List<Protos.TaskInfo> ordered = getPrioritizer(2).prioritize(getTasks(1, 2));
+        Assert.assertEquals("broker-2", ordered.get(0).getName());
+        Assert.assertEquals("broker-1", ordered.get(1).getName());
+    }
+
+    @Test
+    public void testOfflinePartitionsOutrankMinIsr() throws Exception {
+        addPartition("offline", 0, Arrays.asList(1), -1, Arrays.asList());
+        addPartition("critical", 0, Arrays.asList(0, 2), 0, Arrays.asList(0));
+        addPartition("critical", 1, Arrays.asList(0, 2), 0, Arrays.asList(0));
+
+        List<Protos.TaskInfo> ordered = getPrioritizer(2).prioritize(getTasks(2, 1));
+        Assert.assertEquals("broker-1", ordered.get(0).getName());
+    }
+
+    @Test
+    public void testTopicMinIsrOverride() throws Exception {
+        addPartition("relaxed", 0, Arrays.asList(0, 1), 0, Arrays.asList(0));
+        addPartition("strict", 0, Arrays.asList(0, 2), 0, Arrays.asList(0));
+        when(kafkaState.getTopicConfig("strict")).thenReturn(new JSONObject().put("min.insync.replicas", "2"));
+
+        List<Protos.TaskInfo> ordered = getPrioritizer(1).prioritize(getTasks(1, 2));
+        Assert.assertEquals("broker-2", ordered.get(0).getName());
+    }
+
+    @Test
+    public void testEqualImpactKeepsIdOrder() throws Exception {
+        List<Protos.TaskInfo> ordered = getPrioritizer(1).prioritize(getTasks(2, 0, 1));
+        Assert.assertEquals("broker-0", ordered.get(0).getName());
+        Assert.assertEquals("broker-1", ordered.get(1).getName());
+        Assert.assertEquals("broker-2", ordered.get(2).getName());
+    }
+
+    @Test
+    public void testStateFailureKeepsIdOrder() throws Exception {
+        when(kafkaState.getPartitionAssignments()).thenThrow(new Exception("zk down"));
+        List<Protos.TaskInfo> ordered = getPrioritizer(1).prioritize(getTasks(1, 0));
+        Assert.assertEquals("broker-0", ordered.get(0).getName());
+    }
+
+    private RecoveryPrioritizer getPrioritizer(int defaultMinIsr) {
+        return new RecoveryPrioritizer(kafkaState, defaultMinIsr);
+    }
+
+    private void addPartition(String topic, int partition, List<Integer> replicas, int leader, List<Integer> isr)
+            throws Exception {
+        assignments.computeIfAbsent(topic, t -> new TreeMap<>()).put(partition, replicas);
+        when(kafkaState.getPartitionState(topic, partition)).thenReturn(Optional.of(new JSONObject()
+                .put("leader", leader)
+                .put("isr", new JSONArray(isr))));
+    }
+
+    private static List<Protos.TaskInfo> getTasks(int... brokerIds) {
+        List<Protos.TaskInfo> tasks = new ArrayList<>();
+        for (int brokerId : brokerIds) {
+            tasks.add(Protos.TaskInfo.newBuilder()
+                    .setName("broker-" + brokerId)
+                    .setTaskId(Protos.TaskID.newBuilder().setValue("broker-" + brokerId + "__id"))
+                    .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+                    .build());
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,124 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.offer.OfferRequirement;
+import org.apache.mesos.offer.TaskRequirement;
+import org.apache.mesos.scheduler.recovery.RecoveryRequirement;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the ReplacementLaunchConstrainer class.
+ */
+public class ReplacementLaunchConstrainerTest {
+    private static final Duration MIN_DELAY = Duration.ofMinutes(10);
+    private static final Instant NOW = Instant.ofEpochMilli(1000000);
+
+    @Mock private ReplacementThrottler throttler;
+
+    private final TestClock clock = new TestClock();
+
+    private ReplacementLaunchConstrainer constrainer;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(throttler.getCatchingUpBrokers()).thenReturn(new TreeSet<>());
+        constrainer = new ReplacementLaunchConstrainer(throttler, 2, MIN_DELAY, clock);
+    }
+
+    @Test
+    public void testTransientNotConstrained() throws Exception {
+        when(throttler.getCatchingUpBrokers()).thenReturn(new TreeSet<>(Arrays.asList(0, 1, 2)));
+        Assert.assertTrue(constrainer.canLaunch(createRequirement(3, RecoveryRequirement.RecoveryType.TRANSIENT)));
+
+        constrainer.launchHappened(createLaunch(3), RecoveryRequirement.RecoveryType.TRANSIENT);
+        verify(throttler, never()).addReplacement(anyInt());
+    }
+
+    @Test
+    public void testConcurrentReplacementsLimited() throws Exception {
+        when(throttler.getCatchingUpBrokers()).thenReturn(new TreeSet<>(Arrays.asList(1, 2)));
+        Assert.assertFalse(constrainer.canLaunch(createRequirement(3, RecoveryRequirement.RecoveryType.PERMANENT)));
+
+        when(throttler.getCatchingUpBrokers()).thenReturn(new TreeSet<>(Collections.singletonList(1)));
+        Assert.assertTrue(constrainer.canLaunch(createRequirement(3, RecoveryRequirement.RecoveryType.PERMANENT)));
+    }
+
+    @Test
+    public void testReplaceCatchingUpBrokerAgain() throws Exception {
+        // The brokers being replaced don't count against the limit, or they could never be replaced again.
+        when(throttler.getCatchingUpBrokers()).thenReturn(new TreeSet<>(Arrays.asList(1, 2)));
+        Assert.assertTrue(constrainer.canLaunch(createRequirement(1, RecoveryRequirement.RecoveryType.PERMANENT)));
+    }
+
+    @Test
+    public void testMinDelayBetweenReplacements() throws Exception {
+        constrainer.launchHappened(createLaunch(1), RecoveryRequirement.RecoveryType.PERMANENT);
+        verify(throttler).addReplacement(1);
+
+        clock.instant = NOW.plus(MIN_DELAY).minusSeconds(1);
+        Assert.assertFalse(constrainer.canLaunch(createRequirement(1, RecoveryRequirement.RecoveryType.PERMANENT)));
+        Assert.assertTrue(constrainer.canLaunch(createRequirement(2, RecoveryRequirement.RecoveryType.PERMANENT)));
+
+        clock.instant = NOW.plus(MIN_DELAY);
+        Assert.assertTrue(constrainer.canLaunch(createRequirement(1, RecoveryRequirement.RecoveryType.PERMANENT)));
+    }
+
+    private static RecoveryRequirement createRequirement(int brokerId, RecoveryRequirement.RecoveryType recoveryType) {
+        TaskRequirement taskRequirement = mock(TaskRequirement.class);
+        when(taskRequirement.getTaskInfo()).thenReturn(createTaskInfo(brokerId));
+        OfferRequirement offerRequirement = mock(OfferRequirement.class);
+        when(offerRequirement.getTaskRequirements()).thenReturn(Collections.singletonList(taskRequirement));
+        RecoveryRequirement recoveryRequirement = mock(RecoveryRequirement.class);
+        when(recoveryRequirement.getOfferRequirement()).thenReturn(offerRequirement);
+        when(recoveryRequirement.getRecoveryType()).thenReturn(recoveryType);
+        return recoveryRequirement;
+    }
+
+    private static Protos.Offer.Operation createLaunch(int brokerId) {
+        return Protos.Offer.Operation.newBuilder()
+                .setType(Protos.Offer.Operation.Type.LAUNCH)
+                .setLaunch(Protos.Offer.Operation.Launch.newBuilder().addTaskInfos(createTaskInfo(brokerId)))
+                .build();
+    }
+
+    private static Protos.TaskInfo createTaskInfo(int brokerId) {
+        return Protos.TaskInfo.newBuilder()
+                .setName("broker-" + brokerId)
+                .setTaskId(Protos.TaskID.newBuilder().setValue("broker-" + brokerId + "__id"))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("agent"))
+                .build();
+    }
+
+    private static class TestClock extends Clock {
+        private Instant instant = NOW;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.mesosphere.dcos.kafka.repair;
+
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.state.FrameworkState;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import com.mesosphere.dcos.kafka.state.ReplicationThrottle;
+import org.apache.mesos.Protos;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * This class tests the ReplacementThrottler class.
+ */
+public class ReplacementThrottlerTest {
+    private static final long THROTTLE = 1000;
+    private static final Instant NOW = Instant.ofEpochMilli(1000000);
+
+    @Mock private KafkaState kafkaState;
+    @Mock private KafkaAdmin kafkaAdmin;
+    @Mock private FrameworkState frameworkState;
+
+    private final TestClock clock = new TestClock();
+
+    private Map<String, Map<Integer, List<Integer>>> assignments;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        assignments = new TreeMap<>();
+        when(kafkaState.getPartitionAssignments()).thenReturn(assignments);
+        when(kafkaState.getBrokerIds()).thenReturn(new JSONArray(Arrays.asList("0", "1", "2")));
+        when(kafkaAdmin.getThrottle(anyString())).thenReturn(Optional.empty());
+        when(kafkaAdmin.getReplacements()).thenReturn(Collections.emptyMap());
+        for (int brokerId = 0; brokerId < 4; brokerId++) {
+            when(frameworkState.getTaskInfoForBroker(brokerId)).thenReturn(Optional.of(createTaskInfo(brokerId, "new")));
+        }
+        when(frameworkState.getTaskStatusForBroker(anyInt())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    public void testThrottleCatchingUpBroker() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 1, 2), Arrays.asList(0, 1));
+        addPartition("topic", 1, Arrays.asList(1, 2, 0), Arrays.asList(1, 0));
+        addPartition("other", 0, Arrays.asList(0, 1), Arrays.asList(0, 1));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(2);
+        throttler.run();
+
+        ArgumentCaptor<ReplicationThrottle> throttle = ArgumentCaptor.forClass(ReplicationThrottle.class);
+        verify(kafkaAdmin).setThrottle(eq(ReplacementThrottler.THROTTLE_OWNER), throttle.capture());
+        Assert.assertEquals(Collections.singleton("topic"), throttle.getValue().getTopics());
+        Assert.assertEquals("0:0,0:1,1:0,1:1", throttle.getValue().getLeaderReplicas("topic"));
+        Assert.assertEquals("0:2,1:2", throttle.getValue().getFollowerReplicas("topic"));
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList(0, 1, 2)), throttle.getValue().getBrokerRates().keySet());
+        Assert.assertEquals(Collections.singleton(THROTTLE), new HashSet<>(throttle.getValue().getBrokerRates().values()));
+        Assert.assertEquals(Collections.singleton(2), throttler.getCatchingUpBrokers());
+    }
+
+    @Test
+    public void testLiftThrottleOnceInSync() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(2);
+        throttler.run();
+
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0, 2));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(true);
+        throttler.run();
+
+        ArgumentCaptor<ReplicationThrottle> throttle = ArgumentCaptor.forClass(ReplicationThrottle.class);
+        verify(kafkaAdmin, times(2)).setThrottle(eq(ReplacementThrottler.THROTTLE_OWNER), throttle.capture());
+        Assert.assertFalse(throttle.getAllValues().get(0).isEmpty());
+        Assert.assertTrue(throttle.getAllValues().get(1).isEmpty());
+        Assert.assertTrue(throttler.getCatchingUpBrokers().isEmpty());
+    }
+
+    @Test
+    public void testUnregisteredBrokerNotThrottled() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 3), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(3)).thenReturn(false);
+
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(3);
+        throttler.run();
+
+        ArgumentCaptor<ReplicationThrottle> throttle = ArgumentCaptor.forClass(ReplicationThrottle.class);
+        verify(kafkaAdmin).setThrottle(eq(ReplacementThrottler.THROTTLE_OWNER), throttle.capture());
+        Assert.assertTrue(throttle.getValue().isEmpty());
+        Assert.assertEquals(Collections.singleton(3), throttler.getCatchingUpBrokers());
+    }
+
+    @Test
+    public void testNoThrottleOnlyTracks() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+
+        ReplacementThrottler throttler = createThrottler(0);
+        throttler.addReplacement(2);
+        throttler.run();
+
+        verify(kafkaAdmin, never()).setThrottle(anyString(), any());
+        verify(kafkaAdmin).removeThrottle(ReplacementThrottler.THROTTLE_OWNER);
+        Assert.assertEquals(Collections.singleton(2), throttler.getCatchingUpBrokers());
+    }
+
+    @Test
+    public void testRecordReplacements() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(2);
+        verify(kafkaAdmin).setReplacements(Collections.singletonMap(2, NOW.toEpochMilli()));
+
+        when(kafkaState.isBrokerInSync(2)).thenReturn(true);
+        throttler.run();
+        verify(kafkaAdmin).setReplacements(Collections.emptyMap());
+    }
+
+    @Test
+    public void testRecoverCatchingUpBrokers() throws Exception {
+        // Recorded before the scheduler restarted. Broker 3 hasn't registered yet.
+        Map<Integer, Long> replacements = new TreeMap<>();
+        replacements.put(2, NOW.toEpochMilli());
+        replacements.put(3, NOW.toEpochMilli());
+        when(kafkaAdmin.getReplacements()).thenReturn(replacements);
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.run();
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList(2, 3)), throttler.getCatchingUpBrokers());
+        ArgumentCaptor<ReplicationThrottle> throttle = ArgumentCaptor.forClass(ReplicationThrottle.class);
+        verify(kafkaAdmin).setThrottle(eq(ReplacementThrottler.THROTTLE_OWNER), throttle.capture());
+        Assert.assertEquals("0:2", throttle.getValue().getFollowerReplicas("topic"));
+    }
+
+    @Test
+    public void testRecoverBeforeLaunch() throws Exception {
+        when(kafkaAdmin.getReplacements()).thenReturn(Collections.singletonMap(2, NOW.toEpochMilli()));
+
+        // A replacement launched before the first check doesn't drop those recorded earlier.
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(3);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList(2, 3)), throttler.getCatchingUpBrokers());
+    }
+
+    @Test
+    public void testUnregisteredBrokerDroppedAfterTimeout() throws Exception {
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(3);
+
+        clock.instant = NOW.plus(ReplacementThrottler.REGISTRATION_TIMEOUT).minusSeconds(1);
+        throttler.run();
+        Assert.assertEquals(Collections.singleton(3), throttler.getCatchingUpBrokers());
+
+        clock.instant = NOW.plus(ReplacementThrottler.REGISTRATION_TIMEOUT);
+        throttler.run();
+        Assert.assertTrue(throttler.getCatchingUpBrokers().isEmpty());
+        verify(kafkaAdmin).setReplacements(Collections.emptyMap());
+    }
+
+    @Test
+    public void testRegisteredBrokerNotDroppedAfterTimeout() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+
+        // Catching up may take much longer than registering.
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(2);
+        clock.instant = NOW.plus(ReplacementThrottler.REGISTRATION_TIMEOUT).plusSeconds(1);
+        throttler.run();
+        Assert.assertEquals(Collections.singleton(2), throttler.getCatchingUpBrokers());
+    }
+
+    @Test
+    public void testStoppedBrokerDropped() throws Exception {
+        addPartition("topic", 0, Arrays.asList(0, 2), Arrays.asList(0));
+        when(kafkaState.isBrokerInSync(2)).thenReturn(false);
+        ReplacementThrottler throttler = createThrottler(THROTTLE);
+        throttler.addReplacement(2);
+
+        // A status left from the task which was replaced doesn't count.
+        when(frameworkState.getTaskStatusForBroker(2))
+                .thenReturn(Optional.of(createTaskStatus(2, "old", Protos.TaskState.TASK_FAILED)));
+        throttler.run();
+        Assert.assertEquals(Collections.singleton(2), throttler.getCatchingUpBrokers());
+
+        when(frameworkState.getTaskStatusForBroker(2))
+                .thenReturn(Optional.of(createTaskStatus(2, "new", Protos.TaskState.TASK_RUNNING)));
+        throttler.run();
+        Assert.assertEquals(Collections.singleton(2), throttler.getCatchingUpBrokers());
+
+        when(frameworkState.getTaskStatusForBroker(2))
+                .thenReturn(Optional.of(createTaskStatus(2, "new", Protos.TaskState.TASK_FAILED)));
+        throttler.run();
+        Assert.assertTrue(throttler.getCatchingUpBrokers().isEmpty());
+    }
+
+    private ReplacementThrottler createThrottler(long throttleBytesPerSec) {
+        return new ReplacementThrottler(kafkaState, kafkaAdmin, frameworkState, throttleBytesPerSec, clock);
+    }
+
+    private static Protos.TaskInfo createTaskInfo(int brokerId, String taskId) {
+        return Protos.TaskInfo.newBuilder()
+                .setName("broker-" + brokerId)
+                .setTaskId(Protos.TaskID.newBuilder().setValue("broker-" + brokerId + "__" + taskId))
+                .setSlaveId(Protos.SlaveID.newBuilder().setValue("agent"))
+                .build();
+    }
+
+    private static Protos.TaskStatus createTaskStatus(int brokerId, String taskId, Protos.TaskState state) {
+        return Protos.TaskStatus.newBuilder()
+                .setTaskId(Protos.TaskID.newBuilder().setValue("broker-" + brokerId + "__" + taskId))
+                .setState(state)
+                .build();
+    }
+
+    private void addPartition(String topic, int partition, List<Integer> replicas, List<Integer> isr)
+            throws Exception {
+        assignments.computeIfAbsent(topic, t -> new TreeMap<>()).put(partition, replicas);
+        when(kafkaState.getPartitionState(topic, partition)).thenReturn(Optional.of(new JSONObject()
+                .put("leader", isr.get(0))
+                .put("isr", new JSONArray(isr))));
+    }
+
+    private static class TestClock extends Clock {
+        private Instant instant = NOW;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.mesosphere.dcos.kafka.state;
+
+import com.mesosphere.dcos.kafka.config.ZookeeperConfiguration;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.test.TestingServer;
+import org.apache.mesos.dcos.DcosConstants;
+import org.apache.mesos.testing.CuratorTestUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * This class tests the KafkaAdmin class.
+ */
+public class KafkaAdminTest {
+    private static final String testFrameworkName = "kafka";
+    private static final String testRoot = DcosConstants.SERVICE_ROOT_PATH_PREFIX + testFrameworkName;
+
+    private static TestingServer testingServer;
+    private KafkaAdmin kafkaAdmin;
+    private CuratorFramework zkClient;
+    private ZookeeperConfiguration zkConfig;
+
+    @BeforeClass
+    public static void beforeAll() throws Exception {
+        testingServer = new TestingServer();
+    }
+
+    @Before
+    public void beforeEach() throws Exception {
+        CuratorTestUtils.clear(testingServer);
+        zkConfig = new ZookeeperConfiguration(
+                testFrameworkName,
+                testingServer.getConnectString(),
+                testingServer.getConnectString());
+        kafkaAdmin = new KafkaAdmin(zkConfig);
+        zkClient = CuratorFrameworkFactory.newClient(
+                testingServer.getConnectString(),
+                new RetryNTimes(0, 0));
+        zkClient.start();
+    }
+
+    @Test
+    public void testChangeConfigFormat() throws Exception {
+        kafkaAdmin.changeConfig("topics", "topic", new JSONObject().put("retention.ms", "1000"), Collections.emptyList());
+
+        JSONObject config = read(testRoot + "/config/topics/topic");
+        Assert.assertEquals(1, config.getInt("version"));
+        Assert.assertEquals("1000", config.getJSONObject("config").getString("retention.ms"));
+
+        List<String> changes = zkClient.getChildren().forPath(testRoot + "/config/changes");
+        Assert.assertEquals(1, changes.size());
+        Assert.assertTrue(changes.get(0).startsWith("config_change_"));
+        JSONObject change = read(testRoot + "/config/changes/" + changes.get(0));
+        Assert.assertEquals(2, change.getInt("version"));
+        Assert.assertEquals("topics/topic", change.getString("entity_path"));
+    }
+
+    @Test
+    public void testChangeConfigKeepsOtherEntries() throws Exception {
+        kafkaAdmin.changeConfig("topics", "topic",
+                new JSONObject().put("retention.ms", "1000").put("segment.ms", "2000"), Collections.emptyList());
+        kafkaAdmin.changeConfig("topics", "topic",
+                new JSONObject().put("cleanup.policy", "compact"), Collections.singletonList("segment.ms"));
+
+        JSONObject config = kafkaAdmin.getConfig("topics", "topic");
+        Assert.assertEquals("1000", config.getString("retention.ms"));
+        Assert.assertEquals("compact", config.getString("cleanup.policy"));
+        Assert.assertFalse(config.has("segment.ms"));
+        Assert.assertEquals(2, zkClient.getChildren().forPath(testRoot + "/config/changes").size());
+    }
+
+    @Test
+    public void testReassignPartitionsFormat() throws Exception {
+        Map<String, Map<Integer, List<Integer>>> assignments = new TreeMap<>();
+        assignments.put("topic", Collections.singletonMap(0, Arrays.asList(2, 1)));
+        Assert.assertFalse(kafkaAdmin.isReassignmentInProgress());
+        kafkaAdmin.reassignPartitions(assignments);
+
+        Assert.assertTrue(kafkaAdmin.isReassignmentInProgress());
+        JSONObject reassignment = read(testRoot + "/admin/reassign_partitions");
+        Assert.assertEquals(1, reassignment.getInt("version"));
+        JSONObject partition = reassignment.getJSONArray("partitions").getJSONObject(0);
+        Assert.assertEquals("topic", partition.getString("topic"));
+        Assert.assertEquals(0, partition.getInt("partition"));
+        Assert.assertEquals(new JSONArray(Arrays.asList(2, 1)).toString(), partition.getJSONArray("replicas").toString());
+    }
+
+    @Test
+    public void testThrottlesMerged() throws Exception {
+        kafkaAdmin.setThrottle("rebalance", new ReplicationThrottle(1000)
+                .addLeader("topic", 0, 0)
+                .addFollower("topic", 0, 1));
+        kafkaAdmin.setThrottle("replacement", new ReplicationThrottle(2000)
+                .addLeader("topic", 1, 0)
+                .addFollower("topic", 1, 2));
+
+        JSONObject topicConfig = kafkaAdmin.getConfig("topics", "topic");
+        Assert.assertEquals("0:0,1:0", topicConfig.getString(KafkaAdmin.LEADER_THROTTLED_REPLICAS));
+        Assert.assertEquals("0:1,1:2", topicConfig.getString(KafkaAdmin.FOLLOWER_THROTTLED_REPLICAS));
+        Assert.assertEquals("1000", kafkaAdmin.getConfig("brokers", "0").getString(KafkaAdmin.LEADER_THROTTLED_RATE));
+        Assert.assertEquals("2000", kafkaAdmin.getConfig("brokers", "2").getString(KafkaAdmin.FOLLOWER_THROTTLED_RATE));
+
+        // Lifting one owner's throttle keeps the other's.
+        kafkaAdmin.removeThrottle("rebalance");
+        topicConfig = kafkaAdmin.getConfig("topics", "topic");
+        Assert.assertEquals("1:0", topicConfig.getString(KafkaAdmin.LEADER_THROTTLED_REPLICAS));
+        Assert.assertEquals("1:2", topicConfig.getString(KafkaAdmin.FOLLOWER_THROTTLED_REPLICAS));
+        Assert.assertEquals("2000", kafkaAdmin.getConfig("brokers", "0").getString(KafkaAdmin.LEADER_THROTTLED_RATE));
+        Assert.assertFalse(kafkaAdmin.getConfig("brokers", "1").has(KafkaAdmin.LEADER_THROTTLED_RATE));
+
+        kafkaAdmin.removeThrottle("replacement");
+        Assert.assertFalse(kafkaAdmin.getConfig("topics", "topic").has(KafkaAdmin.LEADER_THROTTLED_REPLICAS));
+        Assert.assertFalse(kafkaAdmin.getConfig("brokers", "2").has(KafkaAdmin.FOLLOWER_THROTTLED_RATE));
+    }
+
+    @Test
+    public void testThrottlesLeaveOtherTopicConfig() throws Exception {
+        kafkaAdmin.changeConfig("topics", "topic", new JSONObject().put("retention.ms", "1000"), Collections.emptyList());
+        kafkaAdmin.setThrottle("rebalance", new ReplicationThrottle(1000).addFollower("topic", 0, 1));
+        kafkaAdmin.removeThrottle("rebalance");
+
+        JSONObject topicConfig = kafkaAdmin.getConfig("topics", "topic");
+        Assert.assertEquals("1000", topicConfig.getString("retention.ms"));
+        Assert.assertFalse(topicConfig.has(KafkaAdmin.FOLLOWER_THROTTLED_REPLICAS));
+    }
+
+    @Test
+    public void testThrottlesSurviveRestart() throws Exception {
+        ReplicationThrottle throttle = new ReplicationThrottle(1000)
+                .addLeader("topic", 0, 0)
+                .addFollower("topic", 0, 1);
+        kafkaAdmin.setThrottle("rebalance", throttle);
+
+        KafkaAdmin restarted = new KafkaAdmin(zkConfig);
+        Assert.assertEquals(Optional.of(throttle), restarted.getThrottle("rebalance"));
+        Assert.assertFalse(restarted.getThrottle("replacement").isPresent());
+
+        restarted.removeThrottle("rebalance");
+        Assert.assertFalse(kafkaAdmin.getConfig("topics", "topic").has(KafkaAdmin.LEADER_THROTTLED_REPLICAS));
+        Assert.assertFalse(kafkaAdmin.getConfig("brokers", "1").has(KafkaAdmin.FOLLOWER_THROTTLED_RATE));
+    }
+
+    @Test
+    public void testManagedConfig() throws Exception {
+        Assert.assertEquals(0, kafkaAdmin.getManagedConfig("topics", "topic").length());
+        kafkaAdmin.setManagedConfig("topics", "topic", new JSONObject().put("retention.ms", "1000"));
+        Assert.assertEquals("1000", kafkaAdmin.getManagedConfig("topics", "topic").getString("retention.ms"));
+        Assert.assertEquals(Collections.singletonList("topic"), kafkaAdmin.getManagedConfigEntities("topics"));
+
+        kafkaAdmin.setManagedConfig("topics", "topic", new JSONObject());
+        Assert.assertEquals(Collections.emptyList(), kafkaAdmin.getManagedConfigEntities("topics"));
+    }
+
+    @Test
+    public void testManagedTopicDefaults() throws Exception {
+        Assert.assertEquals(0, kafkaAdmin.getManagedTopicDefaults().length());
+        kafkaAdmin.setManagedTopicDefaults(new JSONObject().put("retention.ms", "1000"));
+        Assert.assertEquals("1000", kafkaAdmin.getManagedTopicDefaults().getString("retention.ms"));
+        // Kept apart from the records of the topics themselves.
+        Assert.assertEquals(Collections.emptyList(), kafkaAdmin.getManagedConfigEntities("topics"));
+
+        kafkaAdmin.setManagedTopicDefaults(new JSONObject());
+        Assert.assertEquals(0, kafkaAdmin.getManagedTopicDefaults().length());
+    }
+
+    @Test
+    public void testReplacements() throws Exception {
+        Assert.assertTrue(kafkaAdmin.getReplacements().isEmpty());
+        Map<Integer, Long> replacements = new TreeMap<>();
+        replacements.put(1, 1000L);
+        replacements.put(12, 2000L);
+        kafkaAdmin.setReplacements(replacements);
+        Assert.assertEquals(replacements, kafkaAdmin.getReplacements());
+
+        kafkaAdmin.setReplacements(Collections.emptyMap());
+        Assert.assertTrue(kafkaAdmin.getReplacements().isEmpty());
+    }
+
+    @Test
+    public void testStorageMigration() throws Exception {
+        Assert.assertFalse(kafkaAdmin.getStorageMigration(1, "config").isPresent());
+        kafkaAdmin.setStorageMigration(1, "config", 1000L);
+        Assert.assertEquals(Optional.of(1000L), kafkaAdmin.getStorageMigration(1, "config"));
+        // Only migrations to the provided config are returned.
+        Assert.assertFalse(kafkaAdmin.getStorageMigration(1, "other").isPresent());
+        Assert.assertFalse(kafkaAdmin.getStorageMigration(2, "config").isPresent());
+
+        kafkaAdmin.deleteStorageMigration(1);
+        Assert.assertFalse(kafkaAdmin.getStorageMigration(1, "config").isPresent());
+        kafkaAdmin.deleteStorageMigration(1);
+    }
+
+    private JSONObject read(String path) throws Exception {
+        return new JSONObject(new String(zkClient.getData().forPath(path), StandardCharsets.UTF_8));
+    }
+}
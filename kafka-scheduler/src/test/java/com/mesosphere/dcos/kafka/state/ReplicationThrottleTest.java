@@ -0,0 +1,54 @@
+package com.mesosphere.dcos.kafka.state;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+/**
+ * This class tests the ReplicationThrottle class.
+ */
+public class ReplicationThrottleTest {
+
+    @Test
+    public void testMergeUnionsReplicas() {
+        ReplicationThrottle rebalance = new ReplicationThrottle(1000)
+                .addLeader("topic", 0, 0)
+                .addFollower("topic", 0, 1);
+        ReplicationThrottle replacement = new ReplicationThrottle(2000)
+                .addLeader("topic", 1, 0)
+                .addFollower("topic", 1, 2)
+                .addLeader("other", 0, 1)
+                .addFollower("other", 0, 2);
+
+        ReplicationThrottle merged = rebalance.merge(replacement);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("other", "topic")), merged.getTopics());
+        Assert.assertEquals("0:0,1:0", merged.getLeaderReplicas("topic"));
+        Assert.assertEquals("0:1,1:2", merged.getFollowerReplicas("topic"));
+        Assert.assertEquals(new TreeSet<>(Arrays.asList(1, 2)), merged.getFollowerBrokers());
+        // Brokers in both are limited to the lower rate.
+        Assert.assertEquals(Long.valueOf(1000), merged.getBrokerRates().get(0));
+        Assert.assertEquals(Long.valueOf(1000), merged.getBrokerRates().get(1));
+        Assert.assertEquals(Long.valueOf(2000), merged.getBrokerRates().get(2));
+
+        // Merging leaves both throttles as they were.
+        Assert.assertEquals(Collections.singleton("topic"), rebalance.getTopics());
+    }
+
+    @Test
+    public void testJSONRoundTrip() {
+        ReplicationThrottle throttle = new ReplicationThrottle(1000)
+                .addLeader("topic", 0, 0)
+                .addFollower("topic", 0, 1);
+        Assert.assertEquals(throttle, ReplicationThrottle.fromJSON(throttle.toJSON()));
+        Assert.assertEquals("", ReplicationThrottle.fromJSON(throttle.toJSON()).getLeaderReplicas("other"));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(new ReplicationThrottle(1000).isEmpty());
+        Assert.assertFalse(new ReplicationThrottle(1000).addFollower("topic", 0, 1).isEmpty());
+    }
+}
@@ -1,5 +1,6 @@
 package com.mesosphere.dcos.kafka.web;
 
+import com.mesosphere.dcos.kafka.plan.KafkaScaleOutPhase;
 import com.mesosphere.dcos.kafka.plan.KafkaUpdatePhase;
 import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
 import com.mesosphere.dcos.kafka.state.FrameworkState;
@@ -28,6 +29,7 @@ public class BrokerCheckTest {
     @Mock private Plan plan;
     @Mock private FrameworkState frameworkState;
     @Mock private KafkaUpdatePhase kafkaUpdatePhase;
+    @Mock private KafkaScaleOutPhase kafkaScaleOutPhase;
     @Mock private Step step;
     @Mock private KafkaScheduler kafkaScheduler;
     private BrokerCheck brokerCheck;
@@ -77,6 +79,20 @@ public class BrokerCheckTest {
         Assert.assertTrue(brokerCheck.check().isHealthy());
     }
 
+    @Test
+    public void testCheckCountsScaleOutBrokers() throws Exception {
+        when(planManager.getPlan()).thenReturn(plan);
+        when(frameworkState.getRunningBrokersCount()).thenReturn(1);
+        when(step.isComplete()).thenReturn(true);
+        when(kafkaUpdatePhase.getChildren()).thenReturn(Arrays.asList(step));
+        when(kafkaScaleOutPhase.getChildren()).thenReturn(Arrays.asList(step));
+        Mockito.<List<? extends Phase>>when(plan.getChildren()).thenReturn(Arrays.asList(kafkaScaleOutPhase, kafkaUpdatePhase));
+        Assert.assertFalse(brokerCheck.check().isHealthy());
+
+        when(frameworkState.getRunningBrokersCount()).thenReturn(2);
+        Assert.assertTrue(brokerCheck.check().isHealthy());
+    }
+
     private List<? extends Phase> getMockPhases() {
         return Arrays.asList(kafkaUpdatePhase);
     }
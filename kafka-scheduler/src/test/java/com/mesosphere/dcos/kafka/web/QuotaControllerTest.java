@@ -0,0 +1,220 @@
+package com.mesosphere.dcos.kafka.web;
+
+import com.mesosphere.dcos.kafka.metrics.BrokerMetrics;
+import com.mesosphere.dcos.kafka.metrics.LoadModel;
+import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.*;
+
+public class QuotaControllerTest {
+
+    @Mock private KafkaScheduler kafkaScheduler;
+    @Mock private KafkaAdmin kafkaAdmin;
+
+    private QuotaController controller;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(kafkaScheduler.getKafkaAdmin()).thenReturn(kafkaAdmin);
+        when(kafkaAdmin.getConfig(anyString(), anyString())).thenReturn(new JSONObject());
+        when(kafkaAdmin.getConfigEntities(anyString())).thenReturn(Collections.emptyList());
+        controller = new QuotaController(kafkaScheduler);
+    }
+
+    @Test
+    public void testSetClientQuota() throws Exception {
+        when(kafkaAdmin.getConfig("clients", "app")).thenReturn(new JSONObject()
+                .put(KafkaAdmin.PRODUCER_BYTE_RATE, "1024")
+                .put("other.config", "1"));
+
+        Response response = controller.setClientQuota("app", 1024L, null);
+        assertEquals(200, response.getStatus());
+        // Only the quota settings of the entity's config are returned.
+        assertEquals(new JSONObject().put(KafkaAdmin.PRODUCER_BYTE_RATE, "1024").toString(),
+                getEntity(response).toString());
+
+        JSONObject updates = verifyChangeConfig("clients", "app", Collections.emptyList());
+        assertEquals(new JSONObject().put(KafkaAdmin.PRODUCER_BYTE_RATE, "1024").toString(), updates.toString());
+    }
+
+    @Test
+    public void testSetUserQuota() throws Exception {
+        assertEquals(200, controller.setUserQuota(KafkaAdmin.DEFAULT_ENTITY, 1024L, 2048L).getStatus());
+
+        JSONObject updates = verifyChangeConfig("users", KafkaAdmin.DEFAULT_ENTITY, Collections.emptyList());
+        assertEquals("1024", updates.getString(KafkaAdmin.PRODUCER_BYTE_RATE));
+        assertEquals("2048", updates.getString(KafkaAdmin.CONSUMER_BYTE_RATE));
+    }
+
+    @Test
+    public void testUserClientPaths() throws Exception {
+        assertEquals(200, controller.setUserClientQuota("alice", "app", null, 2048L).getStatus());
+        JSONObject updates = verifyChangeConfig("users", "alice/clients/app", Collections.emptyList());
+        assertEquals(new JSONObject().put(KafkaAdmin.CONSUMER_BYTE_RATE, "2048").toString(), updates.toString());
+
+        controller.getUserClientQuota("alice", "app");
+        verify(kafkaAdmin, atLeastOnce()).getConfig("users", "alice/clients/app");
+
+        controller.deleteUserClientQuota("alice", "app");
+        verify(kafkaAdmin).changeConfig(eq("users"), eq("alice/clients/app"), any(JSONObject.class),
+                eq(Arrays.asList(KafkaAdmin.PRODUCER_BYTE_RATE, KafkaAdmin.CONSUMER_BYTE_RATE)));
+    }
+
+    @Test
+    public void testInvalidNamesRejected() throws Exception {
+        for (String name : Arrays.asList(null, "", ".", "..", "a/b", "../config")) {
+            assertBadRequest("Invalid name: " + name, controller.getClientQuota(name));
+            assertBadRequest("Invalid name: " + name, controller.setClientQuota(name, 1024L, null));
+            assertBadRequest("Invalid name: " + name, controller.deleteClientQuota(name));
+            assertBadRequest("Invalid name: " + name, controller.setUserQuota(name, 1024L, null));
+            assertBadRequest("Invalid name: " + name, controller.setUserClientQuota("alice", name, 1024L, null));
+            assertBadRequest("Invalid user: " + name, controller.getUserClientQuota(name, "app"));
+            assertBadRequest("Invalid user: " + name, controller.setUserClientQuota(name, "app", 1024L, null));
+            assertBadRequest("Invalid user: " + name, controller.deleteUserClientQuota(name, "app"));
+        }
+        verifyZeroInteractions(kafkaAdmin);
+    }
+
+    @Test
+    public void testInvalidRatesRejected() throws Exception {
+        assertBadRequest("Must designate 'producer_byte_rate' and/or 'consumer_byte_rate'.",
+                controller.setClientQuota("app", null, null));
+        assertBadRequest("Byte rates must be positive.", controller.setClientQuota("app", 0L, null));
+        assertBadRequest("Byte rates must be positive.", controller.setClientQuota("app", null, -1L));
+        assertBadRequest("Byte rates must be positive.", controller.setUserQuota("alice", 1024L, 0L));
+        assertBadRequest("Byte rates must be positive.", controller.setUserClientQuota("alice", "app", -1L, 1024L));
+        verifyZeroInteractions(kafkaAdmin);
+    }
+
+    @Test
+    public void testDeleteRemovesOnlyQuotas() throws Exception {
+        Response response = controller.deleteClientQuota("app");
+        assertEquals(200, response.getStatus());
+        assertEquals("Deleted quota of clients/app", getEntity(response).getString("Result"));
+
+        // Nothing is set, and only the quota keys are removed, leaving any other config alone.
+        JSONObject updates = verifyChangeConfig("clients", "app",
+                Arrays.asList(KafkaAdmin.PRODUCER_BYTE_RATE, KafkaAdmin.CONSUMER_BYTE_RATE));
+        assertEquals(0, updates.length());
+    }
+
+    @Test
+    public void testFailureReturnsServerError() throws Exception {
+        doThrow(new Exception("Lost connection")).when(kafkaAdmin)
+                .changeConfig(anyString(), anyString(), any(JSONObject.class), anyCollectionOf(String.class));
+        assertEquals(500, controller.setClientQuota("app", 1024L, null).getStatus());
+        assertEquals(500, controller.deleteUserQuota("alice").getStatus());
+    }
+
+    @Test
+    public void testQuotas() throws Exception {
+        when(kafkaAdmin.getConfigEntities("clients")).thenReturn(Arrays.asList("app", "unlimited"));
+        when(kafkaAdmin.getConfigEntities("users")).thenReturn(Collections.singletonList("alice"));
+        when(kafkaAdmin.getConfigEntities("users/alice/clients")).thenReturn(Collections.singletonList("app"));
+        when(kafkaAdmin.getConfig("clients", "app"))
+                .thenReturn(new JSONObject().put(KafkaAdmin.PRODUCER_BYTE_RATE, "1024"));
+        // An entity with config but no quota isn't listed.
+        when(kafkaAdmin.getConfig("clients", "unlimited")).thenReturn(new JSONObject().put("other.config", "1"));
+        when(kafkaAdmin.getConfig("users", "alice"))
+                .thenReturn(new JSONObject().put(KafkaAdmin.CONSUMER_BYTE_RATE, "2048"));
+        when(kafkaAdmin.getConfig("users", "alice/clients/app"))
+                .thenReturn(new JSONObject().put(KafkaAdmin.PRODUCER_BYTE_RATE, "4096"));
+
+        Response response = controller.quotas();
+        assertEquals(200, response.getStatus());
+        JSONArray quotas = new JSONArray((String) response.getEntity());
+        assertEquals(3, quotas.length());
+
+        JSONObject client = quotas.getJSONObject(0);
+        assertEquals("app", client.getString("client_id"));
+        assertFalse(client.has("user"));
+        assertEquals("1024", client.getString(KafkaAdmin.PRODUCER_BYTE_RATE));
+
+        JSONObject user = quotas.getJSONObject(1);
+        assertEquals("alice", user.getString("user"));
+        assertFalse(user.has("client_id"));
+        assertEquals("2048", user.getString(KafkaAdmin.CONSUMER_BYTE_RATE));
+
+        JSONObject userClient = quotas.getJSONObject(2);
+        assertEquals("alice", userClient.getString("user"));
+        assertEquals("app", userClient.getString("client_id"));
+        assertEquals("4096", userClient.getString(KafkaAdmin.PRODUCER_BYTE_RATE));
+    }
+
+    @Test
+    public void testThroughputUtilization() throws Exception {
+        BrokerMetrics broker0 = new BrokerMetrics();
+        broker0.getProduceBytesPerClient().put("app", 300.0);
+        broker0.getFetchBytesPerClient().put("app", 100.0);
+        broker0.getProduceBytesPerClient().put("unlimited", 5000.0);
+        BrokerMetrics broker1 = new BrokerMetrics();
+        broker1.getProduceBytesPerClient().put("app", 500.0);
+        Map<Integer, BrokerMetrics> metrics = new HashMap<>();
+        metrics.put(0, broker0);
+        metrics.put(1, broker1);
+        when(kafkaScheduler.getLoadModel())
+                .thenReturn(LoadModel.build(1234L, metrics, Collections.emptyMap(), Collections.emptyMap()));
+
+        // The client's own quota takes precedence over the default, which applies to the rest.
+        when(kafkaAdmin.getConfig("clients", KafkaAdmin.DEFAULT_ENTITY))
+                .thenReturn(new JSONObject().put(KafkaAdmin.PRODUCER_BYTE_RATE, "1000"));
+        when(kafkaAdmin.getConfig("clients", "app"))
+                .thenReturn(new JSONObject().put(KafkaAdmin.CONSUMER_BYTE_RATE, "400"));
+
+        Response response = controller.throughput();
+        assertEquals(200, response.getStatus());
+        JSONObject result = getEntity(response);
+        assertEquals(1234L, result.getLong("timestamp"));
+        JSONArray clients = result.getJSONArray("clients");
+        assertEquals(2, clients.length());
+
+        JSONObject app = clients.getJSONObject(0);
+        assertEquals("app", app.getString("client_id"));
+        assertEquals(1000, app.getLong(KafkaAdmin.PRODUCER_BYTE_RATE));
+        // Compared against the highest rate on any one broker, rather than the total.
+        assertEquals(0.5, app.getDouble("produce_quota_utilization"), 1e-9);
+        assertEquals(400, app.getLong(KafkaAdmin.CONSUMER_BYTE_RATE));
+        assertEquals(0.25, app.getDouble("fetch_quota_utilization"), 1e-9);
+
+        JSONObject unlimited = clients.getJSONObject(1);
+        assertEquals("unlimited", unlimited.getString("client_id"));
+        assertEquals(5.0, unlimited.getDouble("produce_quota_utilization"), 1e-9);
+        // Neither the client nor the default has a consumer quota.
+        assertFalse(unlimited.has(KafkaAdmin.CONSUMER_BYTE_RATE));
+        assertFalse(unlimited.has("fetch_quota_utilization"));
+    }
+
+    private JSONObject verifyChangeConfig(String entityType, String entityPath, Collection<String> removals)
+            throws Exception {
+        ArgumentCaptor<JSONObject> updates = ArgumentCaptor.forClass(JSONObject.class);
+        verify(kafkaAdmin).changeConfig(eq(entityType), eq(entityPath), updates.capture(), eq(removals));
+        return updates.getValue();
+    }
+
+    private static void assertBadRequest(String error, Response response) {
+        assertEquals(400, response.getStatus());
+        assertEquals(error, getEntity(response).getString("Error"));
+    }
+
+    private static JSONObject getEntity(Response response) {
+        return new JSONObject((String) response.getEntity());
+    }
+}
@@ -0,0 +1,137 @@
+package com.mesosphere.dcos.kafka.web;
+
+import com.mesosphere.dcos.kafka.cmd.CmdExecutor;
+import com.mesosphere.dcos.kafka.commons.state.KafkaState;
+import com.mesosphere.dcos.kafka.config.DynamicConfigUpdater;
+import com.mesosphere.dcos.kafka.scheduler.KafkaScheduler;
+import com.mesosphere.dcos.kafka.state.KafkaAdmin;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class TopicControllerTest {
+
+    @Mock private KafkaScheduler kafkaScheduler;
+    @Mock private KafkaState kafkaState;
+    @Mock private KafkaAdmin kafkaAdmin;
+    @Mock private CmdExecutor cmdExecutor;
+    @Mock private DynamicConfigUpdater dynamicConfigUpdater;
+
+    private TopicController controller;
+
+    @Before
+    public void beforeEach() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(kafkaScheduler.getKafkaState()).thenReturn(kafkaState);
+        when(kafkaScheduler.getKafkaAdmin()).thenReturn(kafkaAdmin);
+        when(kafkaScheduler.getDynamicConfigUpdater()).thenReturn(dynamicConfigUpdater);
+        when(kafkaAdmin.getConfig(anyString(), anyString())).thenReturn(new JSONObject());
+        when(kafkaState.getTopics()).thenReturn(new JSONArray(Arrays.asList("logs-a", "logs-b", "logs-c")));
+        when(kafkaState.hasTopic("topic")).thenReturn(true);
+        controller = new TopicController(cmdExecutor, kafkaScheduler);
+    }
+
+    @Test
+    public void testValidConfigs() throws Exception {
+        assertValid("retention.ms", "-1");
+        assertValid("min.insync.replicas", "2");
+        assertValid("cleanup.policy", "compact,delete");
+        assertValid("compression.type", "lz4");
+        assertValid("min.cleanable.dirty.ratio", "0.5");
+        assertValid("message.format.version", "0.10.1-IV2");
+        assertValid("unclean.leader.election.enable", "FALSE");
+    }
+
+    @Test
+    public void testInvalidConfigs() throws Exception {
+        assertInvalid("retention.ms", "1d");
+        assertInvalid("min.insync.replicas", "0");
+        assertInvalid("segment.bytes", "3000000000");
+        assertInvalid("cleanup.policy", "compact,archive");
+        assertInvalid("compression.type", "zstd");
+        assertInvalid("min.cleanable.dirty.ratio", "1.5");
+        assertInvalid("message.format.version", "0.11.0");
+        assertInvalid("preallocate", "yes");
+        verifyZeroInteractions(kafkaAdmin);
+    }
+
+    @Test
+    public void testThrottleConfigsRejected() throws Exception {
+        for (String key : Arrays.asList(
+                KafkaAdmin.LEADER_THROTTLED_REPLICAS, KafkaAdmin.FOLLOWER_THROTTLED_REPLICAS)) {
+            JSONObject result = getEntity(controller.operationOnTopic(
+                    "topic", "deleteConfig", Collections.singletonList(key), null, null, null));
+            assertEquals("Unrecognized topic config: " + key, result.getString("Error"));
+        }
+        verifyZeroInteractions(kafkaAdmin);
+    }
+
+    @Test
+    public void testMissingTopicRejected() throws Exception {
+        for (String operation : Arrays.asList("config", "deleteConfig")) {
+            Response response = controller.operationOnTopic("topci", operation,
+                    Collections.singletonList("retention.ms"), Collections.singletonList("1000"), null, null);
+            assertEquals("Topic does not exist: topci", getEntity(response).getString("Error"));
+        }
+        verifyZeroInteractions(kafkaAdmin);
+    }
+
+    @Test
+    public void testPartialFailureListsUpdatedTopics() throws Exception {
+        doThrow(new Exception("Lost connection")).when(kafkaAdmin)
+                .changeConfig(eq("topics"), eq("logs-b"), any(JSONObject.class), anyCollectionOf(String.class));
+
+        Response response = controller.operationOnTopics(
+                "logs-.*", "config", Collections.singletonList("retention.ms"), Collections.singletonList("1000"));
+        assertEquals(500, response.getStatus());
+        JSONObject result = getEntity(response);
+        assertTrue(result.getString("Error").contains("logs-b"));
+        assertEquals(new JSONArray(Collections.singletonList("logs-a")).toString(),
+                result.getJSONArray("topics").toString());
+        verify(kafkaAdmin, never())
+                .changeConfig(eq("topics"), eq("logs-c"), any(JSONObject.class), anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void testCreateTopicAppliesTopicDefaults() throws Exception {
+        when(cmdExecutor.createTopic("topic", 3, 2)).thenReturn(new JSONObject().put("message", "Created topic"));
+        assertEquals(200, controller.createTopic("topic", "3", "2").getStatus());
+        verify(dynamicConfigUpdater).applyTopicDefaults("topic");
+
+        // The topic was still created, and is given the defaults when the updater next runs.
+        doThrow(new Exception("Lost connection")).when(dynamicConfigUpdater).applyTopicDefaults("topic");
+        assertEquals(200, controller.createTopic("topic", "3", "2").getStatus());
+    }
+
+    private void assertValid(String key, String value) throws Exception {
+        JSONObject result = setConfig(key, value);
+        assertTrue(result.toString(), !result.has("Error"));
+    }
+
+    private void assertInvalid(String key, String value) throws Exception {
+        JSONObject result = setConfig(key, value);
+        assertTrue(result.toString(), result.getString("Error").startsWith("Invalid value for topic config " + key));
+    }
+
+    private JSONObject setConfig(String key, String value) throws Exception {
+        List<String> keys = Collections.singletonList(key);
+        List<String> values = Collections.singletonList(value);
+        return getEntity(controller.operationOnTopic("topic", "config", keys, values, null, null));
+    }
+
+    private static JSONObject getEntity(Response response) {
+        return new JSONObject((String) response.getEntity());
+    }
+}
@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Namespace for POJO classes containing configuration for various parts of our clients.
@@ -16,6 +18,36 @@ public class ClientConfigs {
     NONE,
     PRODUCER,
     CONSUMER,
+    /**
+     * Produces and consumes in the same process, checking that every message arrives in order.
+     */
+    END_TO_END,
+    /**
+     * Runs the workloads and phases described by a scenario file.
+     */
+    SCENARIO,
+    /**
+     * Compares the results of two runs, without connecting to Kafka.
+     */
+    COMPARE,
+  }
+
+  /**
+   * How consumers commit their offsets.
+   */
+  public enum CommitMode {
+    /**
+     * Periodically in the background, as configured by the Kafka consumer's own settings.
+     */
+    AUTO,
+    /**
+     * After each non-empty poll, waiting for the commit to complete.
+     */
+    SYNC,
+    /**
+     * After each non-empty poll, without waiting for the commit to complete.
+     */
+    ASYNC,
   }
 
   /**
@@ -36,7 +68,9 @@ public class ClientConfigs {
         ClientMode clientMode = ClientMode.valueOf(get(testClientConfig, "MODE", "NONE"));
         if (clientMode == ClientMode.NONE) {
           throw new Exception("MODE argument is required. "
-              + "Must be either " + ClientMode.PRODUCER.toString() + " or " + ClientMode.CONSUMER.toString());
+              + "Must be one of " + ClientMode.PRODUCER.toString() + ", " + ClientMode.CONSUMER.toString()
+              + ", " + ClientMode.END_TO_END.toString() + ", " + ClientMode.SCENARIO.toString()
+              + " or " + ClientMode.COMPARE.toString());
         }
         return new StartupConfig(clientMode, frameworkName);
       } catch (Throwable e) {
@@ -56,6 +90,14 @@ public class ClientConfigs {
    */
   public static class StatsConfig {
     public final long printPeriodMs;
+    /**
+     * File to write an HdrHistogram log of latencies to, or {@code null} if disabled.
+     */
+    public final String hdrLogFile;
+    /**
+     * File to write a JSON summary of the run to when it ends, or {@code null} if disabled.
+     */
+    public final String resultFile;
 
     /**
      * Returns {@code null} if parsing fails.
@@ -63,15 +105,110 @@ public class ClientConfigs {
     public static StatsConfig parseFrom(Map<String, String> testClientConfig) {
       try {
         long printPeriodMs = Long.parseLong(get(testClientConfig, "STATS_PRINT_PERIOD_MS", "500"));
-        return new StatsConfig(printPeriodMs);
+        String hdrLogFile = get(testClientConfig, "STATS_HDR_LOG_FILE", "");
+        String resultFile = get(testClientConfig, "STATS_RESULT_FILE", "");
+        return new StatsConfig(
+            printPeriodMs,
+            hdrLogFile.isEmpty() ? null : hdrLogFile,
+            resultFile.isEmpty() ? null : resultFile);
       } catch (Throwable e) {
         printFlagParseFailure(e);
         return null;
       }
     }
 
-    private StatsConfig(long printPeriodMs) {
+    private StatsConfig(long printPeriodMs, String hdrLogFile, String resultFile) {
       this.printPeriodMs = printPeriodMs;
+      this.hdrLogFile = hdrLogFile;
+      this.resultFile = resultFile;
+    }
+  }
+
+  /**
+   * POJO containing options for comparing two results files.
+   */
+  public static class CompareConfig {
+    public final String baselineFile;
+    public final String candidateFile;
+    /**
+     * Highest p-value at which a difference is considered significant.
+     */
+    public final double significance;
+    /**
+     * Smallest relative difference which is reported as a regression, e.g. 0.05 for 5%.
+     */
+    public final double minChange;
+    /**
+     * Seconds at the start of each run to leave out of the comparison.
+     */
+    public final double warmupSecs;
+
+    /**
+     * Returns {@code null} if parsing fails.
+     */
+    public static CompareConfig parseFrom(Map<String, String> testClientConfig) {
+      try {
+        String baselineFile = get(testClientConfig, "COMPARE_BASELINE_FILE", "");
+        String candidateFile = get(testClientConfig, "COMPARE_CANDIDATE_FILE", "");
+        if (baselineFile.isEmpty() || candidateFile.isEmpty()) {
+          throw new IllegalArgumentException("COMPARE_BASELINE_FILE and COMPARE_CANDIDATE_FILE are required");
+        }
+        double significance = Double.parseDouble(get(testClientConfig, "COMPARE_SIGNIFICANCE", "0.05"));
+        if (!(significance > 0 && significance < 1)) {
+          throw new IllegalArgumentException("COMPARE_SIGNIFICANCE must be between 0 and 1");
+        }
+        double minChangePercent = Double.parseDouble(get(testClientConfig, "COMPARE_MIN_CHANGE_PERCENT", "5"));
+        if (minChangePercent < 0) {
+          throw new IllegalArgumentException("COMPARE_MIN_CHANGE_PERCENT must not be negative");
+        }
+        double warmupSecs = Double.parseDouble(get(testClientConfig, "COMPARE_WARMUP_SECS", "5"));
+        return new CompareConfig(baselineFile, candidateFile, significance, minChangePercent / 100., warmupSecs);
+      } catch (Throwable e) {
+        printFlagParseFailure(e);
+        return null;
+      }
+    }
+
+    private CompareConfig(
+        String baselineFile, String candidateFile, double significance, double minChange, double warmupSecs) {
+      this.baselineFile = baselineFile;
+      this.candidateFile = candidateFile;
+      this.significance = significance;
+      this.minChange = minChange;
+      this.warmupSecs = warmupSecs;
+    }
+  }
+
+  /**
+   * POJO containing scenario options.
+   */
+  public static class ScenarioConfig {
+    public final String scenarioFile;
+    /**
+     * File to append a JSON summary of each phase to, or {@code null}.
+     */
+    public final String summaryFile;
+
+    /**
+     * Returns {@code null} if parsing fails.
+     */
+    public static ScenarioConfig parseFrom(Map<String, String> testClientConfig) {
+      try {
+        String scenarioFile = get(testClientConfig, "SCENARIO_FILE", "");
+        if (scenarioFile.isEmpty()) {
+          throw new IllegalArgumentException("SCENARIO_FILE is required");
+        }
+        String summaryFile = get(testClientConfig, "SCENARIO_SUMMARY_FILE", "");
+        return new ScenarioConfig(scenarioFile, summaryFile.isEmpty() ? null : summaryFile);
+      } catch (Throwable e) {
+        printFlagParseFailure(e);
+        return null;
+      }
+    }
+
+    private ScenarioConfig(String scenarioFile, String summaryFile) {
+      this.scenarioFile = scenarioFile;
+      this.summaryFile = summaryFile;
     }
   }
 
@@ -82,6 +219,16 @@ public class ClientConfigs {
     public final long pollTimeoutMs;
     public final int threads;
     public final String topic;
+    /**
+     * Whether each thread is assigned a fixed share of the topic's partitions, rather than the
+     * consumer group dividing them up.
+     */
+    public final boolean manualAssignment;
+    public final CommitMode commitMode;
+    /**
+     * How often each thread checks the lag of its partitions, or zero if never.
+     */
+    public final long lagPeriodMs;
 
     /**
      * Returns {@code null} if parsing fails.
@@ -91,17 +238,29 @@ public class ClientConfigs {
         long pollTimeoutMs = Long.parseLong(get(testClientConfig, "POLL_TIMEOUT_MS", "1000"));
         int threads = Integer.parseInt(get(testClientConfig, "THREADS", "5"));
         String topic = get(testClientConfig, "TOPIC", "bench_topic");
-        return new ConsumerConfig(pollTimeoutMs, threads, topic);
+        boolean manualAssignment = Boolean.parseBoolean(get(testClientConfig, "MANUAL_ASSIGNMENT", "false"));
+        CommitMode commitMode = CommitMode.valueOf(get(testClientConfig, "COMMIT_MODE", "AUTO"));
+        long lagPeriodMs = Long.parseLong(get(testClientConfig, "LAG_PERIOD_MS", "0"));
+        return new ConsumerConfig(pollTimeoutMs, threads, topic, manualAssignment, commitMode, lagPeriodMs);
       } catch (Throwable e) {
         printFlagParseFailure(e);
         return null;
       }
     }
 
-    private ConsumerConfig(long pollTimeoutMs, int threads, String topic) {
+    private ConsumerConfig(
+        long pollTimeoutMs,
+        int threads,
+        String topic,
+        boolean manualAssignment,
+        CommitMode commitMode,
+        long lagPeriodMs) {
       this.pollTimeoutMs = pollTimeoutMs;
       this.threads = threads;
       this.topic = topic;
+      this.manualAssignment = manualAssignment;
+      this.commitMode = commitMode;
+      this.lagPeriodMs = lagPeriodMs;
     }
   }
 
@@ -110,10 +269,53 @@ public class ClientConfigs {
    */
   public static class ProducerConfig {
     public final boolean synchronous;
+    /**
+     * Maximum number of unacknowledged messages across all threads when not synchronous, or zero
+     * for no limit besides the Kafka producer's own buffer.
+     */
+    public final int maxInFlight;
     public final int threads;
-    public final int qpsLimit;
+    /**
+     * Number of Kafka producers, and therefore broker connections, which threads are spread across.
+     */
+    public final int producerInstances;
+    /**
+     * Number of simulated clients which the threads send on behalf of, or zero to have each thread
+     * act as one client.
+     */
+    public final int simulatedClients;
+    /**
+     * Per-thread rate limit in messages per second, or per simulated client if there are any, or
+     * zero if unlimited.
+     */
+    public final double qpsLimit;
+    /**
+     * Target rate across all threads, or {@code null} if unlimited. Either parsed from RATE_PROFILE
+     * or derived from QPS_LIMIT.
+     */
+    public final RateProfile rateProfile;
     public final String topic;
-    public final int messageSize;
+    public final PayloadGenerator.SizeDistribution messageSizes;
+    /**
+     * Number of distinct message values which each thread rotates through.
+     */
+    public final int payloadPoolSize;
+    /**
+     * Fraction of each generated message value which consists of repeated bytes.
+     */
+    public final double payloadCompressibility;
+    /**
+     * File to take message values from instead of generating them, or {@code null}.
+     */
+    public final String payloadCorpusFile;
+    /**
+     * Distribution of message keys, or {@code null} to send messages without keys.
+     */
+    public final KeyGenerator.KeyDistribution keyDistribution;
+    /**
+     * Number of distinct message keys.
+     */
+    public final int keyCount;
 
     /**
      * Returns {@code null} if parsing fails.
@@ -121,23 +323,99 @@ public class ClientConfigs {
     public static ProducerConfig parseFrom(Map<String, String> testClientConfig) {
       try {
         boolean synchronous = Boolean.parseBoolean(get(testClientConfig, "SYNCHRONOUS", "true"));
+        int maxInFlight = Integer.parseInt(get(testClientConfig, "MAX_IN_FLIGHT", "1000"));
         int threads = Integer.parseInt(get(testClientConfig, "THREADS", "5"));
-        int qpsLimit = Integer.parseInt(get(testClientConfig, "QPS_LIMIT", "5"));
+        int producerInstances = Integer.parseInt(get(testClientConfig, "PRODUCER_INSTANCES", "1"));
+        if (producerInstances <= 0) {
+          throw new IllegalArgumentException("PRODUCER_INSTANCES must be positive");
+        }
+        int simulatedClients = Integer.parseInt(get(testClientConfig, "SIMULATED_CLIENTS", "0"));
+        if (simulatedClients < 0) {
+          throw new IllegalArgumentException("SIMULATED_CLIENTS must not be negative");
+        }
+        double qpsLimit = Double.parseDouble(get(testClientConfig, "QPS_LIMIT", "5"));
+        String rateProfileStr = get(testClientConfig, "RATE_PROFILE", "");
+        RateProfile rateProfile;
+        if (!rateProfileStr.isEmpty()) {
+          rateProfile = RateProfile.parse(rateProfileStr);
+        } else if (qpsLimit > 0) {
+          rateProfile = RateProfile.constant(qpsLimit * (simulatedClients > 0 ? simulatedClients : threads));
+        } else {
+          rateProfile = null;
+        }
+        if (simulatedClients > 0 && rateProfile == null) {
+          throw new IllegalArgumentException("SIMULATED_CLIENTS requires QPS_LIMIT or RATE_PROFILE");
+        }
         String topic = get(testClientConfig, "TOPIC", "bench_topic");
-        int messageSize = Integer.parseInt(get(testClientConfig, "MESSAGE_SIZE_BYTES", "1024"));
-        return new ProducerConfig(synchronous, threads, qpsLimit, topic, messageSize);
+        PayloadGenerator.SizeDistribution messageSizes =
+            PayloadGenerator.SizeDistribution.parse(get(testClientConfig, "MESSAGE_SIZE_BYTES", "1024"));
+        int payloadPoolSize = Integer.parseInt(get(testClientConfig, "PAYLOAD_POOL_SIZE", "256"));
+        if (payloadPoolSize <= 0) {
+          throw new IllegalArgumentException("PAYLOAD_POOL_SIZE must be positive");
+        }
+        double payloadCompressibility = Double.parseDouble(get(testClientConfig, "PAYLOAD_COMPRESSIBILITY", "0.5"));
+        if (payloadCompressibility < 0 || payloadCompressibility > 1) {
+          throw new IllegalArgumentException("PAYLOAD_COMPRESSIBILITY must be between 0 and 1");
+        }
+        String payloadCorpusFile = get(testClientConfig, "PAYLOAD_CORPUS_FILE", "");
+        String keyDistributionStr = get(testClientConfig, "KEY_DISTRIBUTION", "none");
+        KeyGenerator.KeyDistribution keyDistribution = keyDistributionStr.trim().equals("none")
+            ? null
+            : KeyGenerator.KeyDistribution.parse(keyDistributionStr);
+        int keyCount = Integer.parseInt(get(testClientConfig, "KEY_COUNT", "10000"));
+        if (keyCount <= 0) {
+          throw new IllegalArgumentException("KEY_COUNT must be positive");
+        }
+        return new ProducerConfig(
+            synchronous,
+            maxInFlight,
+            threads,
+            producerInstances,
+            simulatedClients,
+            qpsLimit,
+            rateProfile,
+            topic,
+            messageSizes,
+            payloadPoolSize,
+            payloadCompressibility,
+            payloadCorpusFile.isEmpty() ? null : payloadCorpusFile,
+            keyDistribution,
+            keyCount);
       } catch (Throwable e) {
         printFlagParseFailure(e);
         return null;
       }
     }
 
-    private ProducerConfig(boolean synchronous, int threads, int qpsLimit, String topic, int messageSize) {
+    private ProducerConfig(
+        boolean synchronous,
+        int maxInFlight,
+        int threads,
+        int producerInstances,
+        int simulatedClients,
+        double qpsLimit,
+        RateProfile rateProfile,
+        String topic,
+        PayloadGenerator.SizeDistribution messageSizes,
+        int payloadPoolSize,
+        double payloadCompressibility,
+        String payloadCorpusFile,
+        KeyGenerator.KeyDistribution keyDistribution,
+        int keyCount) {
       this.synchronous = synchronous;
+      this.maxInFlight = maxInFlight;
       this.threads = threads;
+      this.producerInstances = producerInstances;
+      this.simulatedClients = simulatedClients;
       this.qpsLimit = qpsLimit;
+      this.rateProfile = rateProfile;
       this.topic = topic;
-      this.messageSize = messageSize;
+      this.messageSizes = messageSizes;
+      this.payloadPoolSize = payloadPoolSize;
+      this.payloadCompressibility = payloadCompressibility;
+      this.payloadCorpusFile = payloadCorpusFile;
+      this.keyDistribution = keyDistribution;
+      this.keyCount = keyCount;
     }
   }
 
@@ -148,12 +426,34 @@ public class ClientConfigs {
   private static String lastGetKey = "";
   private static String lastGetValue = "";
 
+  /**
+   * Default values of the settings which have been read, for recording the settings of a run.
+   */
+  private static final Map<String, String> settingDefaults = new ConcurrentSkipListMap<>();
+
+  /**
+   * Returns the value of each setting which has been read so far, taken from
+   * {@code testClientConfig} or else its default. Settings without a value are left out.
+   */
+  public static Map<String, String> getSettings(Map<String, String> testClientConfig) {
+    Map<String, String> settings = new TreeMap<>();
+    for (Map.Entry<String, String> entry : settingDefaults.entrySet()) {
+      String setVal = testClientConfig.get(entry.getKey());
+      String val = (setVal != null) ? setVal : entry.getValue();
+      if (!val.isEmpty()) {
+        settings.put(entry.getKey(), val);
+      }
+    }
+    return settings;
+  }
+
   private static void printFlagParseFailure(Throwable e) {
     LOGGER.error(String.format("Failed to parse value for arg %s=%s", lastGetKey, lastGetValue), e);
   }
 
   private static String get(Map<String, String> testClientConfig, String key, String defaultVal) {
     lastGetKey = key;
+    settingDefaults.putIfAbsent(key, (defaultVal != null) ? defaultVal : "");
     String setVal = testClientConfig.get(key);
     String val = (setVal != null) ? setVal : defaultVal;
     lastGetValue = val;
@@ -52,6 +52,27 @@ public class ConfigParser {
     public ClientConfigs.ProducerConfig getProducerConfig() {
       return ClientConfigs.ProducerConfig.parseFrom(envConfig);
     }
+
+    public ClientConfigs.ScenarioConfig getScenarioConfig() {
+      return ClientConfigs.ScenarioConfig.parseFrom(envConfig);
+    }
+
+    public ClientConfigs.CompareConfig getCompareConfig() {
+      return ClientConfigs.CompareConfig.parseFrom(envConfig);
+    }
+
+    public Map<String, String> getEnvConfig() {
+      return envConfig;
+    }
+
+    /**
+     * Returns a copy of this config with the provided Test Client and Kafka settings replaced.
+     */
+    public Config withOverrides(Map<String, String> envConfig, Map<String, Object> kafkaOverrides) {
+      Map<String, Object> kafkaConfig = new TreeMap<>(this.kafkaConfig);
+      kafkaConfig.putAll(kafkaOverrides);
+      return new Config(kafkaConfig, envConfig, clientMode);
+    }
   }
 
   /**
@@ -88,7 +109,8 @@ public class ConfigParser {
       LOGGER.error("Failed to parse startup config, exiting");
       return null;
     }
-    if (!kafkaConfig.containsKey(KAFKA_BOOTSTRAP_SERVERS_KEY)) {
+    if (startupConfig.clientMode != ClientConfigs.ClientMode.COMPARE
+        && !kafkaConfig.containsKey(KAFKA_BOOTSTRAP_SERVERS_KEY)) {
       // Bootstrap servers aren't provided by user. Fetch bootstrap servers from the framework.
       LOGGER.info("{} not provided in env, querying framework for broker list.", ENV_KAFKA_BOOTSTRAP_SERVERS_KEY);
       if (startupConfig.frameworkName == null) {
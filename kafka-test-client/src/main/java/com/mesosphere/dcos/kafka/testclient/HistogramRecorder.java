@@ -0,0 +1,173 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records values such as latencies from any number of threads without locking. Each recording
+ * thread gets its own {@link SingleWriterRecorder}, whose interval histograms are merged when the
+ * stats printing thread, or the scenario runner at the end of a phase, asks for them.
+ */
+public class HistogramRecorder {
+
+  /**
+   * What the recorded values are, and how to print them.
+   */
+  public enum Unit {
+    /**
+     * Latencies, recorded in microseconds and printed in milliseconds.
+     */
+    MICROS("ms", 1000.),
+    /**
+     * Counts of things, such as messages.
+     */
+    COUNT("", 1.);
+
+    private final String suffix;
+    private final double divisor;
+
+    Unit(String suffix, double divisor) {
+      this.suffix = suffix;
+      this.divisor = divisor;
+    }
+
+    public String format(long value) {
+      if (divisor == 1.) {
+        return value + suffix;
+      }
+      return String.format("%.3f%s", convert(value), suffix);
+    }
+
+    /**
+     * Converts a recorded value to the unit it's printed in.
+     */
+    public double convert(double value) {
+      return value / divisor;
+    }
+
+    /**
+     * Returns the name of the unit values are printed in, e.g. "ms", or an empty string for counts.
+     */
+    public String getSuffix() {
+      return suffix;
+    }
+  }
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final String name;
+  private final Unit unit;
+  private final List<SingleWriterRecorder> recorders;
+  private final ThreadLocal<SingleWriterRecorder> threadRecorder;
+  /**
+   * Values taken from the recorders which have yet to be returned by getIntervalHistogram().
+   */
+  private final Histogram pending;
+  private final Histogram phase;
+  private final Histogram total;
+  private long lastIntervalEndMs;
+
+  public HistogramRecorder(String name, Unit unit) {
+    this.name = name;
+    this.unit = unit;
+    this.recorders = new CopyOnWriteArrayList<>();
+    this.threadRecorder = ThreadLocal.withInitial(() -> {
+      SingleWriterRecorder recorder = new SingleWriterRecorder(SIGNIFICANT_DIGITS);
+      recorders.add(recorder);
+      return recorder;
+    });
+    this.pending = new Histogram(SIGNIFICANT_DIGITS);
+    this.phase = new Histogram(SIGNIFICANT_DIGITS);
+    this.total = new Histogram(SIGNIFICANT_DIGITS);
+    this.total.setTag(name);
+    this.lastIntervalEndMs = System.currentTimeMillis();
+    this.total.setStartTimeStamp(lastIntervalEndMs);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Unit getUnit() {
+    return unit;
+  }
+
+  /**
+   * Records a value. Negative values, e.g. latencies affected by clock skew between hosts, are
+   * recorded as zero.
+   */
+  public void recordValue(long value) {
+    threadRecorder.get().recordValue(Math.max(0, value));
+  }
+
+  /**
+   * Records the time elapsed since {@code startNanos}, as returned by {@link System#nanoTime()}, in
+   * microseconds.
+   */
+  public void recordSinceNanos(long startNanos) {
+    recordValue((System.nanoTime() - startNanos) / 1000);
+  }
+
+  /**
+   * Returns the values recorded by all threads since the previous call.
+   */
+  public synchronized Histogram getIntervalHistogram() {
+    drainRecorders();
+    Histogram interval = pending.copy();
+    pending.reset();
+    interval.setTag(name);
+    long nowMs = System.currentTimeMillis();
+    interval.setStartTimeStamp(lastIntervalEndMs);
+    interval.setEndTimeStamp(nowMs);
+    lastIntervalEndMs = nowMs;
+    return interval;
+  }
+
+  /**
+   * Returns the values recorded by all threads since the previous call, independently of
+   * {@link #getIntervalHistogram()}.
+   */
+  public synchronized Histogram getPhaseHistogram() {
+    drainRecorders();
+    Histogram result = phase.copy();
+    phase.reset();
+    return result;
+  }
+
+  /**
+   * Returns all values recorded so far, up to the last call to {@link #getIntervalHistogram()} or
+   * {@link #getPhaseHistogram()}.
+   */
+  public synchronized Histogram getTotalHistogram() {
+    return total.copy();
+  }
+
+  /**
+   * Returns the count and percentiles of {@code histogram}, converted to the provided unit.
+   */
+  public static JSONObject toJSON(Histogram histogram, Unit unit) {
+    return new JSONObject()
+        .put("unit", unit.getSuffix())
+        .put("count", histogram.getTotalCount())
+        .put("mean", unit.convert(histogram.getMean()))
+        .put("p50", unit.convert(histogram.getValueAtPercentile(50)))
+        .put("p90", unit.convert(histogram.getValueAtPercentile(90)))
+        .put("p99", unit.convert(histogram.getValueAtPercentile(99)))
+        .put("p99.9", unit.convert(histogram.getValueAtPercentile(99.9)))
+        .put("max", unit.convert(histogram.getMaxValue()));
+  }
+
+  private void drainRecorders() {
+    for (SingleWriterRecorder recorder : recorders) {
+      Histogram recorded = recorder.getIntervalHistogram();
+      pending.add(recorded);
+      phase.add(recorded);
+      total.add(recorded);
+    }
+    total.setEndTimeStamp(System.currentTimeMillis());
+  }
+}
@@ -0,0 +1,177 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks message keys from a pool which is filled once at startup, following a
+ * {@link KeyDistribution}, so that the producer's key hashing spreads messages across partitions
+ * as unevenly as real keys would.
+ *
+ * Not thread-safe: each producer thread needs its own generator, though generators may share a
+ * pool.
+ */
+public class KeyGenerator {
+
+  /**
+   * How often each key is picked, parsed from one of:
+   * <ul>
+   * <li>{@code uniform}: Every key equally often.</li>
+   * <li>{@code sequential}: Every key in turn.</li>
+   * <li>{@code zipf} or {@code zipf:<exponent>}: The nth most popular key is picked in proportion
+   * to 1/n^exponent, where the exponent defaults to 1.</li>
+   * <li>{@code hotspot} or {@code hotspot:<traffic>:<keys>}: A fraction of the traffic goes to a
+   * fraction of the keys, uniformly within each group. Defaults to 80% of traffic going to 20% of
+   * keys.</li>
+   * </ul>
+   */
+  public static class KeyDistribution {
+
+    private enum Type {
+      UNIFORM,
+      SEQUENTIAL,
+      ZIPF,
+      HOTSPOT
+    }
+
+    private final String spec;
+    private final Type type;
+    private final double zipfExponent;
+    private final double hotTraffic;
+    private final double hotKeys;
+
+    private KeyDistribution(String spec, Type type, double zipfExponent, double hotTraffic, double hotKeys) {
+      this.spec = spec;
+      this.type = type;
+      this.zipfExponent = zipfExponent;
+      this.hotTraffic = hotTraffic;
+      this.hotKeys = hotKeys;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the string is malformed or has out of range parameters
+     */
+    public static KeyDistribution parse(String spec) {
+      String trimmed = spec.trim();
+      String[] params = trimmed.split(":");
+      switch (params[0]) {
+      case "uniform":
+        checkParamCount(spec, params, 0);
+        return new KeyDistribution(trimmed, Type.UNIFORM, 0, 0, 0);
+      case "sequential":
+        checkParamCount(spec, params, 0);
+        return new KeyDistribution(trimmed, Type.SEQUENTIAL, 0, 0, 0);
+      case "zipf":
+        checkParamCount(spec, params, 1);
+        double exponent = params.length > 1 ? Double.parseDouble(params[1]) : 1.;
+        if (!(exponent > 0) || Double.isInfinite(exponent)) {
+          throw new IllegalArgumentException("Zipf exponent must be positive: " + spec);
+        }
+        return new KeyDistribution(trimmed, Type.ZIPF, exponent, 0, 0);
+      case "hotspot":
+        if (params.length != 1 && params.length != 3) {
+          throw new IllegalArgumentException("Expected hotspot or hotspot:<traffic>:<keys>, got: " + spec);
+        }
+        double hotTraffic = params.length > 1 ? checkFraction(spec, Double.parseDouble(params[1])) : 0.8;
+        double hotKeys = params.length > 1 ? checkFraction(spec, Double.parseDouble(params[2])) : 0.2;
+        return new KeyDistribution(trimmed, Type.HOTSPOT, 0, hotTraffic, hotKeys);
+      default:
+        throw new IllegalArgumentException(
+            "Expected none, uniform, sequential, zipf[:<exponent>] or hotspot[:<traffic>:<keys>], got: " + spec);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return spec;
+    }
+
+    private static void checkParamCount(String spec, String[] params, int maxParams) {
+      if (params.length > maxParams + 1) {
+        throw new IllegalArgumentException("Too many parameters: " + spec);
+      }
+    }
+
+    private static double checkFraction(String spec, double fraction) {
+      if (!(fraction > 0 && fraction < 1)) {
+        throw new IllegalArgumentException("Hotspot fractions must be between 0 and 1: " + spec);
+      }
+      return fraction;
+    }
+  }
+
+  /**
+   * Keys and the cumulative probability of picking each of them, which are shared between
+   * generators as neither is modified after startup.
+   */
+  public static class KeyPool {
+    private final KeyDistribution distribution;
+    private final byte[][] keys;
+    /**
+     * Probability of picking any of the keys up to and including each key, for Zipf distributions.
+     */
+    private final double[] cumulativeProbabilities;
+
+    public KeyPool(KeyDistribution distribution, int keyCount) {
+      if (keyCount <= 0) {
+        throw new IllegalArgumentException("Key count must be positive: " + keyCount);
+      }
+      this.distribution = distribution;
+      this.keys = new byte[keyCount][];
+      for (int i = 0; i < keyCount; ++i) {
+        keys[i] = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+      }
+      if (distribution.type == KeyDistribution.Type.ZIPF) {
+        cumulativeProbabilities = new double[keyCount];
+        double sum = 0;
+        for (int i = 0; i < keyCount; ++i) {
+          sum += 1. / Math.pow(i + 1, distribution.zipfExponent);
+          cumulativeProbabilities[i] = sum;
+        }
+        for (int i = 0; i < keyCount; ++i) {
+          cumulativeProbabilities[i] /= sum;
+        }
+      } else {
+        cumulativeProbabilities = null;
+      }
+    }
+  }
+
+  private final KeyPool pool;
+  private final Random random;
+  private final int hotKeyCount;
+  private int nextSequential;
+
+  public KeyGenerator(KeyPool pool, Random random) {
+    this.pool = pool;
+    this.random = random;
+    this.hotKeyCount = Math.max(1, (int) (pool.keys.length * pool.distribution.hotKeys));
+    // Start threads at different keys, so that they don't all send the same sequence.
+    this.nextSequential = random.nextInt(pool.keys.length);
+  }
+
+  public byte[] next() {
+    int keyCount = pool.keys.length;
+    switch (pool.distribution.type) {
+    case SEQUENTIAL:
+      byte[] key = pool.keys[nextSequential];
+      if (++nextSequential == keyCount) {
+        nextSequential = 0;
+      }
+      return key;
+    case ZIPF:
+      int index = Arrays.binarySearch(pool.cumulativeProbabilities, random.nextDouble());
+      // A miss returns -(insertion point) - 1, where the insertion point is the key picked.
+      return pool.keys[Math.min(keyCount - 1, index >= 0 ? index : -index - 1)];
+    case HOTSPOT:
+      if (hotKeyCount == keyCount || random.nextDouble() < pool.distribution.hotTraffic) {
+        return pool.keys[random.nextInt(hotKeyCount)];
+      }
+      return pool.keys[hotKeyCount + random.nextInt(keyCount - hotKeyCount)];
+    case UNIFORM:
+    default:
+      return pool.keys[random.nextInt(keyCount)];
+    }
+  }
+}
@@ -1,21 +1,38 @@
 package com.mesosphere.dcos.kafka.testclient;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public final class Main {
 
@@ -26,52 +43,142 @@ public final class Main {
     private final KafkaProducer<byte[], byte[]> kafkaProducer;
     private final ClientConfigs.ProducerConfig producerConfig;
     private final Stats.Values values;
+    /**
+     * Limits the number of unacknowledged messages across all threads in asynchronous mode, or
+     * {@code null} if unlimited.
+     */
+    private final Semaphore inFlight;
+    /**
+     * Paces messages across all threads, or {@code null} if unlimited.
+     */
+    private final Pacer pacer;
+    private final PayloadGenerator payloads;
+    /**
+     * Picks message keys, or {@code null} to send messages without keys.
+     */
+    private final KeyGenerator keys;
+    /**
+     * Partitions to send sequence-numbered messages to in turn, or {@code null} if neither.
+     */
+    private final List<Integer> partitions;
+    private final long producerId;
+    private final long[] sequences;
+    private int nextPartitionIndex;
 
     private ProducerRunner(
       KafkaProducer<byte[], byte[]> kafkaProducer,
       ClientConfigs.ProducerConfig producerConfig,
-      Stats.Values values) {
+      Stats.Values values,
+      Semaphore inFlight,
+      Pacer pacer,
+      PayloadGenerator payloads,
+      KeyGenerator keys,
+      List<Integer> partitions) {
       this.kafkaProducer = kafkaProducer;
       this.producerConfig = producerConfig;
       this.values = values;
+      this.inFlight = inFlight;
+      this.pacer = pacer;
+      this.payloads = payloads;
+      this.keys = keys;
+      this.partitions = partitions;
+      this.producerId = new Random().nextLong();
+      this.sequences = partitions != null ? new long[partitions.size()] : null;
+      this.nextPartitionIndex = 0;
     }
 
     @Override
     public void run() {
-      byte[] message = new byte[producerConfig.messageSize];
-      for (int i = 0; i < message.length; ++i) {
-        if (i % 2 == 0) {
-          message[i] = 'x';
+      while (!values.isShutdown()) {
+        // Latencies are measured from the scheduled send time when paced, so that they include
+        // any time spent behind schedule.
+        long scheduledTimeNanos = -1;
+        if (pacer != null) {
+          scheduledTimeNanos = pacer.acquire();
+          if (scheduledTimeNanos < 0) {
+            break;
+          }
+        }
+        try {
+          if (!acquireInFlight()) {
+            break;
+          }
+        } catch (InterruptedException e) {
+          values.setFatalError(e);
+          return;
+        }
+
+        byte[] message = payloads.next();
+        byte[] key = keys != null ? keys.next() : null;
+        final long sendTimeNanos = pacer != null ? scheduledTimeNanos : System.nanoTime();
+        // The value is copied into the producer's buffer within send(), so the header may be
+        // rewritten for the next message as soon as send() returns.
+        ProducerRecord<byte[], byte[]> record;
+        if (partitions == null) {
+          PayloadHeader.write(message, PayloadHeader.toMicros(sendTimeNanos));
+          record = new ProducerRecord<>(producerConfig.topic, key, message);
         } else {
-          message[i] = 'o';
+          int partitionIndex = nextPartitionIndex;
+          nextPartitionIndex = (nextPartitionIndex + 1) % partitions.size();
+          PayloadHeader.write(
+              message, PayloadHeader.toMicros(sendTimeNanos), producerId, sequences[partitionIndex]++);
+          record = new ProducerRecord<>(producerConfig.topic, partitions.get(partitionIndex), key, message);
         }
-      }
-      ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(producerConfig.topic, message);
-      long queryPeriodMillis = producerConfig.qpsLimit > 0 ? (long) (1000. / (double) producerConfig.qpsLimit) : 0;
-      while (!values.isShutdown()) {
-        LOGGER.info("Sending {}-byte message...", message.length);
-        Future<RecordMetadata> resultFuture = kafkaProducer.send(record);
-        LOGGER.info("Sent a {}-byte message", message.length);
+        LOGGER.trace("Sending {}-byte message...", message.length);
+        Future<RecordMetadata> resultFuture;
+        try {
+          resultFuture = kafkaProducer.send(record, (metadata, exception) -> {
+            releaseInFlight();
+            if (exception != null) {
+              values.registerError(exception);
+            } else {
+              values.incAcks(1);
+              values.incPartitionMessages(metadata.partition(), 1);
+              values.getAckLatency().recordSinceNanos(sendTimeNanos);
+            }
+          });
+        } catch (Throwable e) {
+          // The callback isn't invoked when send() itself fails.
+          releaseInFlight();
+          values.registerError(e);
+          continue;
+        }
+        LOGGER.trace("Sent a {}-byte message", message.length);
         if (producerConfig.synchronous) {
           try {
             resultFuture.get();
-          } catch (InterruptedException | ExecutionException e) {
-            values.registerError(e);
-          }
-        }
-        if (queryPeriodMillis > 0) {
-          try {
-            Thread.sleep(queryPeriodMillis);
           } catch (InterruptedException e) {
-            values.setFatalError(e);
-            return;
+            values.registerError(e);
+          } catch (ExecutionException e) {
+            // Already counted by the callback.
           }
         }
         values.incMessages(1);
-        values.incBytes(message.length);
+        values.incBytes(message.length + (key != null ? key.length : 0));
+      }
+    }
+
+    /**
+     * Waits for room in the in-flight window. Returns {@code false} if the client is shutting down
+     * in the meantime.
+     */
+    private boolean acquireInFlight() throws InterruptedException {
+      if (inFlight == null) {
+        return true;
+      }
+      while (!values.isShutdown()) {
+        if (inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
       }
+      return false;
     }
 
+    private void releaseInFlight() {
+      if (inFlight != null) {
+        inFlight.release();
+      }
+    }
   }
 
   private static class ConsumerRunner implements Runnable {
@@ -79,36 +186,78 @@ public final class Main {
     private final KafkaConsumer<byte[], byte[]> kafkaConsumer;
     private final ClientConfigs.ConsumerConfig consumerConfig;
     private final Stats.Values values;
+    private final int threadIndex;
+    private final SequenceTracker sequenceTracker;
 
     private ConsumerRunner(
       Map<String, Object> kafkaConfig,
       ClientConfigs.ConsumerConfig consumerConfig,
-      Stats.Values values) {
+      Stats.Values values,
+      int threadIndex) {
       ByteArrayDeserializer deserializer = new ByteArrayDeserializer();
       this.kafkaConsumer = new KafkaConsumer<>(kafkaConfig, deserializer, deserializer);
       this.consumerConfig = consumerConfig;
       this.values = values;
+      this.threadIndex = threadIndex;
+      this.sequenceTracker = new SequenceTracker();
     }
 
     @Override
     public void run() {
-      List<String> topics = new ArrayList<>();
-      topics.add(consumerConfig.topic);
-      kafkaConsumer.subscribe(topics);
+      try {
+        if (!assign()) {
+          kafkaConsumer.close();
+          return;
+        }
+      } catch (Throwable e) {
+        values.setFatalError(e);
+        kafkaConsumer.close();
+        return;
+      }
+
+      long lastLagUpdateNanos = System.nanoTime();
       while (!values.isShutdown()) {
         long messages = 0;
         long bytes = 0;
         try {
-          LOGGER.info("Waiting {}ms for messages", consumerConfig.pollTimeoutMs);
+          LOGGER.trace("Waiting {}ms for messages", consumerConfig.pollTimeoutMs);
           ConsumerRecords<byte[], byte[]> records = kafkaConsumer.poll(consumerConfig.pollTimeoutMs);
+          long receiveTimeMicros = PayloadHeader.nowMicros();
           messages = records.count();
-          for (ConsumerRecord<byte[], byte[]> record : records) {
-            if (record.key() != null) {
-              bytes += record.key().length;
+          for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(partition);
+            values.getFetchBatchSize().recordValue(partitionRecords.size());
+            values.incPartitionMessages(partition.partition(), partitionRecords.size());
+            Stats.PartitionStats partitionStats = null;
+            for (ConsumerRecord<byte[], byte[]> record : partitionRecords) {
+              if (record.key() != null) {
+                bytes += record.key().length;
+              }
+              bytes += record.value().length;
+              long sendTimeMicros = PayloadHeader.readTimestampMicros(record.value());
+              if (sendTimeMicros < 0) {
+                continue;
+              }
+              long latencyMicros = receiveTimeMicros - sendTimeMicros;
+              values.getEndToEndLatency().recordValue(latencyMicros);
+              if (PayloadHeader.isSequenced(record.value())) {
+                if (partitionStats == null) {
+                  partitionStats = values.getPartitionStats(partition.toString());
+                }
+                trackSequence(partition, partitionStats, record.value(), latencyMicros);
+              }
             }
-            bytes += record.value().length;
           }
-          LOGGER.info("Got {} messages ({} bytes)", messages, bytes);
+          LOGGER.trace("Got {} messages ({} bytes)", messages, bytes);
+
+          if (messages > 0 && consumerConfig.commitMode != ClientConfigs.CommitMode.AUTO) {
+            commit();
+          }
+          if (consumerConfig.lagPeriodMs > 0
+              && System.nanoTime() - lastLagUpdateNanos >= TimeUnit.MILLISECONDS.toNanos(consumerConfig.lagPeriodMs)) {
+            lastLagUpdateNanos = System.nanoTime();
+            updateLag();
+          }
         } catch (Throwable e) {
           values.registerError(e);
         }
@@ -118,6 +267,120 @@ public final class Main {
       kafkaConsumer.close();
     }
 
+    private void trackSequence(
+        TopicPartition partition, Stats.PartitionStats partitionStats, byte[] value, long latencyMicros) {
+      partitionStats.incReceived();
+      partitionStats.getEndToEndLatency().recordValue(latencyMicros);
+      SequenceTracker.Result result = sequenceTracker.track(
+          partition, PayloadHeader.readProducerId(value), PayloadHeader.readSequence(value));
+      switch (result) {
+      case GAP:
+        partitionStats.incMissing(sequenceTracker.getLastGap());
+        break;
+      case OUT_OF_ORDER:
+        partitionStats.incOutOfOrder();
+        break;
+      default:
+        break;
+      }
+    }
+
+    /**
+     * Subscribes to the topic, or assigns this thread its share of the topic's partitions if
+     * assignment is manual. Returns {@code false} if there are no partitions left for this thread.
+     */
+    private boolean assign() {
+      if (!consumerConfig.manualAssignment) {
+        addPartitions(values, consumerConfig.topic, () -> kafkaConsumer.partitionsFor(consumerConfig.topic));
+        kafkaConsumer.subscribe(Collections.singletonList(consumerConfig.topic), new RebalanceListener());
+        return true;
+      }
+
+      List<PartitionInfo> partitionInfos = kafkaConsumer.partitionsFor(consumerConfig.topic);
+      if (partitionInfos == null || partitionInfos.isEmpty()) {
+        throw new IllegalStateException("Unable to find partitions of topic " + consumerConfig.topic);
+      }
+      addPartitions(values, consumerConfig.topic, () -> partitionInfos);
+      List<TopicPartition> partitions = new ArrayList<>();
+      for (PartitionInfo partitionInfo : partitionInfos) {
+        if (partitionInfo.partition() % consumerConfig.threads == threadIndex) {
+          partitions.add(new TopicPartition(partitionInfo.topic(), partitionInfo.partition()));
+        }
+      }
+      if (partitions.isEmpty()) {
+        LOGGER.warn("Topic {} has fewer partitions than there are consumer threads, consumer thread {} is idle",
+            consumerConfig.topic, threadIndex);
+        return false;
+      }
+      LOGGER.info("Assigned partitions: {}", partitions);
+      kafkaConsumer.assign(partitions);
+      return true;
+    }
+
+    private void commit() {
+      final long startTimeNanos = System.nanoTime();
+      if (consumerConfig.commitMode == ClientConfigs.CommitMode.SYNC) {
+        kafkaConsumer.commitSync();
+        values.getCommitLatency().recordSinceNanos(startTimeNanos);
+      } else {
+        // Invoked by a later poll().
+        kafkaConsumer.commitAsync((offsets, exception) -> {
+          if (exception != null) {
+            values.registerError(exception);
+          } else {
+            values.getCommitLatency().recordSinceNanos(startTimeNanos);
+          }
+        });
+      }
+    }
+
+    /**
+     * Updates the lag of each assigned partition, as the distance from the consumer's position to
+     * the partition's end offset.
+     */
+    private void updateLag() {
+      Set<TopicPartition> assignment = kafkaConsumer.assignment();
+      if (assignment.isEmpty()) {
+        return;
+      }
+      for (Map.Entry<TopicPartition, Long> endOffset : kafkaConsumer.endOffsets(assignment).entrySet()) {
+        long position = kafkaConsumer.position(endOffset.getKey());
+        values.setLag(endOffset.getKey().toString(), Math.max(0, endOffset.getValue() - position));
+      }
+    }
+
+    /**
+     * Measures how long the consumer goes without partitions during a rebalance, starting from
+     * the subscription for the initial assignment.
+     */
+    private class RebalanceListener implements ConsumerRebalanceListener {
+
+      private long revokedTimeNanos = System.nanoTime();
+
+      @Override
+      public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        revokedTimeNanos = System.nanoTime();
+        for (TopicPartition partition : partitions) {
+          values.removeLag(partition.toString());
+        }
+        sequenceTracker.remove(partitions);
+        if (!partitions.isEmpty() && consumerConfig.commitMode != ClientConfigs.CommitMode.AUTO) {
+          // Avoid the next owner consuming anything a second time.
+          try {
+            kafkaConsumer.commitSync();
+          } catch (Throwable e) {
+            values.registerError(e);
+          }
+        }
+      }
+
+      @Override
+      public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        values.getRebalanceDuration().recordSinceNanos(revokedTimeNanos);
+        LOGGER.info("Assigned partitions after {}ms: {}",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - revokedTimeNanos), partitions);
+      }
+    }
   }
 
   private static boolean runConsumers(ConfigParser.Config config, Stats.PrintRunner printer) {
@@ -129,15 +392,8 @@ public final class Main {
 
     ThreadRunner runner = new ThreadRunner(printer.getValues());
     runner.add("printStatsThread", printer);
-    for (int i = 0; i < consumerConfig.threads; ++i) {
-      ConsumerRunner consumer;
-      try {
-        consumer = new ConsumerRunner(config.getKafkaConfig(), consumerConfig, printer.getValues());
-      } catch (Throwable e) {
-        printer.getValues().registerError(e);
-        return false;
-      }
-      runner.add("consumerThread-" + String.valueOf(i), consumer);
+    if (!addConsumers(runner, "", config.getKafkaConfig(), consumerConfig, printer.getValues())) {
+      return false;
     }
 
     runner.runThreads();
@@ -151,28 +407,375 @@ public final class Main {
       return false;
     }
 
-    // Share a single KafkaProducer instance across all threads
-    ByteArraySerializer serializer = new ByteArraySerializer();
-    KafkaProducer<byte[], byte[]> kafkaProducer;
-    try {
-      kafkaProducer = new KafkaProducer<>(config.getKafkaConfig(), serializer, serializer);
-    } catch (Throwable e) {
-      printer.getValues().registerError(e);
-      return false; // happy compiler
+    List<KafkaProducer<byte[], byte[]>> kafkaProducers =
+        createProducers(config.getKafkaConfig(), producerConfig, printer.getValues());
+    if (kafkaProducers == null) {
+      return false;
     }
 
     ThreadRunner runner = new ThreadRunner(printer.getValues());
     runner.add("printStatsThread", printer);
-    for (int i = 0; i < producerConfig.threads; ++i) {
-      ProducerRunner producer = new ProducerRunner(kafkaProducer, producerConfig, printer.getValues());
-      runner.add("producerThread-" + String.valueOf(i), producer);
+    if (!addProducers(runner, "", kafkaProducers, producerConfig, printer.getValues(), null)) {
+      closeProducers(kafkaProducers);
+      return false;
     }
 
     runner.runThreads();
-    kafkaProducer.close();
+    closeProducers(kafkaProducers);
     return !runner.isFatalError();
   }
 
+  /**
+   * Produces sequence-numbered messages to each partition of the topic in turn, and consumes them
+   * in the same process. Producers and consumers keep separate stats, which are printed with a
+   * "producer" or "consumer" prefix, and shut down together.
+   */
+  private static boolean runEndToEnd(ConfigParser.Config config, ClientConfigs.StatsConfig statsConfig) {
+    ClientConfigs.ProducerConfig producerConfig = config.getProducerConfig();
+    ClientConfigs.ConsumerConfig consumerConfig = config.getConsumerConfig();
+    if (producerConfig == null || consumerConfig == null) {
+      LOGGER.error("Unable to load producer and consumer config, exiting");
+      return false;
+    }
+    if (!producerConfig.topic.equals(consumerConfig.topic)) {
+      LOGGER.error("Producer and consumer topics differ, exiting");
+      return false;
+    }
+    if (producerConfig.simulatedClients > 0) {
+      LOGGER.error("SIMULATED_CLIENTS isn't supported in END_TO_END mode, exiting");
+      return false;
+    }
+
+    // Consume every message produced by this process, regardless of any other consumers.
+    Map<String, Object> consumerKafkaConfig = config.getKafkaConfig();
+    if (!consumerKafkaConfig.containsKey("group.id")) {
+      consumerKafkaConfig = new TreeMap<>(consumerKafkaConfig);
+      consumerKafkaConfig.put("group.id", "kafka-test-client-e2e-" + UUID.randomUUID());
+    }
+
+    Stats.PrintRunner producerPrinter = new Stats.PrintRunner(statsConfig, config, "producer");
+    Stats.PrintRunner consumerPrinter = new Stats.PrintRunner(statsConfig, config, "consumer");
+    Stats.Values producerValues = producerPrinter.getValues();
+    Stats.Values consumerValues = consumerPrinter.getValues();
+
+    List<KafkaProducer<byte[], byte[]>> kafkaProducers =
+        createProducers(config.getKafkaConfig(), producerConfig, producerValues);
+    if (kafkaProducers == null) {
+      return false;
+    }
+    List<Integer> partitions = new ArrayList<>();
+    try {
+      for (PartitionInfo partitionInfo : kafkaProducers.get(0).partitionsFor(producerConfig.topic)) {
+        partitions.add(partitionInfo.partition());
+      }
+    } catch (Throwable e) {
+      producerValues.registerError(e);
+      closeProducers(kafkaProducers);
+      return false;
+    }
+    Collections.sort(partitions);
+    LOGGER.info("Producing to partitions {} of topic {}", partitions, producerConfig.topic);
+
+    ThreadRunner runner = new ThreadRunner(producerValues);
+    runner.add("producer-printStatsThread", producerPrinter);
+    runner.add("consumer-printStatsThread", consumerPrinter);
+    runner.add("shutdownThread", () -> shutDownTogether(producerValues, consumerValues));
+    if (!addConsumers(runner, "consumer-", consumerKafkaConfig, consumerConfig, consumerValues)
+        || !addProducers(runner, "producer-", kafkaProducers, producerConfig, producerValues, partitions)) {
+      closeProducers(kafkaProducers);
+      return false;
+    }
+
+    runner.runThreads();
+    closeProducers(kafkaProducers);
+    return !producerValues.isFatalError() && !consumerValues.isFatalError();
+  }
+
+  /**
+   * Waits until any of the provided stats is shut down, e.g. after a fatal error, then shuts down
+   * the rest.
+   */
+  private static void shutDownTogether(Stats.Values... values) {
+    while (Arrays.stream(values).noneMatch(Stats.Values::isShutdown)) {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        values[0].setFatalError(e);
+      }
+    }
+    for (Stats.Values value : values) {
+      value.setShutdown();
+    }
+  }
+
+  /**
+   * Runs the workloads of a scenario file concurrently, each with its own stats, until its last
+   * phase ends.
+   */
+  private static boolean runScenario(ConfigParser.Config config, ClientConfigs.StatsConfig statsConfig) {
+    ClientConfigs.ScenarioConfig scenarioConfig = config.getScenarioConfig();
+    if (scenarioConfig == null) {
+      LOGGER.error("Unable to load scenario config, exiting");
+      return false;
+    }
+    Scenario scenario;
+    try {
+      scenario = Scenario.parse(FileUtils.readFileToString(new File(scenarioConfig.scenarioFile)));
+    } catch (Throwable e) {
+      LOGGER.error("Unable to load scenario file, exiting", e);
+      return false;
+    }
+
+    Stats.Values scenarioValues = new Stats.Values();
+    ThreadRunner runner = new ThreadRunner(scenarioValues);
+    Map<String, Stats.Values> workloadValues = new LinkedHashMap<>();
+    List<KafkaProducer<byte[], byte[]>> kafkaProducers = new ArrayList<>();
+    boolean success = true;
+    for (Scenario.Workload workload : scenario.workloads) {
+      ConfigParser.Config workloadConfig = config.withOverrides(
+          scenario.getEnv(workload, config.getEnvConfig()), workload.kafkaConfig);
+      Stats.PrintRunner printer = new Stats.PrintRunner(statsConfig, workloadConfig, workload.name);
+      runner.add(workload.name + "-printStatsThread", printer);
+      workloadValues.put(workload.name, printer.getValues());
+      String threadPrefix = workload.name + "-";
+
+      if (workload.mode == ClientConfigs.ClientMode.CONSUMER) {
+        ClientConfigs.ConsumerConfig consumerConfig = workloadConfig.getConsumerConfig();
+        success = consumerConfig != null && addConsumers(
+            runner, threadPrefix, workloadConfig.getKafkaConfig(), consumerConfig, printer.getValues());
+      } else {
+        ClientConfigs.ProducerConfig producerConfig = workloadConfig.getProducerConfig();
+        List<KafkaProducer<byte[], byte[]>> workloadProducers = null;
+        if (producerConfig != null) {
+          workloadProducers = createProducers(workloadConfig.getKafkaConfig(), producerConfig, printer.getValues());
+        }
+        if (workloadProducers != null) {
+          kafkaProducers.addAll(workloadProducers);
+        }
+        success = workloadProducers != null && addProducers(
+            runner, threadPrefix, workloadProducers, producerConfig, printer.getValues(), null);
+      }
+      if (!success) {
+        LOGGER.error("Unable to set up workload {}, exiting", workload.name);
+        break;
+      }
+    }
+
+    if (success) {
+      runner.add("scenarioThread",
+          new ScenarioRunner(scenario, runner::getStartTimeNanos, workloadValues, scenarioValues,
+              scenarioConfig.summaryFile));
+      runner.runThreads();
+      for (Stats.Values values : workloadValues.values()) {
+        success &= !values.isFatalError();
+      }
+      success &= !runner.isFatalError();
+    }
+    closeProducers(kafkaProducers);
+    return success;
+  }
+
+  /**
+   * Compares the results of two runs, failing if the candidate run has significantly regressed.
+   */
+  private static boolean runCompare(ConfigParser.Config config) {
+    ClientConfigs.CompareConfig compareConfig = config.getCompareConfig();
+    if (compareConfig == null) {
+      LOGGER.error("Unable to load compare config, exiting");
+      return false;
+    }
+    try {
+      return new ResultComparator(compareConfig).compare();
+    } catch (Throwable e) {
+      LOGGER.error("Unable to compare results, exiting", e);
+      return false;
+    }
+  }
+
+  private static boolean addConsumers(
+      ThreadRunner runner,
+      String threadPrefix,
+      Map<String, Object> kafkaConfig,
+      ClientConfigs.ConsumerConfig consumerConfig,
+      Stats.Values values) {
+    if (consumerConfig.commitMode != ClientConfigs.CommitMode.AUTO) {
+      kafkaConfig = new TreeMap<>(kafkaConfig);
+      kafkaConfig.put("enable.auto.commit", "false");
+    }
+
+    for (int i = 0; i < consumerConfig.threads; ++i) {
+      ConsumerRunner consumer;
+      try {
+        consumer = new ConsumerRunner(kafkaConfig, consumerConfig, values, i);
+      } catch (Throwable e) {
+        values.registerError(e);
+        return false;
+      }
+      runner.add(threadPrefix + "consumerThread-" + String.valueOf(i), consumer);
+    }
+    return true;
+  }
+
+  /**
+   * Lists every partition of the topic in the per-partition stats, including those which never
+   * get any messages. Failing to find the partitions isn't fatal, as it only affects the stats.
+   */
+  private static void addPartitions(
+      Stats.Values values, String topic, Supplier<List<PartitionInfo>> partitionsFor) {
+    try {
+      List<PartitionInfo> partitionInfos = partitionsFor.get();
+      if (partitionInfos != null) {
+        for (PartitionInfo partitionInfo : partitionInfos) {
+          values.addPartition(partitionInfo.partition());
+        }
+      }
+    } catch (Throwable e) {
+      LOGGER.warn("Unable to find partitions of topic {}, only partitions with messages will be listed in stats",
+          topic, e);
+    }
+  }
+
+  /**
+   * Returns the PRODUCER_INSTANCES KafkaProducers to spread producer threads across, each with its
+   * own broker connections, or {@code null} if they couldn't be created.
+   */
+  private static List<KafkaProducer<byte[], byte[]>> createProducers(
+      Map<String, Object> kafkaConfig, ClientConfigs.ProducerConfig producerConfig, Stats.Values values) {
+    ByteArraySerializer serializer = new ByteArraySerializer();
+    List<KafkaProducer<byte[], byte[]>> kafkaProducers = new ArrayList<>();
+    try {
+      for (int i = 0; i < producerConfig.producerInstances; ++i) {
+        kafkaProducers.add(new KafkaProducer<>(kafkaConfig, serializer, serializer));
+      }
+    } catch (Throwable e) {
+      values.registerError(e);
+      closeProducers(kafkaProducers);
+      return null;
+    }
+    return kafkaProducers;
+  }
+
+  private static void closeProducers(List<KafkaProducer<byte[], byte[]>> kafkaProducers) {
+    for (KafkaProducer<byte[], byte[]> kafkaProducer : kafkaProducers) {
+      kafkaProducer.close();
+    }
+  }
+
+  /**
+   * @param partitions partitions to produce sequence-numbered messages to, or {@code null} to
+   *     leave partitioning to the producer
+   */
+  private static boolean addProducers(
+      ThreadRunner runner,
+      String threadPrefix,
+      List<KafkaProducer<byte[], byte[]>> kafkaProducers,
+      ClientConfigs.ProducerConfig producerConfig,
+      Stats.Values values,
+      List<Integer> partitions) {
+    // In asynchronous mode, each thread keeps sending while earlier messages are unacknowledged,
+    // up to a window shared by all threads. Simulated clients are always asynchronous.
+    boolean asynchronous = !producerConfig.synchronous || producerConfig.simulatedClients > 0;
+    Semaphore inFlight = (asynchronous && producerConfig.maxInFlight > 0)
+        ? new Semaphore(producerConfig.maxInFlight)
+        : null;
+
+    addPartitions(values, producerConfig.topic, () -> kafkaProducers.get(0).partitionsFor(producerConfig.topic));
+
+    if (producerConfig.simulatedClients > 0) {
+      return addSimulatedClients(runner, threadPrefix, kafkaProducers, producerConfig, values, inFlight);
+    }
+
+    Pacer pacer = null;
+    if (producerConfig.rateProfile != null) {
+      pacer = new Pacer(producerConfig.rateProfile, runner::getStartTimeNanos, values::isShutdown);
+      values.setTargetRate(pacer::getCurrentRate);
+    }
+
+    byte[] payloadCorpus;
+    try {
+      payloadCorpus = readPayloadCorpus(producerConfig);
+    } catch (IOException e) {
+      LOGGER.error("Unable to read payload corpus file, exiting", e);
+      return false;
+    }
+
+    KeyGenerator.KeyPool keyPool = producerConfig.keyDistribution != null
+        ? new KeyGenerator.KeyPool(producerConfig.keyDistribution, producerConfig.keyCount)
+        : null;
+
+    Random random = new Random();
+    for (int i = 0; i < producerConfig.threads; ++i) {
+      PayloadGenerator payloads = new PayloadGenerator(
+          producerConfig.messageSizes,
+          producerConfig.payloadPoolSize,
+          producerConfig.payloadCompressibility,
+          payloadCorpus,
+          random);
+      // Keys are picked for every message, so each thread gets its own Random to avoid contention.
+      KeyGenerator keys = keyPool != null ? new KeyGenerator(keyPool, new Random(random.nextLong())) : null;
+      ProducerRunner producer = new ProducerRunner(
+          kafkaProducers.get(i % kafkaProducers.size()),
+          producerConfig,
+          values,
+          inFlight,
+          pacer,
+          payloads,
+          keys,
+          partitions);
+      runner.add(threadPrefix + "producerThread-" + String.valueOf(i), producer);
+    }
+    return true;
+  }
+
+  /**
+   * Splits SIMULATED_CLIENTS clients between THREADS event loop threads.
+   */
+  private static boolean addSimulatedClients(
+      ThreadRunner runner,
+      String threadPrefix,
+      List<KafkaProducer<byte[], byte[]>> kafkaProducers,
+      ClientConfigs.ProducerConfig producerConfig,
+      Stats.Values values,
+      Semaphore inFlight) {
+    byte[] payloadCorpus;
+    try {
+      payloadCorpus = readPayloadCorpus(producerConfig);
+    } catch (IOException e) {
+      LOGGER.error("Unable to read payload corpus file, exiting", e);
+      return false;
+    }
+
+    RateProfile rateProfile = producerConfig.rateProfile;
+    values.setTargetRate(() -> rateProfile.rateAt(System.nanoTime() - runner.getStartTimeNanos()));
+    int threads = Math.min(producerConfig.threads, producerConfig.simulatedClients);
+    LOGGER.info("Simulating {} clients on {} threads across {} producers",
+      producerConfig.simulatedClients, threads, kafkaProducers.size());
+    Random random = new Random();
+    for (int i = 0; i < threads; ++i) {
+      PayloadGenerator payloads = new PayloadGenerator(
+          producerConfig.messageSizes,
+          producerConfig.payloadPoolSize,
+          producerConfig.payloadCompressibility,
+          payloadCorpus,
+          random);
+      SimulatedClientRunner clients = new SimulatedClientRunner(
+          kafkaProducers, producerConfig, values, inFlight, payloads, runner::getStartTimeNanos,
+          i, threads, random);
+      runner.add(threadPrefix + "simulatedClientThread-" + String.valueOf(i), clients);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the contents of PAYLOAD_CORPUS_FILE, or {@code null} if none is configured.
+   */
+  private static byte[] readPayloadCorpus(ClientConfigs.ProducerConfig producerConfig) throws IOException {
+    if (producerConfig.payloadCorpusFile == null) {
+      return null;
+    }
+    return FileUtils.readFileToByteArray(new File(producerConfig.payloadCorpusFile));
+  }
+
   public static void main(String[] args) {
     ConfigParser.Config config = ConfigParser.getConfig();
     if (config == null) {
@@ -185,7 +788,7 @@ public final class Main {
       LOGGER.error("Unable to load stats config, exiting");
       System.exit(1);
     }
-    Stats.PrintRunner printer = new Stats.PrintRunner(statsConfig);
+    Stats.PrintRunner printer = new Stats.PrintRunner(statsConfig, config);
 
     boolean success = true;
     switch (config.getClientMode()) {
@@ -198,6 +801,18 @@ public final class Main {
       success = runProducers(config, printer);
       break;
 
+    case END_TO_END:
+      success = runEndToEnd(config, statsConfig);
+      break;
+
+    case SCENARIO:
+      success = runScenario(config, statsConfig);
+      break;
+
+    case COMPARE:
+      success = runCompare(config);
+      break;
+
     case NONE:
     default:
       LOGGER.error("Invalid client mode: " + config.getClientMode());
@@ -0,0 +1,86 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces messages across any number of threads to follow a {@link RateProfile}. Each message is
+ * given a slot in a fixed schedule, so that time lost to slow sends is made up for afterwards
+ * rather than silently lowering the rate.
+ *
+ * The schedule also avoids coordinated omission: latency measured from a message's scheduled send
+ * time rather than its actual send time includes the time it spent waiting on earlier messages,
+ * as it would for a real client sending at that rate.
+ */
+public class Pacer {
+
+  /**
+   * Waits shorter than this are spun rather than parked, as parking may overshoot by about as much.
+   */
+  private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  /**
+   * Maximum time to park at once before checking whether the client is shutting down.
+   */
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final RateProfile profile;
+  private final LongSupplier startTimeNanos;
+  private final BooleanSupplier isShutdown;
+  /**
+   * Time of the next free slot, relative to the start of the profile.
+   */
+  private final AtomicLong nextSlotOffsetNanos;
+
+  /**
+   * @param startTimeNanos start of the profile, as per {@link System#nanoTime()}, which is read
+   *     once messages are sent, so that the schedule may be shared with other threads which start
+   *     together after setup
+   */
+  public Pacer(RateProfile profile, LongSupplier startTimeNanos, BooleanSupplier isShutdown) {
+    this.profile = profile;
+    this.startTimeNanos = startTimeNanos;
+    this.isShutdown = isShutdown;
+    this.nextSlotOffsetNanos = new AtomicLong(0);
+  }
+
+  /**
+   * Waits for the next free slot in the schedule, and returns its time as per
+   * {@link System#nanoTime()}. If the schedule has fallen behind, returns the overdue slot
+   * immediately. Returns -1 if the client started shutting down while waiting.
+   */
+  public long acquire() {
+    long slotOffsetNanos;
+    while (true) {
+      slotOffsetNanos = nextSlotOffsetNanos.get();
+      double rate = profile.rateAt(slotOffsetNanos);
+      long intervalNanos = Math.max(1, (long) (1000000000. / rate));
+      if (nextSlotOffsetNanos.compareAndSet(slotOffsetNanos, slotOffsetNanos + intervalNanos)) {
+        break;
+      }
+    }
+    long slotNanos = startTimeNanos.getAsLong() + slotOffsetNanos;
+
+    long remainingNanos;
+    while ((remainingNanos = slotNanos - System.nanoTime()) > 0) {
+      if (isShutdown.getAsBoolean()) {
+        return -1;
+      }
+      if (remainingNanos > SPIN_THRESHOLD_NANOS) {
+        LockSupport.parkNanos(Math.min(remainingNanos - SPIN_THRESHOLD_NANOS, MAX_PARK_NANOS));
+      } else {
+        Thread.yield();
+      }
+    }
+    return slotNanos;
+  }
+
+  /**
+   * Returns the target rate in messages per second at this time.
+   */
+  public double getCurrentRate() {
+    return profile.rateAt(System.nanoTime() - startTimeNanos.getAsLong());
+  }
+}
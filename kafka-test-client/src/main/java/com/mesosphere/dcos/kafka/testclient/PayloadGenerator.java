@@ -0,0 +1,144 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import java.util.Random;
+
+/**
+ * Rotates through a pool of message values which is filled once at startup, so that producing
+ * varied values doesn't allocate or generate anything per message.
+ *
+ * Values are either slices of a corpus file at random offsets, or a mix of repeated and random
+ * bytes in the proportion given by the compressibility. The repeated bytes are spread throughout
+ * each value, so that a compression codec's savings approximate that proportion.
+ *
+ * Not thread-safe: since message headers are written into the pooled values, each producer
+ * thread needs its own generator.
+ */
+public class PayloadGenerator {
+
+  /**
+   * Repeated and random bytes are interleaved in blocks of this size.
+   */
+  private static final int BLOCK_SIZE = 64;
+  private static final byte[] PATTERN = { 'x', 'o' };
+
+  /**
+   * A distribution of message sizes in bytes, parsed from one of:
+   * <ul>
+   * <li>{@code <size>}: Always the same size.</li>
+   * <li>{@code <min>-<max>}: Uniformly distributed between min and max, inclusive.</li>
+   * <li>{@code exp:<mean>}: Exponentially distributed with the provided mean, for a long tail of
+   * large messages. Capped at twenty times the mean.</li>
+   * </ul>
+   */
+  public static class SizeDistribution {
+    private final String spec;
+    private final int min;
+    private final int max;
+    private final double expMean;
+
+    private SizeDistribution(String spec, int min, int max, double expMean) {
+      this.spec = spec;
+      this.min = min;
+      this.max = max;
+      this.expMean = expMean;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the string is malformed or contains a negative size
+     */
+    public static SizeDistribution parse(String spec) {
+      String trimmed = spec.trim();
+      if (trimmed.startsWith("exp:")) {
+        int mean = checkSize(Integer.parseInt(trimmed.substring("exp:".length())));
+        return new SizeDistribution(trimmed, 0, mean * 20, mean);
+      }
+      String[] range = trimmed.split("-");
+      if (range.length > 2) {
+        throw new IllegalArgumentException("Expected <size>, <min>-<max> or exp:<mean>, got: " + spec);
+      }
+      int min = checkSize(Integer.parseInt(range[0]));
+      int max = range.length == 2 ? checkSize(Integer.parseInt(range[1])) : min;
+      if (max < min) {
+        throw new IllegalArgumentException("Maximum size is less than minimum size: " + spec);
+      }
+      return new SizeDistribution(trimmed, min, max, 0);
+    }
+
+    public int next(Random random) {
+      if (expMean > 0) {
+        return (int) Math.min(max, Math.round(-expMean * Math.log(1. - random.nextDouble())));
+      }
+      return min + random.nextInt(max - min + 1);
+    }
+
+    @Override
+    public String toString() {
+      return spec;
+    }
+
+    private static int checkSize(int size) {
+      if (size < 0) {
+        throw new IllegalArgumentException("Sizes must not be negative: " + size);
+      }
+      return size;
+    }
+  }
+
+  private final byte[][] pool;
+  private int next;
+
+  /**
+   * @param corpus bytes to take values from, or {@code null} to generate values with the
+   *     provided compressibility instead
+   * @param compressibility fraction of each generated value which consists of repeated bytes,
+   *     between 0 (random) and 1 (entirely repeated)
+   */
+  public PayloadGenerator(
+      SizeDistribution sizes, int poolSize, double compressibility, byte[] corpus, Random random) {
+    this.pool = new byte[poolSize][];
+    for (int i = 0; i < poolSize; ++i) {
+      byte[] value = new byte[sizes.next(random)];
+      if (corpus != null && corpus.length > 0) {
+        fillFromCorpus(value, corpus, random);
+      } else {
+        fill(value, compressibility, random);
+      }
+      pool[i] = value;
+    }
+    this.next = 0;
+  }
+
+  /**
+   * Returns the next value in the pool. The same values are returned again once the pool has
+   * been gone through.
+   */
+  public byte[] next() {
+    byte[] value = pool[next];
+    if (++next == pool.length) {
+      next = 0;
+    }
+    return value;
+  }
+
+  private static void fillFromCorpus(byte[] value, byte[] corpus, Random random) {
+    int offset = random.nextInt(corpus.length);
+    int filled = 0;
+    while (filled < value.length) {
+      int length = Math.min(value.length - filled, corpus.length - offset);
+      System.arraycopy(corpus, offset, value, filled, length);
+      filled += length;
+      offset = 0;
+    }
+  }
+
+  private static void fill(byte[] value, double compressibility, Random random) {
+    int repeatedPerBlock = (int) Math.round(BLOCK_SIZE * Math.max(0., Math.min(1., compressibility)));
+    for (int i = 0; i < value.length; ++i) {
+      if (i % BLOCK_SIZE < repeatedPerBlock) {
+        value[i] = PATTERN[i % PATTERN.length];
+      } else {
+        value[i] = (byte) random.nextInt(256);
+      }
+    }
+  }
+}
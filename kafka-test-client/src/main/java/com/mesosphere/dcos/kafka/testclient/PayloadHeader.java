@@ -0,0 +1,109 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Header written at the start of produced message values, so that consumers can tell how long a
+ * message took to reach them. Messages too short to hold the header are sent without one.
+ *
+ * In {@link ClientConfigs.ClientMode#END_TO_END} mode, the header also carries the id of the
+ * producer thread and a sequence number which that thread increments for each partition, so that
+ * consumers can detect lost and reordered messages.
+ *
+ * End-to-end latencies between clients on different hosts are only as accurate as the hosts'
+ * clocks are synchronized.
+ */
+public final class PayloadHeader {
+
+  private static final int MAGIC = 0x4B544331; // "KTC1"
+  private static final int SEQUENCED_MAGIC = 0x4B544332; // "KTC2"
+  public static final int LENGTH = 4 + 8;
+  public static final int SEQUENCED_LENGTH = LENGTH + 8 + 8;
+
+  /**
+   * Wall clock time at startup, extended with {@link System#nanoTime()} to get microsecond
+   * resolution out of {@link System#currentTimeMillis()}.
+   */
+  private static final long START_TIME_MICROS = System.currentTimeMillis() * 1000;
+  private static final long START_TIME_NANOS = System.nanoTime();
+
+  private PayloadHeader() {
+    // do not instantiate
+  }
+
+  /**
+   * Returns the current wall clock time in microseconds since the epoch.
+   */
+  public static long nowMicros() {
+    return toMicros(System.nanoTime());
+  }
+
+  /**
+   * Converts a time returned by {@link System#nanoTime()} to wall clock microseconds since the epoch.
+   */
+  public static long toMicros(long nanoTime) {
+    return START_TIME_MICROS + (nanoTime - START_TIME_NANOS) / 1000;
+  }
+
+  /**
+   * Writes a header with the provided send time to the start of {@code value}. Returns whether
+   * {@code value} was long enough to hold it.
+   */
+  public static boolean write(byte[] value, long timestampMicros) {
+    if (value == null || value.length < LENGTH) {
+      return false;
+    }
+    ByteBuffer.wrap(value).putInt(MAGIC).putLong(timestampMicros);
+    return true;
+  }
+
+  /**
+   * Writes a header with the provided send time, producer id and sequence number to the start of
+   * {@code value}. Returns whether {@code value} was long enough to hold it.
+   */
+  public static boolean write(byte[] value, long timestampMicros, long producerId, long sequence) {
+    if (value == null || value.length < SEQUENCED_LENGTH) {
+      return false;
+    }
+    ByteBuffer.wrap(value).putInt(SEQUENCED_MAGIC).putLong(timestampMicros).putLong(producerId).putLong(sequence);
+    return true;
+  }
+
+  /**
+   * Returns the send time from the header of {@code value}, or -1 if it has no header.
+   */
+  public static long readTimestampMicros(byte[] value) {
+    if (value == null || value.length < LENGTH) {
+      return -1;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(value);
+    int magic = buffer.getInt();
+    if (magic != MAGIC && magic != SEQUENCED_MAGIC) {
+      return -1;
+    }
+    return buffer.getLong();
+  }
+
+  /**
+   * Returns whether {@code value} has a header with a producer id and sequence number.
+   */
+  public static boolean isSequenced(byte[] value) {
+    return value != null
+        && value.length >= SEQUENCED_LENGTH
+        && ByteBuffer.wrap(value).getInt() == SEQUENCED_MAGIC;
+  }
+
+  /**
+   * Returns the producer id from a header for which {@link #isSequenced(byte[])} is true.
+   */
+  public static long readProducerId(byte[] value) {
+    return ByteBuffer.wrap(value).getLong(LENGTH);
+  }
+
+  /**
+   * Returns the sequence number from a header for which {@link #isSequenced(byte[])} is true.
+   */
+  public static long readSequence(byte[] value) {
+    return ByteBuffer.wrap(value).getLong(LENGTH + 8);
+  }
+}
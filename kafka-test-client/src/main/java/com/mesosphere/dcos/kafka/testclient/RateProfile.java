@@ -0,0 +1,98 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A target rate in messages per second which changes over the course of a run, made up of
+ * consecutive segments which either hold a rate or ramp linearly between two rates. The rate of
+ * the last segment is held once it ends.
+ *
+ * The string form is a comma-separated list of {@code <rate>:<seconds>} or
+ * {@code <startRate>-<endRate>:<seconds>} segments. For example, {@code 1000:60,1000-5000:120}
+ * holds 1000 msg/s for a minute, then ramps up to 5000 msg/s over two minutes and stays there.
+ */
+public class RateProfile {
+
+  private static class Segment {
+    private final double startRate;
+    private final double endRate;
+    private final long durationNanos;
+
+    private Segment(double startRate, double endRate, long durationNanos) {
+      this.startRate = startRate;
+      this.endRate = endRate;
+      this.durationNanos = durationNanos;
+    }
+
+    private double rateAt(long segmentElapsedNanos) {
+      if (durationNanos == 0) {
+        return endRate;
+      }
+      double progress = Math.min(1., segmentElapsedNanos / (double) durationNanos);
+      return startRate + (endRate - startRate) * progress;
+    }
+  }
+
+  private final List<Segment> segments;
+
+  private RateProfile(List<Segment> segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * Returns a profile which holds the provided rate indefinitely.
+   */
+  public static RateProfile constant(double rate) {
+    checkRate(rate);
+    return new RateProfile(Collections.singletonList(new Segment(rate, rate, 0)));
+  }
+
+  /**
+   * Parses the string form described above.
+   *
+   * @throws IllegalArgumentException if the string is malformed or contains a non-positive rate
+   */
+  public static RateProfile parse(String profile) {
+    List<Segment> segments = new ArrayList<>();
+    for (String segment : profile.split(",", -1)) {
+      String[] rateAndDuration = segment.trim().split(":", -1);
+      if (rateAndDuration.length != 2) {
+        throw new IllegalArgumentException("Expected <rate>:<seconds> or <rate>-<rate>:<seconds>, got: " + segment);
+      }
+      String[] rates = rateAndDuration[0].split("-", -1);
+      if (rates.length > 2) {
+        throw new IllegalArgumentException("Expected <rate> or <rate>-<rate>, got: " + rateAndDuration[0]);
+      }
+      double startRate = checkRate(Double.parseDouble(rates[0]));
+      double endRate = rates.length == 2 ? checkRate(Double.parseDouble(rates[1])) : startRate;
+      double durationSecs = Double.parseDouble(rateAndDuration[1]);
+      if (!(durationSecs >= 0)) {
+        throw new IllegalArgumentException("Segment duration must not be negative: " + segment);
+      }
+      segments.add(new Segment(startRate, endRate, (long) (durationSecs * 1000000000.)));
+    }
+    return new RateProfile(segments);
+  }
+
+  /**
+   * Returns the target rate in messages per second at the provided time since the run started.
+   */
+  public double rateAt(long elapsedNanos) {
+    for (Segment segment : segments) {
+      if (elapsedNanos < segment.durationNanos) {
+        return segment.rateAt(elapsedNanos);
+      }
+      elapsedNanos -= segment.durationNanos;
+    }
+    return segments.get(segments.size() - 1).endRate;
+  }
+
+  private static double checkRate(double rate) {
+    if (!(rate > 0) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Rates must be positive: " + rate);
+    }
+    return rate;
+  }
+}
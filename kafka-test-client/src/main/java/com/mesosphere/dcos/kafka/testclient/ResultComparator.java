@@ -0,0 +1,184 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares the {@link RunResult}s of a baseline run and a candidate run, e.g. before and after a
+ * broker config change, and reports which metrics changed significantly.
+ *
+ * The rates and latency percentiles of each stats print period are treated as samples of each
+ * metric, and their means are compared with {@link WelchTest}. A metric has regressed when the
+ * difference is both statistically significant and larger than the configured minimum change.
+ */
+public class ResultComparator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResultComparator.class);
+
+  private static final String[] LATENCY_PERCENTILES = { "p50", "p99" };
+
+  /**
+   * A value which is read from each interval of a result.
+   */
+  private static class Metric {
+    private final String name;
+    /**
+     * Name of the histogram the value is taken from, or {@code null} for rates.
+     */
+    private final String histogram;
+    private final String key;
+    private final boolean higherIsBetter;
+
+    private Metric(String name, String histogram, String key, boolean higherIsBetter) {
+      this.name = name;
+      this.histogram = histogram;
+      this.key = key;
+      this.higherIsBetter = higherIsBetter;
+    }
+  }
+
+  private final ClientConfigs.CompareConfig config;
+
+  public ResultComparator(ClientConfigs.CompareConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Logs a comparison of every metric found in both results. Returns whether no metric regressed.
+   *
+   * @throws IOException if either result can't be read
+   */
+  public boolean compare() throws IOException {
+    JSONObject baseline = new JSONObject(FileUtils.readFileToString(new File(config.baselineFile)));
+    JSONObject candidate = new JSONObject(FileUtils.readFileToString(new File(config.candidateFile)));
+    logSettingChanges("settings", baseline, candidate);
+    logSettingChanges("kafka_settings", baseline, candidate);
+
+    List<String> regressions = new ArrayList<>();
+    for (Metric metric : getMetrics(baseline, candidate)) {
+      double[] baselineSamples = getSamples(baseline, metric);
+      double[] candidateSamples = getSamples(candidate, metric);
+      if (baselineSamples.length < 2 || candidateSamples.length < 2) {
+        LOGGER.info("COMPARE {}: skipped, with {} baseline and {} candidate samples after warmup",
+          metric.name, baselineSamples.length, candidateSamples.length);
+        continue;
+      }
+      double baselineMean = WelchTest.mean(baselineSamples);
+      double candidateMean = WelchTest.mean(candidateSamples);
+      double change = getChange(baselineMean, candidateMean);
+      double pValue = WelchTest.pValue(baselineSamples, candidateSamples);
+
+      String verdict = "no significant change";
+      if (pValue < config.significance && Math.abs(change) >= config.minChange) {
+        boolean better = metric.higherIsBetter == (candidateMean > baselineMean);
+        verdict = better ? "IMPROVEMENT" : "REGRESSION";
+        if (!better) {
+          regressions.add(metric.name);
+        }
+      }
+      LOGGER.info("COMPARE {}: baseline mean {} ({} samples), candidate mean {} ({} samples), "
+          + "change {}%, p={}: {}",
+        metric.name,
+        baselineMean, baselineSamples.length,
+        candidateMean, candidateSamples.length,
+        String.format("%+.2f", change * 100), String.format("%.4f", pValue), verdict);
+    }
+
+    if (regressions.isEmpty()) {
+      LOGGER.info("COMPARE RESULT: no regressions");
+      return true;
+    }
+    LOGGER.error("COMPARE RESULT: {} regressions: {}", regressions.size(), regressions);
+    return false;
+  }
+
+  /**
+   * Returns the relative change from the baseline to the candidate.
+   */
+  private static double getChange(double baselineMean, double candidateMean) {
+    if (baselineMean == 0) {
+      return candidateMean == 0 ? 0 : Double.POSITIVE_INFINITY;
+    }
+    return (candidateMean - baselineMean) / Math.abs(baselineMean);
+  }
+
+  private static List<Metric> getMetrics(JSONObject baseline, JSONObject candidate) {
+    List<Metric> metrics = new ArrayList<>();
+    metrics.add(new Metric("messages_per_sec", null, "messages_per_sec", true));
+    metrics.add(new Metric("acks_per_sec", null, "acks_per_sec", true));
+    metrics.add(new Metric("errors_per_sec", null, "errors_per_sec", false));
+
+    // Compare latencies, which are better when lower, but not counts such as fetch batch sizes.
+    Set<String> histograms = getLatencyHistograms(baseline);
+    histograms.retainAll(getLatencyHistograms(candidate));
+    for (String histogram : histograms) {
+      for (String percentile : LATENCY_PERCENTILES) {
+        metrics.add(new Metric(histogram + " " + percentile, histogram, percentile, false));
+      }
+    }
+    return metrics;
+  }
+
+  private static Set<String> getLatencyHistograms(JSONObject result) {
+    Set<String> names = new TreeSet<>();
+    JSONObject histograms = result.getJSONObject("histograms");
+    for (String name : histograms.keySet()) {
+      if (HistogramRecorder.Unit.MICROS.getSuffix().equals(histograms.getJSONObject(name).getString("unit"))) {
+        names.add(name);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Returns the values of a metric in each interval which started after the warmup period.
+   */
+  private double[] getSamples(JSONObject result, Metric metric) {
+    List<Double> samples = new ArrayList<>();
+    JSONArray intervals = result.getJSONArray("intervals");
+    for (int i = 0; i < intervals.length(); ++i) {
+      JSONObject interval = intervals.getJSONObject(i);
+      if (interval.getDouble("start_secs") < config.warmupSecs) {
+        continue;
+      }
+      if (metric.histogram == null) {
+        samples.add(interval.getDouble(metric.key));
+      } else {
+        // Intervals in which nothing was measured don't have the histogram.
+        JSONObject histogram = interval.getJSONObject("histograms").optJSONObject(metric.histogram);
+        if (histogram != null) {
+          samples.add(histogram.getDouble(metric.key));
+        }
+      }
+    }
+    double[] values = new double[samples.size()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = samples.get(i);
+    }
+    return values;
+  }
+
+  private static void logSettingChanges(String key, JSONObject baseline, JSONObject candidate) {
+    JSONObject baselineSettings = baseline.getJSONObject(key);
+    JSONObject candidateSettings = candidate.getJSONObject(key);
+    Set<String> names = new TreeSet<>(baselineSettings.keySet());
+    names.addAll(candidateSettings.keySet());
+    for (String name : names) {
+      Object baselineValue = baselineSettings.opt(name);
+      Object candidateValue = candidateSettings.opt(name);
+      if (baselineValue == null || !baselineValue.equals(candidateValue)) {
+        LOGGER.info("COMPARE SETTING {}: {} => {}", name, baselineValue, candidateValue);
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.HdrHistogram.Histogram;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Summary of a run which is written as JSON to {@code STATS_RESULT_FILE} when the run ends, so that
+ * runs may be compared with {@link ResultComparator}. Alongside the settings and totals of the run,
+ * the summary holds the rates and latencies of each stats print period, which serve as the samples
+ * when comparing runs.
+ */
+public class RunResult {
+
+  /**
+   * Kafka settings which are left out of results, as they may hold credentials.
+   */
+  private static final Pattern SECRET_KAFKA_SETTING = Pattern.compile(".*(password|secret|jaas).*");
+
+  private final String name;
+  private final ConfigParser.Config config;
+  private final double minIntervalSecs;
+  private final long startTimeMs;
+  private final long startTimeNanos;
+  private final JSONArray intervals;
+
+  private long lastIntervalNanos;
+  private long lastMessages;
+  private long lastAcks;
+  private long lastBytes;
+  private long lastErrors;
+
+  /**
+   * @param name name of the workload which the result is for, or {@code null} if there's only one
+   * @param config settings of the run, which are included in the result
+   * @param minIntervalSecs intervals shorter than this are left out, e.g. the remainder at the end
+   *     of the run, as their rates are unreliable
+   */
+  public RunResult(String name, ConfigParser.Config config, double minIntervalSecs) {
+    this.name = name;
+    this.config = config;
+    this.minIntervalSecs = minIntervalSecs;
+    this.startTimeMs = System.currentTimeMillis();
+    this.startTimeNanos = System.nanoTime();
+    this.intervals = new JSONArray();
+    this.lastIntervalNanos = startTimeNanos;
+  }
+
+  /**
+   * Adds the rates since the previous interval, along with the provided interval histograms by
+   * name, as the next interval.
+   */
+  public void addInterval(Stats.Values values, Map<String, JSONObject> histograms) {
+    long nowNanos = System.nanoTime();
+    double durationSecs = (nowNanos - lastIntervalNanos) / 1000000000.;
+    if (durationSecs < minIntervalSecs) {
+      return;
+    }
+    long messages = values.getMessages();
+    long acks = values.getAcks();
+    long bytes = values.getBytes();
+    long errors = values.getErrors();
+    JSONObject interval = new JSONObject()
+        .put("start_secs", (lastIntervalNanos - startTimeNanos) / 1000000000.)
+        .put("duration_secs", durationSecs)
+        .put("messages_per_sec", (messages - lastMessages) / durationSecs)
+        .put("acks_per_sec", (acks - lastAcks) / durationSecs)
+        .put("bytes_per_sec", (bytes - lastBytes) / durationSecs)
+        .put("errors_per_sec", (errors - lastErrors) / durationSecs)
+        .put("histograms", new JSONObject(histograms));
+    Double targetRate = values.getTargetRate();
+    if (targetRate != null) {
+      interval.put("target_messages_per_sec", targetRate);
+    }
+    intervals.put(interval);
+
+    lastIntervalNanos = nowNanos;
+    lastMessages = messages;
+    lastAcks = acks;
+    lastBytes = bytes;
+    lastErrors = errors;
+  }
+
+  /**
+   * Returns the result of the run so far.
+   */
+  public JSONObject toJSON(Stats.Values values) {
+    double durationSecs = (System.nanoTime() - startTimeNanos) / 1000000000.;
+    JSONObject totals = new JSONObject()
+        .put("duration_secs", durationSecs)
+        .put("messages", values.getMessages())
+        .put("messages_per_sec", values.getMessages() / durationSecs)
+        .put("acks", values.getAcks())
+        .put("acks_per_sec", values.getAcks() / durationSecs)
+        .put("bytes", values.getBytes())
+        .put("bytes_per_sec", values.getBytes() / durationSecs)
+        .put("errors", values.getErrors())
+        .put("messages_by_partition", new JSONObject(values.getMessagesByPartition()));
+
+    JSONObject histograms = new JSONObject();
+    for (HistogramRecorder recorder : values.getHistogramRecorders()) {
+      Histogram total = recorder.getTotalHistogram();
+      if (total.getTotalCount() > 0) {
+        histograms.put(recorder.getName(), HistogramRecorder.toJSON(total, recorder.getUnit()));
+      }
+    }
+
+    Map<String, Object> kafkaSettings = new TreeMap<>();
+    for (Map.Entry<String, Object> entry : config.getKafkaConfig().entrySet()) {
+      if (!SECRET_KAFKA_SETTING.matcher(entry.getKey()).matches()) {
+        kafkaSettings.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    JSONObject result = new JSONObject();
+    if (name != null) {
+      result.put("name", name);
+    }
+    return result
+        .put("mode", config.getClientMode().toString())
+        .put("start_time_ms", startTimeMs)
+        .put("end_time_ms", System.currentTimeMillis())
+        .put("settings", new JSONObject(ClientConfigs.getSettings(config.getEnvConfig())))
+        .put("kafka_settings", new JSONObject(kafkaSettings))
+        .put("totals", totals)
+        .put("histograms", histograms)
+        .put("intervals", intervals);
+  }
+
+  /**
+   * Writes the result of the run so far to the provided file, replacing it.
+   */
+  public void write(String file, Stats.Values values) throws IOException {
+    try (Writer writer = new FileWriter(file)) {
+      writer.write(toJSON(values).toString(2));
+      writer.write('\n');
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * A benchmark made up of several workloads which run concurrently, through a sequence of phases
+ * which may change the workloads' rates, parsed from JSON like:
+ *
+ * <pre>
+ * {
+ *   "phases": [
+ *     { "name": "warmup", "duration_secs": 60, "rate_multiplier": 0.5 },
+ *     { "name": "steady", "duration_secs": 600, "ramp": true },
+ *     { "name": "spike", "duration_secs": 60, "rates": { "orders": 20000 } }
+ *   ],
+ *   "workloads": [
+ *     {
+ *       "name": "orders",
+ *       "mode": "PRODUCER",
+ *       "rate": 5000,
+ *       "config": { "TOPIC": "orders", "THREADS": 4, "KEY_DISTRIBUTION": "zipf" },
+ *       "kafka": { "acks": "all", "compression.type": "lz4" }
+ *     }
+ *   ]
+ * }
+ * </pre>
+ *
+ * Workload {@code config} takes the same settings as the test client's environment, which it
+ * overrides, and {@code kafka} takes Kafka client settings, which override any KAFKA_OVERRIDE_*
+ * settings. A workload's {@code rate} is its total rate in messages per second during a phase with
+ * a {@code rate_multiplier} of 1, the default, unless the phase sets a rate for it in
+ * {@code rates}. A workload without a {@code rate} is only paced if every phase sets a rate for it.
+ * Phases with {@code ramp} change rates linearly from those of the previous phase.
+ */
+public class Scenario {
+
+  private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_.-]+");
+
+  /**
+   * A period of the benchmark with its own rates, which is summarized separately.
+   */
+  public static class Phase {
+    public final String name;
+    public final double durationSecs;
+    public final double rateMultiplier;
+    public final boolean ramp;
+    /**
+     * Rates which override the rate multiplier, by workload name.
+     */
+    public final Map<String, Double> rates;
+
+    private Phase(String name, double durationSecs, double rateMultiplier, boolean ramp, Map<String, Double> rates) {
+      this.name = name;
+      this.durationSecs = durationSecs;
+      this.rateMultiplier = rateMultiplier;
+      this.ramp = ramp;
+      this.rates = rates;
+    }
+
+    /**
+     * Returns the rate of the provided workload during this phase, or {@code null} if it isn't paced.
+     */
+    public Double getRate(Workload workload) {
+      if (rates.containsKey(workload.name)) {
+        return rates.get(workload.name);
+      }
+      return workload.rate != null ? workload.rate * rateMultiplier : null;
+    }
+  }
+
+  /**
+   * A group of producer or consumer threads with their own settings.
+   */
+  public static class Workload {
+    public final String name;
+    public final ClientConfigs.ClientMode mode;
+    /**
+     * Rate in messages per second with a rate multiplier of 1, or {@code null} if not paced
+     * by the scenario.
+     */
+    public final Double rate;
+    public final Map<String, String> config;
+    public final Map<String, Object> kafkaConfig;
+
+    private Workload(
+        String name,
+        ClientConfigs.ClientMode mode,
+        Double rate,
+        Map<String, String> config,
+        Map<String, Object> kafkaConfig) {
+      this.name = name;
+      this.mode = mode;
+      this.rate = rate;
+      this.config = config;
+      this.kafkaConfig = kafkaConfig;
+    }
+  }
+
+  public final List<Phase> phases;
+  public final List<Workload> workloads;
+
+  private Scenario(List<Phase> phases, List<Workload> workloads) {
+    this.phases = Collections.unmodifiableList(phases);
+    this.workloads = Collections.unmodifiableList(workloads);
+  }
+
+  /**
+   * @throws IllegalArgumentException if the scenario is invalid
+   * @throws org.json.JSONException if the scenario isn't well-formed JSON
+   */
+  public static Scenario parse(String json) {
+    JSONObject scenario = new JSONObject(json);
+
+    List<Workload> workloads = new ArrayList<>();
+    Set<String> workloadNames = new HashSet<>();
+    JSONArray workloadsJson = scenario.getJSONArray("workloads");
+    for (int i = 0; i < workloadsJson.length(); ++i) {
+      JSONObject workload = workloadsJson.getJSONObject(i);
+      String name = checkName(workload.getString("name"));
+      if (!workloadNames.add(name)) {
+        throw new IllegalArgumentException("Duplicate workload name: " + name);
+      }
+      ClientConfigs.ClientMode mode = ClientConfigs.ClientMode.valueOf(workload.getString("mode"));
+      if (mode != ClientConfigs.ClientMode.PRODUCER && mode != ClientConfigs.ClientMode.CONSUMER) {
+        throw new IllegalArgumentException("Workload " + name + " must be a PRODUCER or CONSUMER: " + mode);
+      }
+      Double rate = workload.has("rate") ? checkRate(workload.getDouble("rate")) : null;
+      workloads.add(new Workload(
+          name,
+          mode,
+          rate,
+          toStringMap(workload.optJSONObject("config")),
+          new TreeMap<>(toStringMap(workload.optJSONObject("kafka")))));
+    }
+    if (workloads.isEmpty()) {
+      throw new IllegalArgumentException("Scenario must have at least one workload");
+    }
+
+    List<Phase> phases = new ArrayList<>();
+    Set<String> phaseNames = new HashSet<>();
+    JSONArray phasesJson = scenario.getJSONArray("phases");
+    for (int i = 0; i < phasesJson.length(); ++i) {
+      JSONObject phase = phasesJson.getJSONObject(i);
+      String name = checkName(phase.getString("name"));
+      if (!phaseNames.add(name)) {
+        throw new IllegalArgumentException("Duplicate phase name: " + name);
+      }
+      double durationSecs = phase.getDouble("duration_secs");
+      if (!(durationSecs > 0)) {
+        throw new IllegalArgumentException("Phase " + name + " must have a positive duration");
+      }
+      Map<String, Double> rates = new HashMap<>();
+      JSONObject ratesJson = phase.optJSONObject("rates");
+      if (ratesJson != null) {
+        for (String workload : ratesJson.keySet()) {
+          if (!workloadNames.contains(workload)) {
+            throw new IllegalArgumentException("Phase " + name + " has a rate for unknown workload " + workload);
+          }
+          rates.put(workload, checkRate(ratesJson.getDouble(workload)));
+        }
+      }
+      phases.add(new Phase(
+          name,
+          durationSecs,
+          checkRate(phase.optDouble("rate_multiplier", 1.)),
+          phase.optBoolean("ramp", false),
+          rates));
+    }
+    if (phases.isEmpty()) {
+      throw new IllegalArgumentException("Scenario must have at least one phase");
+    }
+    for (Workload workload : workloads) {
+      // Without a rate of its own, the workload would be unpaced in phases which don't set one.
+      long pacedPhases = phases.stream().filter(phase -> phase.rates.containsKey(workload.name)).count();
+      if (workload.rate == null && pacedPhases > 0 && pacedPhases < phases.size()) {
+        throw new IllegalArgumentException(
+            "Workload " + workload.name + " has no rate, so every phase must set one for it in 'rates', or none");
+      }
+    }
+
+    return new Scenario(phases, workloads);
+  }
+
+  /**
+   * Returns the settings of a workload in the form of the test client's environment, overriding
+   * the provided environment. Rates are expressed as a RATE_PROFILE spanning all phases, which is
+   * left out if the workload isn't paced.
+   */
+  public Map<String, String> getEnv(Workload workload, Map<String, String> baseEnv) {
+    Map<String, String> env = new TreeMap<>(baseEnv);
+    env.putAll(workload.config);
+
+    if (phases.get(0).getRate(workload) == null) {
+      return env;
+    }
+    List<String> segments = new ArrayList<>();
+    Double previousRate = null;
+    for (Phase phase : phases) {
+      // parse() ensures that a workload is paced in every phase, or in none.
+      double rate = phase.getRate(workload);
+      if (phase.ramp && previousRate != null) {
+        segments.add(previousRate + "-" + rate + ":" + phase.durationSecs);
+      } else {
+        segments.add(rate + ":" + phase.durationSecs);
+      }
+      previousRate = rate;
+    }
+    env.put("RATE_PROFILE", String.join(",", segments));
+    return env;
+  }
+
+  /**
+   * Returns the mean rate of the provided workload over the provided phase, which for a ramp is
+   * halfway between the previous phase's rate and its own, or {@code null} if the workload isn't
+   * paced.
+   */
+  public Double getMeanRate(Phase phase, Workload workload) {
+    Double rate = phase.getRate(workload);
+    int index = phases.indexOf(phase);
+    if (rate == null || !phase.ramp || index <= 0) {
+      return rate;
+    }
+    return (phases.get(index - 1).getRate(workload) + rate) / 2;
+  }
+
+  private static Map<String, String> toStringMap(JSONObject json) {
+    Map<String, String> map = new TreeMap<>();
+    if (json != null) {
+      for (String key : json.keySet()) {
+        map.put(key, String.valueOf(json.get(key)));
+      }
+    }
+    return map;
+  }
+
+  private static String checkName(String name) {
+    if (!NAME_PATTERN.matcher(name).matches()) {
+      throw new IllegalArgumentException("Names may only contain letters, digits, '_', '.' and '-': " + name);
+    }
+    return name;
+  }
+
+  private static double checkRate(double rate) {
+    if (!(rate > 0) || Double.isInfinite(rate)) {
+      throw new IllegalArgumentException("Rates must be positive: " + rate);
+    }
+    return rate;
+  }
+}
@@ -0,0 +1,191 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Times the phases of a {@link Scenario}, summarizes each workload's stats at the end of each
+ * phase, and shuts the workloads down after the last phase. Phases are timed from the same start
+ * time as the workloads' rate profiles, so that rates change as phases do.
+ *
+ * Summaries are logged, and optionally appended to a file, as a single line of JSON per phase.
+ */
+public class ScenarioRunner implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScenarioRunner.class);
+
+  /**
+   * Interval at which to check whether any workload failed.
+   */
+  private static final long CHECK_PERIOD_MS = 100;
+
+  private final Scenario scenario;
+  private final LongSupplier startTimeNanos;
+  private final Map<String, Stats.Values> workloadValues;
+  private final Stats.Values scenarioValues;
+  private final String summaryFile;
+
+  /**
+   * @param startTimeNanos start of the first phase, as per {@link System#nanoTime()}, which is read
+   *     once the thread runs
+   * @param workloadValues stats of each workload, by name
+   * @param scenarioValues stats of the scenario itself, which is shut down along with the workloads
+   * @param summaryFile file to append phase summaries to, or {@code null}
+   */
+  public ScenarioRunner(
+      Scenario scenario,
+      LongSupplier startTimeNanos,
+      Map<String, Stats.Values> workloadValues,
+      Stats.Values scenarioValues,
+      String summaryFile) {
+    this.scenario = scenario;
+    this.startTimeNanos = startTimeNanos;
+    this.workloadValues = workloadValues;
+    this.scenarioValues = scenarioValues;
+    this.summaryFile = summaryFile;
+  }
+
+  @Override
+  public void run() {
+    try {
+      runPhases();
+    } finally {
+      scenarioValues.setShutdown();
+      for (Stats.Values values : workloadValues.values()) {
+        values.setShutdown();
+      }
+    }
+  }
+
+  private void runPhases() {
+    long startNanos = startTimeNanos.getAsLong();
+    long startMs = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    long phaseStartNanos = startNanos;
+    long phaseEndNanos = startNanos;
+    Map<String, long[]> phaseStartCounts = new HashMap<>();
+    for (Map.Entry<String, Stats.Values> entry : workloadValues.entrySet()) {
+      phaseStartCounts.put(entry.getKey(), getCounts(entry.getValue()));
+      // Discard anything recorded before the first phase started.
+      for (HistogramRecorder recorder : entry.getValue().getHistogramRecorders()) {
+        recorder.getPhaseHistogram();
+      }
+    }
+
+    for (Scenario.Phase phase : scenario.phases) {
+      LOGGER.info("Starting phase {} for {}s", phase.name, phase.durationSecs);
+      // Phases end at the same offsets as the segments of each workload's RATE_PROFILE.
+      phaseEndNanos += (long) (phase.durationSecs * 1000000000.);
+      long remainingNanos;
+      while ((remainingNanos = phaseEndNanos - System.nanoTime()) > 0) {
+        if (isFailed()) {
+          LOGGER.error("Stopping scenario during phase {} after a fatal error", phase.name);
+          return;
+        }
+        try {
+          Thread.sleep(Math.min(CHECK_PERIOD_MS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos))));
+        } catch (InterruptedException e) {
+          scenarioValues.setFatalError(e);
+          return;
+        }
+      }
+
+      long nowNanos = System.nanoTime();
+      JSONObject summary = new JSONObject()
+          .put("phase", phase.name)
+          .put("start_time_ms", startMs + TimeUnit.NANOSECONDS.toMillis(phaseStartNanos - startNanos))
+          .put("end_time_ms", startMs + TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos));
+      JSONObject workloads = new JSONObject();
+      for (Scenario.Workload workload : scenario.workloads) {
+        Stats.Values values = workloadValues.get(workload.name);
+        long[] counts = getCounts(values);
+        // The phase's own rate, rather than the current rate, which may already be the next phase's.
+        Double targetRate = scenario.getMeanRate(phase, workload);
+        workloads.put(workload.name, getWorkloadSummary(
+            values,
+            phaseStartCounts.get(workload.name),
+            counts,
+            (nowNanos - phaseStartNanos) / 1000000000.,
+            targetRate != null ? targetRate : values.getTargetRate()));
+        phaseStartCounts.put(workload.name, counts);
+      }
+      summary.put("workloads", workloads);
+      writeSummary(summary);
+      phaseStartNanos = nowNanos;
+    }
+    LOGGER.info("Scenario complete");
+  }
+
+  private boolean isFailed() {
+    if (scenarioValues.isFatalError()) {
+      return true;
+    }
+    for (Stats.Values values : workloadValues.values()) {
+      if (values.isFatalError()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long[] getCounts(Stats.Values values) {
+    return new long[] { values.getMessages(), values.getAcks(), values.getBytes(), values.getErrors() };
+  }
+
+  /**
+   * @param targetRate target rate in messages per second over the phase, or {@code null} if the
+   *     workload isn't paced
+   */
+  private static JSONObject getWorkloadSummary(
+      Stats.Values values, long[] startCounts, long[] endCounts, double durationSecs, Double targetRate) {
+    long messages = endCounts[0] - startCounts[0];
+    long acks = endCounts[1] - startCounts[1];
+    long bytes = endCounts[2] - startCounts[2];
+    long errors = endCounts[3] - startCounts[3];
+    JSONObject summary = new JSONObject()
+        .put("duration_secs", durationSecs)
+        .put("messages", messages)
+        .put("messages_per_sec", messages / durationSecs)
+        .put("acks", acks)
+        .put("acks_per_sec", acks / durationSecs)
+        .put("bytes", bytes)
+        .put("bytes_per_sec", bytes / durationSecs)
+        .put("errors", errors);
+    if (targetRate != null) {
+      summary.put("target_messages_per_sec", targetRate);
+    }
+
+    JSONObject histograms = new JSONObject();
+    for (HistogramRecorder recorder : values.getHistogramRecorders()) {
+      Histogram histogram = recorder.getPhaseHistogram();
+      if (histogram.getTotalCount() > 0) {
+        histograms.put(recorder.getName(), HistogramRecorder.toJSON(histogram, recorder.getUnit()));
+      }
+    }
+    summary.put("histograms", histograms);
+    return summary;
+  }
+
+  private void writeSummary(JSONObject summary) {
+    String line = summary.toString();
+    LOGGER.info("SCENARIO PHASE SUMMARY: {}", line);
+    if (summaryFile == null) {
+      return;
+    }
+    try (Writer writer = new FileWriter(summaryFile, true)) {
+      writer.write(line);
+      writer.write('\n');
+    } catch (IOException e) {
+      scenarioValues.registerError(e);
+    }
+  }
+}
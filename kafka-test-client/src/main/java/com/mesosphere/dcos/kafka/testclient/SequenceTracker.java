@@ -0,0 +1,86 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the last sequence number received from each producer on each partition, to detect lost
+ * and reordered messages. Sequence numbers are only compared within a partition, where Kafka
+ * guarantees ordering.
+ *
+ * The first message received from a producer on a partition sets the baseline, since a consumer
+ * which starts at the end of a partition legitimately misses earlier messages.
+ *
+ * Not thread-safe: each consumer thread tracks the partitions assigned to it.
+ */
+public class SequenceTracker {
+
+  /**
+   * How a received sequence number relates to the last one received.
+   */
+  public enum Result {
+    /**
+     * The first message received from this producer on this partition.
+     */
+    FIRST,
+    /**
+     * The message which was expected next.
+     */
+    IN_ORDER,
+    /**
+     * Later than the message which was expected next, meaning that the messages in between are
+     * missing, at least for now.
+     */
+    GAP,
+    /**
+     * Earlier than the message which was expected next, meaning that the message was either
+     * received after later ones or received twice.
+     */
+    OUT_OF_ORDER
+  }
+
+  private final Map<TopicPartition, Map<Long, Long>> lastSequences = new HashMap<>();
+  private long lastGap;
+
+  /**
+   * Records the receipt of a message and classifies its sequence number.
+   */
+  public Result track(TopicPartition partition, long producerId, long sequence) {
+    Map<Long, Long> producerSequences = lastSequences.computeIfAbsent(partition, k -> new HashMap<>());
+    Long lastSequence = producerSequences.get(producerId);
+    lastGap = 0;
+    if (lastSequence == null) {
+      producerSequences.put(producerId, sequence);
+      return Result.FIRST;
+    }
+    if (sequence <= lastSequence) {
+      return Result.OUT_OF_ORDER;
+    }
+    producerSequences.put(producerId, sequence);
+    if (sequence == lastSequence + 1) {
+      return Result.IN_ORDER;
+    }
+    lastGap = sequence - lastSequence - 1;
+    return Result.GAP;
+  }
+
+  /**
+   * Returns the number of messages skipped by the last call to {@link #track}, if it returned
+   * {@link Result#GAP}.
+   */
+  public long getLastGap() {
+    return lastGap;
+  }
+
+  /**
+   * Forgets the provided partitions, e.g. once they're assigned to another consumer.
+   */
+  public void remove(Collection<TopicPartition> partitions) {
+    for (TopicPartition partition : partitions) {
+      lastSequences.remove(partition);
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends messages on behalf of many simulated clients from a single thread, e.g. to emulate a fleet
+ * of devices which each send a message every few seconds without a thread per device. The thread
+ * runs an event loop over a schedule of the clients' next send times, and never waits on a send.
+ *
+ * Each client sends at an equal share of the {@link RateProfile}'s rate, starting at a random
+ * offset so that clients don't send in bursts, and keys its messages with its own id so that each
+ * client sticks to a single partition. As with {@link Pacer}, a client's sends are scheduled
+ * independently of how long earlier sends took, and latencies are measured from the scheduled
+ * send time.
+ */
+public class SimulatedClientRunner implements Runnable {
+
+  /**
+   * Maximum time to park at once before checking whether the client is shutting down.
+   */
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static class Client {
+    private final byte[] key;
+    private final KafkaProducer<byte[], byte[]> kafkaProducer;
+    /**
+     * Time of the client's next send, relative to the start of the {@link RateProfile}.
+     */
+    private long nextSendOffsetNanos;
+
+    private Client(byte[] key, KafkaProducer<byte[], byte[]> kafkaProducer, long nextSendOffsetNanos) {
+      this.key = key;
+      this.kafkaProducer = kafkaProducer;
+      this.nextSendOffsetNanos = nextSendOffsetNanos;
+    }
+  }
+
+  private final ClientConfigs.ProducerConfig producerConfig;
+  private final Stats.Values values;
+  /**
+   * Limits the number of unacknowledged messages across all threads, or {@code null} if unlimited.
+   */
+  private final Semaphore inFlight;
+  private final PayloadGenerator payloads;
+  private final LongSupplier startTimeNanos;
+  private final PriorityQueue<Client> schedule;
+
+  /**
+   * Simulates every {@code clientStride}th client, starting with {@code firstClient}, so that
+   * threads may split the clients between them.
+   *
+   * @param kafkaProducers producers which clients are spread across
+   * @param startTimeNanos start of the {@link RateProfile}, as per {@link System#nanoTime()}, which
+   *     is read once the thread runs
+   */
+  public SimulatedClientRunner(
+      List<KafkaProducer<byte[], byte[]>> kafkaProducers,
+      ClientConfigs.ProducerConfig producerConfig,
+      Stats.Values values,
+      Semaphore inFlight,
+      PayloadGenerator payloads,
+      LongSupplier startTimeNanos,
+      int firstClient,
+      int clientStride,
+      Random random) {
+    this.producerConfig = producerConfig;
+    this.values = values;
+    this.inFlight = inFlight;
+    this.payloads = payloads;
+    this.startTimeNanos = startTimeNanos;
+    this.schedule = new PriorityQueue<>(Comparator.comparingLong((Client client) -> client.nextSendOffsetNanos));
+
+    long initialIntervalNanos = getIntervalNanos(0);
+    for (int i = firstClient; i < producerConfig.simulatedClients; i += clientStride) {
+      schedule.add(new Client(
+          ("client-" + i).getBytes(StandardCharsets.UTF_8),
+          kafkaProducers.get(i % kafkaProducers.size()),
+          (long) (random.nextDouble() * initialIntervalNanos)));
+    }
+  }
+
+  @Override
+  public void run() {
+    long startNanos = startTimeNanos.getAsLong();
+    while (!values.isShutdown() && !schedule.isEmpty()) {
+      Client client = schedule.poll();
+      long scheduledOffsetNanos = client.nextSendOffsetNanos;
+      long scheduledTimeNanos = startNanos + scheduledOffsetNanos;
+      try {
+        if (!waitUntil(scheduledTimeNanos) || !acquireInFlight()) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        values.setFatalError(e);
+        return;
+      }
+      send(client, scheduledTimeNanos);
+      client.nextSendOffsetNanos = scheduledOffsetNanos + getIntervalNanos(scheduledOffsetNanos);
+      schedule.add(client);
+    }
+  }
+
+  private void send(Client client, final long scheduledTimeNanos) {
+    byte[] message = payloads.next();
+    // As in ProducerRunner, the value is copied within send(), so the pooled value may be reused.
+    PayloadHeader.write(message, PayloadHeader.toMicros(scheduledTimeNanos));
+    ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(producerConfig.topic, client.key, message);
+    try {
+      client.kafkaProducer.send(record, (metadata, exception) -> {
+        releaseInFlight();
+        if (exception != null) {
+          values.registerError(exception);
+        } else {
+          values.incAcks(1);
+          values.incPartitionMessages(metadata.partition(), 1);
+          values.getAckLatency().recordSinceNanos(scheduledTimeNanos);
+        }
+      });
+    } catch (Throwable e) {
+      // The callback isn't invoked when send() itself fails.
+      releaseInFlight();
+      values.registerError(e);
+      return;
+    }
+    values.incMessages(1);
+    values.incBytes(message.length + client.key.length);
+  }
+
+  /**
+   * Returns the time between a client's sends at the provided time since the start of the
+   * {@link RateProfile}.
+   */
+  private long getIntervalNanos(long offsetNanos) {
+    double clientRate = producerConfig.rateProfile.rateAt(offsetNanos) / producerConfig.simulatedClients;
+    return Math.max(1, (long) (1000000000. / clientRate));
+  }
+
+  /**
+   * Parks until the provided time. Returns {@code false} if the client started shutting down in
+   * the meantime.
+   */
+  private boolean waitUntil(long timeNanos) {
+    long remainingNanos;
+    while ((remainingNanos = timeNanos - System.nanoTime()) > 0) {
+      if (values.isShutdown()) {
+        return false;
+      }
+      LockSupport.parkNanos(Math.min(remainingNanos, MAX_PARK_NANOS));
+    }
+    return true;
+  }
+
+  /**
+   * Waits for room in the in-flight window, which holds up every client of this thread. Returns
+   * {@code false} if the client is shutting down in the meantime.
+   */
+  private boolean acquireInFlight() throws InterruptedException {
+    if (inFlight == null) {
+      return true;
+    }
+    while (!values.isShutdown()) {
+      if (inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void releaseInFlight() {
+    if (inFlight != null) {
+      inFlight.release();
+    }
+  }
+}
@@ -1,12 +1,66 @@
 package com.mesosphere.dcos.kafka.testclient;
 
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
 
 public class Stats {
+
+  /**
+   * Message delivery of a single partition, as seen by consumers in END_TO_END mode.
+   */
+  public static class PartitionStats {
+    private final String partition;
+    private final HistogramRecorder endToEndLatency;
+    private final AtomicLong received;
+    private final AtomicLong missing;
+    private final AtomicLong outOfOrder;
+
+    private PartitionStats(String partition) {
+      this.partition = partition;
+      this.endToEndLatency = new HistogramRecorder("e2e-" + partition, HistogramRecorder.Unit.MICROS);
+      this.received = new AtomicLong(0);
+      this.missing = new AtomicLong(0);
+      this.outOfOrder = new AtomicLong(0);
+    }
+
+    public HistogramRecorder getEndToEndLatency() {
+      return endToEndLatency;
+    }
+
+    public void incReceived() {
+      received.getAndIncrement();
+    }
+
+    /**
+     * Counts messages whose sequence numbers were skipped.
+     */
+    public void incMissing(long count) {
+      missing.getAndAdd(count);
+    }
+
+    /**
+     * Counts messages received after a later message, or received more than once.
+     */
+    public void incOutOfOrder() {
+      outOfOrder.getAndIncrement();
+    }
+  }
+
   public static class Values {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Values.class);
@@ -14,43 +68,205 @@ public class Stats {
     private final AtomicBoolean fatalError;
     private final AtomicBoolean shutdown;
     private final AtomicLong messages;
+    private final AtomicLong acks;
     private final AtomicLong bytes;
     private final AtomicLong errors;
+    private final Map<String, AtomicLong> errorsByType;
+    private final HistogramRecorder ackLatency;
+    private final HistogramRecorder endToEndLatency;
+    private final HistogramRecorder commitLatency;
+    private final HistogramRecorder rebalanceDuration;
+    private final HistogramRecorder fetchBatchSize;
+    private final Map<String, Long> lagByPartition;
+    private final Map<Integer, AtomicLong> messagesByPartition;
+    private final Map<String, PartitionStats> partitionStats;
+    private volatile DoubleSupplier targetRate;
+    private final String logPrefix;
 
     private final long startTimeNano;
     private long lastPrintTimeNano;
     private long lastPrintMessages;
+    private long lastPrintAcks;
     private long lastPrintBytes;
     private long lastPrintErrors;
+    private final Map<Integer, Long> lastPrintMessagesByPartition;
 
     public Values() {
+      this(null);
+    }
+
+    /**
+     * @param name name to prefix printed stats with, or {@code null}
+     */
+    public Values(String name) {
+      logPrefix = name != null ? name + ": " : "";
       fatalError = new AtomicBoolean(false);
       shutdown = new AtomicBoolean(false);
 
       messages = new AtomicLong(0);
+      acks = new AtomicLong(0);
       bytes = new AtomicLong(0);
       errors = new AtomicLong(0);
+      errorsByType = new ConcurrentHashMap<>();
+      ackLatency = new HistogramRecorder("ack", HistogramRecorder.Unit.MICROS);
+      endToEndLatency = new HistogramRecorder("e2e", HistogramRecorder.Unit.MICROS);
+      commitLatency = new HistogramRecorder("commit", HistogramRecorder.Unit.MICROS);
+      rebalanceDuration = new HistogramRecorder("rebalance", HistogramRecorder.Unit.MICROS);
+      fetchBatchSize = new HistogramRecorder("fetch_batch", HistogramRecorder.Unit.COUNT);
+      lagByPartition = new ConcurrentHashMap<>();
+      messagesByPartition = new ConcurrentHashMap<>();
+      partitionStats = new ConcurrentHashMap<>();
 
       startTimeNano = System.nanoTime();
       lastPrintTimeNano = startTimeNano;
       lastPrintMessages = 0;
+      lastPrintAcks = 0;
       lastPrintBytes = 0;
       lastPrintErrors = 0;
+      lastPrintMessagesByPartition = new TreeMap<>();
     }
 
     public void registerError(Throwable e) {
       errors.getAndIncrement();
-      LOGGER.error("ERROR", e);
+      AtomicLong typeErrors = errorsByType.computeIfAbsent(e.getClass().getSimpleName(), k -> new AtomicLong(0));
+      if (typeErrors.getAndIncrement() == 0) {
+        LOGGER.error("ERROR", e);
+      } else {
+        // Only log the first stack trace of each type, as a broker outage may fail every in-flight message.
+        LOGGER.error("ERROR: {}", e.toString());
+      }
     }
 
     public void incMessages(long count) {
       messages.getAndAdd(count);
     }
 
+    /**
+     * Counts messages which were acknowledged by the broker.
+     */
+    public void incAcks(long count) {
+      acks.getAndAdd(count);
+    }
+
     public void incBytes(long count) {
       bytes.getAndAdd(count);
     }
 
+    /**
+     * Latency from sending a message to the broker acknowledging it.
+     */
+    public HistogramRecorder getAckLatency() {
+      return ackLatency;
+    }
+
+    /**
+     * Latency from a producer sending a message to a consumer receiving it.
+     */
+    public HistogramRecorder getEndToEndLatency() {
+      return endToEndLatency;
+    }
+
+    /**
+     * Latency of consumers committing their offsets.
+     */
+    public HistogramRecorder getCommitLatency() {
+      return commitLatency;
+    }
+
+    /**
+     * Time from consumers giving up their partitions in a rebalance to being assigned new ones.
+     */
+    public HistogramRecorder getRebalanceDuration() {
+      return rebalanceDuration;
+    }
+
+    /**
+     * Number of messages fetched from a single partition in a single poll.
+     */
+    public HistogramRecorder getFetchBatchSize() {
+      return fetchBatchSize;
+    }
+
+    /**
+     * Includes the provided partition of the topic in the per-partition stats, so that it's listed
+     * with a rate of 0 until it has messages.
+     */
+    public void addPartition(int partition) {
+      messagesByPartition.computeIfAbsent(partition, k -> new AtomicLong(0));
+    }
+
+    /**
+     * Counts messages which were acknowledged by the provided partition of the topic, or received
+     * from it.
+     */
+    public void incPartitionMessages(int partition, long count) {
+      messagesByPartition.computeIfAbsent(partition, k -> new AtomicLong(0)).getAndAdd(count);
+    }
+
+    /**
+     * Returns the number of messages acknowledged by or received from each partition so far.
+     */
+    public Map<Integer, Long> getMessagesByPartition() {
+      Map<Integer, Long> messages = new TreeMap<>();
+      for (Map.Entry<Integer, AtomicLong> entry : messagesByPartition.entrySet()) {
+        messages.put(entry.getKey(), entry.getValue().get());
+      }
+      return messages;
+    }
+
+    /**
+     * Sets the number of messages in a partition which have yet to be consumed.
+     */
+    public void setLag(String partition, long lag) {
+      lagByPartition.put(partition, lag);
+    }
+
+    /**
+     * Stops reporting the lag of a partition, e.g. once it's assigned to another consumer.
+     */
+    public void removeLag(String partition) {
+      lagByPartition.remove(partition);
+    }
+
+    /**
+     * Sets the source of the target message rate to print alongside the actual rate.
+     */
+    public void setTargetRate(DoubleSupplier targetRate) {
+      this.targetRate = targetRate;
+    }
+
+    public PartitionStats getPartitionStats(String partition) {
+      return partitionStats.computeIfAbsent(partition, PartitionStats::new);
+    }
+
+    public long getMessages() {
+      return messages.get();
+    }
+
+    public long getAcks() {
+      return acks.get();
+    }
+
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    public long getErrors() {
+      return errors.get();
+    }
+
+    /**
+     * Returns the current target message rate, or {@code null} if there is none.
+     */
+    public Double getTargetRate() {
+      DoubleSupplier targetRate = this.targetRate;
+      return targetRate != null ? targetRate.getAsDouble() : null;
+    }
+
+    public List<HistogramRecorder> getHistogramRecorders() {
+      return Arrays.asList(ackLatency, endToEndLatency, commitLatency, rebalanceDuration, fetchBatchSize);
+    }
+
     public void setFatalError(Throwable e) {
       registerError(e);
       fatalError.set(true);
@@ -72,39 +288,114 @@ public class Stats {
     private void print() {
       long timeNanoNow = System.nanoTime();
       long messagesTotal = messages.get();
+      long acksTotal = acks.get();
       long bytesTotal = bytes.get();
       long errorsTotal = errors.get();
 
       double timeSinceLastPrintSecs = (timeNanoNow - lastPrintTimeNano) / (double) 1000000000.;
       double timeSinceStartSecs = (timeNanoNow - startTimeNano) / (double) 1000000000.;
       long messagesSinceLastPrint = messagesTotal - lastPrintMessages;
+      long acksSinceLastPrint = acksTotal - lastPrintAcks;
       long bytesSinceLastPrint = bytesTotal - lastPrintBytes;
       long errorsSinceLastPrint = errorsTotal - lastPrintErrors;
 
       lastPrintTimeNano = timeNanoNow;
       lastPrintMessages = messagesTotal;
+      lastPrintAcks = acksTotal;
       lastPrintBytes = bytesTotal;
       lastPrintErrors = errorsTotal;
 
-      LOGGER.info("STATS RECENT: {} messages, {} messages/sec, {} bytes, {} bytes/sec, {} errors, {} errors/sec",
+      LOGGER.info("{}STATS RECENT: {} messages, {} messages/sec, {} acks, {} acks/sec, {} bytes, {} bytes/sec, "
+        + "{} errors, {} errors/sec",
+        logPrefix,
         messagesSinceLastPrint, messagesSinceLastPrint / timeSinceLastPrintSecs,
+        acksSinceLastPrint, acksSinceLastPrint / timeSinceLastPrintSecs,
         bytesSinceLastPrint, bytesSinceLastPrint / timeSinceLastPrintSecs,
         errorsSinceLastPrint, errorsSinceLastPrint / timeSinceLastPrintSecs);
-      LOGGER.info("STATS TOTAL: {} messages, {} messages/sec, {} bytes, {} bytes/sec, {} errors, {} errors/sec",
+      LOGGER.info("{}STATS TOTAL: {} messages, {} messages/sec, {} acks, {} acks/sec, {} bytes, {} bytes/sec, "
+        + "{} errors, {} errors/sec",
+        logPrefix,
         messagesTotal, messagesTotal / timeSinceStartSecs,
+        acksTotal, acksTotal / timeSinceStartSecs,
         bytesTotal, bytesTotal / timeSinceStartSecs,
         errorsTotal, errorsTotal / timeSinceStartSecs);
+      DoubleSupplier targetRate = this.targetRate;
+      if (targetRate != null) {
+        LOGGER.info("{}STATS TARGET: {} messages/sec", logPrefix, targetRate.getAsDouble());
+      }
+      if (!lagByPartition.isEmpty()) {
+        Map<String, Long> lag = new TreeMap<>(lagByPartition);
+        long lagTotal = 0;
+        long lagMax = 0;
+        for (long partitionLag : lag.values()) {
+          lagTotal += partitionLag;
+          lagMax = Math.max(lagMax, partitionLag);
+        }
+        LOGGER.info("{}STATS LAG: {} messages total, {} messages max, by partition: {}", logPrefix, lagTotal, lagMax, lag);
+      }
+      if (!messagesByPartition.isEmpty()) {
+        printPartitionRates(timeSinceLastPrintSecs);
+      }
+      if (errorsTotal > 0) {
+        Map<String, Long> errorsByTypeTotal = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : errorsByType.entrySet()) {
+          errorsByTypeTotal.put(entry.getKey(), entry.getValue().get());
+        }
+        LOGGER.info("{}STATS ERRORS BY TYPE: {}", logPrefix, errorsByTypeTotal);
+      }
+    }
+
+    /**
+     * Prints the recent message rate of each partition, and how much the busiest partition
+     * exceeds the average, to show how unevenly keys spread load across partitions. Partitions
+     * without recent messages count towards the average with a rate of 0.
+     */
+    private void printPartitionRates(double timeSinceLastPrintSecs) {
+      Map<Integer, Long> rates = new TreeMap<>();
+      long rateMax = 0;
+      long rateSum = 0;
+      for (Map.Entry<Integer, Long> entry : getMessagesByPartition().entrySet()) {
+        Long lastPrintMessages = lastPrintMessagesByPartition.put(entry.getKey(), entry.getValue());
+        long messagesSinceLastPrint = entry.getValue() - (lastPrintMessages != null ? lastPrintMessages : 0);
+        long rate = Math.round(messagesSinceLastPrint / timeSinceLastPrintSecs);
+        rates.put(entry.getKey(), rate);
+        rateMax = Math.max(rateMax, rate);
+        rateSum += rate;
+      }
+      double rateMean = rateSum / (double) rates.size();
+      LOGGER.info("{}STATS PARTITIONS: {} messages/sec max, {} messages/sec mean, {} max/mean, by partition: {}",
+        logPrefix, rateMax, Math.round(rateMean), rateMean > 0 ? String.format("%.2f", rateMax / rateMean) : "-", rates);
     }
   }
 
   public static class PrintRunner implements Runnable {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrintRunner.class);
+
     private final ClientConfigs.StatsConfig config;
     private final Values values;
+    private final String hdrLogFile;
+    private final String resultFile;
+    private final RunResult result;
+
+    public PrintRunner(ClientConfigs.StatsConfig config, ConfigParser.Config runConfig) {
+      this(config, runConfig, null);
+    }
 
-    public PrintRunner(ClientConfigs.StatsConfig config) {
+    /**
+     * @param runConfig settings of the run, for the result file
+     * @param name name of the workload whose stats are printed, or {@code null} if there's only one
+     */
+    public PrintRunner(ClientConfigs.StatsConfig config, ConfigParser.Config runConfig, String name) {
       this.config = config;
-      this.values = new Values();
+      this.values = new Values(name);
+      this.hdrLogFile = withName(config.hdrLogFile, name);
+      this.resultFile = withName(config.resultFile, name);
+      this.result = new RunResult(name, runConfig, config.printPeriodMs / 2000.);
+    }
+
+    private static String withName(String file, String name) {
+      return (file != null && name != null) ? file + "." + name : file;
     }
 
     public Values getValues() {
@@ -113,14 +404,92 @@ public class Stats {
 
     @Override
     public void run() {
+      PrintStream hdrLogStream = null;
+      HistogramLogWriter hdrLogWriter = null;
+      if (hdrLogFile != null) {
+        try {
+          hdrLogStream = new PrintStream(new FileOutputStream(hdrLogFile), true);
+          hdrLogWriter = new HistogramLogWriter(hdrLogStream);
+          long startTimeMs = System.currentTimeMillis();
+          hdrLogWriter.outputLogFormatVersion();
+          hdrLogWriter.outputStartTime(startTimeMs);
+          hdrLogWriter.setBaseTime(startTimeMs);
+          hdrLogWriter.outputLegend();
+        } catch (IOException e) {
+          values.registerError(e);
+        }
+      }
+
       while (!values.isShutdown()) {
-        values.print();
+        print(hdrLogWriter);
         try {
           Thread.sleep(config.printPeriodMs);
         } catch (InterruptedException e) {
           values.registerError(e);
         }
       }
+      // Include anything recorded since the last print.
+      print(hdrLogWriter);
+
+      if (hdrLogStream != null) {
+        hdrLogStream.close();
+      }
+      if (resultFile != null) {
+        try {
+          result.write(resultFile, values);
+          LOGGER.info("Wrote result to {}", resultFile);
+        } catch (IOException e) {
+          values.registerError(e);
+        }
+      }
+    }
+
+    private void print(HistogramLogWriter hdrLogWriter) {
+      values.print();
+      Map<String, JSONObject> intervalHistograms = new TreeMap<>();
+      for (HistogramRecorder recorder : values.getHistogramRecorders()) {
+        Histogram interval = recorder.getIntervalHistogram();
+        Histogram total = recorder.getTotalHistogram();
+        if (total.getTotalCount() == 0) {
+          // Nothing of this kind is being measured, e.g. ack latency when consuming.
+          continue;
+        }
+        if (interval.getTotalCount() > 0) {
+          intervalHistograms.put(recorder.getName(), HistogramRecorder.toJSON(interval, recorder.getUnit()));
+        }
+        printHistogram(values.logPrefix + "HISTOGRAM RECENT", recorder, interval);
+        printHistogram(values.logPrefix + "HISTOGRAM TOTAL", recorder, total);
+        if (hdrLogWriter != null) {
+          hdrLogWriter.outputIntervalHistogram(interval);
+        }
+      }
+      result.addInterval(values, intervalHistograms);
+
+      for (PartitionStats partition : new TreeMap<>(values.partitionStats).values()) {
+        Histogram interval = partition.endToEndLatency.getIntervalHistogram();
+        Histogram total = partition.endToEndLatency.getTotalHistogram();
+        HistogramRecorder.Unit unit = partition.endToEndLatency.getUnit();
+        LOGGER.info("{}PARTITION {}: {} received, {} missing, {} out of order, "
+            + "e2e p99 {} recent, p99 {} total, max {} total",
+          values.logPrefix, partition.partition, partition.received.get(), partition.missing.get(), partition.outOfOrder.get(),
+          unit.format(interval.getValueAtPercentile(99)),
+          unit.format(total.getValueAtPercentile(99)),
+          unit.format(total.getMaxValue()));
+        if (hdrLogWriter != null) {
+          hdrLogWriter.outputIntervalHistogram(interval);
+        }
+      }
+    }
+
+    private static void printHistogram(String label, HistogramRecorder recorder, Histogram histogram) {
+      HistogramRecorder.Unit unit = recorder.getUnit();
+      LOGGER.info("{} {}: {} samples, p50 {}, p90 {}, p99 {}, p99.9 {}, max {}",
+        label, recorder.getName(), histogram.getTotalCount(),
+        unit.format(histogram.getValueAtPercentile(50)),
+        unit.format(histogram.getValueAtPercentile(90)),
+        unit.format(histogram.getValueAtPercentile(99)),
+        unit.format(histogram.getValueAtPercentile(99.9)),
+        unit.format(histogram.getMaxValue()));
     }
   }
 }
@@ -6,6 +6,7 @@ import java.util.List;
 public class ThreadRunner {
   private final Stats.Values values;
   private final List<Thread> threads;
+  private volatile long startTimeNanos;
 
   public ThreadRunner(Stats.Values values) {
     this.values = values;
@@ -17,6 +18,7 @@ public class ThreadRunner {
   }
 
   public void runThreads() {
+    startTimeNanos = System.nanoTime();
     for (Thread thread : threads) {
       thread.start();
     }
@@ -29,6 +31,15 @@ public class ThreadRunner {
     }
   }
 
+  /**
+   * Returns when {@link #runThreads()} started the threads, as per {@link System#nanoTime()}. Rate
+   * schedules and scenario phases all start from this time, after any setup which may block such
+   * as creating producers. Only valid from within the threads.
+   */
+  public long getStartTimeNanos() {
+    return startTimeNanos;
+  }
+
   public boolean isFatalError() {
     return values.isFatalError();
   }
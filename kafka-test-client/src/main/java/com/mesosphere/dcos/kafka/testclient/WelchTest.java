@@ -0,0 +1,122 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+/**
+ * Welch's t-test, which tells whether two sets of samples have different means without assuming
+ * that they have the same variance.
+ */
+public final class WelchTest {
+
+  private static final int MAX_ITERATIONS = 300;
+  private static final double EPSILON = 1e-14;
+  private static final double TINY = 1e-300;
+
+  private WelchTest() {
+    // do not instantiate
+  }
+
+  public static double mean(double[] samples) {
+    double sum = 0;
+    for (double sample : samples) {
+      sum += sample;
+    }
+    return sum / samples.length;
+  }
+
+  /**
+   * Returns the unbiased sample variance.
+   */
+  public static double variance(double[] samples) {
+    double mean = mean(samples);
+    double sum = 0;
+    for (double sample : samples) {
+      sum += (sample - mean) * (sample - mean);
+    }
+    return sum / (samples.length - 1);
+  }
+
+  /**
+   * Returns the two-sided p-value for the two sets of samples having the same mean. Each set must
+   * have at least two samples.
+   */
+  public static double pValue(double[] a, double[] b) {
+    if (a.length < 2 || b.length < 2) {
+      throw new IllegalArgumentException("At least two samples are required in each set");
+    }
+    double varianceOfMeanA = variance(a) / a.length;
+    double varianceOfMeanB = variance(b) / b.length;
+    double meanDiff = mean(a) - mean(b);
+    double standardError = Math.sqrt(varianceOfMeanA + varianceOfMeanB);
+    if (standardError == 0) {
+      // Both sets are constant: either they're identical or certainly different.
+      return meanDiff == 0 ? 1 : 0;
+    }
+    double t = meanDiff / standardError;
+    double degreesOfFreedom = (varianceOfMeanA + varianceOfMeanB) * (varianceOfMeanA + varianceOfMeanB)
+        / (varianceOfMeanA * varianceOfMeanA / (a.length - 1) + varianceOfMeanB * varianceOfMeanB / (b.length - 1));
+    // P(|T| > |t|) for Student's t distribution.
+    return regularizedIncompleteBeta(degreesOfFreedom / (degreesOfFreedom + t * t), degreesOfFreedom / 2, 0.5);
+  }
+
+  /**
+   * Returns I_x(a, b), evaluated with a continued fraction as in Numerical Recipes.
+   */
+  static double regularizedIncompleteBeta(double x, double a, double b) {
+    if (x <= 0) {
+      return 0;
+    }
+    if (x >= 1) {
+      return 1;
+    }
+    double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+    // The continued fraction converges quickly for x < (a + 1) / (a + b + 2), so use symmetry otherwise.
+    if (x < (a + 1) / (a + b + 2)) {
+      return front * betaContinuedFraction(x, a, b) / a;
+    }
+    return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+  }
+
+  private static double betaContinuedFraction(double x, double a, double b) {
+    double c = 1;
+    double d = 1 - (a + b) * x / (a + 1);
+    d = 1 / (Math.abs(d) < TINY ? TINY : d);
+    double result = d;
+    for (int m = 1; m <= MAX_ITERATIONS; ++m) {
+      int m2 = 2 * m;
+      double numerator = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+      d = 1 / nonZero(1 + numerator * d);
+      c = nonZero(1 + numerator / c);
+      result *= d * c;
+
+      numerator = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+      d = 1 / nonZero(1 + numerator * d);
+      c = nonZero(1 + numerator / c);
+      double delta = d * c;
+      result *= delta;
+      if (Math.abs(delta - 1) < EPSILON) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  private static double nonZero(double value) {
+    return Math.abs(value) < TINY ? TINY : value;
+  }
+
+  /**
+   * Returns ln(Gamma(x)) for x > 0, using the Lanczos approximation.
+   */
+  static double logGamma(double x) {
+    final double[] coefficients = {
+        76.18009172947146, -86.50532032941677, 24.01409824083091,
+        -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+    double tmp = x + 5.5;
+    tmp -= (x + 0.5) * Math.log(tmp);
+    double series = 1.000000000190015;
+    double y = x;
+    for (double coefficient : coefficients) {
+      series += coefficient / ++y;
+    }
+    return -tmp + Math.log(2.5066282746310005 * series / x);
+  }
+}
@@ -0,0 +1,141 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeyGeneratorTest {
+
+  private static final int KEYS = 100;
+  private static final int PICKS = 200000;
+
+  @Test
+  public void testParse() {
+    assertEquals("uniform", KeyGenerator.KeyDistribution.parse(" uniform ").toString());
+    assertEquals("sequential", KeyGenerator.KeyDistribution.parse("sequential").toString());
+    assertEquals("zipf", KeyGenerator.KeyDistribution.parse("zipf").toString());
+    assertEquals("zipf:1.5", KeyGenerator.KeyDistribution.parse("zipf:1.5").toString());
+    assertEquals("hotspot", KeyGenerator.KeyDistribution.parse("hotspot").toString());
+    assertEquals("hotspot:0.9:0.1", KeyGenerator.KeyDistribution.parse("hotspot:0.9:0.1").toString());
+  }
+
+  @Test
+  public void testParseInvalid() {
+    String[] specs = {
+        "", "pareto", "uniform:1", "sequential:1",
+        "zipf:0", "zipf:-1", "zipf:NaN", "zipf:Infinity", "zipf:abc", "zipf:1:2",
+        "hotspot:0.8", "hotspot:0.8:0.2:0.1", "hotspot:1:0.2", "hotspot:0.8:0", "hotspot:-0.5:0.2",
+        "hotspot:0.8:x" };
+    for (String spec : specs) {
+      try {
+        KeyGenerator.KeyDistribution.parse(spec);
+        fail("Expected parse failure: " + spec);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoKeys() {
+    new KeyGenerator.KeyPool(KeyGenerator.KeyDistribution.parse("uniform"), 0);
+  }
+
+  @Test
+  public void testUniform() {
+    int[] counts = pick("uniform", KEYS);
+    for (int count : counts) {
+      assertEquals(PICKS / KEYS, count, PICKS / KEYS * 0.2);
+    }
+  }
+
+  @Test
+  public void testSequential() {
+    KeyGenerator generator = new KeyGenerator(
+        new KeyGenerator.KeyPool(KeyGenerator.KeyDistribution.parse("sequential"), 3), new Random(0));
+    int first = getIndex(generator.next());
+    for (int i = 1; i < 10; ++i) {
+      assertEquals((first + i) % 3, getIndex(generator.next()));
+    }
+  }
+
+  @Test
+  public void testZipf() {
+    int[] counts = pick("zipf", KEYS);
+    double harmonic = 0;
+    for (int i = 1; i <= KEYS; ++i) {
+      harmonic += 1. / i;
+    }
+    // The nth key is picked with probability 1 / (n * H(KEYS)).
+    for (int i : new int[] { 0, 1, 2, 9 }) {
+      double expected = PICKS / ((i + 1) * harmonic);
+      assertEquals("key-" + i, expected, counts[i], expected * 0.05);
+    }
+    double last = PICKS / (KEYS * harmonic);
+    assertEquals(last, counts[KEYS - 1], last * 0.5);
+    assertTrue(counts[KEYS - 1] > 0);
+  }
+
+  @Test
+  public void testZipfExponent() {
+    int[] counts = pick("zipf:3", KEYS);
+    // 1 / zeta(3), where zeta(3) ~ 1.202.
+    assertEquals(PICKS / 1.202, counts[0], PICKS * 0.01);
+    assertEquals(counts[0] / 8., counts[1], counts[1] * 0.05);
+  }
+
+  @Test
+  public void testZipfSingleKey() {
+    assertEquals(PICKS, pick("zipf", 1)[0]);
+  }
+
+  @Test
+  public void testHotspot() {
+    int[] counts = pick("hotspot:0.9:0.1", KEYS);
+    int hot = 0;
+    for (int i = 0; i < 10; ++i) {
+      hot += counts[i];
+    }
+    assertEquals(PICKS * 0.9, hot, PICKS * 0.01);
+    // Uniform within each group, allowing for each cold key being picked only ~220 times.
+    for (int i = 0; i < KEYS; ++i) {
+      double expected = i < 10 ? PICKS * 0.9 / 10 : PICKS * 0.1 / 90;
+      assertEquals("key-" + i, expected, counts[i], 5 * Math.sqrt(expected));
+    }
+  }
+
+  @Test
+  public void testHotspotFewKeys() {
+    // 20% of 3 keys rounds down to none, so one key is hot.
+    int[] counts = pick("hotspot", 3);
+    assertEquals(PICKS * 0.8, counts[0], PICKS * 0.01);
+    assertEquals(PICKS * 0.1, counts[1], PICKS * 0.01);
+    assertEquals(PICKS * 0.1, counts[2], PICKS * 0.01);
+
+    assertEquals(PICKS, pick("hotspot", 1)[0]);
+  }
+
+  /**
+   * Returns how often each key was picked, checking that every key picked is in the pool.
+   */
+  private static int[] pick(String distribution, int keyCount) {
+    KeyGenerator generator = new KeyGenerator(
+        new KeyGenerator.KeyPool(KeyGenerator.KeyDistribution.parse(distribution), keyCount), new Random(1234));
+    int[] counts = new int[keyCount];
+    for (int i = 0; i < PICKS; ++i) {
+      int index = getIndex(generator.next());
+      assertTrue("key-" + index, index >= 0 && index < keyCount);
+      ++counts[index];
+    }
+    return counts;
+  }
+
+  private static int getIndex(byte[] key) {
+    return Integer.parseInt(new String(key, StandardCharsets.UTF_8).substring("key-".length()));
+  }
+}
@@ -0,0 +1,38 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class PacerTest {
+
+  @Test
+  public void testFollowsStartTime() {
+    // Starting in the past, every slot up to now is overdue and returned immediately.
+    long startTimeNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+    Pacer pacer = new Pacer(RateProfile.parse("1000:1,10:5"), () -> startTimeNanos, () -> false);
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals(startTimeNanos + TimeUnit.MILLISECONDS.toNanos(i), pacer.acquire());
+    }
+    // Slots follow the profile from the provided start time, rather than when the pacer was created.
+    assertEquals(startTimeNanos + TimeUnit.SECONDS.toNanos(1), pacer.acquire());
+    assertEquals(startTimeNanos + TimeUnit.MILLISECONDS.toNanos(1100), pacer.acquire());
+    assertEquals(10, pacer.getCurrentRate(), 0);
+  }
+
+  @Test
+  public void testCurrentRate() {
+    long startTimeNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(2);
+    Pacer pacer = new Pacer(RateProfile.parse("1000:1,5000:3600"), () -> startTimeNanos, () -> false);
+    assertEquals(5000, pacer.getCurrentRate(), 0);
+  }
+
+  @Test
+  public void testShutdownWhileWaiting() {
+    long startTimeNanos = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+    Pacer pacer = new Pacer(RateProfile.constant(1), () -> startTimeNanos, () -> true);
+    assertEquals(-1, pacer.acquire());
+  }
+}
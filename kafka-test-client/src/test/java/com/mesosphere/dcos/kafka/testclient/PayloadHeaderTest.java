@@ -0,0 +1,65 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadHeaderTest {
+
+  @Test
+  public void testRoundTrip() {
+    byte[] value = new byte[100];
+    Arrays.fill(value, (byte) 'x');
+    assertTrue(PayloadHeader.write(value, 1234567890123L));
+    assertEquals(1234567890123L, PayloadHeader.readTimestampMicros(value));
+    assertFalse(PayloadHeader.isSequenced(value));
+    // The rest of the payload is left alone.
+    assertEquals('x', value[PayloadHeader.LENGTH]);
+  }
+
+  @Test
+  public void testSequencedRoundTrip() {
+    byte[] value = new byte[PayloadHeader.SEQUENCED_LENGTH];
+    assertTrue(PayloadHeader.write(value, 1234567890123L, 7, Long.MAX_VALUE));
+    assertEquals(1234567890123L, PayloadHeader.readTimestampMicros(value));
+    assertTrue(PayloadHeader.isSequenced(value));
+    assertEquals(7, PayloadHeader.readProducerId(value));
+    assertEquals(Long.MAX_VALUE, PayloadHeader.readSequence(value));
+  }
+
+  @Test
+  public void testTooShort() {
+    byte[] value = new byte[PayloadHeader.LENGTH - 1];
+    assertFalse(PayloadHeader.write(value, 1));
+    assertEquals(-1, PayloadHeader.readTimestampMicros(value));
+    assertFalse(PayloadHeader.write(null, 1));
+    assertEquals(-1, PayloadHeader.readTimestampMicros(null));
+
+    // Long enough for a timestamp, but not for a sequence number.
+    value = new byte[PayloadHeader.SEQUENCED_LENGTH - 1];
+    assertFalse(PayloadHeader.write(value, 1, 2, 3));
+    assertEquals(-1, PayloadHeader.readTimestampMicros(value));
+    assertFalse(PayloadHeader.isSequenced(value));
+    assertFalse(PayloadHeader.isSequenced(null));
+  }
+
+  @Test
+  public void testNoHeader() {
+    byte[] value = new byte[100];
+    Arrays.fill(value, (byte) 'x');
+    assertEquals(-1, PayloadHeader.readTimestampMicros(value));
+    assertFalse(PayloadHeader.isSequenced(value));
+  }
+
+  @Test
+  public void testToMicros() {
+    long nanoTime = System.nanoTime();
+    assertEquals(1000, PayloadHeader.toMicros(nanoTime + 1000000) - PayloadHeader.toMicros(nanoTime));
+    // Close to the wall clock, give or take the millisecond resolution of currentTimeMillis().
+    assertEquals(System.currentTimeMillis() * 1000., PayloadHeader.nowMicros(), 100000);
+  }
+}
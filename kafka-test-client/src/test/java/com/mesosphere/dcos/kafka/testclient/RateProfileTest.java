@@ -0,0 +1,96 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RateProfileTest {
+
+  private static final double DELTA = 1e-6;
+
+  @Test
+  public void testConstant() {
+    RateProfile profile = RateProfile.constant(100);
+    assertEquals(100, profile.rateAt(0), 0);
+    assertEquals(100, profile.rateAt(TimeUnit.DAYS.toNanos(1)), 0);
+  }
+
+  @Test
+  public void testHold() {
+    RateProfile profile = RateProfile.parse("1000:60");
+    assertEquals(1000, profile.rateAt(0), 0);
+    assertEquals(1000, profile.rateAt(secs(59.9)), 0);
+    // The last segment's rate is held once it ends.
+    assertEquals(1000, profile.rateAt(secs(60)), 0);
+    assertEquals(1000, profile.rateAt(secs(3600)), 0);
+  }
+
+  @Test
+  public void testRamp() {
+    RateProfile profile = RateProfile.parse("1000:60, 1000-5000:120");
+    assertEquals(1000, profile.rateAt(secs(30)), 0);
+    assertEquals(1000, profile.rateAt(secs(60)), DELTA);
+    assertEquals(2000, profile.rateAt(secs(90)), DELTA);
+    assertEquals(3000, profile.rateAt(secs(120)), DELTA);
+    assertEquals(5000, profile.rateAt(secs(180)), 0);
+    assertEquals(5000, profile.rateAt(secs(1000)), 0);
+  }
+
+  @Test
+  public void testRampDown() {
+    RateProfile profile = RateProfile.parse("500-100:4");
+    assertEquals(500, profile.rateAt(0), DELTA);
+    assertEquals(300, profile.rateAt(secs(2)), DELTA);
+    assertEquals(100, profile.rateAt(secs(4)), 0);
+  }
+
+  @Test
+  public void testZeroLengthSegments() {
+    // A step from 1000 to 5000 msg/s after ten seconds, then a ramp back down.
+    RateProfile profile = RateProfile.parse("1000:10,5000:0,5000-1000:10");
+    assertEquals(1000, profile.rateAt(secs(9.9)), 0);
+    assertEquals(5000, profile.rateAt(secs(10)), DELTA);
+    assertEquals(3000, profile.rateAt(secs(15)), DELTA);
+    assertEquals(1000, profile.rateAt(secs(20)), 0);
+
+    // A zero-length last segment still sets the rate which is held.
+    profile = RateProfile.parse("1000:10,200-300:0");
+    assertEquals(1000, profile.rateAt(secs(5)), 0);
+    assertEquals(300, profile.rateAt(secs(10)), 0);
+  }
+
+  @Test
+  public void testFractionalRatesAndDurations() {
+    RateProfile profile = RateProfile.parse("0.5-1.5:0.5");
+    assertEquals(1, profile.rateAt(TimeUnit.MILLISECONDS.toNanos(250)), DELTA);
+  }
+
+  @Test
+  public void testParseInvalid() {
+    String[] profiles = {
+        "", "1000", "1000:", ":60", "1000:60:1", "1000:60,", "1000:60,,2000:60",
+        "abc:60", "1000:abc", "1000-:60", "1000-2000-3000:60",
+        "0:60", "-1000:60", "1000--2000:60", "1000-0:60", "NaN:60", "Infinity:60",
+        "1000:-1", "1000:NaN" };
+    for (String profile : profiles) {
+      try {
+        RateProfile.parse(profile);
+        fail("Expected parse failure: " + profile);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstantInvalid() {
+    RateProfile.constant(0);
+  }
+
+  private static long secs(double secs) {
+    return (long) (secs * TimeUnit.SECONDS.toNanos(1));
+  }
+}
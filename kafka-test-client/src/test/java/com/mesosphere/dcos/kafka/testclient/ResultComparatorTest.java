@@ -0,0 +1,180 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultComparatorTest {
+
+  private static final int INTERVALS = 20;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testUnchanged() throws IOException {
+    assertTrue(compare(new Run(), new Run(), "5", "5"));
+  }
+
+  @Test
+  public void testThroughputRegression() throws IOException {
+    assertFalse(compare(new Run(), new Run().messagesPerSec(800), "5", "5"));
+  }
+
+  @Test
+  public void testThroughputImprovement() throws IOException {
+    assertTrue(compare(new Run(), new Run().messagesPerSec(1200), "5", "5"));
+  }
+
+  @Test
+  public void testErrorRegression() throws IOException {
+    assertFalse(compare(new Run(), new Run().errorsPerSec(10), "5", "5"));
+  }
+
+  @Test
+  public void testLatencyRegression() throws IOException {
+    assertFalse(compare(new Run(), new Run().ackP99Ms(20), "5", "5"));
+    assertTrue(compare(new Run(), new Run().ackP99Ms(5), "5", "5"));
+  }
+
+  @Test
+  public void testCountHistogramsIgnored() throws IOException {
+    assertTrue(compare(new Run(), new Run().fetchBatchP99(1), "5", "5"));
+  }
+
+  @Test
+  public void testBelowMinChange() throws IOException {
+    // Consistently 2% slower: significant, but below the minimum change.
+    assertTrue(compare(new Run(), new Run().messagesPerSec(980), "5", "5"));
+    assertFalse(compare(new Run(), new Run().messagesPerSec(980), "5", "1"));
+  }
+
+  @Test
+  public void testNotSignificant() throws IOException {
+    // 10% slower on average, but far noisier than that.
+    assertTrue(compare(new Run().noise(0.5), new Run().messagesPerSec(900).noise(0.5), "5", "5"));
+  }
+
+  @Test
+  public void testWarmupLeftOut() throws IOException {
+    Run slowStart = new Run().warmup(5, 100);
+    assertTrue(compare(new Run(), slowStart, "5", "5"));
+    assertTrue(compare(slowStart, new Run(), "5", "5"));
+    assertFalse(compare(new Run(), slowStart, "0", "5"));
+  }
+
+  @Test
+  public void testTooFewSamplesSkipped() throws IOException {
+    // Only the last interval starts after the warmup, so nothing is compared.
+    assertTrue(compare(new Run(), new Run().messagesPerSec(100), String.valueOf(INTERVALS - 1), "5"));
+  }
+
+  private boolean compare(Run baseline, Run candidate, String warmupSecs, String minChangePercent)
+      throws IOException {
+    File baselineFile = baseline.write(folder.newFile());
+    File candidateFile = candidate.write(folder.newFile());
+    Map<String, String> env = new HashMap<>();
+    env.put("COMPARE_BASELINE_FILE", baselineFile.getPath());
+    env.put("COMPARE_CANDIDATE_FILE", candidateFile.getPath());
+    env.put("COMPARE_WARMUP_SECS", warmupSecs);
+    env.put("COMPARE_MIN_CHANGE_PERCENT", minChangePercent);
+    ClientConfigs.CompareConfig config = ClientConfigs.CompareConfig.parseFrom(env);
+    assertNotNull(config);
+    return new ResultComparator(config).compare();
+  }
+
+  /**
+   * Builds a run result with one interval per second, whose values alternate around their means.
+   */
+  private static class Run {
+    private double messagesPerSec = 1000;
+    private double errorsPerSec = 0;
+    private double ackP99Ms = 10;
+    private double fetchBatchP99 = 100;
+    private double noise = 0.01;
+    private int warmupSecs = 0;
+    private double warmupMessagesPerSec = 0;
+
+    private Run messagesPerSec(double messagesPerSec) {
+      this.messagesPerSec = messagesPerSec;
+      return this;
+    }
+
+    private Run errorsPerSec(double errorsPerSec) {
+      this.errorsPerSec = errorsPerSec;
+      return this;
+    }
+
+    private Run ackP99Ms(double ackP99Ms) {
+      this.ackP99Ms = ackP99Ms;
+      return this;
+    }
+
+    private Run fetchBatchP99(double fetchBatchP99) {
+      this.fetchBatchP99 = fetchBatchP99;
+      return this;
+    }
+
+    /**
+     * Sets how far each interval's values are from their means, relative to the means.
+     */
+    private Run noise(double noise) {
+      this.noise = noise;
+      return this;
+    }
+
+    /**
+     * Sets the throughput of the first intervals of the run.
+     */
+    private Run warmup(int warmupSecs, double warmupMessagesPerSec) {
+      this.warmupSecs = warmupSecs;
+      this.warmupMessagesPerSec = warmupMessagesPerSec;
+      return this;
+    }
+
+    private File write(File file) throws IOException {
+      JSONArray intervals = new JSONArray();
+      for (int i = 0; i < INTERVALS; ++i) {
+        double factor = 1 + (i % 2 == 0 ? noise : -noise);
+        double messages = (i < warmupSecs ? warmupMessagesPerSec : messagesPerSec) * factor;
+        intervals.put(new JSONObject()
+            .put("start_secs", (double) i)
+            .put("duration_secs", 1.)
+            .put("messages_per_sec", messages)
+            .put("acks_per_sec", messages)
+            .put("errors_per_sec", errorsPerSec * factor)
+            .put("histograms", new JSONObject()
+                .put("ack", histogram(HistogramRecorder.Unit.MICROS, ackP99Ms * factor))
+                .put("fetch_batch", histogram(HistogramRecorder.Unit.COUNT, fetchBatchP99 * factor))));
+      }
+      JSONObject result = new JSONObject()
+          .put("settings", new JSONObject().put("MODE", "NATIVE"))
+          .put("kafka_settings", new JSONObject())
+          .put("histograms", new JSONObject()
+              .put("ack", histogram(HistogramRecorder.Unit.MICROS, ackP99Ms))
+              .put("fetch_batch", histogram(HistogramRecorder.Unit.COUNT, fetchBatchP99)))
+          .put("intervals", intervals);
+      FileUtils.writeStringToFile(file, result.toString());
+      return file;
+    }
+
+    private static JSONObject histogram(HistogramRecorder.Unit unit, double p99) {
+      return new JSONObject()
+          .put("unit", unit.getSuffix())
+          .put("p50", p99 / 2)
+          .put("p99", p99);
+    }
+  }
+}
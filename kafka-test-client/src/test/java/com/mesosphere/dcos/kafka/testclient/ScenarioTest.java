@@ -0,0 +1,149 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScenarioTest {
+
+  private static final String WORKLOADS = "\"workloads\": ["
+      + "{ \"name\": \"orders\", \"mode\": \"PRODUCER\", \"rate\": 1000,"
+      + "  \"config\": { \"TOPIC\": \"orders\", \"THREADS\": 4 }, \"kafka\": { \"acks\": \"all\" } },"
+      + "{ \"name\": \"audit\", \"mode\": \"PRODUCER\" },"
+      + "{ \"name\": \"reader\", \"mode\": \"CONSUMER\", \"config\": { \"TOPIC\": \"orders\" } } ]";
+
+  @Test
+  public void testParse() {
+    Scenario scenario = Scenario.parse("{ \"phases\": ["
+        + "{ \"name\": \"warmup\", \"duration_secs\": 60, \"rate_multiplier\": 0.5 },"
+        + "{ \"name\": \"steady\", \"duration_secs\": 600, \"ramp\": true },"
+        + "{ \"name\": \"spike\", \"duration_secs\": 30, \"rates\": { \"orders\": 20000 } } ], "
+        + WORKLOADS + " }");
+
+    assertEquals(3, scenario.phases.size());
+    assertEquals("warmup", scenario.phases.get(0).name);
+    assertEquals(60, scenario.phases.get(0).durationSecs, 0);
+    assertFalse(scenario.phases.get(0).ramp);
+    assertTrue(scenario.phases.get(1).ramp);
+
+    assertEquals(3, scenario.workloads.size());
+    Scenario.Workload orders = scenario.workloads.get(0);
+    assertEquals("orders", orders.name);
+    assertEquals(ClientConfigs.ClientMode.PRODUCER, orders.mode);
+    assertEquals(1000, orders.rate, 0);
+    assertEquals("4", orders.config.get("THREADS"));
+    assertEquals("all", orders.kafkaConfig.get("acks"));
+    assertNull(scenario.workloads.get(1).rate);
+    assertEquals(ClientConfigs.ClientMode.CONSUMER, scenario.workloads.get(2).mode);
+  }
+
+  @Test
+  public void testRateProfile() {
+    Scenario scenario = Scenario.parse("{ \"phases\": ["
+        + "{ \"name\": \"warmup\", \"duration_secs\": 60, \"rate_multiplier\": 0.5 },"
+        + "{ \"name\": \"steady\", \"duration_secs\": 600, \"ramp\": true },"
+        + "{ \"name\": \"spike\", \"duration_secs\": 30, \"rates\": { \"orders\": 20000 } } ], "
+        + WORKLOADS + " }");
+    Scenario.Workload orders = scenario.workloads.get(0);
+
+    Map<String, String> env = scenario.getEnv(orders, Collections.singletonMap("TOPIC", "default"));
+    assertEquals("500.0:60.0,500.0-1000.0:600.0,20000.0:30.0", env.get("RATE_PROFILE"));
+    assertEquals("orders", env.get("TOPIC"));
+    assertEquals("4", env.get("THREADS"));
+
+    RateProfile profile = RateProfile.parse(env.get("RATE_PROFILE"));
+    assertEquals(500, profile.rateAt(secs(30)), 1e-6);
+    assertEquals(750, profile.rateAt(secs(360)), 1e-6);
+    assertEquals(20000, profile.rateAt(secs(661)), 1e-6);
+
+    assertEquals(500, scenario.getMeanRate(scenario.phases.get(0), orders), 0);
+    assertEquals(750, scenario.getMeanRate(scenario.phases.get(1), orders), 0);
+    assertEquals(20000, scenario.getMeanRate(scenario.phases.get(2), orders), 0);
+  }
+
+  @Test
+  public void testUnpaced() {
+    Scenario scenario = Scenario.parse("{ \"phases\": ["
+        + "{ \"name\": \"first\", \"duration_secs\": 10, \"rate_multiplier\": 2 },"
+        + "{ \"name\": \"second\", \"duration_secs\": 10 } ], "
+        + WORKLOADS + " }");
+    Map<String, String> baseEnv = Collections.singletonMap("RATE_PROFILE", "10:10");
+
+    // Workloads without a rate keep any pacing of their own.
+    Scenario.Workload audit = scenario.workloads.get(1);
+    assertEquals("10:10", scenario.getEnv(audit, baseEnv).get("RATE_PROFILE"));
+    assertNull(scenario.getMeanRate(scenario.phases.get(0), audit));
+    // The scenario's rates override any in the environment.
+    assertEquals("2000.0:10.0,1000.0:10.0",
+        scenario.getEnv(scenario.workloads.get(0), baseEnv).get("RATE_PROFILE"));
+  }
+
+  @Test
+  public void testRateOnlyInPhases() {
+    Scenario scenario = Scenario.parse("{ \"phases\": ["
+        + "{ \"name\": \"first\", \"duration_secs\": 5, \"rates\": { \"audit\": 100 } },"
+        + "{ \"name\": \"second\", \"duration_secs\": 5.5, \"ramp\": true, \"rates\": { \"audit\": 300 } } ], "
+        + WORKLOADS + " }");
+    Scenario.Workload audit = scenario.workloads.get(1);
+    assertEquals("100.0:5.0,100.0-300.0:5.5", scenario.getEnv(audit, Collections.emptyMap()).get("RATE_PROFILE"));
+    assertEquals(200, scenario.getMeanRate(scenario.phases.get(1), audit), 0);
+  }
+
+  @Test
+  public void testFirstPhaseRampHolds() {
+    Scenario scenario = Scenario.parse("{ \"phases\": ["
+        + "{ \"name\": \"first\", \"duration_secs\": 10, \"ramp\": true } ], "
+        + WORKLOADS + " }");
+    Scenario.Workload orders = scenario.workloads.get(0);
+    assertEquals("1000.0:10.0", scenario.getEnv(orders, Collections.emptyMap()).get("RATE_PROFILE"));
+    assertEquals(1000, scenario.getMeanRate(scenario.phases.get(0), orders), 0);
+  }
+
+  @Test
+  public void testParseInvalid() {
+    String phase = "{ \"name\": \"phase\", \"duration_secs\": 10 }";
+    String[] scenarios = {
+        "{ \"phases\": [], " + WORKLOADS + " }",
+        "{ \"phases\": [" + phase + "], \"workloads\": [] }",
+        "{ \"phases\": [" + phase + ", " + phase + "], " + WORKLOADS + " }",
+        "{ \"phases\": [{ \"name\": \"bad name\", \"duration_secs\": 10 }], " + WORKLOADS + " }",
+        "{ \"phases\": [{ \"name\": \"phase\", \"duration_secs\": 0 }], " + WORKLOADS + " }",
+        "{ \"phases\": [{ \"name\": \"phase\", \"duration_secs\": 10, \"rate_multiplier\": 0 }], " + WORKLOADS + " }",
+        "{ \"phases\": [{ \"name\": \"phase\", \"duration_secs\": 10, \"rates\": { \"unknown\": 5 } }], "
+            + WORKLOADS + " }",
+        "{ \"phases\": [{ \"name\": \"phase\", \"duration_secs\": 10, \"rates\": { \"orders\": -5 } }], "
+            + WORKLOADS + " }",
+        // Would leave the workload unpaced in the second phase.
+        "{ \"phases\": [{ \"name\": \"first\", \"duration_secs\": 10, \"rates\": { \"audit\": 5 } }, "
+            + "{ \"name\": \"second\", \"duration_secs\": 10 }], " + WORKLOADS + " }",
+        "{ \"phases\": [" + phase + "], \"workloads\": [{ \"name\": \"w\", \"mode\": \"END_TO_END\" }] }",
+        "{ \"phases\": [" + phase + "], \"workloads\": [{ \"name\": \"w\", \"mode\": \"PRODUCER\", \"rate\": 0 }] }",
+        "{ \"phases\": [" + phase + "], \"workloads\": ["
+            + "{ \"name\": \"w\", \"mode\": \"PRODUCER\" }, { \"name\": \"w\", \"mode\": \"CONSUMER\" }] }" };
+    for (String scenario : scenarios) {
+      try {
+        Scenario.parse(scenario);
+        fail("Expected parse failure: " + scenario);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = JSONException.class)
+  public void testParseMissingPhases() {
+    Scenario.parse("{ " + WORKLOADS + " }");
+  }
+
+  private static long secs(double secs) {
+    return (long) (secs * 1000000000.);
+  }
+}
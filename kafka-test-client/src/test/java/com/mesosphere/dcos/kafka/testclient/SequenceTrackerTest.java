@@ -0,0 +1,79 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class SequenceTrackerTest {
+
+  private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+  @Test
+  public void testInOrder() {
+    SequenceTracker tracker = new SequenceTracker();
+    // A consumer may start in the middle of a producer's messages.
+    assertEquals(SequenceTracker.Result.FIRST, tracker.track(PARTITION_0, 1, 42));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 43));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 44));
+    assertEquals(0, tracker.getLastGap());
+  }
+
+  @Test
+  public void testGap() {
+    SequenceTracker tracker = new SequenceTracker();
+    tracker.track(PARTITION_0, 1, 0);
+    assertEquals(SequenceTracker.Result.GAP, tracker.track(PARTITION_0, 1, 4));
+    assertEquals(3, tracker.getLastGap());
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 5));
+    assertEquals(0, tracker.getLastGap());
+  }
+
+  @Test
+  public void testOutOfOrder() {
+    SequenceTracker tracker = new SequenceTracker();
+    tracker.track(PARTITION_0, 1, 0);
+    tracker.track(PARTITION_0, 1, 3);
+    // The skipped messages arriving late don't move the last sequence back.
+    assertEquals(SequenceTracker.Result.OUT_OF_ORDER, tracker.track(PARTITION_0, 1, 1));
+    assertEquals(0, tracker.getLastGap());
+    assertEquals(SequenceTracker.Result.OUT_OF_ORDER, tracker.track(PARTITION_0, 1, 2));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 4));
+  }
+
+  @Test
+  public void testDuplicate() {
+    SequenceTracker tracker = new SequenceTracker();
+    tracker.track(PARTITION_0, 1, 7);
+    assertEquals(SequenceTracker.Result.OUT_OF_ORDER, tracker.track(PARTITION_0, 1, 7));
+    tracker.track(PARTITION_0, 1, 8);
+    assertEquals(SequenceTracker.Result.OUT_OF_ORDER, tracker.track(PARTITION_0, 1, 8));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 9));
+  }
+
+  @Test
+  public void testProducersAndPartitionsTrackedSeparately() {
+    SequenceTracker tracker = new SequenceTracker();
+    tracker.track(PARTITION_0, 1, 10);
+    assertEquals(SequenceTracker.Result.FIRST, tracker.track(PARTITION_0, 2, 0));
+    assertEquals(SequenceTracker.Result.FIRST, tracker.track(PARTITION_1, 1, 0));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 2, 1));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_1, 1, 1));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 11));
+  }
+
+  @Test
+  public void testRemove() {
+    SequenceTracker tracker = new SequenceTracker();
+    tracker.track(PARTITION_0, 1, 10);
+    tracker.track(PARTITION_1, 1, 10);
+    tracker.remove(Collections.singletonList(PARTITION_0));
+    // Once reassigned, the partition may resume from an earlier committed offset.
+    assertEquals(SequenceTracker.Result.FIRST, tracker.track(PARTITION_0, 1, 5));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_0, 1, 6));
+    assertEquals(SequenceTracker.Result.IN_ORDER, tracker.track(PARTITION_1, 1, 11));
+  }
+}
@@ -0,0 +1,93 @@
+package com.mesosphere.dcos.kafka.testclient;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WelchTestTest {
+
+  private static final double DELTA = 1e-6;
+
+  @Test
+  public void testKnownPValues() {
+    // The examples of Welch's t-test on Wikipedia.
+    assertEquals(0.021378, WelchTest.pValue(
+        new double[] { 27.5, 21.0, 19.0, 23.6, 17.0, 17.9, 16.9, 20.1, 21.9, 22.6, 23.1, 19.6, 19.0, 21.7, 21.4 },
+        new double[] { 27.1, 22.0, 20.8, 23.4, 23.4, 23.5, 25.8, 22.0, 24.8, 20.2, 21.9, 22.1, 22.9, 20.5, 24.4 }),
+        DELTA);
+    assertEquals(0.148842, WelchTest.pValue(
+        new double[] { 17.2, 20.9, 22.6, 18.1, 21.7, 21.4, 23.5, 24.2, 14.7, 21.8 },
+        new double[] {
+            21.5, 22.8, 21.0, 23.0, 21.6, 23.6, 22.5, 20.7, 23.4, 21.8,
+            20.7, 21.7, 21.5, 22.5, 23.6, 21.5, 22.5, 23.5, 21.5, 21.8 }),
+        DELTA);
+    assertEquals(0.035485, WelchTest.pValue(
+        new double[] { 19.8, 20.4, 19.6, 17.8, 18.5, 18.9, 18.3, 18.9, 19.5, 22.0 },
+        new double[] {
+            28.2, 26.6, 20.1, 23.3, 25.2, 22.1, 17.7, 27.6, 20.6, 13.7,
+            23.2, 17.5, 20.6, 18.0, 23.9, 21.6, 24.3, 20.4, 23.9, 13.3 }),
+        DELTA);
+  }
+
+  @Test
+  public void testSymmetric() {
+    double[] a = { 1, 2, 3, 4, 5 };
+    double[] b = { 2, 4, 6, 8, 10, 12 };
+    assertEquals(WelchTest.pValue(a, b), WelchTest.pValue(b, a), 1e-12);
+  }
+
+  @Test
+  public void testSameMean() {
+    assertEquals(1, WelchTest.pValue(new double[] { 1, 2, 3 }, new double[] { 0, 2, 4 }), DELTA);
+  }
+
+  @Test
+  public void testConstantSamples() {
+    assertEquals(1, WelchTest.pValue(new double[] { 5, 5, 5 }, new double[] { 5, 5 }), 0);
+    assertEquals(0, WelchTest.pValue(new double[] { 5, 5, 5 }, new double[] { 6, 6 }), 0);
+  }
+
+  @Test
+  public void testOneConstantSample() {
+    // With no variance in a, the degrees of freedom are those of b alone, here 2, for which the
+    // p-value is 1 - |t| / sqrt(2 + t^2).
+    double t = (10 - 2) / Math.sqrt(1. / 3);
+    assertEquals(1 - t / Math.sqrt(2 + t * t),
+        WelchTest.pValue(new double[] { 10, 10, 10 }, new double[] { 1, 2, 3 }), 1e-9);
+    assertEquals(1, WelchTest.pValue(new double[] { 5, 5, 5, 5 }, new double[] { 4, 6, 4, 6 }), DELTA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooFewSamples() {
+    WelchTest.pValue(new double[] { 1 }, new double[] { 1, 2, 3 });
+  }
+
+  @Test
+  public void testRegularizedIncompleteBeta() {
+    assertEquals(0, WelchTest.regularizedIncompleteBeta(0, 2, 3), 0);
+    assertEquals(1, WelchTest.regularizedIncompleteBeta(1, 2, 3), 0);
+    assertEquals(0.3, WelchTest.regularizedIncompleteBeta(0.3, 1, 1), 1e-9);
+    assertEquals(Math.pow(0.7, 4), WelchTest.regularizedIncompleteBeta(0.7, 4, 1), 1e-9);
+    assertEquals(0.5, WelchTest.regularizedIncompleteBeta(0.5, 7.5, 7.5), 1e-9);
+    // Both sides of the symmetry switch: I_x(a, b) = 1 - I_(1-x)(b, a).
+    assertEquals(1 - WelchTest.regularizedIncompleteBeta(0.8, 5, 2),
+        WelchTest.regularizedIncompleteBeta(0.2, 2, 5), 1e-9);
+    // Student's t with one degree of freedom is the Cauchy distribution: P(|T| > 2).
+    assertEquals(1 - 2 / Math.PI * Math.atan(2), WelchTest.regularizedIncompleteBeta(1. / 5, 0.5, 0.5), 1e-9);
+  }
+
+  @Test
+  public void testLogGamma() {
+    assertEquals(Math.log(24), WelchTest.logGamma(5), 1e-9);
+    assertEquals(Math.log(Math.sqrt(Math.PI)), WelchTest.logGamma(0.5), 1e-9);
+    assertEquals(0, WelchTest.logGamma(1), 1e-9);
+    assertEquals(Math.log(362880), WelchTest.logGamma(10), 1e-9);
+  }
+
+  @Test
+  public void testVariance() {
+    assertEquals(3, WelchTest.mean(new double[] { 1, 2, 3, 4, 5 }), 0);
+    assertEquals(2.5, WelchTest.variance(new double[] { 1, 2, 3, 4, 5 }), 1e-12);
+    assertEquals(0, WelchTest.variance(new double[] { 7, 7, 7 }), 0);
+  }
+}
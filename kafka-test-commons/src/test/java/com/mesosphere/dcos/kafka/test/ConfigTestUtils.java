@@ -58,13 +58,17 @@ public class ConfigTestUtils {
     }
 
     public static KafkaHealthCheckConfiguration getTestHealthCheckConfiguration() {
-        return new KafkaHealthCheckConfiguration(true, 15, 10, 20, 3, 10);
+        return new KafkaHealthCheckConfiguration(true, 15, 10, 20, 3, 10, false, 30);
     }
 
     public static RecoveryConfiguration getTestRecoveryConfiguration() {
         return new RecoveryConfiguration(1200, 600, false);
     }
 
+    public static KafkaRebalanceConfiguration getTestRebalanceConfiguration() {
+        return new KafkaRebalanceConfiguration(false, 10, 0, 0.1, false, 300, 50, 0.1, 0, 1);
+    }
+
     public static KafkaSchedulerConfiguration getTestKafkaSchedulerConfiguration() {
         return new KafkaSchedulerConfiguration(
                 getTestServiceConfiguration(),
@@ -72,6 +76,7 @@ public class ConfigTestUtils {
                 getTestKafkaConfiguration(),
                 getTestExecutorConfiguration(),
                 getTestRecoveryConfiguration(),
-                getTestHealthCheckConfiguration());
+                getTestHealthCheckConfiguration(),
+                getTestRebalanceConfiguration());
     }
 }